@@ -0,0 +1,308 @@
+package io.github.vishalmysore.ucp.annotation.processor;
+
+import io.github.vishalmysore.ucp.annotation.UCPBusiness;
+import io.github.vishalmysore.ucp.annotation.UCPCapabilities;
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import io.github.vishalmysore.ucp.annotation.UCPHandler;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Compile-time processor for the UCP annotations.
+ * Checks the rules that {@code CapabilityRegistry} would otherwise enforce at
+ * startup (a single {@link UCPBusiness}, capabilities only on RestControllers,
+ * YYYY-MM-DD versions, a single UCPAware implementation) and writes a static
+ * index of businesses, capabilities and payment handlers to
+ * {@value #INDEX_LOCATION}, which is loaded at startup instead of scanning.
+ * Capabilities are indexed under the action name their method is called by,
+ * as the scan of registered actions keys them; methods that are not actions
+ * are left out, and two actions of the same name are an error. The index also
+ * lists every class declaring an action, so that at startup an index that
+ * does not cover all registered actions is recognised and not used alone.
+ *
+ * Registered through {@code META-INF/services}, so it runs for any project that
+ * compiles against this library.
+ */
+@SupportedAnnotationTypes("*")
+public class UCPAnnotationProcessor extends AbstractProcessor {
+
+    public static final String INDEX_LOCATION = "META-INF/ucp/capability-index.json";
+
+    private static final Pattern VERSION_FORMAT = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}$");
+    private static final String REST_CONTROLLER = "org.springframework.web.bind.annotation.RestController";
+    private static final String UCP_AWARE = "io.github.vishalmysore.ucp.domain.discovery.UCPAware";
+    private static final String PAYMENT_HANDLER = "io.github.vishalmysore.ucp.handler.PaymentHandler";
+    private static final String ACTION = "com.t4a.annotations.Action";
+
+    private final Set<String> businesses = new TreeSet<>();
+    private final Set<String> ucpAwareImplementations = new TreeSet<>();
+    private final List<String> methodEntries = new ArrayList<>();
+    // Action name to the method declaring it
+    private final Map<String, String> actions = new HashMap<>();
+    private final Set<String> actionClasses = new TreeSet<>();
+    private final List<String> handlerEntries = new ArrayList<>();
+    private String businessEntry;
+    private boolean indexed;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(UCPBusiness.class)) {
+            processBusiness(element);
+        }
+        Set<Element> capabilityMethods = new LinkedHashSet<>(roundEnv.getElementsAnnotatedWith(UCPCapability.class));
+        capabilityMethods.addAll(roundEnv.getElementsAnnotatedWith(UCPCapabilities.class));
+        for (Element element : capabilityMethods) {
+            if (element.getKind() == ElementKind.METHOD) {
+                processCapabilityMethod((ExecutableElement) element);
+            }
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(UCPHandler.class)) {
+            processHandler(element);
+        }
+        TypeElement action = processingEnv.getElementUtils().getTypeElement(ACTION);
+        if (action != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(action)) {
+                if (element.getKind() == ElementKind.METHOD) {
+                    actionClasses.add(binaryName((TypeElement) element.getEnclosingElement()));
+                }
+            }
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            findUcpAwareImplementations(element);
+        }
+        return false;
+    }
+
+    private void processBusiness(Element element) {
+        if (!(element instanceof TypeElement)) {
+            return;
+        }
+        String className = binaryName((TypeElement) element);
+        businesses.add(className);
+        // Enforcement: UCP 2026 requires a single Merchant of Record per host
+        if (businesses.size() > 1) {
+            error(element, "UCP Violation: Multiple businesses found: " + businesses
+                    + ". Each host must represent exactly one merchant.");
+            return;
+        }
+        UCPBusiness business = element.getAnnotation(UCPBusiness.class);
+        businessEntry = "{\"class\":" + quote(className) + ",\"name\":" + quote(business.name())
+                + ",\"version\":" + quote(business.version()) + "}";
+    }
+
+    private void processCapabilityMethod(ExecutableElement method) {
+        TypeElement type = (TypeElement) method.getEnclosingElement();
+        // Interfaces such as UCPAware declare capabilities for their implementations
+        if (type.getKind() == ElementKind.INTERFACE) {
+            return;
+        }
+        // Enforcement: Agents must be RestControllers to support mandatory REST transport
+        if (!hasAnnotation(type, REST_CONTROLLER)) {
+            error(method, "UCP Violation: Agent " + type.getSimpleName()
+                    + " must be annotated with @RestController to support REST transport.");
+            return;
+        }
+        AnnotationMirror action = findAnnotation(method, ACTION);
+        if (action == null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "@UCPCapability on "
+                    + type.getSimpleName() + "." + method.getSimpleName()
+                    + " is ignored: the method is not an @Action", method);
+            return;
+        }
+        String actionName = actionName(method, action);
+        String declaring = type.getSimpleName() + "." + method.getSimpleName();
+        String previous = actions.putIfAbsent(actionName, declaring);
+        if (previous != null) {
+            error(method, "UCP Violation: Action " + actionName + " is declared by both " + previous + " and "
+                    + declaring + ". Each action name must be unique.");
+            return;
+        }
+        StringBuilder capabilities = new StringBuilder();
+        for (UCPCapability cap : method.getAnnotationsByType(UCPCapability.class)) {
+            if (!VERSION_FORMAT.matcher(cap.version()).matches()) {
+                error(method, "Invalid capability version format: " + cap.version() + ". Must be YYYY-MM-DD");
+                return;
+            }
+            if (capabilities.length() > 0) {
+                capabilities.append(',');
+            }
+            capabilities.append("{\"name\":").append(quote(cap.name()))
+                    .append(",\"version\":").append(quote(cap.version()))
+                    .append(",\"spec\":").append(quote(cap.spec()))
+                    .append(",\"schema\":").append(quote(cap.schema()))
+                    .append(",\"extendsCapability\":").append(quote(cap.extendsCapability()))
+                    .append('}');
+        }
+        methodEntries.add("{\"class\":" + quote(binaryName(type)) + ",\"method\":"
+                + quote(method.getSimpleName().toString()) + ",\"action\":" + quote(actionName)
+                + ",\"capabilities\":[" + capabilities + "]}");
+    }
+
+    /**
+     * The name an action is registered and called by: its {@code name} when
+     * the annotation has a non-empty one, otherwise the method name.
+     */
+    private String actionName(ExecutableElement method, AnnotationMirror action) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+                : processingEnv.getElementUtils().getElementValuesWithDefaults(action).entrySet()) {
+            if (value.getKey().getSimpleName().contentEquals("name")
+                    && value.getValue().getValue() instanceof String
+                    && !((String) value.getValue().getValue()).isEmpty()) {
+                return (String) value.getValue().getValue();
+            }
+        }
+        return method.getSimpleName().toString();
+    }
+
+    private void processHandler(Element element) {
+        if (!(element instanceof TypeElement)) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        UCPHandler handler = type.getAnnotation(UCPHandler.class);
+        if (!VERSION_FORMAT.matcher(handler.version()).matches()) {
+            error(type, "Invalid payment handler version format: " + handler.version() + ". Must be YYYY-MM-DD");
+            return;
+        }
+        if (!isAssignable(type, PAYMENT_HANDLER)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "@UCPHandler " + type.getSimpleName() + " does not implement PaymentHandler and is ignored", type);
+            return;
+        }
+        handlerEntries.add("{\"class\":" + quote(binaryName(type)) + ",\"name\":" + quote(handler.name())
+                + ",\"version\":" + quote(handler.version()) + "}");
+    }
+
+    private void findUcpAwareImplementations(Element element) {
+        if (!(element instanceof TypeElement)) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        if (type.getKind() == ElementKind.CLASS && !type.getModifiers().contains(Modifier.ABSTRACT)
+                && isAssignable(type, UCP_AWARE)) {
+            ucpAwareImplementations.add(binaryName(type));
+            // Enforcement: Only one UCPAware implementation per host
+            if (ucpAwareImplementations.size() > 1) {
+                error(type, "UCP Violation: Multiple UCPAware implementations found: " + ucpAwareImplementations
+                        + ". Each host must implement exactly one UCPAware.");
+            }
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            findUcpAwareImplementations(enclosed);
+        }
+    }
+
+    private void writeIndex() {
+        if (indexed || (businessEntry == null && methodEntries.isEmpty() && handlerEntries.isEmpty()
+                && actionClasses.isEmpty())) {
+            return;
+        }
+        indexed = true;
+        String index = "{\"business\":" + (businessEntry != null ? businessEntry : "null")
+                + ",\"ucpAware\":[" + quoteAll(ucpAwareImplementations) + "]"
+                + ",\"actionClasses\":[" + quoteAll(actionClasses) + "]"
+                + ",\"methods\":[" + String.join(",", methodEntries) + "]"
+                + ",\"handlers\":[" + String.join(",", handlerEntries) + "]}\n";
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    INDEX_LOCATION);
+            try (Writer writer = file.openWriter()) {
+                writer.write(index);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot write " + INDEX_LOCATION + ": " + e.getMessage());
+        }
+    }
+
+    private boolean hasAnnotation(TypeElement type, String annotationName) {
+        return findAnnotation(type, annotationName) != null;
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName()
+                    .contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private boolean isAssignable(TypeElement type, String superTypeName) {
+        TypeElement superType = processingEnv.getElementUtils().getTypeElement(superTypeName);
+        if (superType == null) {
+            return false;
+        }
+        TypeMirror erased = processingEnv.getTypeUtils().erasure(type.asType());
+        return processingEnv.getTypeUtils().isAssignable(erased,
+                processingEnv.getTypeUtils().erasure(superType.asType()));
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static String quoteAll(Set<String> values) {
+        StringBuilder quoted = new StringBuilder();
+        for (String value : values) {
+            if (quoted.length() > 0) {
+                quoted.append(',');
+            }
+            quoted.append(quote(value));
+        }
+        return quoted.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.vishalmysore.ucp.domain;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * UCPResult carrying structured business data to the response writer.
+ * The data is either an object graph (a Map or a Jackson-serializable bean) that
+ * is serialized once, straight into the response, or a JSON object that was
+ * already serialized and is spliced into the response as is.
+ * Replaces returning text prefixed with {@value #STRUCTURED_DATA_PREFIX}, which
+ * is still understood.
+ */
+public class StructuredUCPResult implements UCPResult {
+
+    /**
+     * Prefix of the legacy text convention for structured results.
+     */
+    public static final String STRUCTURED_DATA_PREFIX = "__UCP_STRUCTURED_DATA__:";
+
+    private static final ObjectMapper LEGACY_MAPPER = new ObjectMapper();
+
+    private final Object data;
+    private final String rawJson;
+    private volatile Map<String, String> flattened;
+
+    private StructuredUCPResult(Object data, String rawJson) {
+        this.data = data;
+        this.rawJson = rawJson;
+    }
+
+    /**
+     * Structured result from a Map or a Jackson-serializable bean.
+     */
+    public static StructuredUCPResult of(Object data) {
+        return new StructuredUCPResult(data, null);
+    }
+
+    /**
+     * Structured result from an already serialized JSON object. The JSON is
+     * scanned once for well-formedness and otherwise kept as is, to be spliced
+     * into the response. A top-level {@code ucp} member would clash with the
+     * response's metadata block, so an object that has one is read and the
+     * member dropped.
+     * @throws IllegalArgumentException if the text is not exactly one JSON object
+     */
+    public static StructuredUCPResult ofJson(String json) {
+        String trimmed = json == null ? "" : json.trim();
+        boolean hasUcp = false;
+        try (JsonParser parser = LEGACY_MAPPER.getFactory().createParser(trimmed)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw notAnObject(null);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                hasUcp |= "ucp".equals(parser.getCurrentName());
+                parser.nextToken();
+                parser.skipChildren();
+            }
+            if (parser.nextToken() != null) {
+                throw notAnObject(null);
+            }
+            if (!hasUcp) {
+                return new StructuredUCPResult(null, trimmed);
+            }
+            Map<String, Object> data = LEGACY_MAPPER.readValue(trimmed,
+                    new TypeReference<LinkedHashMap<String, Object>>() { });
+            data.remove("ucp");
+            return new StructuredUCPResult(data, null);
+        } catch (IOException e) {
+            throw notAnObject(e);
+        }
+    }
+
+    private static IllegalArgumentException notAnObject(IOException cause) {
+        return new IllegalArgumentException("Structured UCP result must be a JSON object", cause);
+    }
+
+    /**
+     * Read the legacy {@value #STRUCTURED_DATA_PREFIX} text convention.
+     * @return the structured result, or null if the text does not use the convention
+     */
+    public static StructuredUCPResult fromPrefixedText(String text) {
+        if (text == null || !text.startsWith(STRUCTURED_DATA_PREFIX)) {
+            return null;
+        }
+        try {
+            return ofJson(text.substring(STRUCTURED_DATA_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The object graph, or null when the result holds raw JSON.
+     */
+    public Object getData() {
+        return data;
+    }
+
+    /**
+     * The serialized JSON object, or null when the result holds an object graph.
+     */
+    public String getRawJson() {
+        return rawJson;
+    }
+
+    public boolean isRaw() {
+        return rawJson != null;
+    }
+
+    /**
+     * String view for consumers of the plain UCPResult contract.
+     * Computed on first use only; the JSON-RPC writer never calls it.
+     */
+    @Override
+    public Map<String, String> getResult() {
+        Map<String, String> result = flattened;
+        if (result == null) {
+            result = Collections.unmodifiableMap(flatten());
+            flattened = result;
+        }
+        return result;
+    }
+
+    private Map<String, String> flatten() {
+        Map<?, ?> source;
+        try {
+            source = rawJson != null
+                    ? LEGACY_MAPPER.readValue(rawJson, Map.class)
+                    : LEGACY_MAPPER.convertValue(data, Map.class);
+        } catch (Exception e) {
+            return Collections.singletonMap("result", rawJson != null ? rawJson : String.valueOf(data));
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : source.entrySet()) {
+            Object value = entry.getValue();
+            String text;
+            if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+                text = value == null ? null : value.toString();
+            } else {
+                try {
+                    text = LEGACY_MAPPER.writeValueAsString(value);
+                } catch (Exception e) {
+                    text = value.toString();
+                }
+            }
+            values.put(String.valueOf(entry.getKey()), text);
+        }
+        return values;
+    }
+}
@@ -3,30 +3,94 @@ package io.github.vishalmysore.ucp.domain;
 import com.t4a.detect.ActionCallback;
 import com.t4a.detect.ActionState;
 
+/**
+ * Callback handed to the AI processor for a capability call.
+ * Keeps the call context and forwards state transitions, and any partial
+ * results the capability publishes, to an optional {@link ProgressListener}
+ * such as a Server-Sent Events stream.
+ */
 public class UCPCallback implements ActionCallback {
 
+    /**
+     * Receives the progress of a running capability call.
+     */
+    public interface ProgressListener {
+        void onStatus(String status, ActionState state);
+
+        default void onPartialResult(Object partialResult) {
+        }
+    }
+
+    private static final ThreadLocal<UCPCallback> CURRENT = new ThreadLocal<>();
+
+    private final ProgressListener listener;
+    private volatile Object context;
+    private volatile String type = "";
+
+    public UCPCallback() {
+        this(null);
+    }
+
+    public UCPCallback(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * The callback of the capability call running on this thread, if any.
+     * Lets capability code publish progress with {@link #sendPartialResult(Object)}.
+     */
+    public static UCPCallback current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Make a callback current for this thread.
+     * @return the previously current callback, to be restored with this method afterwards
+     */
+    public static UCPCallback bind(UCPCallback callback) {
+        UCPCallback previous = CURRENT.get();
+        if (callback == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(callback);
+        }
+        return previous;
+    }
+
     @Override
     public void setContext(Object obj) {
-
+        this.context = obj;
     }
 
     @Override
     public Object getContext() {
-        return null;
+        return context;
     }
 
     @Override
     public String getType() {
-        return "";
+        return type;
     }
 
     @Override
     public String setType(String type) {
-        return "";
+        this.type = type;
+        return type;
     }
 
     @Override
     public void sendtStatus(String status, ActionState state) {
+        if (listener != null) {
+            listener.onStatus(status, state);
+        }
+    }
 
+    /**
+     * Publish an intermediate result of a long-running capability.
+     */
+    public void sendPartialResult(Object partialResult) {
+        if (listener != null) {
+            listener.onPartialResult(partialResult);
+        }
     }
 }
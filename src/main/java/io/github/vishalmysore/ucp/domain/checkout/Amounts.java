@@ -0,0 +1,83 @@
+package io.github.vishalmysore.ucp.domain.checkout;
+
+import java.util.AbstractList;
+
+/**
+ * Amounts in minor units, one long per {@link TotalResponse.Type}, read as a
+ * list of {@link TotalResponse}s that are made only when read (that is, when
+ * serialized). Subtotal and total are always listed, other types when not zero.
+ */
+class Amounts extends AbstractList<TotalResponse> {
+
+    static final TotalResponse.Type[] TYPES = TotalResponse.Type.values();
+    static final int WIDTH = TYPES.length;
+    static final int SUBTOTAL = TotalResponse.Type.subtotal.ordinal();
+    static final int TOTAL = TotalResponse.Type.total.ordinal();
+
+    final long[] amounts;
+    private final int listed;
+
+    Amounts(long[] amounts) {
+        this.amounts = amounts;
+        int mask = (1 << SUBTOTAL) | (1 << TOTAL);
+        for (int type = 0; type < WIDTH; type++) {
+            if (amounts[type] != 0) {
+                mask |= 1 << type;
+            }
+        }
+        this.listed = mask;
+    }
+
+    public long amount(TotalResponse.Type type) {
+        return amounts[type.ordinal()];
+    }
+
+    @Override
+    public TotalResponse get(int index) {
+        int mask = listed;
+        for (int i = 0; i < index && mask != 0; i++) {
+            mask &= mask - 1;
+        }
+        if (index < 0 || mask == 0) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+        int type = Integer.numberOfTrailingZeros(mask);
+        TotalResponse total = new TotalResponse();
+        total.setType(TYPES[type]);
+        total.setAmount(amounts[type]);
+        return total;
+    }
+
+    @Override
+    public int size() {
+        return Integer.bitCount(listed);
+    }
+
+    /**
+     * The total of the component amounts: subtotal less discounts plus tax, fulfillment and fees.
+     */
+    static long total(long[] amounts) {
+        long total = amounts[SUBTOTAL];
+        total = Math.subtractExact(total, amounts[TotalResponse.Type.items_discount.ordinal()]);
+        total = Math.subtractExact(total, amounts[TotalResponse.Type.discount.ordinal()]);
+        total = Math.addExact(total, amounts[TotalResponse.Type.tax.ordinal()]);
+        total = Math.addExact(total, amounts[TotalResponse.Type.fulfillment.ordinal()]);
+        return Math.addExact(total, amounts[TotalResponse.Type.fee.ordinal()]);
+    }
+
+    static long[] add(long[] a, long[] b) {
+        long[] sum = new long[WIDTH];
+        for (int type = 0; type < WIDTH; type++) {
+            sum[type] = Math.addExact(a[type], b[type]);
+        }
+        return sum;
+    }
+
+    static long[] subtract(long[] a, long[] b) {
+        long[] difference = new long[WIDTH];
+        for (int type = 0; type < WIDTH; type++) {
+            difference[type] = Math.subtractExact(a[type], b[type]);
+        }
+        return difference;
+    }
+}
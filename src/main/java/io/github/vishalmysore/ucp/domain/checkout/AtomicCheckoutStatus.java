@@ -0,0 +1,56 @@
+package io.github.vishalmysore.ucp.domain.checkout;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The status of one checkout session, moved only along {@link CheckoutLifecycle}
+ * by compare-and-set of its ordinal, for hosts that keep the status apart from
+ * the rest of the session. Of a complete and a cancel racing on a
+ * {@code ready_for_complete} session exactly one wins, without a lock.
+ */
+public final class AtomicCheckoutStatus {
+
+    private static final CheckoutStatus[] STATUSES = CheckoutStatus.values();
+
+    private final String checkoutId;
+    private final AtomicInteger state;
+
+    public AtomicCheckoutStatus(String checkoutId, CheckoutStatus initial) {
+        this.checkoutId = checkoutId;
+        this.state = new AtomicInteger(initial.ordinal());
+    }
+
+    public CheckoutStatus get() {
+        return STATUSES[state.get()];
+    }
+
+    /**
+     * Move to the status from whatever the current one is.
+     * @return the status moved from
+     * @throws InvalidTransitionException if the current status does not allow it
+     */
+    public CheckoutStatus transition(CheckoutStatus to) {
+        while (true) {
+            int current = state.get();
+            CheckoutLifecycle.transition(checkoutId, STATUSES[current], to);
+            if (state.compareAndSet(current, to.ordinal())) {
+                return STATUSES[current];
+            }
+        }
+    }
+
+    /**
+     * Move to the status only from the expected one.
+     * @return false if the status is not the expected one
+     * @throws InvalidTransitionException if the expected status does not allow it
+     */
+    public boolean compareAndTransition(CheckoutStatus expected, CheckoutStatus to) {
+        CheckoutLifecycle.transition(checkoutId, expected, to);
+        return state.compareAndSet(expected.ordinal(), to.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        return get().toString();
+    }
+}
@@ -0,0 +1,251 @@
+package io.github.vishalmysore.ucp.domain.checkout;
+
+import io.github.vishalmysore.ucp.domain.common.ItemResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable priced line items and their checkout totals. A line's own
+ * subtotal is its item price times its quantity; its other own amounts
+ * (discounts, tax, fulfillment, fees) are taken from the totals it carries,
+ * and its total is derived from them. A line's listed totals add those of the
+ * lines below it ({@code parent_id}), and the checkout totals add the own
+ * amounts of every line.
+ *
+ * All amounts are primitive longs in minor units with overflow checks
+ * ({@link ArithmeticException}); {@link TotalResponse}s are made only when the
+ * totals are read. {@link #reprice} and {@link #withLine} price only the lines
+ * that changed and add the difference to the lines above them and the
+ * checkout totals, so changing one line of a large cart costs its depth in the
+ * hierarchy rather than the size of the cart. Unchanged lines are shared with
+ * the previous pricing.
+ */
+public final class CartPricing {
+
+    public static final CartPricing EMPTY = new CartPricing(Collections.<LineItemResponse>emptyList(), new int[0],
+            new long[Amounts.WIDTH]);
+
+    private final List<LineItemResponse> lineItems;
+    private final int[] parents;
+    private final Amounts totals;
+
+    private CartPricing(List<LineItemResponse> lineItems, int[] parents, long[] amounts) {
+        this.lineItems = lineItems;
+        this.parents = parents;
+        this.totals = new Amounts(amounts);
+    }
+
+    /**
+     * Price the lines from scratch. The lines are not modified; the priced
+     * copies carry {@link LineTotals}.
+     * @throws IllegalArgumentException for duplicate line ids, or a parent_id that is unknown or makes a cycle
+     */
+    public static CartPricing price(List<LineItemResponse> lines) {
+        int size = lines.size();
+        Map<String, Integer> index = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            if (index.put(lines.get(i).getId(), i) != null) {
+                throw new IllegalArgumentException("Duplicate line item id " + lines.get(i).getId());
+            }
+        }
+        int[] parents = new int[size];
+        long[][] own = new long[size][];
+        long[][] listed = new long[size][];
+        long[] amounts = new long[Amounts.WIDTH];
+        for (int i = 0; i < size; i++) {
+            String parentId = lines.get(i).getParentId();
+            Integer parent = parentId != null ? index.get(parentId) : null;
+            if (parentId != null && parent == null) {
+                throw new IllegalArgumentException("Unknown parent_id " + parentId + " of line item "
+                        + lines.get(i).getId());
+            }
+            parents[i] = parent != null ? parent : -1;
+            own[i] = own(lines.get(i));
+            listed[i] = own[i].clone();
+        }
+        for (int i = 0; i < size; i++) {
+            addInPlace(amounts, own[i]);
+            int depth = 0;
+            for (int p = parents[i]; p >= 0; p = parents[p]) {
+                if (++depth > size) {
+                    throw new IllegalArgumentException("parent_id of line item " + lines.get(i).getId()
+                            + " makes a cycle");
+                }
+                addInPlace(listed[p], own[i]);
+            }
+        }
+        List<LineItemResponse> priced = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            priced.add(priced(lines.get(i), own[i], listed[i]));
+        }
+        return new CartPricing(Collections.unmodifiableList(priced), parents, amounts);
+    }
+
+    /**
+     * Price a new list of lines against this pricing. When the lines have the
+     * same ids and parents in the same order, only those whose item, quantity
+     * or own amounts differ are priced; otherwise everything is.
+     */
+    public CartPricing reprice(List<LineItemResponse> lines) {
+        if (lines.size() != lineItems.size()) {
+            return price(lines);
+        }
+        List<LineItemResponse> next = null;
+        long[] amounts = null;
+        for (int i = 0; i < lines.size(); i++) {
+            LineItemResponse line = lines.get(i);
+            LineItemResponse previous = lineItems.get(i);
+            if (line == previous) {
+                continue;
+            }
+            if (!Objects.equals(line.getId(), previous.getId())
+                    || !Objects.equals(line.getParentId(), previous.getParentId())) {
+                return price(lines);
+            }
+            if (unchanged(previous, line)) {
+                continue;
+            }
+            long[] own = own(line);
+            if (next == null) {
+                next = new ArrayList<>(lineItems);
+                amounts = totals.amounts.clone();
+            }
+            apply(next, amounts, i, line, own);
+        }
+        return next == null ? this
+                : new CartPricing(Collections.unmodifiableList(next), parents, amounts);
+    }
+
+    /**
+     * Replace one line, keeping its id and parent.
+     * @throws IllegalArgumentException if the line changes its id or parent
+     */
+    public CartPricing withLine(int index, LineItemResponse line) {
+        LineItemResponse previous = lineItems.get(index);
+        if (!Objects.equals(previous.getId(), line.getId())
+                || !Objects.equals(previous.getParentId(), line.getParentId())) {
+            throw new IllegalArgumentException("Line item " + previous.getId() + " cannot change its id or parent");
+        }
+        if (unchanged(previous, line)) {
+            return this;
+        }
+        long[] own = own(line);
+        List<LineItemResponse> next = new ArrayList<>(lineItems);
+        long[] amounts = totals.amounts.clone();
+        apply(next, amounts, index, line, own);
+        return new CartPricing(Collections.unmodifiableList(next), parents, amounts);
+    }
+
+    /**
+     * The priced lines, each with {@link LineTotals}.
+     */
+    public List<LineItemResponse> getLineItems() {
+        return lineItems;
+    }
+
+    /**
+     * The checkout totals.
+     */
+    public List<TotalResponse> getTotals() {
+        return totals;
+    }
+
+    public long amount(TotalResponse.Type type) {
+        return totals.amount(type);
+    }
+
+    /**
+     * The position of the line with the id, or -1.
+     */
+    public int indexOf(String lineId) {
+        for (int i = 0; i < lineItems.size(); i++) {
+            if (Objects.equals(lineItems.get(i).getId(), lineId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void apply(List<LineItemResponse> next, long[] amounts, int index, LineItemResponse line, long[] own) {
+        long[] delta = Amounts.subtract(own, ((LineTotals) lineItems.get(index).getTotals()).own);
+        // Read from next: the line may have been updated as the parent of an earlier one
+        LineTotals current = (LineTotals) next.get(index).getTotals();
+        next.set(index, priced(line, own, Amounts.add(current.amounts, delta)));
+        for (int p = parents[index]; p >= 0; p = parents[p]) {
+            LineItemResponse parent = next.get(p);
+            LineTotals parentTotals = (LineTotals) parent.getTotals();
+            next.set(p, priced(parent, parentTotals.own, Amounts.add(parentTotals.amounts, delta)));
+        }
+        addInPlace(amounts, delta);
+    }
+
+    /**
+     * Whether the line prices as the previous one did, without pricing it in the common cases.
+     */
+    private static boolean unchanged(LineItemResponse previous, LineItemResponse line) {
+        if (!Objects.equals(previous.getQuantity(), line.getQuantity())
+                || !Objects.equals(previous.getItem(), line.getItem())) {
+            return false;
+        }
+        long[] own = ((LineTotals) previous.getTotals()).own;
+        List<TotalResponse> given = line.getTotals();
+        if (given instanceof LineTotals) {
+            return Arrays.equals(((LineTotals) given).own, own);
+        }
+        if (given != null) {
+            return Arrays.equals(own(line), own);
+        }
+        // Only the price: nothing else may have been set before
+        boolean priced = line.getItem() != null && line.getItem().getPrice() != null;
+        for (int type = 0; type < Amounts.WIDTH; type++) {
+            if (type != Amounts.TOTAL && (type != Amounts.SUBTOTAL || !priced) && own[type] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] own(LineItemResponse line) {
+        long[] own = new long[Amounts.WIDTH];
+        List<TotalResponse> given = line.getTotals();
+        if (given instanceof LineTotals) {
+            System.arraycopy(((LineTotals) given).own, 0, own, 0, Amounts.WIDTH);
+        } else if (given != null) {
+            for (TotalResponse total : given) {
+                if (total.getType() != null && total.getAmount() != null) {
+                    int type = total.getType().ordinal();
+                    own[type] = Math.addExact(own[type], total.getAmount());
+                }
+            }
+        }
+        ItemResponse item = line.getItem();
+        if (item != null && item.getPrice() != null) {
+            own[Amounts.SUBTOTAL] = Math.multiplyExact(item.getPrice(),
+                    (long) (line.getQuantity() != null ? line.getQuantity() : 0));
+        }
+        own[Amounts.TOTAL] = Amounts.total(own);
+        return own;
+    }
+
+    private static LineItemResponse priced(LineItemResponse line, long[] own, long[] listed) {
+        LineItemResponse priced = new LineItemResponse();
+        priced.setId(line.getId());
+        priced.setItem(line.getItem());
+        priced.setQuantity(line.getQuantity());
+        priced.setParentId(line.getParentId());
+        priced.setTotals(new LineTotals(own, listed));
+        return priced;
+    }
+
+    private static void addInPlace(long[] sum, long[] amounts) {
+        for (int type = 0; type < Amounts.WIDTH; type++) {
+            sum[type] = Math.addExact(sum[type], amounts[type]);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.vishalmysore.ucp.domain.checkout;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus.*;
+
+/**
+ * The transitions a checkout session may make between {@link CheckoutStatus}es:
+ *
+ * <pre>
+ * incomplete, requires_escalation -&gt; incomplete, requires_escalation, ready_for_complete, canceled
+ * ready_for_complete   -&gt; incomplete, requires_escalation, ready_for_complete, complete_in_progress, canceled
+ * complete_in_progress -&gt; completed, requires_escalation (payment needs the buyer)
+ * completed, canceled  -&gt; none
+ * </pre>
+ *
+ * The table is built once as a bit mask per status, so a check is an array
+ * load and a bit test. Apply it inside whatever compare-and-set publishes the
+ * new status (see {@link AtomicCheckoutStatus}), so that of two racing
+ * transitions the one that loses is checked again against the winner's status.
+ */
+public final class CheckoutLifecycle {
+
+    private static final int[] NEXT = new int[CheckoutStatus.values().length];
+    private static final Map<CheckoutStatus, Set<CheckoutStatus>> TRANSITIONS = new EnumMap<>(CheckoutStatus.class);
+
+    static {
+        allow(incomplete, incomplete, requires_escalation, ready_for_complete, canceled);
+        allow(requires_escalation, incomplete, requires_escalation, ready_for_complete, canceled);
+        allow(ready_for_complete, incomplete, requires_escalation, ready_for_complete, complete_in_progress, canceled);
+        allow(complete_in_progress, completed, requires_escalation);
+        allow(completed);
+        allow(canceled);
+    }
+
+    private CheckoutLifecycle() {
+    }
+
+    private static void allow(CheckoutStatus from, CheckoutStatus... to) {
+        EnumSet<CheckoutStatus> next = EnumSet.noneOf(CheckoutStatus.class);
+        for (CheckoutStatus status : to) {
+            NEXT[from.ordinal()] |= 1 << status.ordinal();
+            next.add(status);
+        }
+        TRANSITIONS.put(from, Collections.unmodifiableSet(next));
+    }
+
+    public static boolean isAllowed(CheckoutStatus from, CheckoutStatus to) {
+        return (NEXT[from.ordinal()] & (1 << to.ordinal())) != 0;
+    }
+
+    /**
+     * The statuses a session may move to from the given one.
+     */
+    public static Set<CheckoutStatus> next(CheckoutStatus from) {
+        return TRANSITIONS.get(from);
+    }
+
+    /**
+     * Whether a session in the status can no longer change.
+     */
+    public static boolean isTerminal(CheckoutStatus status) {
+        return NEXT[status.ordinal()] == 0;
+    }
+
+    /**
+     * @return {@code to}, if the session may move there
+     * @throws InvalidTransitionException otherwise
+     */
+    public static CheckoutStatus transition(String checkoutId, CheckoutStatus from, CheckoutStatus to) {
+        if (!isAllowed(from, to)) {
+            throw new InvalidTransitionException(checkoutId, from, to);
+        }
+        return to;
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.vishalmysore.ucp.domain.checkout;
+
+import io.github.vishalmysore.ucp.domain.common.MessageError;
+
+/**
+ * A checkout session asked to move to a status {@link CheckoutLifecycle} does
+ * not allow from its current one. Answered by the checkout controller with 409
+ * and {@link #getMessageError()}.
+ */
+public class InvalidTransitionException extends IllegalStateException {
+
+    private final String checkoutId;
+    private final CheckoutStatus from;
+    private final CheckoutStatus to;
+
+    public InvalidTransitionException(String checkoutId, CheckoutStatus from, CheckoutStatus to) {
+        super("Checkout session " + checkoutId + " is " + from + " and cannot become " + to);
+        this.checkoutId = checkoutId;
+        this.from = from;
+        this.to = to;
+    }
+
+    public String getCheckoutId() {
+        return checkoutId;
+    }
+
+    public CheckoutStatus getFrom() {
+        return from;
+    }
+
+    public CheckoutStatus getTo() {
+        return to;
+    }
+
+    /**
+     * The UCP message for the rejection: {@code session_closed} once completed
+     * or canceled, {@code complete_in_progress} while completing,
+     * {@code not_ready} for completing a session not ready for it, else
+     * {@code invalid_transition}.
+     */
+    public MessageError getMessageError() {
+        MessageError error = new MessageError();
+        error.setContent(getMessage());
+        error.setSeverity(MessageError.Severity.recoverable);
+        if (CheckoutLifecycle.isTerminal(from)) {
+            error.setCode("session_closed");
+        } else if (from == CheckoutStatus.complete_in_progress) {
+            error.setCode("complete_in_progress");
+        } else if (from != CheckoutStatus.ready_for_complete
+                && (to == CheckoutStatus.complete_in_progress || to == CheckoutStatus.completed)) {
+            error.setCode("not_ready");
+            error.setSeverity(MessageError.Severity.requires_buyer_input);
+        } else {
+            error.setCode("invalid_transition");
+        }
+        return error;
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.vishalmysore.ucp.domain.checkout;
+
+/**
+ * The totals of a line item priced by {@link CartPricing}: its own amounts,
+ * and the amounts listed for it, which add those of the lines below it
+ * ({@code parent_id}).
+ */
+public final class LineTotals extends Amounts {
+
+    final long[] own;
+
+    LineTotals(long[] own, long[] amounts) {
+        super(amounts);
+        this.own = own;
+    }
+
+    /**
+     * The line's amount of the type without the lines below it.
+     */
+    public long ownAmount(TotalResponse.Type type) {
+        return own[type.ordinal()];
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.vishalmysore.ucp.domain.discovery;
+
+import java.util.Map;
+
+/**
+ * JSON Merge Patch (RFC 7396) updates of checkout sessions for a
+ * {@link UCPAware} implementation. When the UCPAware bean also implements this
+ * interface, {@code PATCH /ucp/v1/checkout-sessions/{id}} is passed here, with
+ * the version named by an {@code If-Match} when the bean is a
+ * {@link VersionedCheckout}; otherwise the endpoint answers 405.
+ *
+ * A member of the patch replaces the session's member of that name, an
+ * object member is merged into it the same way, and a null removes it; arrays
+ * such as {@code line_items} are replaced whole.
+ */
+public interface PatchableCheckout {
+
+    /**
+     * Apply the merge patch to the checkout if it is at the expected version
+     * ({@link VersionedCheckout#ANY_VERSION} for any).
+     * @return the checkout as patched
+     */
+    Object patchCheckout(String checkoutId, long expectedVersion, Map<String, Object> mergePatch);
+}
@@ -0,0 +1,23 @@
+package io.github.vishalmysore.ucp.domain.discovery;
+
+/**
+ * Typed request bodies for the checkout operations of a {@link UCPAware}
+ * implementation, e.g. models generated from the checkout schema and its
+ * extensions by {@code SchemaModelGenerator}. When the UCPAware bean also
+ * implements this interface, the REST checkout endpoints bind the body
+ * straight to C, U or P and call these methods instead of the Map ones; the
+ * Map methods still serve the other transports. Use {@code Map<String, Object>}
+ * for a body that should stay untyped.
+ *
+ * @param <C> create request
+ * @param <U> update request
+ * @param <P> payment details for completion
+ */
+public interface TypedCheckout<C, U, P> {
+
+    Object createCheckout(C checkoutRequest);
+
+    Object updateCheckout(String checkoutId, U checkoutUpdate);
+
+    Object completeCheckout(String checkoutId, P paymentDetails);
+}
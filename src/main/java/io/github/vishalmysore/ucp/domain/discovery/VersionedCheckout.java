@@ -0,0 +1,32 @@
+package io.github.vishalmysore.ucp.domain.discovery;
+
+/**
+ * Versioned checkout sessions for a {@link UCPAware} implementation. When the
+ * UCPAware bean also implements this interface, the REST checkout endpoints
+ * send the version of returned sessions as an {@code ETag}, answer a
+ * {@code GET} whose {@code If-None-Match} names it with 304, and pass the
+ * version named by an {@code If-Match} on {@code PUT} to
+ * {@link #updateCheckout(String, long, Object)}.
+ *
+ * @param <U> update request, {@code Map<String, Object>} unless the bean is a
+ *            {@link TypedCheckout} with another update type
+ */
+public interface VersionedCheckout<U> {
+
+    /**
+     * Expected version that matches any version ({@code If-Match: *}).
+     */
+    long ANY_VERSION = -1;
+
+    /**
+     * The version of a checkout returned by this service, or -1 if it has none.
+     */
+    long versionOf(Object checkout);
+
+    /**
+     * Update the checkout only if it is at the expected version. A session at
+     * another version is reported by throwing a
+     * {@link io.github.vishalmysore.ucp.store.CheckoutException} with status 412.
+     */
+    Object updateCheckout(String checkoutId, long expectedVersion, U checkoutUpdate);
+}
@@ -1,28 +1,58 @@
 package io.github.vishalmysore.ucp.handler;
 
 import io.github.vishalmysore.ucp.annotation.UCPHandler;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityIndex;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Registry for payment handlers.
- * Auto-discovers @UCPHandler annotated classes.
+ * Auto-discovers @UCPHandler annotated classes: those in the compile-time
+ * capability index are fetched by type, and the scan of annotated beans adds
+ * the handlers of classes no index lists.
  */
 @Component
 public class PaymentHandlerRegistry {
 
     private final Map<String, PaymentHandler> handlers = new HashMap<>();
 
+    @Autowired
     public PaymentHandlerRegistry(ApplicationContext context) {
-        // Auto-discover handlers
+        this(context, CapabilityIndex.load(ClassUtils.getDefaultClassLoader()));
+    }
+
+    PaymentHandlerRegistry(ApplicationContext context, CapabilityIndex index) {
+        Set<String> indexed = new HashSet<>();
+        if (index != null) {
+            // Handlers indexed at compile time are fetched by type; a class
+            // that is not exactly one bean is skipped
+            ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+            for (CapabilityIndex.HandlerEntry entry : index.getHandlers()) {
+                indexed.add(entry.getClassName());
+                if (!ClassUtils.isPresent(entry.getClassName(), classLoader)) {
+                    continue;
+                }
+                Object bean = context.getBeanProvider(ClassUtils.resolveClassName(entry.getClassName(), classLoader))
+                        .getIfUnique();
+                if (bean instanceof PaymentHandler) {
+                    handlers.put(entry.getName(), (PaymentHandler) bean);
+                }
+            }
+        }
+        // An index may come from a dependency or an earlier build and miss the host's own handlers
         Map<String, Object> handlerBeans = context.getBeansWithAnnotation(UCPHandler.class);
         for (Object bean : handlerBeans.values()) {
-            if (bean instanceof PaymentHandler) {
-                UCPHandler annotation = bean.getClass().getAnnotation(UCPHandler.class);
-                handlers.put(annotation.name(), (PaymentHandler) bean);
+            Class<?> type = ClassUtils.getUserClass(bean);
+            if (bean instanceof PaymentHandler && !indexed.contains(type.getName())) {
+                UCPHandler annotation = type.getAnnotation(UCPHandler.class);
+                handlers.putIfAbsent(annotation.name(), (PaymentHandler) bean);
             }
         }
     }
@@ -1,57 +1,211 @@
 package io.github.vishalmysore.ucp.negotiation;
 
 import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles UCP capability negotiation between platform and business.
+ * Business capabilities are indexed by name with their versions parsed once
+ * ({@code YYYY-MM-DD} to an epoch day), so a negotiation is one lookup per
+ * platform capability; results for a platform profile are cached.
  */
 @Component
 public class CapabilityNegotiator {
 
+    private static final int MAX_NEGOTIATED = 1024;
+    private static final int NOT_A_DATE = Integer.MIN_VALUE;
+    private static final int DAYS_0000_TO_1970 = 719528;
+    private static final int[] MONTH_LENGTHS = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    // The business side rarely changes: keep the index of the last list seen
+    private volatile BusinessIndex businessIndex;
+    private final Map<ResultKey, List<UCPCapability>> negotiated = new ConcurrentHashMap<>();
+    private final PlatformProfileFetcher profileFetcher;
+
+    public CapabilityNegotiator() {
+        this(new PlatformProfileFetcher());
+    }
+
+    @Autowired
+    public CapabilityNegotiator(PlatformProfileFetcher profileFetcher) {
+        this.profileFetcher = profileFetcher;
+    }
+
     /**
      * Negotiate capabilities between platform and business profiles.
+     * The business list is indexed once and reused while the same list
+     * instance is passed in, so it must not be modified afterwards.
      * @param platformCapabilities Platform's declared capabilities
      * @param businessCapabilities Business's declared capabilities
      * @return Intersected capabilities
      */
     public List<UCPCapability> negotiateCapabilities(List<UCPCapability> platformCapabilities,
                                                    List<UCPCapability> businessCapabilities) {
+        BusinessIndex index = index(businessCapabilities);
         List<UCPCapability> negotiated = new ArrayList<>();
 
         for (UCPCapability platformCap : platformCapabilities) {
-            for (UCPCapability businessCap : businessCapabilities) {
-                if (matches(platformCap, businessCap)) {
-                    negotiated.add(platformCap); // Use platform's version
-                    break;
-                }
+            Versions versions = index.byName.get(platformCap.name());
+            if (versions != null && versions.accepts(platformCap.version())) {
+                negotiated.add(platformCap); // Use platform's version
             }
         }
 
         return negotiated;
     }
 
-    private boolean matches(UCPCapability cap1, UCPCapability cap2) {
-        return cap1.name().equals(cap2.name()) &&
-               isCompatibleVersion(cap1.version(), cap2.version());
+    /**
+     * Negotiate against a platform profile. The result is cached per profile
+     * instance and business list instance (a refreshed profile is a new
+     * instance), and is unmodifiable.
+     */
+    public List<UCPCapability> negotiateCapabilities(UCPProfile platformProfile,
+                                                   List<UCPCapability> businessCapabilities) {
+        ResultKey key = new ResultKey(platformProfile, businessCapabilities);
+        List<UCPCapability> result = negotiated.get(key);
+        if (result == null) {
+            result = Collections.unmodifiableList(
+                    negotiateCapabilities(platformProfile.getCapabilities(), businessCapabilities));
+            if (negotiated.size() >= MAX_NEGOTIATED) {
+                negotiated.clear();
+            }
+            negotiated.put(key, result);
+        }
+        return result;
+    }
+
+    private BusinessIndex index(List<UCPCapability> businessCapabilities) {
+        BusinessIndex index = businessIndex;
+        if (index == null || index.source != businessCapabilities) {
+            index = new BusinessIndex(businessCapabilities);
+            businessIndex = index;
+        }
+        return index;
     }
 
-    private boolean isCompatibleVersion(String version1, String version2) {
-        // Simple version comparison - in practice, use proper semver or date comparison
-        return version1.compareTo(version2) <= 0; // platform <= business
+    /**
+     * @return the epoch day of a {@code YYYY-MM-DD} version, else {@link #NOT_A_DATE}
+     */
+    static int epochDay(String version) {
+        if (version.length() != 10 || version.charAt(4) != '-' || version.charAt(7) != '-') {
+            return NOT_A_DATE;
+        }
+        int year = digits(version, 0, 4);
+        int month = digits(version, 5, 7);
+        int day = digits(version, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > monthLength(year, month)) {
+            return NOT_A_DATE;
+        }
+        // As LocalDate.toEpochDay, without allocating on the per-request path
+        int days = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400
+                + (367 * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            days -= isLeap(year) ? 1 : 2;
+        }
+        return days - DAYS_0000_TO_1970;
+    }
+
+    private static int monthLength(int year, int month) {
+        return month == 2 ? (isLeap(year) ? 29 : 28) : MONTH_LENGTHS[month - 1];
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int digits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static final class BusinessIndex {
+        final List<UCPCapability> source;
+        final Map<String, Versions> byName = new HashMap<>();
+
+        BusinessIndex(List<UCPCapability> capabilities) {
+            this.source = capabilities;
+            for (UCPCapability capability : capabilities) {
+                byName.computeIfAbsent(capability.name(), name -> new Versions()).add(capability.version());
+            }
+        }
+    }
+
+    /**
+     * The versions a business declares for one capability. A platform version
+     * is compatible when it is not later than one of them: dates compare by
+     * day, anything else as strings.
+     */
+    private static final class Versions {
+        int latestDay = NOT_A_DATE;
+        String latest;
+        String latestOther;
+
+        void add(String version) {
+            int day = epochDay(version);
+            if (day != NOT_A_DATE) {
+                latestDay = Math.max(latestDay, day);
+            } else if (latestOther == null || version.compareTo(latestOther) > 0) {
+                latestOther = version;
+            }
+            if (latest == null || version.compareTo(latest) > 0) {
+                latest = version;
+            }
+        }
+
+        boolean accepts(String platformVersion) {
+            int day = epochDay(platformVersion);
+            if (day == NOT_A_DATE) {
+                return platformVersion.compareTo(latest) <= 0;
+            }
+            // A strict YYYY-MM-DD sorts the same as a string, so mixed lists compare as before
+            return (latestDay != NOT_A_DATE && day <= latestDay)
+                    || (latestOther != null && platformVersion.compareTo(latestOther) <= 0);
+        }
+    }
+
+    private static final class ResultKey {
+        final UCPProfile profile;
+        final List<UCPCapability> business;
+
+        ResultKey(UCPProfile profile, List<UCPCapability> business) {
+            this.profile = profile;
+            this.business = business;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ResultKey)) {
+                return false;
+            }
+            ResultKey other = (ResultKey) o;
+            return profile == other.profile && business == other.business;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(profile) + System.identityHashCode(business);
+        }
     }
 
     /**
-     * Fetch platform profile from URI.
+     * Fetch platform profile from URI, from the cache when Cache-Control allows.
      * @param profileUri The profile URI
-     * @return Parsed profile
+     * @return Parsed profile; fails with {@link PlatformProfileFetcher.ProfileFetchException}
      */
-    public UCPProfile fetchPlatformProfile(String profileUri) {
-        // TODO: Implement HTTP fetch and JSON parsing
-        // For now, return empty profile
-        return new UCPProfile();
+    public CompletableFuture<UCPProfile> fetchPlatformProfile(String profileUri) {
+        return profileFetcher.fetch(profileUri);
     }
 
     /**
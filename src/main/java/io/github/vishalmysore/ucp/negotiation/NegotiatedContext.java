@@ -0,0 +1,107 @@
+package io.github.vishalmysore.ucp.negotiation;
+
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import io.github.vishalmysore.ucp.handler.BindingContext;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The capabilities active for a request: those negotiated with the platform
+ * profile named by its {@code UCP-Agent} header, or all the business declares
+ * when the request names no profile. Immutable, and shared by every request
+ * of the same platform profile.
+ */
+public final class NegotiatedContext {
+
+    public static final String REQUEST_ATTRIBUTE = NegotiatedContext.class.getName();
+
+    private final String platformProfileUri;
+    private final CapabilityNegotiator.UCPProfile platformProfile;
+    private final List<UCPCapability> capabilities;
+    private final Map<String, UCPCapability> byName;
+
+    private NegotiatedContext(String platformProfileUri, CapabilityNegotiator.UCPProfile platformProfile,
+            List<UCPCapability> capabilities) {
+        this.platformProfileUri = platformProfileUri;
+        this.platformProfile = platformProfile;
+        this.capabilities = capabilities;
+        Map<String, UCPCapability> names = new HashMap<>();
+        for (UCPCapability capability : capabilities) {
+            names.putIfAbsent(capability.name(), capability);
+        }
+        this.byName = names;
+    }
+
+    /**
+     * Capabilities negotiated with a platform profile.
+     * @param negotiated an unmodifiable list, as returned by {@link CapabilityNegotiator}
+     */
+    public static NegotiatedContext negotiated(String platformProfileUri,
+            CapabilityNegotiator.UCPProfile platformProfile, List<UCPCapability> negotiated) {
+        return new NegotiatedContext(platformProfileUri, platformProfile, negotiated);
+    }
+
+    /**
+     * Context of requests without a platform profile: every business capability is active.
+     */
+    public static NegotiatedContext unnegotiated(List<UCPCapability> businessCapabilities) {
+        return new NegotiatedContext(null, null, Collections.unmodifiableList(businessCapabilities));
+    }
+
+    /**
+     * Context of the current request, or null outside a request or before negotiation.
+     */
+    public static NegotiatedContext current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                ? (NegotiatedContext) attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+                : null;
+    }
+
+    public boolean isNegotiated() {
+        return platformProfile != null;
+    }
+
+    public String getPlatformProfileUri() {
+        return platformProfileUri;
+    }
+
+    public CapabilityNegotiator.UCPProfile getPlatformProfile() {
+        return platformProfile;
+    }
+
+    public List<UCPCapability> getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Whether the capability is active for this request.
+     */
+    public boolean supports(String capabilityName) {
+        return byName.containsKey(capabilityName);
+    }
+
+    /**
+     * The active capability, with the platform's version when negotiated, or null.
+     */
+    public UCPCapability getCapability(String capabilityName) {
+        return byName.get(capabilityName);
+    }
+
+    /**
+     * Binding context for handlers called on behalf of this request.
+     */
+    public BindingContext toBindingContext(String transport) {
+        return new BindingContext(transport, platformProfileUri, this);
+    }
+
+    @Override
+    public String toString() {
+        return platformProfileUri != null ? platformProfileUri + " " + byName.keySet() : "unnegotiated " + byName.keySet();
+    }
+}
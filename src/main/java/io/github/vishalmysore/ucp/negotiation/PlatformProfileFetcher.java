@@ -0,0 +1,521 @@
+package io.github.vishalmysore.ucp.negotiation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Fetches platform profiles over HTTP without blocking the caller, and
+ * caches them as their Cache-Control allows: fresh for {@code max-age}
+ * less {@code Age} ({@code s-maxage} is for shared caches and is ignored,
+ * as this cache is private to the server), then served stale for
+ * {@code stale-while-revalidate} while one background request revalidates
+ * with the ETag, and for {@code stale-if-error} when that request fails.
+ * {@code no-store} is not cached; without Cache-Control a profile is fresh
+ * for {@code ucp.profile.cache.default-ttl} seconds (300). Concurrent fetches
+ * of a URI share one request.
+ *
+ * Each new or changed profile is a new {@link CapabilityNegotiator.UCPProfile}
+ * instance, so results cached per profile by the negotiator follow refreshes.
+ * Properties: {@code ucp.profile.fetch.timeout} (ms, 2000),
+ * {@code ucp.profile.cache.max-entries} (1024; the least recently used
+ * profile is evicted first) and {@code ucp.profile.max-bytes} (1048576; a
+ * larger profile is refused without being read further).
+ *
+ * Before each request the URI is checked against the {@link ProfileUriPolicy},
+ * resolving its host on the calling thread; a refused URI fails with
+ * {@link ProfileRefusedException} and nothing is sent.
+ */
+@Log
+@Component
+public class PlatformProfileFetcher {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long DEFAULT_MAX_BYTES = 1 << 20;
+
+    private final HttpClient httpClient;
+    private final Duration timeout;
+    private final long defaultTtlMillis;
+    private final long maxBytes;
+    private final ProfileUriPolicy policy;
+    private final Clock clock;
+    private final Map<String, Entry> cache;
+    private final Map<String, CompletableFuture<CapabilityNegotiator.UCPProfile>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder fetchNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+
+    public PlatformProfileFetcher() {
+        this(Duration.ofSeconds(2), Duration.ofMinutes(5), 1024, DEFAULT_MAX_BYTES);
+    }
+
+    @Autowired
+    public PlatformProfileFetcher(Environment env) {
+        this(Duration.ofMillis(env.getProperty("ucp.profile.fetch.timeout", Long.class, 2000L)),
+                Duration.ofSeconds(env.getProperty("ucp.profile.cache.default-ttl", Long.class, 300L)),
+                env.getProperty("ucp.profile.cache.max-entries", Integer.class, 1024),
+                env.getProperty("ucp.profile.max-bytes", Long.class, DEFAULT_MAX_BYTES),
+                ProfileUriPolicy.fromEnvironment(env));
+    }
+
+    public PlatformProfileFetcher(Duration timeout, Duration defaultTtl, int maxEntries) {
+        this(timeout, defaultTtl, maxEntries, DEFAULT_MAX_BYTES);
+    }
+
+    public PlatformProfileFetcher(Duration timeout, Duration defaultTtl, int maxEntries, long maxBytes) {
+        this(timeout, defaultTtl, maxEntries, maxBytes,
+                new ProfileUriPolicy(Collections.<String>emptyList(), false));
+    }
+
+    public PlatformProfileFetcher(Duration timeout, Duration defaultTtl, int maxEntries, long maxBytes,
+            ProfileUriPolicy policy) {
+        // Redirects are not followed: the target would escape the check of the profile URI
+        this(HttpClient.newBuilder().connectTimeout(timeout).followRedirects(HttpClient.Redirect.NEVER).build(),
+                timeout, defaultTtl, maxEntries, maxBytes, policy, Clock.systemUTC());
+    }
+
+    PlatformProfileFetcher(HttpClient httpClient, Duration timeout, Duration defaultTtl, int maxEntries,
+            long maxBytes, ProfileUriPolicy policy, Clock clock) {
+        this.httpClient = httpClient;
+        this.timeout = timeout;
+        this.defaultTtlMillis = defaultTtl.toMillis();
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+        this.clock = clock;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * The profile at the URI; already complete when a fresh or stale copy is cached.
+     */
+    public CompletableFuture<CapabilityNegotiator.UCPProfile> fetch(String profileUri) {
+        Entry entry = cache.get(profileUri);
+        long now = clock.millis();
+        if (entry != null && now < entry.freshUntil) {
+            hits.increment();
+            return CompletableFuture.completedFuture(entry.profile);
+        }
+        if (entry != null && now < entry.staleUntil) {
+            staleHits.increment();
+            refresh(profileUri, entry);
+            return CompletableFuture.completedFuture(entry.profile);
+        }
+        return refresh(profileUri, entry);
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), staleHits.sum(), coalesced.sum(), requests.sum(), notModified.sum(),
+                failures.sum(), fetchNanos.sum(), parseNanos.sum());
+    }
+
+    private CompletableFuture<CapabilityNegotiator.UCPProfile> refresh(String profileUri, Entry cached) {
+        CompletableFuture<CapabilityNegotiator.UCPProfile> future = new CompletableFuture<>();
+        CompletableFuture<CapabilityNegotiator.UCPProfile> existing = inFlight.putIfAbsent(profileUri, future);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        // Settle outside putIfAbsent; the request may fail synchronously
+        future.whenComplete((profile, error) -> inFlight.remove(profileUri, future));
+        send(profileUri, cached).whenComplete((profile, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(profile);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<CapabilityNegotiator.UCPProfile> send(String profileUri, Entry cached) {
+        HttpRequest.Builder request;
+        try {
+            policy.checkAddresses(profileUri);
+        } catch (IllegalArgumentException e) {
+            return failed(new ProfileRefusedException(e.getMessage()));
+        }
+        try {
+            request = HttpRequest.newBuilder(URI.create(profileUri)).timeout(timeout)
+                    .header("Accept", "application/json").GET();
+        } catch (IllegalArgumentException e) {
+            return failed(e);
+        }
+        if (cached != null && cached.etag != null) {
+            request.header("If-None-Match", cached.etag);
+        }
+        requests.increment();
+        long started = System.nanoTime();
+        return httpClient.sendAsync(request.build(), info -> new LimitedBody(profileUri, maxBytes,
+                        info.headers().firstValueAsLong("Content-Length").orElse(-1)))
+                .handle((response, error) -> {
+                    fetchNanos.add(System.nanoTime() - started);
+                    try {
+                        if (error != null) {
+                            throw error instanceof IOException ? (IOException) error : new IOException(error);
+                        }
+                        return store(profileUri, cached, response);
+                    } catch (IOException | RuntimeException e) {
+                        return fallBack(profileUri, cached, e);
+                    }
+                });
+    }
+
+    private CompletableFuture<CapabilityNegotiator.UCPProfile> failed(Exception error) {
+        failures.increment();
+        CompletableFuture<CapabilityNegotiator.UCPProfile> failed = new CompletableFuture<>();
+        failed.completeExceptionally(error);
+        return failed;
+    }
+
+    private CapabilityNegotiator.UCPProfile store(String profileUri, Entry cached, HttpResponse<byte[]> response)
+            throws IOException {
+        CacheControl cacheControl = CacheControl.parse(response.headers().firstValue("Cache-Control").orElse(null),
+                response.headers().firstValue("Age").orElse(null), defaultTtlMillis);
+        CapabilityNegotiator.UCPProfile profile;
+        if (response.statusCode() == 304 && cached != null) {
+            notModified.increment();
+            profile = cached.profile;
+        } else if (response.statusCode() == 200) {
+            long started = System.nanoTime();
+            profile = parse(response.body());
+            parseNanos.add(System.nanoTime() - started);
+        } else {
+            throw new IOException("Platform profile " + profileUri + " answered HTTP " + response.statusCode());
+        }
+        if (cacheControl.noStore) {
+            cache.remove(profileUri);
+        } else {
+            long now = clock.millis();
+            cache.put(profileUri, new Entry(profile,
+                    response.headers().firstValue("ETag").orElse(cached != null && profile == cached.profile
+                            ? cached.etag : null),
+                    now + cacheControl.maxAgeMillis,
+                    now + cacheControl.maxAgeMillis + cacheControl.staleWhileRevalidateMillis,
+                    now + cacheControl.maxAgeMillis + cacheControl.staleIfErrorMillis));
+        }
+        return profile;
+    }
+
+    private CapabilityNegotiator.UCPProfile fallBack(String profileUri, Entry cached, Exception error) {
+        failures.increment();
+        if (cached != null && clock.millis() < cached.staleIfErrorUntil) {
+            log.log(Level.WARNING, "Serving stale platform profile " + profileUri + ": " + error.getMessage());
+            return cached.profile;
+        }
+        throw new ProfileFetchException("Cannot fetch platform profile " + profileUri, error);
+    }
+
+    /**
+     * Read a UCP profile document. Capabilities may be a list of
+     * {@code {name, version, ...}} or an object of name to one or more versions.
+     */
+    static CapabilityNegotiator.UCPProfile parse(byte[] body) throws IOException {
+        JsonNode root = MAPPER.readTree(body);
+        if (root == null || !root.isObject()) {
+            throw new IOException("Platform profile is not a JSON object");
+        }
+        JsonNode ucp = root.path("ucp");
+        CapabilityNegotiator.UCPProfile profile = new CapabilityNegotiator.UCPProfile();
+        profile.setVersion(ucp.path("version").asText(null));
+
+        List<UCPCapability> capabilities = new ArrayList<>();
+        JsonNode declared = ucp.path("capabilities");
+        if (declared.isArray()) {
+            for (JsonNode capability : declared) {
+                addCapability(capabilities, capability.path("name").asText(null), capability);
+            }
+        } else if (declared.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fields = declared.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                for (JsonNode capability : field.getValue().isArray() ? field.getValue()
+                        : Collections.singletonList(field.getValue())) {
+                    addCapability(capabilities, field.getKey(), capability);
+                }
+            }
+        }
+        profile.setCapabilities(Collections.unmodifiableList(capabilities));
+        profile.setServices(toMap(ucp.path("services")));
+        profile.setPayment(toMap(root.path("payment")));
+        JsonNode signingKeys = root.path("signing_keys");
+        profile.setSigningKeys(signingKeys.isArray()
+                ? Collections.<String, Object>singletonMap("keys", MAPPER.convertValue(signingKeys, List.class))
+                : toMap(signingKeys));
+        return profile;
+    }
+
+    private static void addCapability(List<UCPCapability> capabilities, String name, JsonNode capability) {
+        String version = capability.path("version").asText(null);
+        if (name == null || version == null) {
+            return;
+        }
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("name", name);
+        attributes.put("version", version);
+        attributes.put("spec", capability.path("spec").asText(""));
+        attributes.put("schema", capability.path("schema").asText(""));
+        attributes.put("extendsCapability", capability.path("extends").asText(""));
+        capabilities.add(AnnotationUtils.synthesizeAnnotation(attributes, UCPCapability.class, null));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toMap(JsonNode node) {
+        return node.isObject() ? MAPPER.convertValue(node, Map.class) : new LinkedHashMap<>();
+    }
+
+    /**
+     * A profile could not be fetched and no usable copy was cached.
+     */
+    public static class ProfileFetchException extends RuntimeException {
+        public ProfileFetchException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * A profile URI was refused by the {@link ProfileUriPolicy}; nothing was fetched.
+     */
+    public static class ProfileRefusedException extends ProfileFetchException {
+        public ProfileRefusedException(String message) {
+            super(message, null);
+        }
+    }
+
+    /**
+     * Counters since startup; times are totals in nanoseconds.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long staleHits;
+        private final long coalesced;
+        private final long requests;
+        private final long notModified;
+        private final long failures;
+        private final long fetchNanos;
+        private final long parseNanos;
+
+        Stats(long hits, long staleHits, long coalesced, long requests, long notModified, long failures,
+                long fetchNanos, long parseNanos) {
+            this.hits = hits;
+            this.staleHits = staleHits;
+            this.coalesced = coalesced;
+            this.requests = requests;
+            this.notModified = notModified;
+            this.failures = failures;
+            this.fetchNanos = fetchNanos;
+            this.parseNanos = parseNanos;
+        }
+
+        public long getHits() { return hits; }
+        public long getStaleHits() { return staleHits; }
+        public long getCoalesced() { return coalesced; }
+        public long getRequests() { return requests; }
+        public long getNotModified() { return notModified; }
+        public long getFailures() { return failures; }
+        public long getFetchNanos() { return fetchNanos; }
+        public long getParseNanos() { return parseNanos; }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + ", staleHits=" + staleHits + ", coalesced=" + coalesced + ", requests="
+                    + requests + ", notModified=" + notModified + ", failures=" + failures + ", fetchMillis="
+                    + TimeUnit.NANOSECONDS.toMillis(fetchNanos) + ", parseMillis="
+                    + TimeUnit.NANOSECONDS.toMillis(parseNanos);
+        }
+    }
+
+    private static final class Entry {
+        final CapabilityNegotiator.UCPProfile profile;
+        final String etag;
+        final long freshUntil;
+        final long staleUntil;
+        final long staleIfErrorUntil;
+
+        Entry(CapabilityNegotiator.UCPProfile profile, String etag, long freshUntil, long staleUntil,
+                long staleIfErrorUntil) {
+            this.profile = profile;
+            this.etag = etag;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+            this.staleIfErrorUntil = staleIfErrorUntil;
+        }
+    }
+
+    /**
+     * Collects a response body, failing with an IOException as soon as it is
+     * known to be larger than the limit: from its Content-Length, or once more
+     * bytes than that have arrived.
+     */
+    private static final class LimitedBody implements HttpResponse.BodySubscriber<byte[]> {
+        private final HttpResponse.BodySubscriber<byte[]> bytes = HttpResponse.BodySubscribers.ofByteArray();
+        private final String profileUri;
+        private final long maxBytes;
+        private final long declaredBytes;
+        private Flow.Subscription subscription;
+        private long received;
+        private boolean refused;
+
+        LimitedBody(String profileUri, long maxBytes, long declaredBytes) {
+            this.profileUri = profileUri;
+            this.maxBytes = maxBytes;
+            this.declaredBytes = declaredBytes;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return bytes.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (declaredBytes > maxBytes) {
+                refuse();
+            } else {
+                bytes.onSubscribe(subscription);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (refused) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                received += item.remaining();
+            }
+            if (received > maxBytes) {
+                refuse();
+            } else {
+                bytes.onNext(items);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!refused) {
+                bytes.onError(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!refused) {
+                bytes.onComplete();
+            }
+        }
+
+        private void refuse() {
+            refused = true;
+            subscription.cancel();
+            bytes.onError(new IOException("Platform profile " + profileUri + " is larger than "
+                    + maxBytes + " bytes"));
+        }
+    }
+
+    /**
+     * The Cache-Control directives a private cache of someone else's resource honors.
+     */
+    static final class CacheControl {
+        final boolean noStore;
+        final long maxAgeMillis;
+        final long staleWhileRevalidateMillis;
+        final long staleIfErrorMillis;
+
+        private CacheControl(boolean noStore, long maxAgeMillis, long staleWhileRevalidateMillis,
+                long staleIfErrorMillis) {
+            this.noStore = noStore;
+            this.maxAgeMillis = maxAgeMillis;
+            this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+            this.staleIfErrorMillis = staleIfErrorMillis;
+        }
+
+        static CacheControl parse(String header, String age, long defaultTtlMillis) {
+            if (header == null) {
+                return new CacheControl(false, defaultTtlMillis, 0, 0);
+            }
+            boolean noStore = false;
+            long maxAge = -1;
+            long staleWhileRevalidate = 0;
+            long staleIfError = 0;
+            boolean noCache = false;
+            for (String directive : header.split(",")) {
+                String[] parts = directive.trim().split("=", 2);
+                String name = parts[0].trim().toLowerCase();
+                long seconds = parts.length > 1 ? seconds(parts[1]) : -1;
+                switch (name) {
+                    case "no-store":
+                        noStore = true;
+                        break;
+                    case "no-cache":
+                        noCache = true;
+                        break;
+                    case "max-age":
+                        maxAge = seconds;
+                        break;
+                    case "stale-while-revalidate":
+                        staleWhileRevalidate = Math.max(seconds, 0);
+                        break;
+                    case "stale-if-error":
+                        staleIfError = Math.max(seconds, 0);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            long ttl = maxAge >= 0 ? maxAge * 1000 : defaultTtlMillis;
+            if (noCache) {
+                ttl = 0;
+            } else if (age != null && seconds(age) > 0) {
+                ttl = Math.max(ttl - seconds(age) * 1000, 0);
+            }
+            return new CacheControl(noStore, ttl, staleWhileRevalidate * 1000, staleIfError * 1000);
+        }
+
+        private static long seconds(String value) {
+            try {
+                return Long.parseLong(value.trim().replace("\"", ""));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
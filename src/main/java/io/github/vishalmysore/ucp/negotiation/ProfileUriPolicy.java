@@ -0,0 +1,190 @@
+package io.github.vishalmysore.ucp.negotiation;
+
+import org.springframework.core.env.Environment;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Which platform profile URIs the server fetches when a client names one in
+ * its {@code UCP-Agent} header. Profiles are fetched over https, or http too
+ * when allowed, from a host without user info. With a list of allowed hosts
+ * (an entry {@code *.example.com} allows every subdomain of example.com) only
+ * those are fetched; without one any host is, except {@code localhost} and
+ * hosts with an address that is loopback, private, link-local or multicast.
+ *
+ * {@link #check} looks at the URI alone and is cheap; {@link #checkAddresses}
+ * resolves the host and is run by {@link PlatformProfileFetcher} right before
+ * each request, whose connection then takes the address just checked from the
+ * JVM's address cache ({@code networkaddress.cache.ttl}, 30 seconds unless set).
+ * With that cache turned off a host could resolve differently when connecting;
+ * set allowed hosts there.
+ */
+public final class ProfileUriPolicy {
+
+    /**
+     * Looks up the addresses of a host name.
+     */
+    interface Resolver {
+        InetAddress[] resolve(String host) throws UnknownHostException;
+    }
+
+    private final List<String> allowedHosts;
+    private final boolean allowHttp;
+    private final Resolver resolver;
+
+    public ProfileUriPolicy(List<String> allowedHosts, boolean allowHttp) {
+        this(allowedHosts, allowHttp, InetAddress::getAllByName);
+    }
+
+    ProfileUriPolicy(List<String> allowedHosts, boolean allowHttp, Resolver resolver) {
+        List<String> hosts = new ArrayList<>();
+        for (String host : allowedHosts) {
+            if (!host.trim().isEmpty()) {
+                hosts.add(host.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        this.allowedHosts = Collections.unmodifiableList(hosts);
+        this.allowHttp = allowHttp;
+        this.resolver = resolver;
+    }
+
+    /**
+     * The policy of {@code ucp.profile.allowed-hosts} and {@code ucp.profile.allow-http}.
+     */
+    public static ProfileUriPolicy fromEnvironment(Environment env) {
+        return new ProfileUriPolicy(
+                Arrays.asList(env.getProperty("ucp.profile.allowed-hosts", String[].class, new String[0])),
+                env.getProperty("ucp.profile.allow-http", Boolean.class, false));
+    }
+
+    /**
+     * Check the URI without resolving its host.
+     * @throws IllegalArgumentException saying why the URI is not fetched
+     */
+    public void check(String profileUri) {
+        URI uri;
+        try {
+            uri = new URI(profileUri);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Profile URI " + profileUri + " is malformed");
+        }
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "";
+        if (!scheme.equals("https") && !(allowHttp && scheme.equals("http"))) {
+            throw new IllegalArgumentException("Profile URI " + profileUri + " must use "
+                    + (allowHttp ? "http or https" : "https"));
+        }
+        if (uri.getHost() == null || uri.getRawUserInfo() != null) {
+            throw new IllegalArgumentException("Profile URI " + profileUri + " must name a host without user info");
+        }
+        String host = host(uri);
+        if (allowedHosts.isEmpty() ? isInternal(host) : !isAllowed(host)) {
+            throw new IllegalArgumentException("Profiles are not fetched from " + host);
+        }
+    }
+
+    /**
+     * Check the URI and, unless its host is an allowed one, every address the host resolves to.
+     * @throws IllegalArgumentException saying why the URI is not fetched
+     */
+    public void checkAddresses(String profileUri) {
+        check(profileUri);
+        if (!allowedHosts.isEmpty()) {
+            return;
+        }
+        String host = host(URI.create(profileUri));
+        InetAddress[] addresses;
+        try {
+            addresses = resolver.resolve(host.startsWith("[") ? host.substring(1, host.length() - 1) : host);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Profile host " + host + " does not resolve");
+        }
+        for (InetAddress address : addresses) {
+            if (isInternal(address)) {
+                throw new IllegalArgumentException("Profiles are not fetched from " + host
+                        + ", which resolves to " + address.getHostAddress());
+            }
+        }
+    }
+
+    private static String host(URI uri) {
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        // "localhost." is localhost
+        return host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+    }
+
+    private boolean isAllowed(String host) {
+        for (String allowed : allowedHosts) {
+            if (allowed.startsWith("*.") ? host.endsWith(allowed.substring(1)) : host.equals(allowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInternal(String host) {
+        if (host.equals("localhost") || host.endsWith(".localhost")) {
+            return true;
+        }
+        if (host.startsWith("[")) {
+            return isInternalLiteral(host);
+        }
+        // A name ending in a numeric label is an address to resolvers that read
+        // forms like 0x7f.1 or 2130706433; only dotted quads are taken as literals
+        int lastLabel = host.lastIndexOf('.') + 1;
+        if (lastLabel < host.length() && Character.isDigit(host.charAt(lastLabel))) {
+            return !isDottedQuad(host) || isInternalLiteral(host);
+        }
+        return false;
+    }
+
+    private static boolean isDottedQuad(String host) {
+        int labels = 1;
+        int digits = 0;
+        int value = 0;
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c == '.') {
+                if (digits == 0) {
+                    return false;
+                }
+                labels++;
+                digits = 0;
+                value = 0;
+            } else if (c >= '0' && c <= '9' && digits < 3) {
+                digits++;
+                value = value * 10 + (c - '0');
+                if (value > 255) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return labels == 4 && digits > 0;
+    }
+
+    private static boolean isInternalLiteral(String host) {
+        try {
+            // A literal is parsed, not looked up
+            return isInternal(InetAddress.getByName(host));
+        } catch (UnknownHostException e) {
+            return true;
+        }
+    }
+
+    private static boolean isInternal(InetAddress address) {
+        return address.isLoopbackAddress() || address.isSiteLocalAddress() || address.isLinkLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()
+                // IPv6 unique local, fc00::/7
+                || (address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc);
+    }
+}
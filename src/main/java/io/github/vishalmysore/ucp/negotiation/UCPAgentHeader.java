@@ -0,0 +1,156 @@
+package io.github.vishalmysore.ucp.negotiation;
+
+/**
+ * Reads the {@code UCP-Agent} request header, a Structured Field dictionary
+ * (RFC 8941) such as {@code profile="https://agent.example/profile.json"}.
+ * The header is scanned in place; the only allocation is the profile URI.
+ */
+public final class UCPAgentHeader {
+
+    public static final String NAME = "UCP-Agent";
+
+    private static final String PROFILE = "profile";
+
+    private UCPAgentHeader() {
+    }
+
+    /**
+     * The {@code profile} member of the header, a string or token; the last one wins.
+     * @return the profile URI, or null if the header has none
+     * @throws IllegalArgumentException if the header is not a well-formed dictionary
+     */
+    public static String profileUri(String header) {
+        String profile = null;
+        int length = header.length();
+        int i = skipSpaces(header, 0);
+        while (i < length) {
+            int keyStart = i;
+            if (!isKeyStart(header.charAt(i))) {
+                throw malformed(header, i);
+            }
+            while (i < length && isKeyChar(header.charAt(i))) {
+                i++;
+            }
+            boolean isProfile = header.regionMatches(keyStart, PROFILE, 0, PROFILE.length())
+                    && i - keyStart == PROFILE.length();
+            String value = null;
+            if (i < length && header.charAt(i) == '=') {
+                i++;
+                int end = itemEnd(header, i);
+                if (isProfile) {
+                    value = header.charAt(i) == '"' ? unquote(header, i, end) : header.substring(i, end);
+                }
+                i = end;
+            }
+            if (isProfile) {
+                // A bare key is the boolean true, which is no URI
+                profile = value;
+            }
+            // Parameters of the member are not used
+            while (i < length && header.charAt(i) == ';') {
+                i = skipSpaces(header, i + 1);
+                int paramStart = i;
+                while (i < length && isKeyChar(header.charAt(i))) {
+                    i++;
+                }
+                if (i == paramStart) {
+                    throw malformed(header, i);
+                }
+                if (i < length && header.charAt(i) == '=') {
+                    i = itemEnd(header, i + 1);
+                }
+            }
+            i = skipSpaces(header, i);
+            if (i == length) {
+                break;
+            }
+            if (header.charAt(i) != ',') {
+                throw malformed(header, i);
+            }
+            i = skipSpaces(header, i + 1);
+            if (i == length) {
+                throw malformed(header, i);
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * End of the bare item (string, token, number or boolean) starting at {@code start}.
+     */
+    private static int itemEnd(String header, int start) {
+        int length = header.length();
+        if (start == length) {
+            throw malformed(header, start);
+        }
+        int i = start;
+        if (header.charAt(i) == '"') {
+            i++;
+            while (i < length) {
+                char c = header.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                } else if (c == '"') {
+                    return i + 1;
+                } else if (c < 0x20 || c > 0x7e) {
+                    throw malformed(header, i);
+                } else {
+                    i++;
+                }
+            }
+            throw malformed(header, length);
+        }
+        while (i < length) {
+            char c = header.charAt(i);
+            if (c == ',' || c == ';' || c == ' ' || c == '\t') {
+                break;
+            }
+            if (c <= 0x20 || c > 0x7e || c == '"') {
+                throw malformed(header, i);
+            }
+            i++;
+        }
+        if (i == start) {
+            throw malformed(header, i);
+        }
+        return i;
+    }
+
+    private static String unquote(String header, int start, int end) {
+        int escape = header.indexOf('\\', start + 1);
+        if (escape < 0 || escape >= end - 1) {
+            return header.substring(start + 1, end - 1);
+        }
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start + 1; i < end - 1; i++) {
+            char c = header.charAt(i);
+            if (c == '\\') {
+                c = header.charAt(++i);
+                if (c != '"' && c != '\\') {
+                    throw malformed(header, i);
+                }
+            }
+            value.append(c);
+        }
+        return value.toString();
+    }
+
+    private static int skipSpaces(String header, int i) {
+        while (i < header.length() && (header.charAt(i) == ' ' || header.charAt(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isKeyStart(char c) {
+        return (c >= 'a' && c <= 'z') || c == '*';
+    }
+
+    private static boolean isKeyChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-' || c == '.' || c == '*';
+    }
+
+    private static IllegalArgumentException malformed(String header, int index) {
+        return new IllegalArgumentException("Malformed " + NAME + " header at " + index + ": " + header);
+    }
+}
@@ -0,0 +1,1022 @@
+package io.github.vishalmysore.ucp.schema;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.domain.common.Message;
+import io.github.vishalmysore.ucp.domain.common.MessageError;
+import io.github.vishalmysore.ucp.domain.common.MessageWarning;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * A JSON Schema compiled once into a tree of validators and reused for every
+ * payload. Validation is a single pass over a Jackson tree, the Map/List
+ * graph of a bound request body, or the tokens of a parser before anything
+ * is bound.
+ *
+ * Lenient, as UCP asks of businesses: unknown members (additionalProperties)
+ * are reported as {@link MessageWarning}s and do not make a payload invalid;
+ * every other violation is a {@link MessageError}. Messages carry the JSONPath
+ * of the offending value. Supported keywords: type, enum, const, properties,
+ * required, additionalProperties, min/maxProperties, items, prefixItems,
+ * min/maxItems, uniqueItems, min/maxLength, pattern, minimum, maximum,
+ * exclusiveMinimum, exclusiveMaximum, multipleOf, allOf, anyOf, oneOf, not,
+ * if/then/else and $ref (local, and to schemas the resolver knows). Other
+ * keywords, including format, are annotations and are not checked.
+ */
+public final class CompiledSchema {
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_MESSAGES = 100;
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final Node root;
+    private final List<String> unresolvedRefs;
+
+    private CompiledSchema(Node root, List<String> unresolvedRefs) {
+        this.root = root;
+        this.unresolvedRefs = Collections.unmodifiableList(unresolvedRefs);
+    }
+
+    public static CompiledSchema compile(JsonNode schema) {
+        return compile(schema, uri -> null);
+    }
+
+    /**
+     * Compile a schema whose non-local $refs are looked up with the resolver
+     * (absolute URI without fragment to schema document, or null if unknown).
+     */
+    public static CompiledSchema compile(JsonNode schema, Function<String, JsonNode> resolver) {
+        Compiler compiler = new Compiler(resolver);
+        Node root = compiler.compile(schema, new Document(schema, idOf(schema, null)));
+        return new CompiledSchema(root, compiler.unresolved);
+    }
+
+    /**
+     * $refs that could not be resolved at compile time; they accept any value.
+     */
+    public List<String> getUnresolvedRefs() {
+        return unresolvedRefs;
+    }
+
+    /**
+     * Validate a JsonNode or a Map/List/scalar graph; any other object is
+     * validated as the tree Jackson would serialize it to.
+     */
+    public SchemaManager.ValidationResult validate(Object data) {
+        if (data != null && !(data instanceof JsonNode) && JsonValues.GRAPH.typeOf(data) == JsonValues.Type.UNKNOWN) {
+            data = MAPPER.valueToTree(data);
+        }
+        Context context = new Context(JsonValues.of(data), false);
+        root.validate(data, context);
+        return context.result();
+    }
+
+    /**
+     * Validate the next value of a parser token by token, without binding it.
+     * Only a value under anyOf, oneOf, not or if/then/else is read into a tree,
+     * and only for its own extent. Malformed JSON and the parser's
+     * StreamReadConstraints surface as exceptions.
+     * @param failFast stop reading at the first error
+     */
+    public SchemaManager.ValidationResult validate(JsonParser parser, boolean failFast) throws IOException {
+        Context context = new Context(JsonValues.TREE, failFast);
+        JsonToken token = parser.currentToken() != null ? parser.currentToken() : parser.nextToken();
+        try {
+            new TokenValidator(parser, context).validate(root.flatten(), token);
+        } catch (Stop e) {
+            // First error recorded
+        }
+        return context.result();
+    }
+
+    // ---------------------------------------------------------------- compiling
+
+    private static final class Document {
+        final JsonNode root;
+        final String baseUri;
+
+        Document(JsonNode root, String baseUri) {
+            this.root = root;
+            this.baseUri = baseUri;
+        }
+    }
+
+    private static String idOf(JsonNode schema, String parentBase) {
+        JsonNode id = schema.isObject() ? schema.get("$id") : null;
+        if (id == null || !id.isTextual()) {
+            return parentBase;
+        }
+        return resolveUri(parentBase, id.asText());
+    }
+
+    private static String resolveUri(String base, String reference) {
+        if (base == null || base.isEmpty()) {
+            return reference;
+        }
+        try {
+            return URI.create(base).resolve(reference).toString();
+        } catch (IllegalArgumentException e) {
+            return reference;
+        }
+    }
+
+    private static final class Compiler {
+        private final Function<String, JsonNode> resolver;
+        private final Map<String, RefNode> refs = new HashMap<>();
+        // Refs within a document, per document root: documents may share a base URI or have none
+        private final Map<JsonNode, Map<String, RefNode>> localRefs = new IdentityHashMap<>();
+        private final List<String> unresolved = new ArrayList<>();
+
+        Compiler(Function<String, JsonNode> resolver) {
+            this.resolver = resolver;
+        }
+
+        Node compile(JsonNode schema, Document document) {
+            if (schema == null || schema.isMissingNode()) {
+                return AcceptNode.INSTANCE;
+            }
+            if (schema.isBoolean()) {
+                return schema.booleanValue() ? AcceptNode.INSTANCE : RejectNode.INSTANCE;
+            }
+            if (!schema.isObject()) {
+                return AcceptNode.INSTANCE;
+            }
+            // A nested schema with its own identity (e.g. a composed base or extension schema)
+            // is the document its local $refs point into
+            if (schema != document.root && (schema.has("$id") || schema.has("$schema"))) {
+                document = new Document(schema, idOf(schema, document.baseUri));
+            }
+
+            List<Node> checks = new ArrayList<>();
+            JsonNode ref = schema.get("$ref");
+            if (ref != null && ref.isTextual()) {
+                checks.add(reference(ref.asText(), document));
+            }
+            JsonNode type = schema.get("type");
+            if (type != null) {
+                checks.add(TypeNode.of(type));
+            }
+            JsonNode enumValues = schema.get("enum");
+            if (enumValues != null && enumValues.isArray()) {
+                checks.add(new EnumNode(enumValues, "enum_mismatch"));
+            }
+            JsonNode constValue = schema.get("const");
+            if (constValue != null) {
+                checks.add(new EnumNode(Collections.singletonList(constValue), "const_mismatch"));
+            }
+            Node object = objectNode(schema, document);
+            if (object != null) {
+                checks.add(object);
+            }
+            Node array = arrayNode(schema, document);
+            if (array != null) {
+                checks.add(array);
+            }
+            Node string = StringNode.of(schema);
+            if (string != null) {
+                checks.add(string);
+            }
+            Node number = NumberNode.of(schema);
+            if (number != null) {
+                checks.add(number);
+            }
+            addComposition(schema, document, checks);
+
+            if (checks.isEmpty()) {
+                return AcceptNode.INSTANCE;
+            }
+            return checks.size() == 1 ? checks.get(0) : new AllNode(checks.toArray(new Node[0]));
+        }
+
+        private void addComposition(JsonNode schema, Document document, List<Node> checks) {
+            JsonNode allOf = schema.get("allOf");
+            if (allOf != null && allOf.isArray()) {
+                checks.add(new AllNode(compileAll(allOf, document)));
+            }
+            JsonNode anyOf = schema.get("anyOf");
+            if (anyOf != null && anyOf.isArray()) {
+                checks.add(new AnyOfNode(compileAll(anyOf, document)));
+            }
+            JsonNode oneOf = schema.get("oneOf");
+            if (oneOf != null && oneOf.isArray()) {
+                checks.add(new OneOfNode(compileAll(oneOf, document)));
+            }
+            JsonNode not = schema.get("not");
+            if (not != null) {
+                checks.add(new NotNode(compile(not, document)));
+            }
+            JsonNode condition = schema.get("if");
+            if (condition != null) {
+                checks.add(new IfNode(compile(condition, document),
+                        schema.has("then") ? compile(schema.get("then"), document) : null,
+                        schema.has("else") ? compile(schema.get("else"), document) : null));
+            }
+        }
+
+        private Node[] compileAll(JsonNode schemas, Document document) {
+            Node[] nodes = new Node[schemas.size()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = compile(schemas.get(i), document);
+            }
+            return nodes;
+        }
+
+        private Node objectNode(JsonNode schema, Document document) {
+            JsonNode properties = schema.get("properties");
+            JsonNode required = schema.get("required");
+            JsonNode additional = schema.get("additionalProperties");
+            JsonNode minProperties = schema.get("minProperties");
+            JsonNode maxProperties = schema.get("maxProperties");
+            if (properties == null && required == null && additional == null
+                    && minProperties == null && maxProperties == null) {
+                return null;
+            }
+            Map<String, Node> propertyNodes = new LinkedHashMap<>();
+            if (properties != null && properties.isObject()) {
+                Iterator<Map.Entry<String, JsonNode>> fields = properties.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    propertyNodes.put(field.getKey(), compile(field.getValue(), document));
+                }
+            }
+            List<String> requiredNames = new ArrayList<>();
+            if (required != null && required.isArray()) {
+                for (JsonNode name : required) {
+                    requiredNames.add(name.asText());
+                }
+            }
+            Node additionalNode = additional == null ? null : compile(additional, document);
+            return new ObjectNode(propertyNodes, requiredNames.toArray(new String[0]), additionalNode,
+                    minProperties != null ? minProperties.asInt() : -1,
+                    maxProperties != null ? maxProperties.asInt() : -1);
+        }
+
+        private Node arrayNode(JsonNode schema, Document document) {
+            JsonNode items = schema.get("items");
+            JsonNode prefixItems = schema.get("prefixItems");
+            JsonNode minItems = schema.get("minItems");
+            JsonNode maxItems = schema.get("maxItems");
+            JsonNode uniqueItems = schema.get("uniqueItems");
+            if (items == null && prefixItems == null && minItems == null && maxItems == null
+                    && uniqueItems == null) {
+                return null;
+            }
+            Node[] prefix = new Node[0];
+            Node rest = null;
+            if (prefixItems != null && prefixItems.isArray()) {
+                prefix = compileAll(prefixItems, document);
+            }
+            if (items != null && items.isArray()) {
+                // Draft 4-2019 tuple form
+                prefix = compileAll(items, document);
+                JsonNode additionalItems = schema.get("additionalItems");
+                rest = additionalItems != null ? compile(additionalItems, document) : null;
+            } else if (items != null) {
+                rest = compile(items, document);
+            }
+            return new ArrayNode(prefix, rest, minItems != null ? minItems.asInt() : -1,
+                    maxItems != null ? maxItems.asInt() : -1, uniqueItems != null && uniqueItems.asBoolean());
+        }
+
+        private Node reference(String ref, Document document) {
+            String absolute = ref.startsWith("#") && document.baseUri == null ? ref : resolveUri(document.baseUri, ref);
+            Map<String, RefNode> cache = ref.startsWith("#")
+                    ? localRefs.computeIfAbsent(document.root, root -> new HashMap<>()) : refs;
+            RefNode node = cache.get(absolute);
+            if (node != null) {
+                return node;
+            }
+            node = new RefNode(ref);
+            cache.put(absolute, node);
+
+            int hash = absolute.indexOf('#');
+            String documentUri = hash >= 0 ? absolute.substring(0, hash) : absolute;
+            String pointer = hash >= 0 ? absolute.substring(hash + 1) : "";
+            Document target = document;
+            if (!ref.startsWith("#") && !documentUri.equals(document.baseUri)) {
+                JsonNode loaded = resolver.apply(documentUri);
+                if (loaded == null) {
+                    unresolved.add(absolute);
+                    node.target = AcceptNode.INSTANCE;
+                    return node;
+                }
+                target = new Document(loaded, documentUri);
+            }
+            JsonNode targetSchema;
+            try {
+                targetSchema = pointer.isEmpty() ? target.root : target.root.at(pointer);
+            } catch (IllegalArgumentException e) {
+                targetSchema = null;
+            }
+            if (targetSchema == null || targetSchema.isMissingNode()) {
+                unresolved.add(absolute);
+                node.target = AcceptNode.INSTANCE;
+                return node;
+            }
+            node.target = compile(targetSchema, target);
+            return node;
+        }
+    }
+
+    // ---------------------------------------------------------------- validating
+
+    /**
+     * Validation state for one payload: the JSONPath of the current value, kept
+     * as a stack and only rendered when a message is recorded, and the messages.
+     */
+    static final class Context {
+        final JsonValues values;
+        private String[] names = new String[16];
+        private int[] indexes = new int[16];
+        private int depth;
+        private int errors;
+        private int muted;
+        private final boolean failFast;
+        private List<Message> messages;
+
+        Context(JsonValues values, boolean failFast) {
+            this.values = values;
+            this.failFast = failFast;
+        }
+
+        void push(String name) {
+            ensureCapacity();
+            names[depth] = name;
+            indexes[depth++] = -1;
+        }
+
+        void push(int index) {
+            ensureCapacity();
+            names[depth] = null;
+            indexes[depth++] = index;
+        }
+
+        void pop() {
+            depth--;
+        }
+
+        private void ensureCapacity() {
+            if (depth == names.length) {
+                names = Arrays.copyOf(names, depth * 2);
+                indexes = Arrays.copyOf(indexes, depth * 2);
+            }
+        }
+
+        void error(String code, String content) {
+            errors++;
+            if (muted == 0) {
+                MessageError error = new MessageError();
+                error.setSeverity(MessageError.Severity.recoverable);
+                record(error, code, content);
+                if (failFast) {
+                    throw Stop.INSTANCE;
+                }
+            }
+        }
+
+        void warning(String code, String content) {
+            if (muted == 0) {
+                record(new MessageWarning(), code, content);
+            }
+        }
+
+        private void record(Message message, String code, String content) {
+            if (messages == null) {
+                messages = new ArrayList<>();
+            }
+            if (messages.size() < MAX_MESSAGES) {
+                message.setCode(code);
+                message.setPath(path());
+                message.setContent(content);
+                messages.add(message);
+            }
+        }
+
+        /**
+         * Run a subschema only to learn whether it matches; nothing is recorded.
+         */
+        boolean matches(Node node, Object value) {
+            int before = errors;
+            muted++;
+            try {
+                node.validate(value, this);
+            } finally {
+                muted--;
+            }
+            boolean matched = errors == before;
+            errors = before;
+            return matched;
+        }
+
+        String path() {
+            StringBuilder path = new StringBuilder("$");
+            for (int i = 0; i < depth; i++) {
+                String name = names[i];
+                if (name == null) {
+                    path.append('[').append(indexes[i]).append(']');
+                } else if (IDENTIFIER.matcher(name).matches()) {
+                    path.append('.').append(name);
+                } else {
+                    path.append("['").append(name.replace("\\", "\\\\").replace("'", "\\'")).append("']");
+                }
+            }
+            return path.toString();
+        }
+
+        SchemaManager.ValidationResult result() {
+            List<Message> result = messages == null ? Collections.<Message>emptyList() : messages;
+            String firstError = null;
+            for (Message message : result) {
+                if (message instanceof MessageError) {
+                    firstError = message.getPath() + ": " + message.getContent();
+                    break;
+                }
+            }
+            return new SchemaManager.ValidationResult(errors == 0, firstError, result);
+        }
+    }
+
+    /**
+     * Unwinds a fail-fast validation at its first error.
+     */
+    static final class Stop extends RuntimeException {
+        static final Stop INSTANCE = new Stop();
+
+        private Stop() {
+            super(null, null, false, false);
+        }
+    }
+
+    abstract static class Node {
+        private volatile Node[] flattened;
+
+        abstract void validate(Object value, Context context);
+
+        /**
+         * The checks that apply to a value, with allOf and $ref unwrapped.
+         */
+        final Node[] flatten() {
+            Node[] nodes = flattened;
+            if (nodes == null) {
+                List<Node> into = new ArrayList<>();
+                flattenInto(into, 0);
+                nodes = into.toArray(new Node[0]);
+                flattened = nodes;
+            }
+            return nodes;
+        }
+
+        void flattenInto(List<Node> into, int depth) {
+            into.add(this);
+        }
+    }
+
+    static final class AcceptNode extends Node {
+        static final AcceptNode INSTANCE = new AcceptNode();
+
+        @Override
+        void validate(Object value, Context context) {
+        }
+
+        @Override
+        void flattenInto(List<Node> into, int depth) {
+        }
+    }
+
+    static final class RejectNode extends Node {
+        static final RejectNode INSTANCE = new RejectNode();
+
+        @Override
+        void validate(Object value, Context context) {
+            context.error("not_allowed", "No value is allowed here");
+        }
+    }
+
+    static final class RefNode extends Node {
+        private final String ref;
+        private Node target;
+
+        RefNode(String ref) {
+            this.ref = ref;
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            target.validate(value, context);
+        }
+
+        @Override
+        void flattenInto(List<Node> into, int depth) {
+            // A reference cycle with no keyword in between stays a reference
+            if (depth > 32) {
+                into.add(this);
+            } else {
+                target.flattenInto(into, depth + 1);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return ref;
+        }
+    }
+
+    static final class TypeNode extends Node {
+        private final EnumSet<JsonValues.Type> allowed;
+        private final String expected;
+
+        private TypeNode(EnumSet<JsonValues.Type> allowed, String expected) {
+            this.allowed = allowed;
+            this.expected = expected;
+        }
+
+        static Node of(JsonNode type) {
+            EnumSet<JsonValues.Type> allowed = EnumSet.noneOf(JsonValues.Type.class);
+            List<String> names = new ArrayList<>();
+            if (type.isArray()) {
+                for (JsonNode name : type) {
+                    names.add(name.asText());
+                }
+            } else {
+                names.add(type.asText());
+            }
+            for (String name : names) {
+                switch (name) {
+                    case "object": allowed.add(JsonValues.Type.OBJECT); break;
+                    case "array": allowed.add(JsonValues.Type.ARRAY); break;
+                    case "string": allowed.add(JsonValues.Type.STRING); break;
+                    case "integer": allowed.add(JsonValues.Type.INTEGER); break;
+                    case "number":
+                        allowed.add(JsonValues.Type.NUMBER);
+                        allowed.add(JsonValues.Type.INTEGER);
+                        break;
+                    case "boolean": allowed.add(JsonValues.Type.BOOLEAN); break;
+                    case "null": allowed.add(JsonValues.Type.NULL); break;
+                    default: return AcceptNode.INSTANCE;
+                }
+            }
+            return new TypeNode(allowed, String.join(" or ", names));
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            check(context.values.typeOf(value), context);
+        }
+
+        void check(JsonValues.Type actual, Context context) {
+            if (!allowed.contains(actual)) {
+                context.error("invalid_type", "Expected " + expected + " but found "
+                        + actual.name().toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    static final class EnumNode extends Node {
+        private final Set<Object> scalars = new HashSet<>();
+        private final List<JsonNode> structured = new ArrayList<>();
+        private final String code;
+        private final String allowed;
+
+        EnumNode(Iterable<JsonNode> values, String code) {
+            this.code = code;
+            List<String> shown = new ArrayList<>();
+            for (JsonNode value : values) {
+                Object scalar = JsonValues.TREE.scalar(value);
+                if (scalar != null) {
+                    scalars.add(scalar);
+                } else {
+                    structured.add(value);
+                }
+                shown.add(value.toString());
+            }
+            this.allowed = String.join(", ", shown);
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            Object scalar = context.values.scalar(value);
+            if (scalar != null ? scalars.contains(scalar) : matchesStructured(value, context)) {
+                return;
+            }
+            mismatch(context);
+        }
+
+        boolean scalarOnly() {
+            return structured.isEmpty();
+        }
+
+        void mismatch(Context context) {
+            context.error(code, "Value must be one of: " + allowed);
+        }
+
+        private boolean matchesStructured(Object value, Context context) {
+            if (structured.isEmpty()) {
+                return false;
+            }
+            // Rare: object or array constants; compare as trees
+            JsonNode tree = value instanceof JsonNode ? (JsonNode) value : MAPPER.valueToTree(value);
+            return structured.contains(tree);
+        }
+    }
+
+    static final class ObjectNode extends Node {
+        private final String[] propertyNames;
+        private final Node[] propertyNodes;
+        private final Map<String, Node> declared;
+        final String[] required;
+        private final Map<String, Integer> requiredBits = new HashMap<>();
+        private final Node additional;
+        private final int minProperties;
+        private final int maxProperties;
+
+        ObjectNode(Map<String, Node> properties, String[] required, Node additional, int minProperties,
+                int maxProperties) {
+            this.propertyNames = properties.keySet().toArray(new String[0]);
+            this.propertyNodes = properties.values().toArray(new Node[0]);
+            this.declared = new HashMap<>(properties);
+            this.required = required;
+            for (int i = 0; i < required.length && i < 64; i++) {
+                requiredBits.put(required[i], i);
+            }
+            this.additional = additional;
+            this.minProperties = minProperties;
+            this.maxProperties = maxProperties;
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            JsonValues values = context.values;
+            if (values.typeOf(value) != JsonValues.Type.OBJECT) {
+                return;
+            }
+            for (String name : required) {
+                if (values.field(value, name) == JsonValues.MISSING) {
+                    missing(name, context);
+                }
+            }
+            for (int i = 0; i < propertyNames.length; i++) {
+                Object member = values.field(value, propertyNames[i]);
+                if (member != JsonValues.MISSING) {
+                    context.push(propertyNames[i]);
+                    propertyNodes[i].validate(member, context);
+                    context.pop();
+                }
+            }
+            if (additional != null) {
+                validateAdditional(value, context);
+            }
+            checkSize(values.size(value), context);
+        }
+
+        /**
+         * The schema for a member, or null if it is unconstrained; reports unknown members.
+         */
+        Node member(String name, Context context) {
+            Node node = declared.get(name);
+            if (node != null || additional == null) {
+                return node;
+            }
+            if (additional == RejectNode.INSTANCE) {
+                unknown(name, context);
+                return null;
+            }
+            return additional;
+        }
+
+        /**
+         * Required members as bits, for streaming; only for up to 64 of them.
+         */
+        long requiredMask() {
+            return required.length >= 64 ? ~0L : (1L << required.length) - 1;
+        }
+
+        long requiredBit(String name) {
+            Integer bit = requiredBits.get(name);
+            return bit == null ? 0L : 1L << bit;
+        }
+
+        static void missing(String name, Context context) {
+            context.error("missing_required", "Missing required field '" + name + "'");
+        }
+
+        private static void unknown(String name, Context context) {
+            // Lenient: unknown fields are ignored, not rejected
+            context.warning("unknown_field", "Unknown field '" + name + "' is ignored");
+        }
+
+        void checkSize(int size, Context context) {
+            if (minProperties >= 0 && size < minProperties) {
+                context.error("too_few_properties", "Expected at least " + minProperties + " fields");
+            }
+            if (maxProperties >= 0 && size > maxProperties) {
+                context.error("too_many_properties", "Expected at most " + maxProperties + " fields");
+            }
+        }
+
+        private void validateAdditional(Object value, Context context) {
+            Iterator<String> names = context.values.fieldNames(value);
+            while (names.hasNext()) {
+                String name = names.next();
+                if (declared.containsKey(name)) {
+                    continue;
+                }
+                context.push(name);
+                if (additional == RejectNode.INSTANCE) {
+                    unknown(name, context);
+                } else {
+                    additional.validate(context.values.field(value, name), context);
+                }
+                context.pop();
+            }
+        }
+    }
+
+    static final class ArrayNode extends Node {
+        private final Node[] prefix;
+        private final Node rest;
+        private final int minItems;
+        private final int maxItems;
+        final boolean uniqueItems;
+
+        ArrayNode(Node[] prefix, Node rest, int minItems, int maxItems, boolean uniqueItems) {
+            this.prefix = prefix;
+            this.rest = rest;
+            this.minItems = minItems;
+            this.maxItems = maxItems;
+            this.uniqueItems = uniqueItems;
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            JsonValues values = context.values;
+            if (values.typeOf(value) != JsonValues.Type.ARRAY) {
+                return;
+            }
+            int size = values.size(value);
+            checkSize(size, context);
+            Set<Object> seen = uniqueItems ? new HashSet<>() : null;
+            for (int i = 0; i < size; i++) {
+                Node node = item(i);
+                Object item = values.element(value, i);
+                if (node != null) {
+                    context.push(i);
+                    node.validate(item, context);
+                    context.pop();
+                }
+                if (seen != null) {
+                    Object scalar = values.scalar(item);
+                    if (scalar != null && !seen.add(scalar)) {
+                        context.push(i);
+                        duplicate(context);
+                        context.pop();
+                    }
+                }
+            }
+        }
+
+        /**
+         * The schema for the item at an index, or null if it is unconstrained.
+         */
+        Node item(int index) {
+            return index < prefix.length ? prefix[index] : rest;
+        }
+
+        void checkSize(int size, Context context) {
+            if (minItems >= 0 && size < minItems) {
+                context.error("too_few_items", "Expected at least " + minItems + " items");
+            }
+            if (maxItems >= 0 && size > maxItems) {
+                context.error("too_many_items", "Expected at most " + maxItems + " items");
+            }
+        }
+
+        static void duplicate(Context context) {
+            context.error("duplicate_item", "Items must be unique");
+        }
+    }
+
+    static final class StringNode extends Node {
+        private final int minLength;
+        private final int maxLength;
+        private final Pattern pattern;
+
+        private StringNode(int minLength, int maxLength, Pattern pattern) {
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+            this.pattern = pattern;
+        }
+
+        static Node of(JsonNode schema) {
+            JsonNode minLength = schema.get("minLength");
+            JsonNode maxLength = schema.get("maxLength");
+            JsonNode pattern = schema.get("pattern");
+            if (minLength == null && maxLength == null && pattern == null) {
+                return null;
+            }
+            return new StringNode(minLength != null ? minLength.asInt() : -1,
+                    maxLength != null ? maxLength.asInt() : -1,
+                    pattern != null ? Pattern.compile(pattern.asText()) : null);
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            if (context.values.typeOf(value) != JsonValues.Type.STRING) {
+                return;
+            }
+            String text = context.values.text(value);
+            if (minLength >= 0 || maxLength >= 0) {
+                int length = text.codePointCount(0, text.length());
+                if (minLength >= 0 && length < minLength) {
+                    context.error("too_short", "Expected at least " + minLength + " characters");
+                }
+                if (maxLength >= 0 && length > maxLength) {
+                    context.error("too_long", "Expected at most " + maxLength + " characters");
+                }
+            }
+            if (pattern != null && !pattern.matcher(text).find()) {
+                context.error("pattern_mismatch", "Value does not match pattern " + pattern.pattern());
+            }
+        }
+    }
+
+    static final class NumberNode extends Node {
+        private final double minimum;
+        private final double maximum;
+        private final boolean exclusiveMinimum;
+        private final boolean exclusiveMaximum;
+        private final BigDecimal multipleOf;
+
+        private NumberNode(double minimum, boolean exclusiveMinimum, double maximum, boolean exclusiveMaximum,
+                BigDecimal multipleOf) {
+            this.minimum = minimum;
+            this.exclusiveMinimum = exclusiveMinimum;
+            this.maximum = maximum;
+            this.exclusiveMaximum = exclusiveMaximum;
+            this.multipleOf = multipleOf;
+        }
+
+        static Node of(JsonNode schema) {
+            JsonNode minimum = schema.get("minimum");
+            JsonNode maximum = schema.get("maximum");
+            JsonNode exclusiveMinimum = schema.get("exclusiveMinimum");
+            JsonNode exclusiveMaximum = schema.get("exclusiveMaximum");
+            JsonNode multipleOf = schema.get("multipleOf");
+            if (minimum == null && maximum == null && exclusiveMinimum == null && exclusiveMaximum == null
+                    && multipleOf == null) {
+                return null;
+            }
+            double min = minimum != null && minimum.isNumber() ? minimum.doubleValue() : Double.NEGATIVE_INFINITY;
+            double max = maximum != null && maximum.isNumber() ? maximum.doubleValue() : Double.POSITIVE_INFINITY;
+            boolean minExclusive = false;
+            boolean maxExclusive = false;
+            // Numeric form (draft 6+) is a bound of its own; boolean form (draft 4) qualifies minimum/maximum
+            if (exclusiveMinimum != null && exclusiveMinimum.isNumber()
+                    && exclusiveMinimum.doubleValue() >= min) {
+                min = exclusiveMinimum.doubleValue();
+                minExclusive = true;
+            } else if (exclusiveMinimum != null && exclusiveMinimum.isBoolean()) {
+                minExclusive = exclusiveMinimum.booleanValue();
+            }
+            if (exclusiveMaximum != null && exclusiveMaximum.isNumber()
+                    && exclusiveMaximum.doubleValue() <= max) {
+                max = exclusiveMaximum.doubleValue();
+                maxExclusive = true;
+            } else if (exclusiveMaximum != null && exclusiveMaximum.isBoolean()) {
+                maxExclusive = exclusiveMaximum.booleanValue();
+            }
+            BigDecimal step = multipleOf != null && multipleOf.isNumber() && multipleOf.decimalValue().signum() > 0
+                    ? multipleOf.decimalValue() : null;
+            return new NumberNode(min, minExclusive, max, maxExclusive, step);
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            JsonValues.Type type = context.values.typeOf(value);
+            if (type != JsonValues.Type.INTEGER && type != JsonValues.Type.NUMBER) {
+                return;
+            }
+            double number = context.values.doubleValue(value);
+            if (exclusiveMinimum ? number <= minimum : number < minimum) {
+                context.error("below_minimum", "Expected a value " + (exclusiveMinimum ? "above " : "of at least ")
+                        + format(minimum));
+            }
+            if (exclusiveMaximum ? number >= maximum : number > maximum) {
+                context.error("above_maximum", "Expected a value " + (exclusiveMaximum ? "below " : "of at most ")
+                        + format(maximum));
+            }
+            if (multipleOf != null
+                    && context.values.number(value).remainder(multipleOf).signum() != 0) {
+                context.error("not_multiple", "Expected a multiple of " + multipleOf.toPlainString());
+            }
+        }
+
+        private static String format(double bound) {
+            return bound == Math.rint(bound) ? String.valueOf((long) bound) : String.valueOf(bound);
+        }
+    }
+
+    static final class AllNode extends Node {
+        private final Node[] nodes;
+
+        AllNode(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            for (Node node : nodes) {
+                node.validate(value, context);
+            }
+        }
+
+        @Override
+        void flattenInto(List<Node> into, int depth) {
+            for (Node node : nodes) {
+                node.flattenInto(into, depth + 1);
+            }
+        }
+    }
+
+    static final class AnyOfNode extends Node {
+        private final Node[] nodes;
+
+        AnyOfNode(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            for (Node node : nodes) {
+                if (context.matches(node, value)) {
+                    return;
+                }
+            }
+            context.error("no_match", "Value does not match any of the allowed schemas");
+        }
+    }
+
+    static final class OneOfNode extends Node {
+        private final Node[] nodes;
+
+        OneOfNode(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            int matched = 0;
+            for (Node node : nodes) {
+                if (context.matches(node, value) && ++matched > 1) {
+                    break;
+                }
+            }
+            if (matched != 1) {
+                context.error("no_match", matched == 0 ? "Value does not match any of the allowed schemas"
+                        : "Value matches more than one of the allowed schemas");
+            }
+        }
+    }
+
+    static final class NotNode extends Node {
+        private final Node node;
+
+        NotNode(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            if (context.matches(node, value)) {
+                context.error("not_allowed", "Value matches a schema it must not match");
+            }
+        }
+    }
+
+    static final class IfNode extends Node {
+        private final Node condition;
+        private final Node then;
+        private final Node otherwise;
+
+        IfNode(Node condition, Node then, Node otherwise) {
+            this.condition = condition;
+            this.then = then;
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        void validate(Object value, Context context) {
+            Node branch = context.matches(condition, value) ? then : otherwise;
+            if (branch != null) {
+                branch.validate(value, context);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.vishalmysore.ucp.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Schemas mirrored into a directory tree by host and path, so
+ * {@code https://ucp.dev/schemas/shopping/checkout.json} is read from
+ * {@code <root>/ucp.dev/schemas/shopping/checkout.json}. URIs without a host
+ * (plain names) are resolved against the root directly. The root is either a
+ * filesystem directory or a classpath prefix.
+ */
+public class DirectorySchemaSource implements SchemaSource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path root;
+    private final String classpathPrefix;
+    private final ClassLoader classLoader;
+
+    private DirectorySchemaSource(Path root, String classpathPrefix, ClassLoader classLoader) {
+        this.root = root;
+        this.classpathPrefix = classpathPrefix;
+        this.classLoader = classLoader;
+    }
+
+    public static DirectorySchemaSource of(Path root) {
+        return new DirectorySchemaSource(root.toAbsolutePath().normalize(), null, null);
+    }
+
+    public static DirectorySchemaSource classpath(String prefix, ClassLoader classLoader) {
+        String normalized = prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + "/";
+        return new DirectorySchemaSource(null, normalized.startsWith("/") ? normalized.substring(1) : normalized,
+                classLoader);
+    }
+
+    @Override
+    public JsonNode load(String uri) throws IOException {
+        String relative = relativePath(uri);
+        if (relative == null) {
+            return null;
+        }
+        if (root != null) {
+            Path file = root.resolve(relative).normalize();
+            // URIs come from clients and schemas; never read outside the mirror
+            if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+                return null;
+            }
+            try (InputStream in = Files.newInputStream(file)) {
+                return MAPPER.readTree(in);
+            }
+        }
+        try (InputStream in = classLoader.getResourceAsStream(classpathPrefix + relative)) {
+            return in != null ? MAPPER.readTree(in) : null;
+        }
+    }
+
+    static String relativePath(String uri) {
+        URI parsed;
+        try {
+            parsed = URI.create(uri);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        String path = parsed.getPath();
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        String relative = parsed.getHost() != null ? parsed.getHost() + (path.startsWith("/") ? "" : "/") + path
+                : path;
+        while (relative.startsWith("/")) {
+            relative = relative.substring(1);
+        }
+        for (String segment : relative.split("/")) {
+            if (segment.equals("..")) {
+                return null;
+            }
+        }
+        return relative.isEmpty() ? null : relative;
+    }
+}
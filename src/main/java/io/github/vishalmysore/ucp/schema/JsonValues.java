@@ -0,0 +1,227 @@
+package io.github.vishalmysore.ucp.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read access to a JSON value, either a Jackson tree or the Map/List/scalar
+ * graph Spring binds request bodies to, so one compiled schema validates both
+ * without converting between them.
+ */
+abstract class JsonValues {
+
+    /**
+     * Returned by {@link #field} when an object has no such member.
+     */
+    static final Object MISSING = new Object();
+
+    /**
+     * Returned by {@link #scalar} for JSON null.
+     */
+    static final Object NULL_SCALAR = new Object();
+
+    enum Type { OBJECT, ARRAY, STRING, INTEGER, NUMBER, BOOLEAN, NULL, UNKNOWN }
+
+    abstract Type typeOf(Object value);
+
+    abstract Object field(Object object, String name);
+
+    abstract Iterator<String> fieldNames(Object object);
+
+    abstract int size(Object objectOrArray);
+
+    abstract Object element(Object array, int index);
+
+    abstract String text(Object value);
+
+    abstract BigDecimal number(Object value);
+
+    abstract double doubleValue(Object value);
+
+    abstract boolean bool(Object value);
+
+    /**
+     * Scalar in a form comparable across both representations, for enum and const.
+     * Returns null for objects and arrays.
+     */
+    final Object scalar(Object value) {
+        switch (typeOf(value)) {
+            case STRING:
+                return text(value);
+            case INTEGER:
+            case NUMBER:
+                return normalize(number(value));
+            case BOOLEAN:
+                return bool(value);
+            case NULL:
+                return NULL_SCALAR;
+            default:
+                return null;
+        }
+    }
+
+    static BigDecimal normalize(BigDecimal number) {
+        return number.signum() == 0 ? BigDecimal.ZERO : number.stripTrailingZeros();
+    }
+
+    static JsonValues of(Object data) {
+        return data instanceof JsonNode ? TREE : GRAPH;
+    }
+
+    static final JsonValues TREE = new JsonValues() {
+        @Override
+        Type typeOf(Object value) {
+            JsonNode node = (JsonNode) value;
+            switch (node.getNodeType()) {
+                case OBJECT:
+                    return Type.OBJECT;
+                case ARRAY:
+                    return Type.ARRAY;
+                case STRING:
+                    return Type.STRING;
+                case NUMBER:
+                    if (node.isIntegralNumber()) {
+                        return Type.INTEGER;
+                    }
+                    boolean integral = node.isBigDecimal() ? isIntegral(node.decimalValue())
+                            : isIntegral(node.doubleValue());
+                    return integral ? Type.INTEGER : Type.NUMBER;
+                case BOOLEAN:
+                    return Type.BOOLEAN;
+                case NULL:
+                    return Type.NULL;
+                default:
+                    return Type.UNKNOWN;
+            }
+        }
+
+        @Override
+        Object field(Object object, String name) {
+            JsonNode value = ((JsonNode) object).get(name);
+            return value == null ? MISSING : value;
+        }
+
+        @Override
+        Iterator<String> fieldNames(Object object) {
+            return ((JsonNode) object).fieldNames();
+        }
+
+        @Override
+        int size(Object objectOrArray) {
+            return ((JsonNode) objectOrArray).size();
+        }
+
+        @Override
+        Object element(Object array, int index) {
+            return ((JsonNode) array).get(index);
+        }
+
+        @Override
+        String text(Object value) {
+            return ((JsonNode) value).textValue();
+        }
+
+        @Override
+        BigDecimal number(Object value) {
+            return ((JsonNode) value).decimalValue();
+        }
+
+        @Override
+        double doubleValue(Object value) {
+            return ((JsonNode) value).doubleValue();
+        }
+
+        @Override
+        boolean bool(Object value) {
+            return ((JsonNode) value).booleanValue();
+        }
+    };
+
+    static final JsonValues GRAPH = new JsonValues() {
+        @Override
+        Type typeOf(Object value) {
+            if (value == null) {
+                return Type.NULL;
+            } else if (value instanceof String || value instanceof Character) {
+                return Type.STRING;
+            } else if (value instanceof Map) {
+                return Type.OBJECT;
+            } else if (value instanceof List) {
+                return Type.ARRAY;
+            } else if (value instanceof Boolean) {
+                return Type.BOOLEAN;
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                    || value instanceof Byte || value instanceof BigInteger) {
+                return Type.INTEGER;
+            } else if (value instanceof BigDecimal) {
+                return isIntegral((BigDecimal) value) ? Type.INTEGER : Type.NUMBER;
+            } else if (value instanceof Number) {
+                return isIntegral(((Number) value).doubleValue()) ? Type.INTEGER : Type.NUMBER;
+            }
+            return Type.UNKNOWN;
+        }
+
+        @Override
+        Object field(Object object, String name) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            Object value = map.get(name);
+            return value == null && !map.containsKey(name) ? MISSING : value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Iterator<String> fieldNames(Object object) {
+            return ((Map<String, ?>) object).keySet().iterator();
+        }
+
+        @Override
+        int size(Object objectOrArray) {
+            return objectOrArray instanceof Map ? ((Map<?, ?>) objectOrArray).size() : ((List<?>) objectOrArray).size();
+        }
+
+        @Override
+        Object element(Object array, int index) {
+            return ((List<?>) array).get(index);
+        }
+
+        @Override
+        String text(Object value) {
+            return value.toString();
+        }
+
+        @Override
+        BigDecimal number(Object value) {
+            if (value instanceof BigDecimal) {
+                return (BigDecimal) value;
+            } else if (value instanceof BigInteger) {
+                return new BigDecimal((BigInteger) value);
+            } else if (value instanceof Double || value instanceof Float) {
+                return BigDecimal.valueOf(((Number) value).doubleValue());
+            }
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+
+        @Override
+        double doubleValue(Object value) {
+            return ((Number) value).doubleValue();
+        }
+
+        @Override
+        boolean bool(Object value) {
+            return (Boolean) value;
+        }
+    };
+
+    private static boolean isIntegral(double number) {
+        return number == Math.rint(number) && !Double.isInfinite(number);
+    }
+
+    private static boolean isIntegral(BigDecimal number) {
+        return number.signum() == 0 || number.scale() <= 0 || number.stripTrailingZeros().scale() <= 0;
+    }
+}
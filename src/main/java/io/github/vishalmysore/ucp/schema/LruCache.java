@@ -0,0 +1,105 @@
+package io.github.vishalmysore.ucp.schema;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Values by key, safe for concurrent use. Pinned values are kept for good;
+ * others are kept up to {@code maxEntries} and the least recently used one
+ * is evicted past that. A hit takes no lock and only records when the value
+ * was used.
+ */
+final class LruCache<K, V> {
+
+    private final int maxEntries;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong evictable = new AtomicLong();
+
+    LruCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the value, or null if there is none for the key
+     */
+    V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = clock.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * The value for the key, computed and kept if there is none. Two threads
+     * missing at once may both compute; the value kept first is returned to both.
+     * @return the value, or null if the loader returned null, which is not kept
+     */
+    V computeIfAbsent(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value == null) {
+            return null;
+        }
+        Entry<V> existing = entries.putIfAbsent(key, new Entry<>(value, false, clock.incrementAndGet()));
+        if (existing != null) {
+            return existing.value;
+        }
+        if (evictable.incrementAndGet() > maxEntries) {
+            evictLeastRecentlyUsed();
+        }
+        return value;
+    }
+
+    /**
+     * Keep a value that is never evicted.
+     */
+    void pin(K key, V value) {
+        Entry<V> previous = entries.put(key, new Entry<>(value, true, clock.incrementAndGet()));
+        if (previous != null && !previous.pinned) {
+            evictable.decrementAndGet();
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        evictable.set(0);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evictLeastRecentlyUsed() {
+        // Linear scan; only runs when a miss overflows the cache, and the cache is small
+        Map.Entry<K, Entry<V>> oldest = null;
+        for (Map.Entry<K, Entry<V>> candidate : entries.entrySet()) {
+            Entry<V> entry = candidate.getValue();
+            if (!entry.pinned && (oldest == null || entry.lastUsed < oldest.getValue().lastUsed)) {
+                oldest = candidate;
+            }
+        }
+        if (oldest != null && entries.remove(oldest.getKey(), oldest.getValue())) {
+            evictable.decrementAndGet();
+        }
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final boolean pinned;
+        volatile long lastUsed;
+
+        Entry(V value, boolean pinned, long lastUsed) {
+            this.value = value;
+            this.pinned = pinned;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.vishalmysore.ucp.schema;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Many schemas in one JSON document, {@code {"<uri>": <schema>, ...}}.
+ * A bundle file is memory-mapped and indexed once by the byte range of each
+ * schema; a schema is parsed from its range when first asked for (and again
+ * if {@link SchemaStore} has evicted it), so only the index stays on the heap.
+ */
+public class SchemaBundle implements SchemaSource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ByteBuffer content;
+    private final Map<String, long[]> ranges;
+    private final Map<String, JsonNode> scalars;
+
+    private SchemaBundle(ByteBuffer content, Map<String, long[]> ranges, Map<String, JsonNode> scalars) {
+        this.content = content;
+        this.ranges = ranges;
+        this.scalars = scalars;
+    }
+
+    /**
+     * Map and index a bundle file.
+     */
+    public static SchemaBundle map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Schema bundle " + file + " is larger than 2 GiB");
+            }
+            // The mapping stays valid after the channel is closed
+            return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Index a bundle already in memory, e.g. read from inside a jar.
+     */
+    public static SchemaBundle of(ByteBuffer buffer) throws IOException {
+        // Offsets are relative to the buffer's position
+        ByteBuffer content = buffer.slice();
+        Map<String, long[]> ranges = new HashMap<>();
+        Map<String, JsonNode> scalars = new HashMap<>();
+        try (JsonParser parser = MAPPER.getFactory().createParser(
+                new ByteBufferBackedInputStream(content.duplicate()))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Schema bundle must be a JSON object of URI to schema");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String uri = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                long start = parser.getTokenLocation().getByteOffset();
+                if (token.isStructStart()) {
+                    parser.skipChildren();
+                    ranges.put(uri, new long[] {start, parser.getCurrentLocation().getByteOffset()});
+                } else {
+                    // Boolean schemas; nothing worth deferring
+                    scalars.put(uri, MAPPER.readTree(parser));
+                }
+            }
+        }
+        return new SchemaBundle(content, ranges, scalars);
+    }
+
+    public Set<String> getUris() {
+        Set<String> uris = new HashSet<>(ranges.keySet());
+        uris.addAll(scalars.keySet());
+        return Collections.unmodifiableSet(uris);
+    }
+
+    @Override
+    public JsonNode load(String uri) throws IOException {
+        long[] range = ranges.get(uri);
+        if (range == null) {
+            return scalars.get(uri);
+        }
+        ByteBuffer slice = content.duplicate();
+        slice.limit((int) range[1]).position((int) range[0]);
+        return MAPPER.readTree(new ByteBufferBackedInputStream(slice));
+    }
+}
@@ -2,77 +2,210 @@ package io.github.vishalmysore.ucp.schema;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.vishalmysore.ucp.domain.common.Message;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
-
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ResourceUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.util.*;
 
 /**
  * Manages UCP schema composition and validation.
  * Handles runtime merging of base schemas with extensions using allOf patterns.
+ *
+ * Schemas come from a {@link SchemaStore}: ones registered with
+ * {@link #cacheSchema}, and ones read from a local mirror or bundle
+ * ({@code ucp.schema.registry.directories}, {@code ucp.schema.registry.bundles};
+ * either may be a {@code classpath:} location), never from ucp.dev.
+ * {@code ucp.schema.store.max-entries} bounds the schemas kept in memory.
  */
+@Log
 @Component
 public class SchemaManager {
 
+    private static final int MAX_COMPILED = 256;
+    private static final int MAX_COMPOSED = 256;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final Map<String, JsonNode> schemaCache = new HashMap<>();
+    private final SchemaStore schemaStore;
+    // Compositions and compiled validators by base + extension URIs, and compiled validators by schema tree
+    private final LruCache<List<String>, JsonNode> composedCache = new LruCache<>(MAX_COMPOSED);
+    private final LruCache<List<String>, CompiledSchema> compiledByUris = new LruCache<>(MAX_COMPILED);
+    private final LruCache<SchemaIdentity, CompiledSchema> compiledByTree = new LruCache<>(MAX_COMPILED);
+
+    public SchemaManager() {
+        this(new SchemaStore(256, Collections.<SchemaSource>emptyList()));
+    }
+
+    public SchemaManager(SchemaStore schemaStore) {
+        this.schemaStore = schemaStore;
+    }
+
+    @Autowired
+    public SchemaManager(Environment env) {
+        this(storeFrom(env));
+    }
+
+    private static SchemaStore storeFrom(Environment env) {
+        List<SchemaSource> sources = new ArrayList<>();
+        ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+        for (String directory : env.getProperty("ucp.schema.registry.directories", String[].class, new String[0])) {
+            sources.add(directory.startsWith(ResourceUtils.CLASSPATH_URL_PREFIX)
+                    ? DirectorySchemaSource.classpath(
+                            directory.substring(ResourceUtils.CLASSPATH_URL_PREFIX.length()), classLoader)
+                    : DirectorySchemaSource.of(Paths.get(directory)));
+        }
+        for (String bundle : env.getProperty("ucp.schema.registry.bundles", String[].class, new String[0])) {
+            sources.add(loadBundle(bundle));
+        }
+        return new SchemaStore(env.getProperty("ucp.schema.store.max-entries", Integer.class, 256), sources);
+    }
+
+    private static SchemaBundle loadBundle(String location) {
+        try {
+            URL url = ResourceUtils.getURL(location);
+            if (ResourceUtils.isFileURL(url)) {
+                return SchemaBundle.map(ResourceUtils.getFile(url).toPath());
+            }
+            // Inside a jar; cannot be mapped
+            try (InputStream in = url.openStream()) {
+                return SchemaBundle.of(ByteBuffer.wrap(in.readAllBytes()));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load schema bundle " + location, e);
+        }
+    }
 
     /**
      * Compose a schema by merging base schema with active extensions.
+     * Compositions are memoized by base URI and the ordered, de-duplicated
+     * extension URIs; the returned tree is shared and must not be modified.
      * @param baseSchemaUri Base schema URI
      * @param extensionSchemaUris Extension schema URIs
      * @return Composed schema
      */
     public JsonNode composeSchema(String baseSchemaUri, List<String> extensionSchemaUris) {
-        try {
-            JsonNode baseSchema = loadSchema(baseSchemaUri);
-            if (baseSchema == null) {
-                return null;
-            }
+        return composedCache.computeIfAbsent(compositionKey(baseSchemaUri, extensionSchemaUris), this::compose);
+    }
 
-            List<JsonNode> allOfSchemas = new ArrayList<>();
-            allOfSchemas.add(baseSchema);
+    private JsonNode compose(List<String> key) {
+        JsonNode baseSchema = loadSchema(key.get(0));
+        if (baseSchema == null) {
+            return null;
+        }
 
-            for (String extensionUri : extensionSchemaUris) {
-                JsonNode extensionSchema = loadSchema(extensionUri);
-                if (extensionSchema != null) {
-                    allOfSchemas.add(extensionSchema);
-                }
+        // Create allOf composition; the member schemas are shared, not copied
+        ObjectNode composition = objectMapper.createObjectNode();
+        ArrayNode allOfSchemas = composition.putArray("allOf");
+        allOfSchemas.add(baseSchema);
+        for (int i = 1; i < key.size(); i++) {
+            JsonNode extensionSchema = loadSchema(key.get(i));
+            if (extensionSchema != null) {
+                allOfSchemas.add(extensionSchema);
             }
+        }
+        return composition;
+    }
 
-            // Create allOf composition
-            Map<String, Object> composed = new HashMap<>();
-            composed.put("allOf", allOfSchemas);
-
-            return objectMapper.valueToTree(composed);
-        } catch (Exception e) {
-            // Log error
-            return null;
+    private static List<String> compositionKey(String baseSchemaUri, List<String> extensionSchemaUris) {
+        Set<String> uris = new LinkedHashSet<>();
+        uris.add(baseSchemaUri);
+        if (extensionSchemaUris != null) {
+            uris.addAll(extensionSchemaUris);
         }
+        return Collections.unmodifiableList(new ArrayList<>(uris));
     }
 
     /**
      * Validate data against a schema.
+     * The compiled schema is cached by the identity of the tree, so pass the
+     * same tree on every call, or validate by URI.
      * @param data The data to validate
      * @param schema The schema
      * @return Validation result
      */
     public ValidationResult validate(Object data, JsonNode schema) {
-        // TODO: Implement JSON Schema validation
-        // For now, return success
-        return new ValidationResult(true, null);
+        if (schema == null) {
+            return new ValidationResult(true, null);
+        }
+        return compiledByTree.computeIfAbsent(new SchemaIdentity(schema), key -> compile(schema)).validate(data);
+    }
+
+    /**
+     * Validate data against the composition of a base schema and its extensions.
+     * The composed schema is compiled once per distinct combination.
+     */
+    public ValidationResult validate(Object data, String baseSchemaUri, List<String> extensionSchemaUris) {
+        CompiledSchema compiled = getCompiledSchema(baseSchemaUri, extensionSchemaUris);
+        return compiled != null ? compiled.validate(data) : new ValidationResult(true, null);
+    }
+
+    /**
+     * The compiled composition of a base schema and its extensions.
+     * @return the compiled schema, or null if the base schema is unknown
+     */
+    public CompiledSchema getCompiledSchema(String baseSchemaUri, List<String> extensionSchemaUris) {
+        return compiledByUris.computeIfAbsent(compositionKey(baseSchemaUri, extensionSchemaUris), key -> {
+            JsonNode composed = composeSchema(baseSchemaUri, extensionSchemaUris);
+            return composed != null ? compile(composed) : null;
+        });
+    }
+
+    /**
+     * Compile a schema; $refs to schemas cached here are resolved.
+     */
+    public CompiledSchema compile(JsonNode schema) {
+        CompiledSchema compiled = CompiledSchema.compile(schema, schemaStore::get);
+        if (!compiled.getUnresolvedRefs().isEmpty()) {
+            log.warning("Unresolved schema references accept any value: " + compiled.getUnresolvedRefs());
+        }
+        return compiled;
     }
 
     private JsonNode loadSchema(String schemaUri) {
-        // TODO: Implement schema loading from URI or cache
-        // For now, return cached or null
-        return schemaCache.get(schemaUri);
+        return schemaStore.get(schemaUri);
     }
 
     /**
      * Cache a schema for reuse.
      */
     public void cacheSchema(String uri, JsonNode schema) {
-        schemaCache.put(uri, schema);
+        schemaStore.put(uri, schema);
+        // Compositions that included the old version are stale
+        composedCache.clear();
+        compiledByUris.clear();
+        compiledByTree.clear();
+    }
+
+    /**
+     * A schema tree as a key by identity, sparing a deep hash and comparison per lookup.
+     */
+    private static final class SchemaIdentity {
+        private final JsonNode schema;
+
+        SchemaIdentity(JsonNode schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SchemaIdentity && ((SchemaIdentity) other).schema == schema;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(schema);
+        }
     }
 
     /**
@@ -81,14 +214,25 @@ public class SchemaManager {
     public static class ValidationResult {
         private final boolean valid;
         private final String errorMessage;
+        private final List<Message> messages;
 
         public ValidationResult(boolean valid, String errorMessage) {
+            this(valid, errorMessage, Collections.<Message>emptyList());
+        }
+
+        public ValidationResult(boolean valid, String errorMessage, List<Message> messages) {
             this.valid = valid;
             this.errorMessage = errorMessage;
+            this.messages = messages;
         }
 
         public boolean isValid() { return valid; }
         public String getErrorMessage() { return errorMessage; }
+
+        /**
+         * Errors and warnings with the JSONPath of each offending value.
+         */
+        public List<Message> getMessages() { return messages; }
     }
 }
 
@@ -0,0 +1,17 @@
+package io.github.vishalmysore.ucp.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+
+/**
+ * Somewhere {@link SchemaStore} can load schemas from without going to the
+ * network, e.g. a local mirror of ucp.dev or a bundle shipped on the classpath.
+ */
+public interface SchemaSource {
+
+    /**
+     * @return the schema published at the URI, or null if this source does not have it
+     */
+    JsonNode load(String uri) throws IOException;
+}
@@ -0,0 +1,61 @@
+package io.github.vishalmysore.ucp.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Schemas by URI, safe for concurrent use. Schemas registered with
+ * {@link #put} are kept for good; schemas loaded from the local
+ * {@link SchemaSource}s are kept up to {@code maxEntries} and the least
+ * recently used one is evicted past that, to be loaded again when needed.
+ * Lookups never touch the network.
+ */
+@Log
+public class SchemaStore {
+
+    private final List<SchemaSource> sources;
+    private final LruCache<String, JsonNode> schemas;
+
+    public SchemaStore(int maxEntries, List<SchemaSource> sources) {
+        this.sources = Collections.unmodifiableList(new ArrayList<>(sources));
+        this.schemas = new LruCache<>(maxEntries);
+    }
+
+    /**
+     * @return the schema, from memory or the first source that has it, or null
+     */
+    public JsonNode get(String uri) {
+        return uri != null ? schemas.computeIfAbsent(uri, this::load) : null;
+    }
+
+    /**
+     * Register a schema; it is never evicted.
+     */
+    public void put(String uri, JsonNode schema) {
+        schemas.pin(uri, schema);
+    }
+
+    public int size() {
+        return schemas.size();
+    }
+
+    private JsonNode load(String uri) {
+        for (SchemaSource source : sources) {
+            try {
+                JsonNode schema = source.load(uri);
+                if (schema != null) {
+                    return schema;
+                }
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Cannot read schema " + uri, e);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,231 @@
+package io.github.vishalmysore.ucp.schema;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BigIntegerNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import io.github.vishalmysore.ucp.schema.CompiledSchema.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Drives the compiled checks of a {@link CompiledSchema} from parser tokens.
+ * Objects and arrays are walked member by member; each scalar is checked as a
+ * one-node tree. A value with a check that has to look at it more than once
+ * (anyOf, oneOf, not, if, object or array enum) is read into a tree.
+ */
+final class TokenValidator {
+
+    private static final Node[] NONE = new Node[0];
+
+    private final JsonParser parser;
+    private final Context context;
+
+    TokenValidator(JsonParser parser, Context context) {
+        this.parser = parser;
+        this.context = context;
+    }
+
+    void validate(Node[] nodes, JsonToken token) throws IOException {
+        if (token == null) {
+            context.error("invalid_json", "Expected a JSON value");
+            return;
+        }
+        if (token.isScalarValue()) {
+            JsonNode scalar = scalar(token);
+            for (Node node : nodes) {
+                node.validate(scalar, context);
+            }
+            return;
+        }
+        if (nodes.length == 0) {
+            parser.skipChildren();
+            return;
+        }
+        if (needsTree(nodes)) {
+            JsonNode tree = CompiledSchema.MAPPER.readTree(parser);
+            for (Node node : nodes) {
+                node.validate(tree, context);
+            }
+            return;
+        }
+        JsonValues.Type type = token == JsonToken.START_OBJECT ? JsonValues.Type.OBJECT : JsonValues.Type.ARRAY;
+        for (Node node : nodes) {
+            if (node instanceof TypeNode) {
+                ((TypeNode) node).check(type, context);
+            } else if (node instanceof EnumNode) {
+                ((EnumNode) node).mismatch(context);
+            } else if (node instanceof RejectNode) {
+                node.validate(null, context);
+            }
+        }
+        if (type == JsonValues.Type.OBJECT) {
+            object(nodes);
+        } else {
+            array(nodes);
+        }
+    }
+
+    private static boolean needsTree(Node[] nodes) {
+        for (Node node : nodes) {
+            if (node instanceof AnyOfNode || node instanceof OneOfNode || node instanceof NotNode
+                    || node instanceof IfNode || node instanceof RefNode
+                    || node instanceof EnumNode && !((EnumNode) node).scalarOnly()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void object(Node[] nodes) throws IOException {
+        List<ObjectNode> objects = new ArrayList<>(2);
+        boolean manyRequired = false;
+        for (Node node : nodes) {
+            if (node instanceof ObjectNode) {
+                objects.add((ObjectNode) node);
+                manyRequired |= ((ObjectNode) node).required.length > 64;
+            }
+        }
+        if (objects.isEmpty()) {
+            parser.skipChildren();
+            return;
+        }
+        // Required members still missing, per object schema; a set only for very long required lists
+        long[] missing = new long[objects.size()];
+        for (int i = 0; i < missing.length; i++) {
+            missing[i] = objects.get(i).requiredMask();
+        }
+        Set<String> present = manyRequired ? new HashSet<>() : null;
+        int size = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            size++;
+            if (present != null) {
+                present.add(name);
+            }
+            context.push(name);
+            Node[] members = NONE;
+            for (int i = 0; i < missing.length; i++) {
+                ObjectNode object = objects.get(i);
+                missing[i] &= ~object.requiredBit(name);
+                members = concat(members, object.member(name, context));
+            }
+            validate(members, token);
+            context.pop();
+        }
+        for (int i = 0; i < missing.length; i++) {
+            ObjectNode object = objects.get(i);
+            String[] required = object.required;
+            for (int r = 0; r < required.length; r++) {
+                boolean absent = present != null ? !present.contains(required[r]) : (missing[i] & 1L << r) != 0;
+                if (absent) {
+                    ObjectNode.missing(required[r], context);
+                }
+            }
+            object.checkSize(size, context);
+        }
+    }
+
+    private void array(Node[] nodes) throws IOException {
+        List<ArrayNode> arrays = new ArrayList<>(2);
+        for (Node node : nodes) {
+            if (node instanceof ArrayNode) {
+                arrays.add((ArrayNode) node);
+            }
+        }
+        if (arrays.isEmpty()) {
+            parser.skipChildren();
+            return;
+        }
+        List<Set<Object>> seen = null;
+        for (ArrayNode array : arrays) {
+            if (array.uniqueItems) {
+                seen = seen == null ? new ArrayList<>() : seen;
+                seen.add(new HashSet<>());
+            }
+        }
+        int size = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new IOException("Unexpected end of input in array");
+            }
+            context.push(size);
+            Node[] items = NONE;
+            for (ArrayNode array : arrays) {
+                items = concat(items, array.item(size));
+            }
+            if (seen != null && token.isScalarValue()) {
+                JsonNode scalar = scalar(token);
+                for (Node node : items) {
+                    node.validate(scalar, context);
+                }
+                Object key = JsonValues.TREE.scalar(scalar);
+                for (Set<Object> values : seen) {
+                    if (!values.add(key)) {
+                        ArrayNode.duplicate(context);
+                    }
+                }
+            } else {
+                validate(items, token);
+            }
+            context.pop();
+            size++;
+        }
+        for (ArrayNode array : arrays) {
+            array.checkSize(size, context);
+        }
+    }
+
+    private static Node[] concat(Node[] nodes, Node node) {
+        if (node == null) {
+            return nodes;
+        }
+        Node[] more = node.flatten();
+        if (nodes.length == 0) {
+            return more;
+        }
+        if (more.length == 0) {
+            return nodes;
+        }
+        Node[] all = new Node[nodes.length + more.length];
+        System.arraycopy(nodes, 0, all, 0, nodes.length);
+        System.arraycopy(more, 0, all, nodes.length, more.length);
+        return all;
+    }
+
+    private JsonNode scalar(JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return TextNode.valueOf(parser.getText());
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        return IntNode.valueOf(parser.getIntValue());
+                    case LONG:
+                        return LongNode.valueOf(parser.getLongValue());
+                    default:
+                        return BigIntegerNode.valueOf(parser.getBigIntegerValue());
+                }
+            case VALUE_NUMBER_FLOAT:
+                return DecimalNode.valueOf(parser.getDecimalValue());
+            case VALUE_TRUE:
+                return BooleanNode.TRUE;
+            case VALUE_FALSE:
+                return BooleanNode.FALSE;
+            default:
+                return NullNode.getInstance();
+        }
+    }
+}
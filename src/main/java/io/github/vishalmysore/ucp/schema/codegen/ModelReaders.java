@@ -0,0 +1,130 @@
+package io.github.vishalmysore.ucp.schema.codegen;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Value readers called by the deserializers {@link SchemaModelGenerator}
+ * emits. Each reads the value at the parser's current token and leaves the
+ * parser on its last token; a token of the wrong type goes to
+ * {@link DeserializationContext#handleUnexpectedToken}, as in Jackson's own
+ * deserializers.
+ */
+public final class ModelReaders {
+
+    /**
+     * Reads one value; generated code passes these as method references.
+     */
+    @FunctionalInterface
+    public interface Reader<T> {
+        T read(JsonParser p, DeserializationContext ctxt) throws IOException;
+    }
+
+    private ModelReaders() {
+    }
+
+    public static String readString(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_STRING)) {
+            return p.getText();
+        }
+        if (p.hasToken(JsonToken.VALUE_NULL)) {
+            return null;
+        }
+        return (String) ctxt.handleUnexpectedToken(String.class, p);
+    }
+
+    public static long readLongValue(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NUMBER_INT)) {
+            return p.getLongValue();
+        }
+        return ((Number) ctxt.handleUnexpectedToken(long.class, p)).longValue();
+    }
+
+    public static Long readLong(JsonParser p, DeserializationContext ctxt) throws IOException {
+        return p.hasToken(JsonToken.VALUE_NULL) ? null : readLongValue(p, ctxt);
+    }
+
+    public static double readDoubleValue(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NUMBER_INT) || p.hasToken(JsonToken.VALUE_NUMBER_FLOAT)) {
+            return p.getDoubleValue();
+        }
+        return ((Number) ctxt.handleUnexpectedToken(double.class, p)).doubleValue();
+    }
+
+    public static Double readDouble(JsonParser p, DeserializationContext ctxt) throws IOException {
+        return p.hasToken(JsonToken.VALUE_NULL) ? null : readDoubleValue(p, ctxt);
+    }
+
+    public static boolean readBooleanValue(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_TRUE)) {
+            return true;
+        }
+        if (p.hasToken(JsonToken.VALUE_FALSE)) {
+            return false;
+        }
+        return (Boolean) ctxt.handleUnexpectedToken(boolean.class, p);
+    }
+
+    public static Boolean readBoolean(JsonParser p, DeserializationContext ctxt) throws IOException {
+        return p.hasToken(JsonToken.VALUE_NULL) ? null : readBooleanValue(p, ctxt);
+    }
+
+    /**
+     * Any JSON value, as Maps, Lists and scalars.
+     */
+    public static Object readUntyped(JsonParser p, DeserializationContext ctxt) throws IOException {
+        return p.hasToken(JsonToken.VALUE_NULL) ? null : ctxt.readValue(p, Object.class);
+    }
+
+    public static <T> List<T> readList(JsonParser p, DeserializationContext ctxt, Reader<T> element)
+            throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NULL)) {
+            return null;
+        }
+        if (!p.isExpectedStartArrayToken()) {
+            @SuppressWarnings("unchecked")
+            List<T> handled = (List<T>) ctxt.handleUnexpectedToken(List.class, p);
+            return handled;
+        }
+        List<T> list = new ArrayList<>();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            list.add(element.read(p, ctxt));
+        }
+        return list;
+    }
+
+    public static <T> Map<String, T> readMap(JsonParser p, DeserializationContext ctxt, Reader<T> value)
+            throws IOException {
+        if (p.hasToken(JsonToken.VALUE_NULL)) {
+            return null;
+        }
+        if (!p.isExpectedStartObjectToken()) {
+            @SuppressWarnings("unchecked")
+            Map<String, T> handled = (Map<String, T>) ctxt.handleUnexpectedToken(Map.class, p);
+            return handled;
+        }
+        Map<String, T> map = new LinkedHashMap<>();
+        for (String name = p.nextFieldName(); name != null; name = p.nextFieldName()) {
+            p.nextToken();
+            map.put(name, value.read(p, ctxt));
+        }
+        return map;
+    }
+
+    /**
+     * Keep a field the schema does not declare; the map is created on first use.
+     */
+    public static Map<String, Object> readAdditional(Map<String, Object> additional, String name, JsonParser p,
+            DeserializationContext ctxt) throws IOException {
+        Map<String, Object> map = additional != null ? additional : new LinkedHashMap<>();
+        map.put(name, readUntyped(p, ctxt));
+        return map;
+    }
+}
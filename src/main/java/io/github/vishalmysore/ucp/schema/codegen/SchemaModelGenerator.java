@@ -0,0 +1,922 @@
+package io.github.vishalmysore.ucp.schema.codegen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.schema.DirectorySchemaSource;
+import io.github.vishalmysore.ucp.schema.SchemaManager;
+import io.github.vishalmysore.ucp.schema.SchemaSource;
+import io.github.vishalmysore.ucp.schema.SchemaStore;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Generates typed Java models from a UCP JSON Schema, or the allOf
+ * composition of a base schema and its extensions as built by
+ * {@link SchemaManager#composeSchema}. Each object schema with properties
+ * becomes an immutable final class (nested in the top-level model) with a
+ * {@code Deserializer} that reads its fields straight off the parser, so
+ * binding a request costs no intermediate Map. Fields the schema does not
+ * declare are kept in {@code getAdditionalProperties()} unless the schema
+ * sets {@code additionalProperties: false}.
+ *
+ * Types: string to String, integer to long, number to double, boolean to
+ * boolean (boxed unless required), array to List, object without properties
+ * to Map; anything else (anyOf/oneOf, mixed types) is left untyped as
+ * Maps, Lists and scalars. Validation stays with {@code CompiledSchema}.
+ *
+ * Run from a build with {@link #main}; see the README for the Maven setup.
+ */
+@Log
+public class SchemaModelGenerator {
+
+    private static final String USAGE = "Usage: SchemaModelGenerator <output directory> <package>"
+            + " [--registry <directory>]... <ClassName>=<schema>[,<extension schema>]...";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_DEPTH = 32;
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+            "volatile", "while", "true", "false", "null", "var", "record", "yield",
+            // Names used by the generated deserializers
+            "parser", "ctxt", "field", "additionalProperties"));
+
+    private final String packageName;
+    private final Function<String, JsonNode> resolver;
+
+    /**
+     * @param resolver loads schemas referenced by URI, e.g. {@code schemaStore::get}
+     */
+    public SchemaModelGenerator(String packageName, Function<String, JsonNode> resolver) {
+        this.packageName = packageName;
+        this.resolver = resolver;
+    }
+
+    /**
+     * @return the source of the top-level model class
+     * @throws IllegalArgumentException if the schema is not an object schema with properties
+     */
+    public String generate(String className, JsonNode schema) {
+        Generation generation = new Generation(className);
+        List<Located> members = generation.expand(
+                Collections.singletonList(new Located(schema, new Document(schema, idOf(schema, null)), null)));
+        ModelClass root = generation.modelClass(className, members, "");
+        if (root == null) {
+            throw new IllegalArgumentException("Schema for " + className + " declares no object properties");
+        }
+        if (!generation.unresolved.isEmpty()) {
+            log.warning("Unresolved schema references are left untyped in " + className + ": "
+                    + generation.unresolved);
+        }
+        return generation.render(schema);
+    }
+
+    /**
+     * Generate into {@code <outputDirectory>/<package path>/<className>.java}.
+     */
+    public Path write(String className, JsonNode schema, Path outputDirectory) throws IOException {
+        Path file = outputDirectory.resolve(packageName.replace('.', '/')).resolve(className + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, generate(className, schema).getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * {@value #USAGE}
+     *
+     * A schema is a file, registered under its {@code $id}, or a URI found in
+     * one of the registry directories (laid out as for
+     * {@link DirectorySchemaSource}). Extension schemas are composed onto the
+     * base in the order given.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException(USAGE);
+        }
+        List<SchemaSource> sources = new ArrayList<>();
+        Map<String, String[]> models = new LinkedHashMap<>();
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--registry") && i + 1 < args.length) {
+                sources.add(DirectorySchemaSource.of(Paths.get(args[++i])));
+                continue;
+            }
+            int equals = args[i].indexOf('=');
+            if (equals <= 0 || equals == args[i].length() - 1) {
+                throw new IllegalArgumentException(USAGE);
+            }
+            models.put(args[i].substring(0, equals), args[i].substring(equals + 1).split(","));
+        }
+
+        SchemaStore store = new SchemaStore(Integer.MAX_VALUE, sources);
+        SchemaManager schemaManager = new SchemaManager(store);
+        SchemaModelGenerator generator = new SchemaModelGenerator(args[1], store::get);
+        for (Map.Entry<String, String[]> model : models.entrySet()) {
+            List<String> uris = new ArrayList<>();
+            for (String location : model.getValue()) {
+                uris.add(register(store, location.trim()));
+            }
+            JsonNode composed = schemaManager.composeSchema(uris.get(0), uris.subList(1, uris.size()));
+            Path file = generator.write(model.getKey(), composed, Paths.get(args[0]));
+            log.info("Generated " + file + " from " + uris);
+        }
+    }
+
+    private static String register(SchemaStore store, String location) throws IOException {
+        if (!location.contains("://")) {
+            Path file = Paths.get(location);
+            if (Files.isRegularFile(file)) {
+                JsonNode schema = MAPPER.readTree(file.toFile());
+                JsonNode id = schema.get("$id");
+                String uri = id != null && id.isTextual() ? id.asText() : file.toUri().toString();
+                store.put(uri, schema);
+                return uri;
+            }
+        }
+        if (store.get(location) == null) {
+            throw new IllegalArgumentException("Schema not found: " + location);
+        }
+        return location;
+    }
+
+    // ---------------------------------------------------------------- schema walking
+
+    private static final class Document {
+        final JsonNode root;
+        final String baseUri;
+
+        Document(JsonNode root, String baseUri) {
+            this.root = root;
+            this.baseUri = baseUri;
+        }
+    }
+
+    /**
+     * A subschema, the document its local $refs point into, and the name of
+     * the definition it was reached through, if any.
+     */
+    private static final class Located {
+        final JsonNode schema;
+        final Document document;
+        final String refName;
+
+        Located(JsonNode schema, Document document, String refName) {
+            this.schema = schema;
+            this.document = document;
+            this.refName = refName;
+        }
+    }
+
+    private static String idOf(JsonNode schema, String parentBase) {
+        JsonNode id = schema.isObject() ? schema.get("$id") : null;
+        if (id == null || !id.isTextual()) {
+            return parentBase;
+        }
+        return resolveUri(parentBase, id.asText());
+    }
+
+    private static String resolveUri(String base, String reference) {
+        if (base == null || base.isEmpty()) {
+            return reference;
+        }
+        try {
+            return URI.create(base).resolve(reference).toString();
+        } catch (IllegalArgumentException e) {
+            return reference;
+        }
+    }
+
+    // ---------------------------------------------------------------- model
+
+    private static final class JType {
+        static final JType STRING = scalar("String", null, "readString");
+        static final JType INTEGER = scalar("Long", "long", "readLong");
+        static final JType NUMBER = scalar("Double", "double", "readDouble");
+        static final JType BOOLEAN = scalar("Boolean", "boolean", "readBoolean");
+        static final JType UNTYPED = scalar("Object", null, "readUntyped");
+
+        final String name;
+        final String primitive;
+        final String method;
+        final ModelClass model;
+        final JType element;
+
+        private JType(String name, String primitive, String method, ModelClass model, JType element) {
+            this.name = name;
+            this.primitive = primitive;
+            this.method = method;
+            this.model = model;
+            this.element = element;
+        }
+
+        static JType scalar(String name, String primitive, String method) {
+            return new JType(name, primitive, method, null, null);
+        }
+
+        static JType model(ModelClass model) {
+            return new JType(model.name, null, null, model, null);
+        }
+
+        static JType list(JType element) {
+            return new JType("List<" + element.name + ">", null, "readList", null, element);
+        }
+
+        static JType map(JType element) {
+            return new JType("Map<String, " + element.name + ">", null, "readMap", null, element);
+        }
+
+        String declared(boolean primitive) {
+            return primitive ? this.primitive : name;
+        }
+
+        /**
+         * An expression reading this type from the parser and context variables.
+         */
+        String read(String parser, String ctxt, boolean primitive, int depth) {
+            if (model != null) {
+                return model.name + ".Deserializer.read(" + parser + ", " + ctxt + ")";
+            }
+            String arguments = parser + ", " + ctxt + (element != null ? ", " + element.reader(depth + 1) : "");
+            return "ModelReaders." + method + (primitive ? "Value" : "") + "(" + arguments + ")";
+        }
+
+        /**
+         * A ModelReaders.Reader for this type; nested lambdas get their own variables.
+         */
+        String reader(int depth) {
+            if (model != null) {
+                return model.name + ".Deserializer::read";
+            }
+            if (element == null) {
+                return "ModelReaders::" + method;
+            }
+            String parser = "parser" + depth;
+            String ctxt = "ctxt" + depth;
+            return "(" + parser + ", " + ctxt + ") -> " + read(parser, ctxt, false, depth);
+        }
+    }
+
+    private static final class Property {
+        final String jsonName;
+        final String javaName;
+        final JType type;
+        final boolean primitive;
+        final String description;
+
+        Property(String jsonName, String javaName, JType type, boolean primitive, String description) {
+            this.jsonName = jsonName;
+            this.javaName = javaName;
+            this.type = type;
+            this.primitive = primitive;
+            this.description = description;
+        }
+    }
+
+    private static final class ModelClass {
+        final String name;
+        final String description;
+        final List<Property> properties = new ArrayList<>();
+        boolean open = true;
+
+        ModelClass(String name, String description) {
+            this.name = name;
+            this.description = description;
+        }
+    }
+
+    // ---------------------------------------------------------------- generation
+
+    private final class Generation {
+        final String topName;
+        // Names the generated source already uses
+        final Set<String> classNames = new HashSet<>(Arrays.asList("Deserializer", "ModelReaders", "Reader",
+                "Object", "String", "Long", "Double", "Boolean", "List", "Map", "Objects", "Collections",
+                "Override", "IOException", "JsonAnyGetter", "JsonInclude", "JsonProperty", "JsonParser", "JsonToken",
+                "DeserializationContext", "JsonDeserialize", "StdDeserializer"));
+        final List<ModelClass> classes = new ArrayList<>();
+        final Map<JsonNode, ModelClass> byDeclaration = new IdentityHashMap<>();
+        final Set<String> unresolved = new LinkedHashSet<>();
+
+        Generation(String topName) {
+            this.topName = topName;
+        }
+
+        /**
+         * Flatten $refs and allOf into the list of schemas that all apply.
+         */
+        List<Located> expand(List<Located> schemas) {
+            List<Located> all = new ArrayList<>();
+            for (Located located : schemas) {
+                expandInto(located.schema, located.document, located.refName, all, 0);
+            }
+            return all;
+        }
+
+        private void expandInto(JsonNode schema, Document document, String refName, List<Located> all, int depth) {
+            if (schema == null || !schema.isObject() || depth > MAX_DEPTH) {
+                return;
+            }
+            if (schema != document.root && (schema.has("$id") || schema.has("$schema"))) {
+                document = new Document(schema, idOf(schema, document.baseUri));
+            }
+            all.add(new Located(schema, document, refName));
+            JsonNode ref = schema.get("$ref");
+            if (ref != null && ref.isTextual()) {
+                Located target = resolve(ref.asText(), document);
+                if (target != null) {
+                    expandInto(target.schema, target.document, target.refName, all, depth + 1);
+                }
+            }
+            JsonNode allOf = schema.get("allOf");
+            if (allOf != null && allOf.isArray()) {
+                for (JsonNode member : allOf) {
+                    expandInto(member, document, null, all, depth + 1);
+                }
+            }
+        }
+
+        private Located resolve(String ref, Document document) {
+            String absolute = ref.startsWith("#") && document.baseUri == null ? ref : resolveUri(document.baseUri, ref);
+            int hash = absolute.indexOf('#');
+            String documentUri = hash >= 0 ? absolute.substring(0, hash) : absolute;
+            String pointer = hash >= 0 ? absolute.substring(hash + 1) : "";
+            Document target = document;
+            if (!ref.startsWith("#") && !documentUri.equals(document.baseUri)) {
+                JsonNode loaded = resolver.apply(documentUri);
+                if (loaded == null) {
+                    unresolved.add(absolute);
+                    return null;
+                }
+                target = new Document(loaded, documentUri);
+            }
+            JsonNode schema;
+            try {
+                schema = pointer.isEmpty() ? target.root : target.root.at(pointer);
+            } catch (IllegalArgumentException e) {
+                schema = null;
+            }
+            if (schema == null || schema.isMissingNode()) {
+                unresolved.add(absolute);
+                return null;
+            }
+            String name = pointer.isEmpty() ? documentUri : pointer;
+            name = name.substring(name.lastIndexOf('/') + 1);
+            return new Located(schema, target, name.endsWith(".json") ? name.substring(0, name.length() - 5) : name);
+        }
+
+        /**
+         * The Java type of the value the schemas describe; objects with
+         * properties become (possibly shared) model classes.
+         */
+        JType typeOf(List<Located> schemas, String nameHint) {
+            List<Located> all = expand(schemas);
+            Set<String> types = new LinkedHashSet<>();
+            boolean composite = false;
+            for (Located located : all) {
+                JsonNode type = located.schema.get("type");
+                if (type != null && type.isTextual()) {
+                    types.add(type.asText());
+                } else if (type != null && type.isArray()) {
+                    for (JsonNode member : type) {
+                        types.add(member.asText());
+                    }
+                }
+                composite |= located.schema.has("anyOf") || located.schema.has("oneOf");
+            }
+            types.remove("null");
+            if (types.isEmpty() && !composite) {
+                types.addAll(impliedTypes(all));
+            }
+            if (types.equals(new HashSet<>(Arrays.asList("integer", "number")))) {
+                types.remove("integer");
+            }
+            if (types.size() != 1) {
+                return JType.UNTYPED;
+            }
+            switch (types.iterator().next()) {
+                case "string":
+                    return JType.STRING;
+                case "integer":
+                    return JType.INTEGER;
+                case "number":
+                    return JType.NUMBER;
+                case "boolean":
+                    return JType.BOOLEAN;
+                case "array":
+                    return JType.list(typeOf(subschemas(all, "items"), singular(nameHint)));
+                case "object":
+                    ModelClass model = modelClass(null, all, nameHint);
+                    if (model != null) {
+                        return JType.model(model);
+                    }
+                    List<Located> values = subschemas(all, "additionalProperties");
+                    return JType.map(values.isEmpty() ? JType.UNTYPED : typeOf(values, singular(nameHint)));
+                default:
+                    return JType.UNTYPED;
+            }
+        }
+
+        private Set<String> impliedTypes(List<Located> all) {
+            Set<String> types = new LinkedHashSet<>();
+            for (Located located : all) {
+                JsonNode schema = located.schema;
+                if (schema.has("properties") || schema.has("additionalProperties") || schema.has("required")) {
+                    types.add("object");
+                }
+                if (schema.has("items")) {
+                    types.add("array");
+                }
+                List<JsonNode> values = new ArrayList<>();
+                if (schema.has("const")) {
+                    values.add(schema.get("const"));
+                }
+                if (schema.path("enum").isArray()) {
+                    schema.get("enum").forEach(values::add);
+                }
+                for (JsonNode value : values) {
+                    types.add(value.isTextual() ? "string" : value.isIntegralNumber() ? "integer"
+                            : value.isNumber() ? "number" : value.isBoolean() ? "boolean" : "null");
+                }
+            }
+            return types;
+        }
+
+        private List<Located> subschemas(List<Located> all, String keyword) {
+            List<Located> subschemas = new ArrayList<>();
+            for (Located located : all) {
+                JsonNode subschema = located.schema.get(keyword);
+                if (subschema != null && subschema.isObject()) {
+                    subschemas.add(new Located(subschema, located.document, null));
+                }
+            }
+            return subschemas;
+        }
+
+        /**
+         * A model class for the merged properties of the schemas, or null if
+         * none declare properties. A definition reached from several places
+         * (the same $ref) becomes one class.
+         */
+        ModelClass modelClass(String name, List<Located> all, String nameHint) {
+            Located declaring = null;
+            int declarations = 0;
+            for (Located located : all) {
+                if (located.schema.path("properties").isObject()) {
+                    declarations++;
+                    if (declaring == null) {
+                        declaring = located;
+                    }
+                }
+            }
+            if (declaring == null) {
+                return null;
+            }
+            if (declarations == 1 && byDeclaration.containsKey(declaring.schema)) {
+                return byDeclaration.get(declaring.schema);
+            }
+            String refName = null;
+            for (Located located : all) {
+                if (located.refName != null) {
+                    refName = located.refName;
+                    break;
+                }
+            }
+            String className = name != null ? name : uniqueClassName(pascal(refName != null ? refName : nameHint));
+            classNames.add(className);
+            ModelClass model = new ModelClass(className, describe(declaring.schema));
+            if (declarations == 1) {
+                byDeclaration.put(declaring.schema, model);
+            }
+            classes.add(model);
+
+            Map<String, List<Located>> properties = new LinkedHashMap<>();
+            Set<String> required = new HashSet<>();
+            for (Located located : all) {
+                JsonNode schema = located.schema;
+                Iterator<Map.Entry<String, JsonNode>> fields = schema.path("properties").fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    properties.computeIfAbsent(field.getKey(), k -> new ArrayList<>())
+                            .add(new Located(field.getValue(), located.document, null));
+                }
+                for (JsonNode requiredName : schema.path("required")) {
+                    required.add(requiredName.asText());
+                }
+                if (schema.path("additionalProperties").isBoolean()
+                        && !schema.get("additionalProperties").booleanValue()) {
+                    model.open = false;
+                }
+            }
+            Set<String> javaNames = new HashSet<>();
+            for (Map.Entry<String, List<Located>> property : properties.entrySet()) {
+                JType type = typeOf(property.getValue(), property.getKey());
+                String javaName = uniqueName(camel(property.getKey()), javaNames);
+                model.properties.add(new Property(property.getKey(), javaName, type,
+                        type.primitive != null && required.contains(property.getKey()),
+                        describe(property.getValue().get(0).schema)));
+            }
+            return model;
+        }
+
+        private String uniqueClassName(String base) {
+            String name = base;
+            for (int i = 2; classNames.contains(name) || name.equals(topName); i++) {
+                name = base + i;
+            }
+            return name;
+        }
+
+        // ------------------------------------------------------------ rendering
+
+        String render(JsonNode schema) {
+            StringBuilder body = new StringBuilder();
+            ModelClass root = classes.get(0);
+            renderClass(body, root, "", schema);
+            // Nested classes go inside the top-level class, before its closing brace
+            body.setLength(body.length() - 2);
+            for (ModelClass model : classes.subList(1, classes.size())) {
+                body.append('\n');
+                renderClass(body, model, "    ", null);
+            }
+            body.append("}\n");
+
+            StringBuilder out = new StringBuilder();
+            out.append("// Generated by ").append(SchemaModelGenerator.class.getSimpleName())
+                    .append(". Do not edit.\n");
+            if (!packageName.isEmpty()) {
+                out.append("package ").append(packageName).append(";\n\n");
+            }
+            String code = body.toString();
+            List<String> imports = new ArrayList<>();
+            if (code.contains("@JsonAnyGetter")) {
+                imports.add("com.fasterxml.jackson.annotation.JsonAnyGetter");
+            }
+            imports.addAll(Arrays.asList(
+                    "com.fasterxml.jackson.annotation.JsonInclude",
+                    "com.fasterxml.jackson.annotation.JsonProperty",
+                    "com.fasterxml.jackson.core.JsonParser",
+                    "com.fasterxml.jackson.core.JsonToken",
+                    "com.fasterxml.jackson.databind.DeserializationContext",
+                    "com.fasterxml.jackson.databind.annotation.JsonDeserialize",
+                    "com.fasterxml.jackson.databind.deser.std.StdDeserializer",
+                    ModelReaders.class.getName(),
+                    "",
+                    "java.io.IOException"));
+            if (code.contains("Collections.")) {
+                imports.add("java.util.Collections");
+            }
+            if (code.contains("List<")) {
+                imports.add("java.util.List");
+            }
+            if (code.contains("Map<")) {
+                imports.add("java.util.Map");
+            }
+            imports.add("java.util.Objects");
+            for (String name : imports) {
+                out.append(name.isEmpty() ? "\n" : "import " + name + ";\n");
+            }
+            out.append('\n').append(code);
+            return out.toString();
+        }
+
+        private void renderClass(StringBuilder out, ModelClass model, String indent, JsonNode rootSchema) {
+            String in = indent + "    ";
+            String name = model.name;
+            out.append(indent).append("/**\n");
+            out.append(indent).append(" * ").append(model.description != null ? model.description
+                    : "The {@code " + name + "} object.").append('\n');
+            if (rootSchema != null) {
+                List<String> ids = new ArrayList<>();
+                collectIds(rootSchema, ids, 0);
+                if (!ids.isEmpty()) {
+                    out.append(indent).append(" * Generated from ").append(javadoc(String.join(", ", ids)))
+                            .append(".\n");
+                }
+            }
+            out.append(indent).append(" */\n");
+            out.append(indent).append("@JsonInclude(JsonInclude.Include.NON_NULL)\n");
+            out.append(indent).append("@JsonDeserialize(using = ").append(name).append(".Deserializer.class)\n");
+            out.append(indent).append("public ").append(rootSchema != null ? "" : "static ").append("final class ")
+                    .append(name).append(" {\n\n");
+
+            for (Property property : model.properties) {
+                out.append(in).append("private final ").append(property.type.declared(property.primitive))
+                        .append(' ').append(property.javaName).append(";\n");
+            }
+            if (model.open) {
+                out.append(in).append("private final Map<String, Object> additionalProperties;\n");
+            }
+            out.append('\n');
+
+            List<String> parameters = new ArrayList<>();
+            for (Property property : model.properties) {
+                parameters.add(property.type.declared(property.primitive) + " " + property.javaName);
+            }
+            if (model.open) {
+                parameters.add("Map<String, Object> additionalProperties");
+            }
+            out.append(in).append("public ").append(name).append('(').append(String.join(", ", parameters))
+                    .append(") {\n");
+            for (Property property : model.properties) {
+                out.append(in).append("    this.").append(property.javaName).append(" = ")
+                        .append(property.javaName).append(";\n");
+            }
+            if (model.open) {
+                out.append(in).append("    this.additionalProperties = additionalProperties;\n");
+            }
+            out.append(in).append("}\n");
+
+            for (Property property : model.properties) {
+                out.append('\n');
+                if (property.description != null) {
+                    out.append(in).append("/**\n").append(in).append(" * ").append(property.description)
+                            .append('\n').append(in).append(" */\n");
+                }
+                out.append(in).append("@JsonProperty(").append(literal(property.jsonName)).append(")\n");
+                out.append(in).append("public ").append(property.type.declared(property.primitive)).append(" get")
+                        .append(Character.toUpperCase(property.javaName.charAt(0)))
+                        .append(property.javaName.substring(1)).append("() {\n");
+                out.append(in).append("    return ").append(property.javaName).append(";\n");
+                out.append(in).append("}\n");
+            }
+            if (model.open) {
+                out.append('\n');
+                out.append(in).append("/**\n").append(in)
+                        .append(" * Fields the schema does not declare, e.g. from extensions not generated here.\n")
+                        .append(in).append(" */\n");
+                out.append(in).append("@JsonAnyGetter\n");
+                out.append(in).append("public Map<String, Object> getAdditionalProperties() {\n");
+                out.append(in).append("    return additionalProperties != null ? additionalProperties")
+                        .append(" : Collections.<String, Object>emptyMap();\n");
+                out.append(in).append("}\n");
+            }
+
+            renderObjectMethods(out, model, in);
+            renderDeserializer(out, model, in);
+            out.append(indent).append("}\n");
+        }
+
+        private void renderObjectMethods(StringBuilder out, ModelClass model, String in) {
+            List<String> names = new ArrayList<>();
+            for (Property property : model.properties) {
+                names.add(property.javaName);
+            }
+            if (model.open) {
+                names.add("additionalProperties");
+            }
+
+            out.append('\n');
+            out.append(in).append("@Override\n");
+            out.append(in).append("public boolean equals(Object o) {\n");
+            out.append(in).append("    if (this == o) {\n");
+            out.append(in).append("        return true;\n");
+            out.append(in).append("    }\n");
+            out.append(in).append("    if (!(o instanceof ").append(model.name).append(")) {\n");
+            out.append(in).append("        return false;\n");
+            out.append(in).append("    }\n");
+            out.append(in).append("    ").append(model.name).append(" other = (").append(model.name)
+                    .append(") o;\n");
+            out.append(in).append("    return ");
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    out.append('\n').append(in).append("            && ");
+                }
+                out.append("Objects.equals(").append(names.get(i)).append(", other.").append(names.get(i))
+                        .append(')');
+            }
+            out.append(";\n");
+            out.append(in).append("}\n\n");
+
+            out.append(in).append("@Override\n");
+            out.append(in).append("public int hashCode() {\n");
+            out.append(in).append("    return Objects.hash(").append(String.join(", ", names)).append(");\n");
+            out.append(in).append("}\n\n");
+
+            out.append(in).append("@Override\n");
+            out.append(in).append("public String toString() {\n");
+            out.append(in).append("    return \"").append(model.name).append("{\"");
+            for (int i = 0; i < names.size(); i++) {
+                out.append('\n').append(in).append("            + \"").append(i > 0 ? ", " : "")
+                        .append(names.get(i)).append("=\" + ").append(names.get(i));
+            }
+            out.append('\n').append(in).append("            + \"}\";\n");
+            out.append(in).append("}\n");
+        }
+
+        private void renderDeserializer(StringBuilder out, ModelClass model, String in) {
+            String name = model.name;
+            String body = in + "        ";
+            out.append('\n');
+            out.append(in).append("/**\n");
+            out.append(in).append(" * Reads the fields straight off the parser.\n");
+            out.append(in).append(" */\n");
+            out.append(in).append("public static final class Deserializer extends StdDeserializer<").append(name)
+                    .append("> {\n\n");
+            out.append(in).append("    public Deserializer() {\n");
+            out.append(in).append("        super(").append(name).append(".class);\n");
+            out.append(in).append("    }\n\n");
+            out.append(in).append("    @Override\n");
+            out.append(in).append("    public ").append(name)
+                    .append(" deserialize(JsonParser parser, DeserializationContext ctxt) throws IOException {\n");
+            out.append(in).append("        return read(parser, ctxt);\n");
+            out.append(in).append("    }\n\n");
+            out.append(in).append("    public static ").append(name)
+                    .append(" read(JsonParser parser, DeserializationContext ctxt) throws IOException {\n");
+            out.append(body).append("String field;\n");
+            out.append(body).append("if (parser.isExpectedStartObjectToken()) {\n");
+            out.append(body).append("    field = parser.nextFieldName();\n");
+            out.append(body).append("} else if (parser.hasToken(JsonToken.FIELD_NAME)) {\n");
+            out.append(body).append("    field = parser.currentName();\n");
+            out.append(body).append("} else if (parser.hasToken(JsonToken.VALUE_NULL)) {\n");
+            out.append(body).append("    return null;\n");
+            out.append(body).append("} else {\n");
+            out.append(body).append("    return (").append(name).append(") ctxt.handleUnexpectedToken(")
+                    .append(name).append(".class, parser);\n");
+            out.append(body).append("}\n");
+            for (Property property : model.properties) {
+                out.append(body).append(property.type.declared(property.primitive)).append(' ')
+                        .append(property.javaName).append(" = ")
+                        .append(!property.primitive ? "null" : property.type.primitive.equals("boolean") ? "false"
+                                : "0").append(";\n");
+            }
+            if (model.open) {
+                out.append(body).append("Map<String, Object> additionalProperties = null;\n");
+            }
+            out.append(body).append("for (; field != null; field = parser.nextFieldName()) {\n");
+            out.append(body).append("    parser.nextToken();\n");
+            out.append(body).append("    switch (field) {\n");
+            for (Property property : model.properties) {
+                out.append(body).append("        case ").append(literal(property.jsonName)).append(":\n");
+                out.append(body).append("            ").append(property.javaName).append(" = ")
+                        .append(property.type.read("parser", "ctxt", property.primitive, 1)).append(";\n");
+                out.append(body).append("            break;\n");
+            }
+            out.append(body).append("        default:\n");
+            if (model.open) {
+                out.append(body).append("            additionalProperties = ModelReaders.readAdditional(")
+                        .append("additionalProperties, field, parser, ctxt);\n");
+            } else {
+                out.append(body).append("            ctxt.handleUnknownProperty(parser, null, ").append(name)
+                        .append(".class, field);\n");
+            }
+            out.append(body).append("    }\n");
+            out.append(body).append("}\n");
+            List<String> arguments = new ArrayList<>();
+            for (Property property : model.properties) {
+                arguments.add(property.javaName);
+            }
+            if (model.open) {
+                arguments.add("additionalProperties");
+            }
+            out.append(body).append("return new ").append(name).append('(').append(String.join(", ", arguments))
+                    .append(");\n");
+            out.append(in).append("    }\n");
+            out.append(in).append("}\n");
+        }
+
+        private void collectIds(JsonNode schema, List<String> ids, int depth) {
+            if (schema.path("$id").isTextual()) {
+                ids.add(schema.get("$id").asText());
+            } else if (schema.path("allOf").isArray() && depth < 2) {
+                for (JsonNode member : schema.get("allOf")) {
+                    collectIds(member, ids, depth + 1);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- names and text
+
+    private static String describe(JsonNode schema) {
+        JsonNode text = schema.path("description").isTextual() ? schema.get("description") : schema.get("title");
+        if (text == null || !text.isTextual() || text.asText().trim().isEmpty()) {
+            return null;
+        }
+        String description = javadoc(text.asText().trim().replaceAll("\\s+", " "));
+        return description.endsWith(".") ? description : description + ".";
+    }
+
+    private static String javadoc(String text) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '*' && i + 1 < text.length() && text.charAt(i + 1) == '/') {
+                out.append("*&#47;");
+                i++;
+            } else if (c == '@') {
+                out.append("&#64;");
+            } else if (c == '\\') {
+                out.append("&#92;");
+            } else if (c > 0x7e) {
+                out.append("&#").append((int) c).append(';');
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static String literal(String text) {
+        StringBuilder out = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+
+    private static List<String> words(String name) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean boundary = Character.isUpperCase(c) && i > 0 && Character.isLowerCase(name.charAt(i - 1));
+            if (!Character.isLetterOrDigit(c) || c > 0x7e || boundary) {
+                if (word.length() > 0) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                }
+                if (!boundary) {
+                    continue;
+                }
+            }
+            word.append(c);
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    private static String pascal(String name) {
+        StringBuilder out = new StringBuilder();
+        for (String word : words(name == null ? "" : name)) {
+            out.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+        }
+        if (out.length() == 0) {
+            return "Model";
+        }
+        return Character.isDigit(out.charAt(0)) ? "_" + out : out.toString();
+    }
+
+    private static String camel(String name) {
+        String pascal = pascal(name);
+        if (pascal.equals("Model") && words(name).isEmpty()) {
+            pascal = "Value";
+        }
+        String camel = pascal.startsWith("_") ? pascal : Character.toLowerCase(pascal.charAt(0)) + pascal.substring(1);
+        boolean generatedName = camel.matches("(parser|ctxt)\\d+");
+        return KEYWORDS.contains(camel) || generatedName ? camel + "Value" : camel;
+    }
+
+    private static String uniqueName(String base, Set<String> taken) {
+        String name = base;
+        for (int i = 2; !taken.add(name); i++) {
+            name = base + i;
+        }
+        return name;
+    }
+
+    /**
+     * line_items to LineItem, for the class of an array's items.
+     */
+    private static String singular(String name) {
+        if (name == null) {
+            return null;
+        }
+        if (name.endsWith("ies") && name.length() > 3) {
+            return name.substring(0, name.length() - 3) + "y";
+        }
+        if (name.endsWith("s") && !name.endsWith("ss") && name.length() > 1) {
+            return name.substring(0, name.length() - 1);
+        }
+        return name + "_item";
+    }
+}
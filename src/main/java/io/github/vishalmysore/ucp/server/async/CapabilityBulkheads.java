@@ -0,0 +1,196 @@
+package io.github.vishalmysore.ucp.server.async;
+
+import io.github.vishalmysore.ucp.domain.common.MessageError;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.java.Log;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous execution of UCP operations behind per-operation bulkheads.
+ * Each operation (e.g. getCheckout, completeCheckout, a JSON-RPC method) gets
+ * its own small pool with a bounded queue, so a slow capability can only
+ * exhaust its own threads. The servlet thread is released while the call runs
+ * (the caller returns a {@link DeferredResult}); a full bulkhead is answered
+ * immediately with 429 and a timed-out call with 503, both with Retry-After.
+ *
+ * Disabled by default; set {@code ucp.async.enabled=true} to turn it on.
+ * Sizing: {@code ucp.async.max-concurrent}, {@code ucp.async.queue-depth},
+ * {@code ucp.async.timeout-ms}, {@code ucp.async.retry-after-seconds}, and per
+ * operation {@code ucp.async.bulkhead.<operation>.max-concurrent|queue-depth}.
+ */
+@Log
+@Component
+public class CapabilityBulkheads {
+
+    public static final String SHARED_BULKHEAD = "default";
+    private static final int MAX_BULKHEADS = 64;
+
+    private final Environment env;
+    private final boolean enabled;
+    private final long timeoutMillis;
+    private final long retryAfterSeconds;
+    private final Map<String, ThreadPoolExecutor> bulkheads = new ConcurrentHashMap<>();
+
+    public CapabilityBulkheads(Environment env) {
+        this.env = env;
+        this.enabled = env.getProperty("ucp.async.enabled", Boolean.class, false);
+        this.timeoutMillis = env.getProperty("ucp.async.timeout-ms", Long.class, 30000L);
+        this.retryAfterSeconds = env.getProperty("ucp.async.retry-after-seconds", Long.class, 1L);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Run a call for an operation.
+     * @return the call's result when async execution is disabled; otherwise a
+     * {@link DeferredResult} completed by the bulkhead, or a 429 response if the
+     * bulkhead is full
+     */
+    public Object execute(String operation, Supplier<?> call) {
+        return execute(operation, call, CapabilityBulkheads::messages);
+    }
+
+    /**
+     * Run a call for an operation, answering a full bulkhead or a timeout with
+     * the body made by {@code rejection} from the status and a message.
+     * @see #execute(String, Supplier)
+     */
+    public Object execute(String operation, Supplier<?> call, BiFunction<HttpStatus, String, ?> rejection) {
+        if (!enabled) {
+            return call.get();
+        }
+        DeferredResult<Object> deferred = new DeferredResult<>(timeoutMillis,
+                () -> overloaded(HttpStatus.SERVICE_UNAVAILABLE, operation, rejection));
+        try {
+            Future<?> task = bulkheadFor(operation).submit(() -> {
+                try {
+                    deferred.setResult(call.get());
+                } catch (CompletionException e) {
+                    deferred.setErrorResult(e.getCause() != null ? e.getCause() : e);
+                } catch (RuntimeException | Error e) {
+                    deferred.setErrorResult(e);
+                }
+            });
+            deferred.onTimeout(() -> task.cancel(true));
+        } catch (RejectedExecutionException e) {
+            return overloaded(HttpStatus.TOO_MANY_REQUESTS, operation, rejection);
+        }
+        return deferred;
+    }
+
+    /**
+     * Run a call on an operation's bulkhead and wait for its result, for a
+     * caller already off the servlet thread such as an entry of a JSON-RPC batch.
+     * @throws RejectedExecutionException if the bulkhead is full
+     * @throws CompletionException wrapping a {@link TimeoutException} if the
+     * call does not finish within the timeout; the call is then cancelled
+     */
+    public <T> T call(String operation, Supplier<T> call) {
+        Future<T> task = bulkheadFor(operation).submit(call::get);
+        try {
+            return task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            throw new CompletionException(e);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private ThreadPoolExecutor bulkheadFor(String operation) {
+        ThreadPoolExecutor bulkhead = bulkheads.get(operation);
+        if (bulkhead != null) {
+            return bulkhead;
+        }
+        // Operation names can come from clients; past the limit they share one bulkhead
+        String key = bulkheads.size() < MAX_BULKHEADS ? operation : SHARED_BULKHEAD;
+        return bulkheads.computeIfAbsent(key, this::createBulkhead);
+    }
+
+    private ThreadPoolExecutor createBulkhead(String operation) {
+        int maxConcurrent = property(operation, "max-concurrent", 16);
+        int queueDepth = property(operation, "queue-depth", 32);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueDepth)), new BulkheadThreadFactory(operation),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        log.info("Bulkhead " + operation + ": " + maxConcurrent + " concurrent, queue " + queueDepth);
+        return executor;
+    }
+
+    private int property(String operation, String name, int defaultValue) {
+        Integer global = env.getProperty("ucp.async." + name, Integer.class, defaultValue);
+        return env.getProperty("ucp.async.bulkhead." + operation + "." + name, Integer.class, global);
+    }
+
+    private ResponseEntity<Object> overloaded(HttpStatus status, String operation,
+            BiFunction<HttpStatus, String, ?> rejection) {
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(rejection.apply(status,
+                        "Operation " + operation + " is at capacity; retry after " + retryAfterSeconds + "s"));
+    }
+
+    private static Object messages(HttpStatus status, String message) {
+        MessageError error = new MessageError();
+        error.setCode(status == HttpStatus.TOO_MANY_REQUESTS ? "too_many_requests" : "service_unavailable");
+        error.setContent(message);
+        error.setSeverity(MessageError.Severity.recoverable);
+        return Collections.singletonMap("messages", Collections.singletonList(error));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    private static final class BulkheadThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        BulkheadThreadFactory(String operation) {
+            this.prefix = "ucp-" + operation + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.vishalmysore.ucp.server.discovery;
+
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import org.springframework.core.annotation.AnnotationUtils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable description of a UCP capability as declared by {@link UCPCapability}.
+ */
+public final class CapabilityDescriptor {
+
+    private final String name;
+    private final String version;
+    private final String spec;
+    private final String schema;
+    private final String extendsCapability;
+    private final Map<String, Object> manifestEntry;
+
+    public CapabilityDescriptor(String name, String version, String spec, String schema, String extendsCapability) {
+        this.name = name;
+        this.version = version;
+        this.spec = emptyToNull(spec);
+        this.schema = emptyToNull(schema);
+        this.extendsCapability = emptyToNull(extendsCapability);
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("name", name);
+        entry.put("version", version);
+        if (this.spec != null)
+            entry.put("spec", this.spec);
+        if (this.schema != null)
+            entry.put("schema", this.schema);
+        this.manifestEntry = Collections.unmodifiableMap(entry);
+    }
+
+    public static CapabilityDescriptor of(UCPCapability capability) {
+        return new CapabilityDescriptor(capability.name(), capability.version(), capability.spec(),
+                capability.schema(), capability.extendsCapability());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getExtendsCapability() {
+        return extendsCapability;
+    }
+
+    /**
+     * The entry listed for this capability in the {@code /.well-known/ucp} manifest.
+     */
+    public Map<String, Object> getManifestEntry() {
+        return manifestEntry;
+    }
+
+    /**
+     * This declaration as a {@link UCPCapability}, as capability negotiation takes it.
+     */
+    public UCPCapability toCapability() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("name", name);
+        attributes.put("version", version);
+        attributes.put("spec", spec != null ? spec : "");
+        attributes.put("schema", schema != null ? schema : "");
+        attributes.put("extendsCapability", extendsCapability != null ? extendsCapability : "");
+        return AnnotationUtils.synthesizeAnnotation(attributes, UCPCapability.class, null);
+    }
+
+    /**
+     * True if this declaration carries more detail (spec, schema) than the other one.
+     */
+    boolean isMoreDetailedThan(CapabilityDescriptor other) {
+        return detail() > other.detail();
+    }
+
+    private int detail() {
+        return (spec != null ? 1 : 0) + (schema != null ? 1 : 0);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    @Override
+    public String toString() {
+        return name + "@" + version;
+    }
+}
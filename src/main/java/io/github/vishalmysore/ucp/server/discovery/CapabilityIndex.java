@@ -0,0 +1,223 @@
+package io.github.vishalmysore.ucp.server.discovery;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.t4a.api.AIAction;
+import com.t4a.api.GenericJavaMethodAction;
+import io.github.vishalmysore.ucp.annotation.processor.UCPAnnotationProcessor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Capability and payment handler index generated at compile time by
+ * {@link UCPAnnotationProcessor}. Every jar compiled with the processor carries
+ * one index; all of them on the classpath are merged. An index only describes
+ * the classes compiled with the processor, listed in {@link #getActionClasses()};
+ * see {@link #uncovered} before using it in place of a scan.
+ */
+public final class CapabilityIndex {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String businessClass;
+    private final List<String> ucpAwareClasses;
+    private final Set<String> actionClasses;
+    private final List<MethodEntry> methods;
+    private final List<HandlerEntry> handlers;
+
+    private CapabilityIndex(String businessClass, List<String> ucpAwareClasses, Set<String> actionClasses,
+            List<MethodEntry> methods, List<HandlerEntry> handlers) {
+        this.businessClass = businessClass;
+        this.ucpAwareClasses = Collections.unmodifiableList(ucpAwareClasses);
+        this.actionClasses = Collections.unmodifiableSet(actionClasses);
+        this.methods = Collections.unmodifiableList(methods);
+        this.handlers = Collections.unmodifiableList(handlers);
+    }
+
+    /**
+     * Load and merge the indexes visible to a class loader.
+     * @return the merged index, or null if no index is present
+     */
+    public static CapabilityIndex load(ClassLoader classLoader) {
+        List<JsonNode> documents = new ArrayList<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(UCPAnnotationProcessor.INDEX_LOCATION);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                try (InputStream in = resource.openStream()) {
+                    documents.add(MAPPER.readTree(in));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + UCPAnnotationProcessor.INDEX_LOCATION, e);
+        }
+        return documents.isEmpty() ? null : merge(documents);
+    }
+
+    static CapabilityIndex merge(List<JsonNode> documents) {
+        String businessClass = null;
+        List<String> ucpAware = new ArrayList<>();
+        Set<String> actionClasses = new HashSet<>();
+        List<MethodEntry> methods = new ArrayList<>();
+        List<HandlerEntry> handlers = new ArrayList<>();
+        for (JsonNode document : documents) {
+            JsonNode business = document.path("business");
+            if (business.isObject()) {
+                String className = business.path("class").asText();
+                // Enforcement: UCP 2026 requires a single Merchant of Record per host
+                if (businessClass != null && !businessClass.equals(className)) {
+                    throw new IllegalStateException("UCP Violation: Multiple businesses found: ["
+                            + businessClass + ", " + className + "]. Each host must represent exactly one merchant.");
+                }
+                businessClass = className;
+            }
+            for (JsonNode className : document.path("ucpAware")) {
+                if (!ucpAware.contains(className.asText())) {
+                    ucpAware.add(className.asText());
+                }
+            }
+            for (JsonNode className : document.path("actionClasses")) {
+                actionClasses.add(className.asText());
+            }
+            for (JsonNode method : document.path("methods")) {
+                List<CapabilityDescriptor> capabilities = new ArrayList<>();
+                for (JsonNode cap : method.path("capabilities")) {
+                    capabilities.add(new CapabilityDescriptor(cap.path("name").asText(), cap.path("version").asText(),
+                            cap.path("spec").asText(), cap.path("schema").asText(),
+                            cap.path("extendsCapability").asText()));
+                }
+                if (!method.path("action").isTextual()) {
+                    throw new IllegalStateException("Indexed method " + method.path("class").asText() + "."
+                            + method.path("method").asText() + " has no action name; recompile with the "
+                            + "UCP annotation processor");
+                }
+                methods.add(new MethodEntry(method.path("class").asText(), method.path("method").asText(),
+                        method.path("action").asText(), capabilities));
+            }
+            for (JsonNode handler : document.path("handlers")) {
+                handlers.add(new HandlerEntry(handler.path("class").asText(), handler.path("name").asText(),
+                        handler.path("version").asText()));
+            }
+        }
+        // Enforcement: Only one UCPAware implementation per host
+        if (ucpAware.size() > 1) {
+            throw new IllegalStateException("UCP Violation: Multiple UCPAware implementations found: " + ucpAware
+                    + ". Each host must implement exactly one UCPAware.");
+        }
+        return new CapabilityIndex(businessClass, ucpAware, actionClasses, methods, handlers);
+    }
+
+    /**
+     * The first of the actions whose class was not compiled into the index,
+     * or null when the index covers them all. An index from a dependency, a
+     * partial compile or an earlier build does not describe the other classes.
+     */
+    public AIAction uncovered(Collection<? extends AIAction> actions) {
+        for (AIAction action : actions) {
+            if (action instanceof GenericJavaMethodAction && !actionClasses.contains(
+                    ((GenericJavaMethodAction) action).getActionMethod().getDeclaringClass().getName())) {
+                return action;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Class annotated with {@code @UCPBusiness}, or null.
+     */
+    public String getBusinessClass() {
+        return businessClass;
+    }
+
+    public List<String> getUcpAwareClasses() {
+        return ucpAwareClasses;
+    }
+
+    /**
+     * Classes declaring actions that were compiled with the processor.
+     */
+    public Set<String> getActionClasses() {
+        return actionClasses;
+    }
+
+    public List<MethodEntry> getMethods() {
+        return methods;
+    }
+
+    public List<HandlerEntry> getHandlers() {
+        return handlers;
+    }
+
+    /**
+     * A method declaring capabilities with {@code @UCPCapability}.
+     */
+    public static final class MethodEntry {
+        private final String className;
+        private final String methodName;
+        private final String actionName;
+        private final List<CapabilityDescriptor> capabilities;
+
+        MethodEntry(String className, String methodName, String actionName, List<CapabilityDescriptor> capabilities) {
+            this.className = className;
+            this.methodName = methodName;
+            this.actionName = actionName;
+            this.capabilities = Collections.unmodifiableList(capabilities);
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+
+        /**
+         * The name the method is registered and called by as an action.
+         */
+        public String getActionName() {
+            return actionName;
+        }
+
+        public List<CapabilityDescriptor> getCapabilities() {
+            return capabilities;
+        }
+    }
+
+    /**
+     * A class annotated with {@code @UCPHandler}.
+     */
+    public static final class HandlerEntry {
+        private final String className;
+        private final String name;
+        private final String version;
+
+        HandlerEntry(String className, String name, String version) {
+            this.className = className;
+            this.name = name;
+            this.version = version;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+    }
+}
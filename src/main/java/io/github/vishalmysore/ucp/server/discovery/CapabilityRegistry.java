@@ -0,0 +1,350 @@
+package io.github.vishalmysore.ucp.server.discovery;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.t4a.api.AIAction;
+import com.t4a.api.GenericJavaMethodAction;
+import com.t4a.predict.PredictionLoader;
+import io.github.vishalmysore.ucp.annotation.UCPBusiness;
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import io.github.vishalmysore.ucp.annotation.processor.UCPAnnotationProcessor;
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable registry of the UCP capabilities of this host, built once at startup
+ * from the index generated by {@link UCPAnnotationProcessor} when it covers
+ * every registered action, and otherwise from the {@link UCPCapability} scan
+ * of the registered actions.
+ * Answers, without per-request work, which capability a JSON-RPC method belongs
+ * to, its version and spec, the pre-serialized {@code ucp} block for responses,
+ * and the capability list of the discovery manifest.
+ */
+@Log
+@Component
+public class CapabilityRegistry {
+
+    /**
+     * UCP protocol version written in the {@code ucp} block of responses.
+     */
+    public static final String PROTOCOL_VERSION = "2026-01-11";
+
+    public static final CapabilityDescriptor CHECKOUT = new CapabilityDescriptor("dev.ucp.shopping.checkout",
+            "2026-01-11", "https://ucp.dev/specification/checkout",
+            "https://ucp.dev/schemas/shopping/checkout.json", null);
+    public static final CapabilityDescriptor ORDER = new CapabilityDescriptor("dev.ucp.shopping.order",
+            "2026-01-11", "https://ucp.dev/specification/order",
+            "https://ucp.dev/schemas/shopping/order.json", null);
+    public static final CapabilityDescriptor IDENTITY_LINKING = new CapabilityDescriptor(
+            "dev.ucp.common.identity_linking", "2026-01-11", "https://ucp.dev/specification/identity-linking",
+            "https://ucp.dev/schemas/common/identity_linking.json", null);
+
+    private static final Pattern VERSION_FORMAT = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}$");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<String, MethodCapabilities> UCP_AWARE_METHODS = ucpAwareMethods();
+
+    private final UCPBusiness business;
+    private final Map<String, CapabilityDescriptor> capabilities;
+    private final Map<String, MethodCapabilities> methods;
+    private final List<Map<String, Object>> manifestCapabilities;
+    private final List<UCPCapability> declaredCapabilities;
+
+    @Autowired
+    public CapabilityRegistry() {
+        this(loadIndexOrScan());
+    }
+
+    /**
+     * Registry built by scanning registered actions, for hosts compiled without the annotation processor.
+     */
+    public CapabilityRegistry(Map<String, AIAction> predictions) {
+        this(scan(predictions));
+    }
+
+    /**
+     * Registry built from the index generated at compile time; no classes are scanned.
+     */
+    public CapabilityRegistry(CapabilityIndex index) {
+        this(fromIndex(index));
+    }
+
+    private CapabilityRegistry(Contents contents) {
+        if (contents.business != null) {
+            log.info("UCP Identity Initialized: " + contents.business.name());
+            if (contents.ucpAware != null) {
+                log.info("UCPAware Implementation: " + contents.ucpAware);
+                contents.declared.put(CHECKOUT.getName(), CHECKOUT);
+                contents.declared.put(ORDER.getName(), ORDER);
+                contents.declared.put(IDENTITY_LINKING.getName(), IDENTITY_LINKING);
+            }
+            log.info("Registered Capabilities: " + contents.logEntries);
+        }
+
+        List<Map<String, Object>> manifestEntries = new ArrayList<>(contents.declared.size());
+        List<UCPCapability> declared = new ArrayList<>(contents.declared.size());
+        for (CapabilityDescriptor descriptor : contents.declared.values()) {
+            manifestEntries.add(descriptor.getManifestEntry());
+            declared.add(descriptor.toCapability());
+        }
+        this.business = contents.business;
+        this.capabilities = Collections.unmodifiableMap(contents.declared);
+        this.methods = Collections.unmodifiableMap(contents.byMethod);
+        this.manifestCapabilities = Collections.unmodifiableList(manifestEntries);
+        this.declaredCapabilities = Collections.unmodifiableList(declared);
+    }
+
+    private static Contents loadIndexOrScan() {
+        Map<String, AIAction> predictions = PredictionLoader.getInstance().getPredictions();
+        CapabilityIndex index = CapabilityIndex.load(ClassUtils.getDefaultClassLoader());
+        if (index != null) {
+            AIAction uncovered = index.uncovered(predictions.values());
+            if (uncovered == null) {
+                log.info("Loading UCP capabilities from " + UCPAnnotationProcessor.INDEX_LOCATION);
+                return fromIndex(index);
+            }
+            log.info(UCPAnnotationProcessor.INDEX_LOCATION + " does not cover action " + uncovered.getActionName()
+                    + "; scanning registered actions");
+        }
+        return scan(predictions);
+    }
+
+    private static Contents fromIndex(CapabilityIndex index) {
+        Contents contents = new Contents();
+        if (index.getBusinessClass() != null) {
+            try {
+                Class<?> businessClass = ClassUtils.forName(index.getBusinessClass(), ClassUtils.getDefaultClassLoader());
+                contents.business = businessClass.getAnnotation(UCPBusiness.class);
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new IllegalStateException("Indexed @UCPBusiness class not found: " + index.getBusinessClass(), e);
+            }
+        }
+        // Versions, the RestController rule and unique action names were checked by the annotation processor;
+        // methods are keyed by action name, as the scan keys them
+        for (CapabilityIndex.MethodEntry method : index.getMethods()) {
+            MethodCapabilities previous = contents.byMethod.put(method.getActionName(),
+                    new MethodCapabilities(method.getCapabilities()));
+            if (previous != null) {
+                // Only possible across jars, each indexed on its own
+                throw new IllegalStateException("UCP Violation: Action " + method.getActionName()
+                        + " is indexed more than once. Each action name must be unique.");
+            }
+            for (CapabilityDescriptor descriptor : method.getCapabilities()) {
+                contents.declare(descriptor);
+                contents.logEntries.add(descriptor.getName() + " -> " + method.getActionName());
+            }
+        }
+        if (!index.getUcpAwareClasses().isEmpty()) {
+            contents.ucpAware = index.getUcpAwareClasses().get(0);
+            for (Map.Entry<String, MethodCapabilities> standard : UCP_AWARE_METHODS.entrySet()) {
+                contents.byMethod.putIfAbsent(standard.getKey(), standard.getValue());
+            }
+        }
+        return contents;
+    }
+
+    private static Contents scan(Map<String, AIAction> predictions) {
+        Contents contents = new Contents();
+        Set<Class<?>> distinctBusinesses = new HashSet<>();
+        Set<Class<?>> ucpAwareImplementations = new HashSet<>();
+        boolean ucpStandardRegistered = false;
+
+        for (Map.Entry<String, AIAction> prediction : predictions.entrySet()) {
+            AIAction action = prediction.getValue();
+            if (!(action instanceof GenericJavaMethodAction)) {
+                continue;
+            }
+            Method method = ((GenericJavaMethodAction) action).getActionMethod();
+            Class<?> clazz = method.getDeclaringClass();
+
+            // 1. Detect the Business (Header Identity)
+            if (clazz.isAnnotationPresent(UCPBusiness.class)) {
+                distinctBusinesses.add(clazz);
+                contents.business = clazz.getAnnotation(UCPBusiness.class);
+            }
+
+            // 2. Check for UCPAware implementation
+            if (!ucpStandardRegistered && UCPAware.class.isAssignableFrom(clazz)) {
+                ucpAwareImplementations.add(clazz);
+                ucpStandardRegistered = true;
+            }
+
+            // 3. Capabilities declared on the method itself are advertised in the manifest
+            for (UCPCapability cap : method.getAnnotationsByType(UCPCapability.class)) {
+                contents.declare(validate(cap, clazz));
+                contents.logEntries.add(cap.name() + " -> " + method.getName());
+            }
+
+            // 4. Method lookup also sees capabilities inherited from interfaces such as UCPAware
+            MethodCapabilities inherited = capabilitiesOf(method);
+            if (inherited != null) {
+                contents.byMethod.put(prediction.getKey(), inherited);
+            }
+        }
+
+        // Enforcement: UCP 2026 requires a single Merchant of Record per host
+        if (distinctBusinesses.size() > 1) {
+            throw new IllegalStateException("UCP Violation: Multiple businesses found: " + distinctBusinesses
+                    + ". Each host must represent exactly one merchant.");
+        }
+
+        // Enforcement: Only one UCPAware implementation per host
+        if (ucpAwareImplementations.size() > 1) {
+            throw new IllegalStateException(
+                    "UCP Violation: Multiple UCPAware implementations found: " + ucpAwareImplementations
+                            + ". Each host must implement exactly one UCPAware.");
+        }
+        if (!ucpAwareImplementations.isEmpty()) {
+            contents.ucpAware = ucpAwareImplementations.iterator().next().getSimpleName();
+        }
+        return contents;
+    }
+
+    private static MethodCapabilities capabilitiesOf(Method method) {
+        Set<UCPCapability> annotations = AnnotatedElementUtils.findMergedRepeatableAnnotations(method,
+                UCPCapability.class);
+        if (annotations.isEmpty()) {
+            return null;
+        }
+        List<CapabilityDescriptor> descriptors = new ArrayList<>(annotations.size());
+        for (UCPCapability cap : annotations) {
+            descriptors.add(CapabilityDescriptor.of(cap));
+        }
+        return new MethodCapabilities(descriptors);
+    }
+
+    private static Map<String, MethodCapabilities> ucpAwareMethods() {
+        Map<String, MethodCapabilities> standard = new HashMap<>();
+        for (Method method : UCPAware.class.getMethods()) {
+            MethodCapabilities declared = capabilitiesOf(method);
+            if (declared != null) {
+                standard.put(method.getName(), declared);
+            }
+        }
+        return Collections.unmodifiableMap(standard);
+    }
+
+    private static CapabilityDescriptor validate(UCPCapability cap, Class<?> clazz) {
+        // Validate version format
+        if (!VERSION_FORMAT.matcher(cap.version()).matches()) {
+            throw new IllegalStateException(
+                    "Invalid capability version format: " + cap.version() + ". Must be YYYY-MM-DD");
+        }
+        // Enforcement: Agents must be RestControllers to support mandatory REST transport
+        if (!clazz.isAnnotationPresent(RestController.class)) {
+            throw new IllegalStateException("UCP Violation: Agent " + clazz.getSimpleName()
+                    + " must be annotated with @RestController to support REST transport.");
+        }
+        return CapabilityDescriptor.of(cap);
+    }
+
+    /**
+     * The detected {@link UCPBusiness}, or null if no business is declared.
+     */
+    public UCPBusiness getBusiness() {
+        return business;
+    }
+
+    /**
+     * Capability by its reverse-DNS name, or null if not advertised by this host.
+     */
+    public CapabilityDescriptor getCapability(String capabilityName) {
+        return capabilities.get(capabilityName);
+    }
+
+    /**
+     * Capabilities of a JSON-RPC method (action name), or null if the method declares none.
+     */
+    public MethodCapabilities forMethod(String methodName) {
+        return methods.get(methodName);
+    }
+
+    /**
+     * Capability entries of the discovery manifest, in declaration order.
+     */
+    public List<Map<String, Object>> getManifestCapabilities() {
+        return manifestCapabilities;
+    }
+
+    /**
+     * Capabilities of this host as the business side of negotiation, in declaration
+     * order. Always the same list instance, so negotiation results can be cached.
+     */
+    public List<UCPCapability> getCapabilities() {
+        return declaredCapabilities;
+    }
+
+    /**
+     * Serialize the {@code ucp} block of a response listing the given capabilities.
+     */
+    public static SerializableString metadataBlock(List<Map<String, Object>> capabilityEntries) {
+        Map<String, Object> ucpMeta = new LinkedHashMap<>();
+        ucpMeta.put("version", PROTOCOL_VERSION);
+        ucpMeta.put("capabilities", capabilityEntries);
+        try {
+            return new SerializedString(MAPPER.writeValueAsString(ucpMeta));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize UCP metadata for " + capabilityEntries, e);
+        }
+    }
+
+    /**
+     * What a scan or an index contributes to the registry, before it is frozen.
+     */
+    private static final class Contents {
+        private final Map<String, CapabilityDescriptor> declared = new LinkedHashMap<>();
+        private final Map<String, MethodCapabilities> byMethod = new HashMap<>();
+        private final List<String> logEntries = new ArrayList<>();
+        private UCPBusiness business;
+        private String ucpAware;
+
+        private void declare(CapabilityDescriptor descriptor) {
+            CapabilityDescriptor existing = declared.get(descriptor.getName());
+            if (existing == null || descriptor.isMoreDetailedThan(existing)) {
+                declared.put(descriptor.getName(), descriptor);
+            }
+        }
+    }
+
+    /**
+     * The capabilities a method belongs to, with its response {@code ucp} block serialized once.
+     */
+    public static final class MethodCapabilities {
+        private final List<CapabilityDescriptor> capabilities;
+        private final SerializableString metadataBlock;
+
+        MethodCapabilities(List<CapabilityDescriptor> capabilities) {
+            this.capabilities = Collections.unmodifiableList(capabilities);
+            List<Map<String, Object>> entries = new ArrayList<>(capabilities.size());
+            for (CapabilityDescriptor descriptor : capabilities) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("name", descriptor.getName());
+                entry.put("version", descriptor.getVersion());
+                entries.add(entry);
+            }
+            this.metadataBlock = metadataBlock(entries);
+        }
+
+        public List<CapabilityDescriptor> getCapabilities() {
+            return capabilities;
+        }
+
+        public CapabilityDescriptor getPrimary() {
+            return capabilities.get(0);
+        }
+
+        public SerializableString getMetadataBlock() {
+            return metadataBlock;
+        }
+    }
+}
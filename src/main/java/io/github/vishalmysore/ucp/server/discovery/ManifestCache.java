@@ -0,0 +1,101 @@
+package io.github.vishalmysore.ucp.server.discovery;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized {@code /.well-known/ucp} manifests, one per base URL.
+ * The manifest only depends on the base URL and the immutable capability
+ * registry, so each variant is serialized, hashed and gzipped once and then
+ * served as bytes. Base URLs come from the Host header; past the limit new
+ * ones are built per request instead of being cached.
+ */
+public class ManifestCache {
+
+    private final Function<String, Object> manifestBuilder;
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final Map<String, CachedManifest> manifests = new ConcurrentHashMap<>();
+
+    public ManifestCache(Function<String, Object> manifestBuilder, ObjectMapper objectMapper, int maxEntries) {
+        this.manifestBuilder = manifestBuilder;
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+    }
+
+    public CachedManifest get(String baseUrl) {
+        CachedManifest manifest = manifests.get(baseUrl);
+        if (manifest == null) {
+            manifest = build(baseUrl);
+            if (manifests.size() < maxEntries) {
+                CachedManifest existing = manifests.putIfAbsent(baseUrl, manifest);
+                if (existing != null) {
+                    manifest = existing;
+                }
+            }
+        }
+        return manifest;
+    }
+
+    private CachedManifest build(String baseUrl) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(manifestBuilder.apply(baseUrl));
+            return new CachedManifest(body, gzip(body), DigestUtils.md5DigestAsHex(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize UCP manifest for " + baseUrl, e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * One serialized manifest with its gzip variant and their strong ETags.
+     */
+    public static final class CachedManifest {
+        private final byte[] body;
+        private final byte[] gzipBody;
+        private final String etag;
+        private final String gzipEtag;
+
+        CachedManifest(byte[] body, byte[] gzipBody, String hash) {
+            this.body = body;
+            this.gzipBody = gzipBody;
+            // Each encoding is a different representation, so it gets its own strong ETag
+            this.etag = "\"" + hash + "\"";
+            this.gzipEtag = "\"" + hash + "-gzip\"";
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public byte[] getGzipBody() {
+            return gzipBody;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getGzipEtag() {
+            return gzipEtag;
+        }
+    }
+}
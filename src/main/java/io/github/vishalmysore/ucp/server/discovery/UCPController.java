@@ -1,59 +1,56 @@
 package io.github.vishalmysore.ucp.server.discovery;
 
-import com.t4a.api.AIAction;
-import com.t4a.api.GenericJavaMethodAction;
-import com.t4a.predict.PredictionLoader;
-import com.t4a.processor.AIProcessingException;
-import com.t4a.transform.PromptTransformer;
-import io.github.vishalmysore.a2a.domain.AgentCard;
-import io.github.vishalmysore.a2a.domain.JsonRpcRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.vishalmysore.a2a.server.RealTimeAgentCardController;
-import io.github.vishalmysore.a2a.server.SpringAwareAgentCardController;
-import io.github.vishalmysore.common.server.SpringAwareJSONRpcController;
-import io.github.vishalmysore.mcp.domain.ToolCallRequest;
-import io.github.vishalmysore.ucp.annotation.UCPBusiness;
-import io.github.vishalmysore.ucp.annotation.UCPCapability;
 
-import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.java.Log;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.lang.reflect.Method;
-import java.util.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Log
 @RestController
 @RequestMapping(RealTimeAgentCardController.WELL_KNOWN_PATH)
 public class UCPController {
 
-    private PromptTransformer promptTransformer;
-    private UCPBusiness detectedBusiness;
-    // Map to store discovered capabilities: Key = Capability Name, Value = Metadata
-    // Map
-    private final Map<String, Map<String, Object>> capabilityRegistry = new HashMap<>();
+    private final CapabilityRegistry capabilityRegistry;
+    private final ManifestCache manifestCache;
+    private final CacheControl cacheControl;
 
     @Autowired
-    public UCPController(ApplicationContext context) {
-
+    public UCPController(ApplicationContext context, CapabilityRegistry capabilityRegistry) {
+        this.capabilityRegistry = capabilityRegistry;
+        Environment env = context.getEnvironment();
+        this.manifestCache = new ManifestCache(this::buildManifest, new ObjectMapper(),
+                env.getProperty("ucp.manifest.cache.max-entries", Integer.class, 16));
+        this.cacheControl = CacheControl
+                .maxAge(env.getProperty("ucp.manifest.max-age-seconds", Long.class, 300L), TimeUnit.SECONDS)
+                .cachePublic();
     }
 
     /**
      * The Standard UCP 2026 Manifest Endpoint.
      * Accessible at: {base_url}/.well-known/ucp
+     * Served from pre-serialized bytes with a strong ETag (304 on a matching
+     * If-None-Match), Cache-Control max-age and a precompressed gzip variant.
      */
     @GetMapping(value = "ucp", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Map<String, Object>> getUCPManifest(HttpServletRequest request) {
-        if (detectedBusiness == null) {
+    public ResponseEntity<byte[]> getUCPManifest(HttpServletRequest request) {
+        if (capabilityRegistry.getBusiness() == null) {
             log.warning("Manifest requested but no @UCPBusiness was detected in the classpath.");
             return ResponseEntity.notFound().build();
         }
@@ -63,149 +60,111 @@ public class UCPController {
                 .build()
                 .toUriString();
 
-        Map<String, Object> manifest = new HashMap<>();
-        Map<String, Object> ucpData = new HashMap<>();
+        ManifestCache.CachedManifest manifest = manifestCache.get(baseUrl);
+        boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = gzip ? manifest.getGzipEtag() : manifest.getEtag();
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(manifest.getGzipBody());
+        }
+        return response.body(manifest.getBody());
+    }
+
+    private Map<String, Object> buildManifest(String baseUrl) {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        Map<String, Object> ucpData = new LinkedHashMap<>();
 
         ucpData.put("version", "2026-01-19"); // Current Protocol Version
         // Remove merchant_name - not part of UCP spec
 
         // Define the main Shopping service
-        Map<String, Object> serviceDetails = new HashMap<>();
+        Map<String, Object> serviceDetails = new LinkedHashMap<>();
         serviceDetails.put("version", "2026-01-11");
         serviceDetails.put("spec", "https://ucp.dev/specification/overview"); // Correct URL
 
-        Map<String, Object> restDetails = new HashMap<>();
+        Map<String, Object> restDetails = new LinkedHashMap<>();
         restDetails.put("endpoint", baseUrl + "/ucp/v1");
         restDetails.put("schema", "https://ucp.dev/services/shopping/openapi.json");
 
         serviceDetails.put("rest", restDetails);
 
-        Map<String, Object> mcpDetails = new HashMap<>();
+        Map<String, Object> mcpDetails = new LinkedHashMap<>();
         mcpDetails.put("schema", "https://ucp.dev/services/shopping/mcp.openrpc.json");
         mcpDetails.put("endpoint", baseUrl + "/ucp/mcp");
         serviceDetails.put("mcp", mcpDetails);
 
-        Map<String, Object> services = new HashMap<>();
+        Map<String, Object> services = new LinkedHashMap<>();
         services.put("dev.ucp.shopping", serviceDetails);
 
         ucpData.put("services", services);
 
         // Populate Capabilities from the Registry
-        List<Map<String, Object>> capabilityList = new ArrayList<>(capabilityRegistry.values());
-        ucpData.put("capabilities", capabilityList);
+        ucpData.put("capabilities", capabilityRegistry.getManifestCapabilities());
 
         manifest.put("ucp", ucpData);
-        return ResponseEntity.ok(manifest);
+        return manifest;
     }
 
-    @PostConstruct
-    public void init() {
-        this.promptTransformer = PredictionLoader.getInstance().createOrGetPromptTransformer();
-        Map<String, AIAction> predictions = PredictionLoader.getInstance().getPredictions();
-
-        Set<Class<?>> distinctBusinesses = new HashSet<>();
-        Set<Class<?>> ucpAwareImplementations = new HashSet<>();
-        List<String> capabilityLogEntries = new ArrayList<>();
-        boolean ucpStandardRegistered = false;
-
-        for (AIAction action : predictions.values()) {
-            if (action instanceof GenericJavaMethodAction) {
-                Method method = ((GenericJavaMethodAction) action).getActionMethod();
-                Class<?> clazz = method.getDeclaringClass();
-                String jsonStrForParameters = action.getActionParameters();
-                log.info(jsonStrForParameters);
-                // 1. Detect the Business (Header Identity)
-                if (clazz.isAnnotationPresent(UCPBusiness.class)) {
-                    UCPBusiness business = clazz.getAnnotation(UCPBusiness.class);
-                    distinctBusinesses.add(clazz);
-                    this.detectedBusiness = business;
-                }
-
-                // 2. Check for UCPAware implementation
-                if ((!ucpStandardRegistered) && (io.github.vishalmysore.ucp.domain.discovery.UCPAware.class.isAssignableFrom(clazz))) {
-                    ucpAwareImplementations.add(clazz);
-                    ucpStandardRegistered= true;
-                }
-
-                // 3. Scan Methods for UCP Capabilities
-                if (method.isAnnotationPresent(UCPCapability.class)) {
-                    UCPCapability cap = method.getAnnotation(UCPCapability.class);
-
-                    // Validate version format
-                    if (!cap.version().matches("^\\d{4}-\\d{2}-\\d{2}$")) {
-                        throw new IllegalStateException(
-                                "Invalid capability version format: " + cap.version() +
-                                        ". Must be YYYY-MM-DD");
-                    }
-
-                    Map<String, Object> capDetails = new HashMap<>();
-                    capDetails.put("name", cap.name());
-                    capDetails.put("version", cap.version());
-                    if (!cap.spec().isEmpty())
-                        capDetails.put("spec", cap.spec());
-                    if (!cap.schema().isEmpty())
-                        capDetails.put("schema", cap.schema());
-                    // Enforcement: Agents must be RestControllers to support mandatory REST
-                    // transport
-                    if (!clazz.isAnnotationPresent(RestController.class)) {
-                        throw new IllegalStateException("UCP Violation: Agent " + clazz.getSimpleName()
-                                + " must be annotated with @RestController to support REST transport.");
-                    }
-
-                    capabilityRegistry.put(cap.name(), capDetails);
-                    capabilityLogEntries.add(cap.name() + " -> " + method.getName());
-                }
-            }
+    /**
+     * True if an If-None-Match header lists the ETag (weak comparison, as RFC 9110 requires for GET).
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
         }
-
-        // Enforcement: UCP 2026 requires a single Merchant of Record per host
-        if (distinctBusinesses.size() > 1) {
-            throw new IllegalStateException("UCP Violation: Multiple businesses found: " + distinctBusinesses
-                    + ". Each host must represent exactly one merchant.");
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        // Enforcement: Only one UCPAware implementation per host
-        if (ucpAwareImplementations.size() > 1) {
-            throw new IllegalStateException(
-                    "UCP Violation: Multiple UCPAware implementations found: " + ucpAwareImplementations
-                            + ". Each host must implement exactly one UCPAware.");
+    /**
+     * True if an Accept-Encoding header accepts gzip with a non-zero quality.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
         }
-
-        if (detectedBusiness != null) {
-            log.info("UCP Identity Initialized: " + detectedBusiness.name());
-            if (!ucpAwareImplementations.isEmpty()) {
-                log.info("UCPAware Implementation: " + ucpAwareImplementations.iterator().next().getSimpleName());
-                registerStandardCapabilities();
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
             }
-            log.info("Registered Capabilities: " + capabilityLogEntries);
-
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
         }
-    }
-
-    private void registerStandardCapabilities() {
-        // Checkout
-        Map<String, Object> checkout = new HashMap<>();
-        checkout.put("name", "dev.ucp.shopping.checkout");
-        checkout.put("version", "2026-01-11");
-        checkout.put("spec", "https://ucp.dev/specification/checkout");
-        checkout.put("schema", "https://ucp.dev/schemas/shopping/checkout.json");
-        capabilityRegistry.put("dev.ucp.shopping.checkout", checkout);
-
-        // Order
-        Map<String, Object> order = new HashMap<>();
-        order.put("name", "dev.ucp.shopping.order");
-        order.put("version", "2026-01-11");
-        order.put("spec", "https://ucp.dev/specification/order");
-        order.put("schema", "https://ucp.dev/schemas/shopping/order.json");
-        capabilityRegistry.put("dev.ucp.shopping.order", order);
-
-        // Identity Linking
-        Map<String, Object> identity = new HashMap<>();
-        identity.put("name", "dev.ucp.common.identity_linking");
-        identity.put("version", "2026-01-11");
-        identity.put("spec", "https://ucp.dev/specification/identity-linking");
-        identity.put("schema", "https://ucp.dev/schemas/common/identity_linking.json");
-        capabilityRegistry.put("dev.ucp.common.identity_linking", identity);
+        return false;
     }
 
 }
\ No newline at end of file
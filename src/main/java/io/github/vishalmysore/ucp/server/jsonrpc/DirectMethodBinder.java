@@ -0,0 +1,244 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.t4a.api.AIAction;
+import com.t4a.api.GenericJavaMethodAction;
+import com.t4a.detect.ActionCallback;
+import com.t4a.detect.ActionState;
+import lombok.extern.java.Log;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deterministic fast path for JSON-RPC tool calls.
+ * Each {@link GenericJavaMethodAction} is analysed once: its parameter names and
+ * types are recorded and the method is compiled to a {@link MethodHandle}. When
+ * the JSON-RPC params name exactly the method's parameters and every value can be
+ * converted to the declared type, the method is invoked directly; otherwise the
+ * caller falls back to the AI processor.
+ */
+@Log
+public class DirectMethodBinder {
+
+    /**
+     * Returned by {@link BoundMethod#invoke} when there is no instance to call.
+     */
+    public static final Object NO_TARGET = new Object();
+
+    private static final Object NO_MATCH = new Object();
+    private static final MethodType INVOKER_TYPE =
+            MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private final ApplicationContext context;
+    private final ObjectMapper objectMapper;
+    private final Map<String, BoundMethod> bindings = new ConcurrentHashMap<>();
+
+    public DirectMethodBinder(ApplicationContext context, ObjectMapper objectMapper) {
+        this.context = context;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Analyse all actions up front so the first call does not pay for it.
+     */
+    public void registerAll(Map<String, AIAction> actions) {
+        for (Map.Entry<String, AIAction> entry : actions.entrySet()) {
+            lookup(entry.getKey(), entry.getValue());
+        }
+        log.info("Direct dispatch available for " + bindings.values().stream()
+                .filter(BoundMethod::isBindable).count() + " of " + actions.size() + " actions");
+    }
+
+    /**
+     * Get the binding for an action, analysing it on first use.
+     * @return the binding, or null when the action cannot be invoked directly
+     */
+    public BoundMethod lookup(String name, AIAction action) {
+        if (name == null) {
+            return null;
+        }
+        BoundMethod bound = bindings.get(name);
+        if (bound == null) {
+            if (!(action instanceof GenericJavaMethodAction)) {
+                return null;
+            }
+            bound = bindings.computeIfAbsent(name, key -> analyse(((GenericJavaMethodAction) action).getActionMethod()));
+        }
+        return bound.isBindable() ? bound : null;
+    }
+
+    private BoundMethod analyse(Method method) {
+        Parameter[] parameters = method.getParameters();
+        String[] names = new String[parameters.length];
+        JavaType[] types = new JavaType[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            if (!parameters[i].isNamePresent()) {
+                // Without -parameters the names are arg0, arg1...; never bind on those
+                return BoundMethod.UNBINDABLE;
+            }
+            names[i] = parameters[i].getName();
+            types[i] = objectMapper.getTypeFactory().constructType(parameters[i].getParameterizedType());
+        }
+
+        try {
+            if (!Modifier.isPublic(method.getModifiers())
+                    || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                method.setAccessible(true);
+            }
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            handle = handle.asSpreader(Object[].class, parameters.length).asType(INVOKER_TYPE);
+            return new BoundMethod(this, method, names, types, handle);
+        } catch (IllegalAccessException | RuntimeException e) {
+            log.warning("Direct dispatch disabled for " + method + ": " + e.getMessage());
+            return BoundMethod.UNBINDABLE;
+        }
+    }
+
+    private Object resolveTarget(Method method) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            return null;
+        }
+        try {
+            return context.getBean(method.getDeclaringClass());
+        } catch (BeansException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A method analysed for direct invocation.
+     */
+    public static final class BoundMethod {
+
+        static final BoundMethod UNBINDABLE = new BoundMethod(null, null, new String[0], new JavaType[0], null);
+
+        private final DirectMethodBinder binder;
+        private final Method method;
+        private final String[] names;
+        private final JavaType[] types;
+        private final Map<String, Integer> positions;
+        private final MethodHandle invoker;
+        private volatile Object target;
+
+        private BoundMethod(DirectMethodBinder binder, Method method, String[] names, JavaType[] types,
+                            MethodHandle invoker) {
+            this.binder = binder;
+            this.method = method;
+            this.names = names;
+            this.types = types;
+            this.invoker = invoker;
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                index.put(names[i], i);
+            }
+            this.positions = Collections.unmodifiableMap(index);
+        }
+
+        boolean isBindable() {
+            return invoker != null;
+        }
+
+        /**
+         * Bind JSON-RPC params onto the method parameters.
+         * @return the argument array, or null if the params are not an exact match
+         */
+        public Object[] bind(Map<String, Object> params) {
+            Map<String, Object> source = params != null ? params : Collections.emptyMap();
+            if (source.size() != names.length) {
+                return null;
+            }
+            Object[] args = new Object[names.length];
+            for (Map.Entry<String, Object> entry : source.entrySet()) {
+                Integer position = positions.get(entry.getKey());
+                if (position == null) {
+                    return null;
+                }
+                Object value = convert(entry.getValue(), types[position]);
+                if (value == NO_MATCH) {
+                    return null;
+                }
+                args[position] = value;
+            }
+            return args;
+        }
+
+        private Object convert(Object value, JavaType type) {
+            Class<?> raw = type.getRawClass();
+            if (value == null) {
+                return raw.isPrimitive() ? NO_MATCH : null;
+            }
+            if (raw.isInstance(value) && !type.isContainerType()) {
+                return value;
+            }
+            if (type.isMapLikeType() && value instanceof Map && Object.class == type.getContentType().getRawClass()) {
+                return value;
+            }
+            if (raw == String.class && !(value instanceof CharSequence)) {
+                // Non-string values for String parameters are left to the AI processor
+                return NO_MATCH;
+            }
+            try {
+                return binder.objectMapper.convertValue(value, type);
+            } catch (IllegalArgumentException e) {
+                return NO_MATCH;
+            }
+        }
+
+        /**
+         * Invoke the method with bound arguments.
+         * @return the method result, or {@link #NO_TARGET} if no bean could be resolved
+         */
+        public Object invoke(Object[] args) throws Throwable {
+            return invoke(args, null);
+        }
+
+        /**
+         * Invoke the method with bound arguments, reporting the call to the callback
+         * as working, then completed or failed, as the AI processor would.
+         * Nothing is reported when {@link #NO_TARGET} is returned.
+         * @return the method result, or {@link #NO_TARGET} if no bean could be resolved
+         */
+        public Object invoke(Object[] args, ActionCallback callback) throws Throwable {
+            Object receiver = target;
+            if (receiver == null && !Modifier.isStatic(method.getModifiers())) {
+                receiver = binder.resolveTarget(method);
+                if (receiver == null) {
+                    return NO_TARGET;
+                }
+                target = receiver;
+            }
+            String name = method.getName();
+            status(callback, "Invoking " + name, ActionState.WORKING);
+            Object result;
+            try {
+                result = (Object) invoker.invokeExact(receiver, args);
+            } catch (Throwable t) {
+                status(callback, name + " failed", ActionState.FAILED);
+                throw t;
+            }
+            status(callback, name + " completed", ActionState.COMPLETED);
+            return result;
+        }
+
+        private static void status(ActionCallback callback, String status, ActionState state) {
+            if (callback != null) {
+                callback.sendtStatus(status, state);
+            }
+        }
+    }
+}
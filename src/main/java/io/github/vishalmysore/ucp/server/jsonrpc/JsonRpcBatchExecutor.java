@@ -0,0 +1,87 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs the entries of a JSON-RPC 2.0 batch concurrently on a bounded pool.
+ * The calling thread executes the first entry itself, and runs any entry the
+ * pool cannot accept, so a saturated pool degrades to sequential execution
+ * instead of growing without limit. Results keep the order of the batch.
+ */
+public class JsonRpcBatchExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final int maxBatchSize;
+
+    public JsonRpcBatchExecutor(int threads, int queueDepth, int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueDepth), new BatchThreadFactory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Execute all calls and return their results in batch order.
+     * A call that throws yields the value produced by {@code onError} for that entry.
+     */
+    public <T> List<T> executeAll(List<Supplier<T>> calls, Function<Throwable, T> onError) {
+        int size = calls.size();
+        if (size == 0) {
+            return new ArrayList<>();
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(size);
+        futures.add(null);
+        for (int i = 1; i < size; i++) {
+            futures.add(CompletableFuture.supplyAsync(calls.get(i), executor));
+        }
+
+        List<T> results = new ArrayList<>(size);
+        results.add(runInline(calls.get(0), onError));
+        for (int i = 1; i < size; i++) {
+            try {
+                results.add(futures.get(i).join());
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                results.add(onError.apply(cause));
+            }
+        }
+        return results;
+    }
+
+    private <T> T runInline(Supplier<T> call, Function<Throwable, T> onError) {
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            return onError.apply(e);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class BatchThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ucp-rpc-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
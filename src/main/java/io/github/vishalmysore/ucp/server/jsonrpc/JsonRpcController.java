@@ -1,5 +1,6 @@
 package io.github.vishalmysore.ucp.server.jsonrpc;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.t4a.api.AIAction;
@@ -14,43 +15,293 @@ import io.github.vishalmysore.mcp.domain.Content;
 import io.github.vishalmysore.mcp.domain.TextContent;
 import io.github.vishalmysore.mcp.domain.ToolCallRequest;
 import io.github.vishalmysore.ucp.domain.SimpleUCPResult;
+import io.github.vishalmysore.ucp.domain.StructuredUCPResult;
 import io.github.vishalmysore.ucp.domain.UCPCallback;
 import io.github.vishalmysore.ucp.domain.UCPResult;
+import io.github.vishalmysore.ucp.negotiation.NegotiatedContext;
+import io.github.vishalmysore.ucp.server.async.CapabilityBulkheads;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityDescriptor;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 import lombok.extern.java.Log;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 /**
- * JSON-RPC controller for MCP and A2A transport bindings.
+ * JSON-RPC controller for MCP and A2A transport bindings. Methods that belong
+ * to capabilities are only called when one of them is in the request's
+ * {@link NegotiatedContext}.
  */
 @RestController
 @Log
 @RequestMapping("/ucp/")
 public class JsonRpcController extends SpringAwareJSONRpcController {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int INVALID_REQUEST = -32600;
+    private static final int INTERNAL_ERROR = -32603;
+    private static final int CAPABILITY_NOT_NEGOTIATED = -32001;
+    private static final int SERVER_BUSY = -32002;
+    private static final String BATCH_OPERATION = "jsonrpc-batch";
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     private AIProcessor baseProcessor = new GeminiV2ActionProcessor();
+    private final JsonRpcBatchExecutor batchExecutor;
+    private final JsonRpcStreamExecutor streamExecutor;
+    private final DirectMethodBinder directBinder;
+    private final UcpResponseShaper responseShaper;
+    private final CapabilityRegistry registry;
+
+    @Autowired(required = false)
+    private CapabilityBulkheads bulkheads;
 
     @Autowired
-    public JsonRpcController(ApplicationContext context) {
+    public JsonRpcController(ApplicationContext context, ObjectProvider<CapabilityRegistry> registry) {
         super(context);
         baseProcessor = PredictionLoader.getInstance().createOrGetAIProcessor();
+        this.registry = registry.getIfAvailable();
+        responseShaper = new UcpResponseShaper(this.registry);
+        directBinder = new DirectMethodBinder(context, objectMapper);
+        Environment env = context.getEnvironment();
+        batchExecutor = new JsonRpcBatchExecutor(
+                env.getProperty("ucp.jsonrpc.batch.threads", Integer.class, 8),
+                env.getProperty("ucp.jsonrpc.batch.queue-depth", Integer.class, 64),
+                env.getProperty("ucp.jsonrpc.batch.max-size", Integer.class, 32));
+        streamExecutor = new JsonRpcStreamExecutor(
+                env.getProperty("ucp.jsonrpc.stream.threads", Integer.class, 16),
+                env.getProperty("ucp.jsonrpc.stream.queue-depth", Integer.class, 32),
+                env.getProperty("ucp.jsonrpc.stream.buffer-size", Integer.class, 64),
+                env.getProperty("ucp.jsonrpc.stream.timeout-ms", Long.class, 300000L),
+                context.getBeanProvider(ObjectMapper.class).getIfAvailable(() -> objectMapper));
     }
 
+    /**
+     * Entry point for the MCP binding. Accepts a single JSON-RPC request or a
+     * JSON-RPC 2.0 batch array; batch entries run concurrently and the responses
+     * are returned as one array in request order. With async execution enabled
+     * the call runs on the method's bulkhead and the servlet thread is released.
+     * A batch is run from its own bulkhead, and each entry then waits on the
+     * bulkhead of its method, so a batch takes no more of a method's threads
+     * than single calls do; an entry whose bulkhead is full or times out gets
+     * a server busy error.
+     */
     @PostMapping("mcp")
+    public Object handleMcp(@RequestBody JsonNode payload, HttpServletRequest httpRequest) {
+        // Read here: the request must not be touched from bulkhead threads once this returns
+        NegotiatedContext negotiated = negotiatedContext(httpRequest);
+        if (payload != null && payload.isArray()) {
+            return execute(BATCH_OPERATION, null, () -> handleBatch(payload, negotiated));
+        }
+        JsonRpcRequest request = toRequest(payload);
+        if (request == null) {
+            return errorResponse(null, INVALID_REQUEST, "Invalid Request");
+        }
+        return execute(request.getMethod(), request.getId(), () -> handleRpc(request, negotiated));
+    }
+
+    /**
+     * Server-Sent Events variant of the MCP binding for long-running capabilities.
+     * Streams {@code status} events for ActionState transitions and {@code partial}
+     * events for partial results while the call runs, then a {@code result} event
+     * carrying the JSON-RPC response. Each stream buffers a bounded number of
+     * progress events and is written without blocking; a client that falls
+     * behind loses the oldest ones, never the result.
+     */
+    @PostMapping(value = "mcp/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public void streamMcp(@RequestBody JsonNode payload, HttpServletRequest httpRequest,
+                          HttpServletResponse httpResponse) throws IOException {
+        SseProgressStream stream = streamExecutor.open();
+        JsonRpcRequest request = toRequest(payload);
+        if (request == null) {
+            stream.complete(errorResponse(null, INVALID_REQUEST, "Invalid Request"));
+            streamExecutor.start(stream, httpRequest, httpResponse);
+            return;
+        }
+        JsonRpcResponseBody notNegotiated = checkNegotiated(request, negotiatedContext(httpRequest));
+        if (notNegotiated != null) {
+            stream.complete(notNegotiated);
+            streamExecutor.start(stream, httpRequest, httpResponse);
+            return;
+        }
+        UCPCallback callback = new UCPCallback(stream);
+        try {
+            streamExecutor.submit(() -> {
+                Object response;
+                try {
+                    response = invoke(request, callback);
+                } catch (RuntimeException e) {
+                    log.severe("Streaming call " + request.getMethod() + " failed: " + e);
+                    response = errorResponse(request.getId(), INTERNAL_ERROR, "Internal error");
+                }
+                stream.complete(response);
+            });
+        } catch (RejectedExecutionException e) {
+            httpResponse.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            httpResponse.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return;
+        }
+        streamExecutor.start(stream, httpRequest, httpResponse);
+    }
+
+    /**
+     * Run on the capability's bulkhead when async execution is enabled, otherwise inline.
+     * A full bulkhead or a timeout is answered with a JSON-RPC error for the request id.
+     */
+    private Object execute(String operation, Object id, Supplier<Object> call) {
+        if (bulkheads == null || !bulkheads.isEnabled()) {
+            return call.get();
+        }
+        return bulkheads.execute(BATCH_OPERATION.equals(operation) ? operation : bulkheadKey(operation), call,
+                (status, message) -> errorResponse(id, SERVER_BUSY, "Server busy: " + message));
+    }
+
+    /**
+     * Run a batch entry on its method's bulkhead, from a batch thread, when
+     * async execution is enabled, otherwise inline.
+     */
+    private Object executeEntry(JsonRpcRequest request, NegotiatedContext negotiated) {
+        if (bulkheads == null || !bulkheads.isEnabled()) {
+            return handleRpc(request, negotiated);
+        }
+        try {
+            return bulkheads.call(bulkheadKey(request.getMethod()), () -> handleRpc(request, negotiated));
+        } catch (RejectedExecutionException e) {
+            return errorResponse(request.getId(), SERVER_BUSY,
+                    "Server busy: " + request.getMethod() + " is at capacity");
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof TimeoutException)) {
+                throw e;
+            }
+            return errorResponse(request.getId(), SERVER_BUSY,
+                    "Server busy: " + request.getMethod() + " did not complete in time");
+        }
+    }
+
+    private static String bulkheadKey(String method) {
+        // Unknown method names share one bulkhead instead of creating one each
+        return PredictionLoader.getInstance().getPredictions().containsKey(method)
+                ? method : CapabilityBulkheads.SHARED_BULKHEAD;
+    }
+
+    private Object handleBatch(JsonNode batch, NegotiatedContext negotiated) {
+        if (batch.size() == 0) {
+            return errorResponse(null, INVALID_REQUEST, "Invalid Request: empty batch");
+        }
+        if (batch.size() > batchExecutor.getMaxBatchSize()) {
+            return errorResponse(null, INVALID_REQUEST,
+                    "Invalid Request: batch exceeds " + batchExecutor.getMaxBatchSize() + " entries");
+        }
+
+        List<Supplier<Object>> calls = new ArrayList<>(batch.size());
+        List<Boolean> notifications = new ArrayList<>(batch.size());
+        for (JsonNode entry : batch) {
+            JsonRpcRequest request = toRequest(entry);
+            if (request == null) {
+                calls.add(() -> errorResponse(null, INVALID_REQUEST, "Invalid Request"));
+                notifications.add(false);
+            } else {
+                calls.add(() -> executeEntry(request, negotiated));
+                notifications.add(!entry.has("id"));
+            }
+        }
+
+        List<Object> results = batchExecutor.executeAll(calls, e -> {
+            log.severe("Batch entry failed: " + e);
+            return errorResponse(null, INTERNAL_ERROR, "Internal error");
+        });
+
+        // Notifications get no response object; a batch of only notifications gets no body
+        List<Object> responses = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            if (!notifications.get(i)) {
+                responses.add(results.get(i));
+            }
+        }
+        if (responses.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        return responses;
+    }
+
+    private JsonRpcRequest toRequest(JsonNode node) {
+        if (node == null || !node.isObject() || !node.path("method").isTextual()) {
+            return null;
+        }
+        try {
+            return objectMapper.treeToValue(node, JsonRpcRequest.class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private JsonRpcResponseBody errorResponse(Object id, int code, String message) {
+        return JsonRpcResponseBody.error(id, code, message);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdown();
+        streamExecutor.shutdown();
+    }
+
     @Override
-    public Object handleRpc(@RequestBody JsonRpcRequest request, HttpServletRequest httpRequest) {
+    public Object handleRpc(JsonRpcRequest request, HttpServletRequest httpRequest) {
+        return handleRpc(request, negotiatedContext(httpRequest));
+    }
+
+    private Object handleRpc(JsonRpcRequest request, NegotiatedContext negotiated) {
+        JsonRpcResponseBody notNegotiated = checkNegotiated(request, negotiated);
+        return notNegotiated != null ? notNegotiated : invoke(request, new UCPCallback());
+    }
+
+    private static NegotiatedContext negotiatedContext(HttpServletRequest httpRequest) {
+        return httpRequest != null
+                ? (NegotiatedContext) httpRequest.getAttribute(NegotiatedContext.REQUEST_ATTRIBUTE) : null;
+    }
+
+    /**
+     * Error response if none of the method's capabilities was negotiated for the request, else null.
+     */
+    private JsonRpcResponseBody checkNegotiated(JsonRpcRequest request, NegotiatedContext context) {
+        CapabilityRegistry.MethodCapabilities declared = context != null && registry != null
+                ? registry.forMethod(request.getMethod()) : null;
+        if (declared == null) {
+            return null;
+        }
+        for (CapabilityDescriptor capability : declared.getCapabilities()) {
+            if (context.supports(capability.getName())) {
+                return null;
+            }
+        }
+        return errorResponse(request.getId(), CAPABILITY_NOT_NEGOTIATED,
+                declared.getPrimary().getName() + " is not supported by platform profile "
+                        + context.getPlatformProfileUri());
+    }
+
+    private JsonRpcResponseBody invoke(JsonRpcRequest request, UCPCallback callback) {
         // Create ToolCallRequest from UCP Native JSON-RPC request
         ToolCallRequest toolCallRequest = new ToolCallRequest();
 
@@ -66,38 +317,42 @@ public class JsonRpcController extends SpringAwareJSONRpcController {
         }
 
         // Forward to MCP Tools Controller and get raw response
-        Object mcpResponse = callToolWithCallback(toolCallRequest, new UCPCallback());
-
-        // Extract actual data from ResponseEntity if needed
-        Object actualResponse = mcpResponse;
-        if (mcpResponse instanceof ResponseEntity) {
-            actualResponse = ((ResponseEntity<?>) mcpResponse).getBody();
-        }
-
-        // If it's a JSONRPCResponse, extract the result
-        if (actualResponse != null && actualResponse.getClass().getSimpleName().equals("JSONRPCResponse")) {
-            try {
-                java.lang.reflect.Method getResultMethod = actualResponse.getClass().getMethod("getResult");
-                actualResponse = getResultMethod.invoke(actualResponse);
-            } catch (Exception e) {
-                // Fallback: use as is
-            }
-        }
+        Object mcpResponse = callToolWithCallback(toolCallRequest, callback);
 
-        // Wrap in UCP-compliant format
-        Map<String, Object> ucpResult = wrapInUcpFormat(request.getMethod(), actualResponse);
-
-        // Build complete JSON-RPC 2.0 response
-        Map<String, Object> jsonRpcResponse = new HashMap<>();
-        jsonRpcResponse.put("jsonrpc", "2.0");
-        jsonRpcResponse.put("id", request.getId());
-        jsonRpcResponse.put("result", ucpResult);
+        // Wrap in UCP-compliant format; the response is streamed by the Jackson converter
+        UcpEnvelope ucpResult = responseShaper.shape(request.getMethod(), responseShaper.unwrap(mcpResponse));
+        return JsonRpcResponseBody.success(request.getId(), ucpResult);
+    }
 
-        return jsonRpcResponse;
+    /**
+     * Analyse every registered action once so well-formed calls can skip the AI processor.
+     */
+    @PostConstruct
+    public void init() {
+        directBinder.registerAll(PredictionLoader.getInstance().getPredictions());
     }
 
     protected Object processAction(ToolCallRequest request, ActionCallback callback, AIProcessor processor,
             AIAction action) throws AIProcessingException {
+        // Fast path: params that name the method parameters exactly are bound without the AI processor
+        DirectMethodBinder.BoundMethod bound = directBinder.lookup(request.getName(), action);
+        if (bound != null) {
+            Object[] args = bound.bind(request.getArguments());
+            if (args != null) {
+                try {
+                    Object result = bound.invoke(args, callback);
+                    if (result != DirectMethodBinder.NO_TARGET) {
+                        return result;
+                    }
+                } catch (Exception e) {
+                    throw new AIProcessingException(e);
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new AIProcessingException(new Exception(t));
+                }
+            }
+        }
         Object result = processor.processSingleAction(request.toString(), action, new LoggingHumanDecision(),
                 new LogginggExplainDecision(), callback);
         return result;
@@ -116,7 +371,16 @@ public class JsonRpcController extends SpringAwareJSONRpcController {
 
         try {
             callback.setContext(callToolResult);
-            Object result = processAction(request, callback, processor, action);
+            // Capability code reaches its callback through UCPCallback.current()
+            UCPCallback previous = callback instanceof UCPCallback ? UCPCallback.bind((UCPCallback) callback) : null;
+            Object result;
+            try {
+                result = processAction(request, callback, processor, action);
+            } finally {
+                if (callback instanceof UCPCallback) {
+                    UCPCallback.bind(previous);
+                }
+            }
 
             if (result != null) {
                 if (result instanceof UCPResult) {
@@ -126,6 +390,11 @@ public class JsonRpcController extends SpringAwareJSONRpcController {
                     content.add((Content) result);
                 } else {
                     String resultStr = result.toString();
+                    // Legacy structured text is passed on as raw JSON instead of as a message
+                    StructuredUCPResult structured = responseShaper.fromLegacyText(resultStr);
+                    if (structured != null) {
+                        return structured;
+                    }
                     TextContent textContent = new TextContent();
                     textContent.setType("text");
                     textContent.setText(resultStr);
@@ -152,108 +421,12 @@ public class JsonRpcController extends SpringAwareJSONRpcController {
         // Extract text from content and return as UCPResult
         if (!content.isEmpty() && content.get(0) instanceof TextContent) {
             TextContent textContent = (TextContent) content.get(0);
+            StructuredUCPResult structured = responseShaper.fromLegacyText(textContent.getText());
+            if (structured != null) {
+                return structured;
+            }
             return new SimpleUCPResult("message", textContent.getText());
         }
         return new SimpleUCPResult("result", "No content available");
     }
-
-    /**
-     * Wraps MCP tool response in UCP-compliant format with metadata block.
-     */
-    private Map<String, Object> wrapInUcpFormat(String capabilityName, Object mcpResponse) {
-        Map<String, Object> ucpResult = new HashMap<>();
-
-        // Add UCP metadata block
-        Map<String, Object> ucpMeta = new HashMap<>();
-        ucpMeta.put("version", "2026-01-11");
-
-        // Add capability that was invoked
-        Map<String, Object> capability = new HashMap<>();
-        capability.put("name", capabilityName);
-        capability.put("version", "2026-01-19"); // TODO: Get from registry
-        ucpMeta.put("capabilities", new Object[] { capability });
-
-        ucpResult.put("ucp", ucpMeta);
-
-        // Extract business data from MCP response
-
-        // Handle UCPResult directly
-        if (mcpResponse instanceof UCPResult) {
-            UCPResult ucpResultObject = (UCPResult) mcpResponse;
-            Map<String, String> resultData = ucpResultObject.getResult();
-            // Merge all fields from UCPResult into the response
-            if (resultData != null) {
-                resultData.forEach((key, value) -> ucpResult.put(key, value));
-            }
-            return ucpResult;
-        }
-
-        // Handle CallToolResult type
-        if (mcpResponse != null && mcpResponse.getClass().getSimpleName().equals("CallToolResult")) {
-            try {
-                // Get the content list from CallToolResult
-                java.lang.reflect.Method getContentMethod = mcpResponse.getClass().getMethod("getContent");
-                Object contentObj = getContentMethod.invoke(mcpResponse);
-
-                if (contentObj instanceof java.util.List) {
-                    java.util.List<?> contentList = (java.util.List<?>) contentObj;
-                    if (!contentList.isEmpty()) {
-                        Object firstContent = contentList.get(0);
-                        // Extract text from TextContent
-                        if (firstContent != null && firstContent.getClass().getSimpleName().equals("TextContent")) {
-                            java.lang.reflect.Method getTextMethod = firstContent.getClass().getMethod("getText");
-                            Object textObj = getTextMethod.invoke(firstContent);
-                            if (textObj != null) {
-                                String text = textObj.toString();
-                                // Check if this is UCP structured data
-                                if (text.startsWith("__UCP_STRUCTURED_DATA__:")) {
-                                    try {
-                                        String json = text.substring("__UCP_STRUCTURED_DATA__:".length());
-                                        Map<String, Object> structuredData = objectMapper.readValue(json, Map.class);
-                                        // Merge the structured data into ucpResult
-                                        ucpResult.putAll(structuredData);
-                                    } catch (Exception e) {
-                                        // Fallback to regular message
-                                        ucpResult.put("message", text);
-                                    }
-                                } else {
-                                    ucpResult.put("message", text);
-                                }
-                            }
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                // Fallback to toString
-                ucpResult.put("result", mcpResponse.toString());
-            }
-        } else if (mcpResponse instanceof Map) {
-            Map<String, Object> mcpMap = (Map<String, Object>) mcpResponse;
-
-            // If it's an MCP tool response with "content" array, extract the text
-            if (mcpMap.containsKey("content") && mcpMap.get("content") instanceof java.util.List) {
-                java.util.List<?> content = (java.util.List<?>) mcpMap.get("content");
-                if (!content.isEmpty() && content.get(0) instanceof Map) {
-                    Map<String, Object> firstContent = (Map<String, Object>) content.get(0);
-                    if (firstContent.containsKey("text")) {
-                        // For now, just return the text as a simple result
-                        // TODO: Parse structured data from the business logic
-                        ucpResult.put("result", firstContent.get("text"));
-                    }
-                }
-            } else {
-                // If it's already structured data, merge it in
-                for (Map.Entry<String, Object> entry : mcpMap.entrySet()) {
-                    if (!"type".equals(entry.getKey()) && !"textResult".equals(entry.getKey())) {
-                        ucpResult.put(entry.getKey(), entry.getValue());
-                    }
-                }
-            }
-        } else if (mcpResponse != null) {
-            // Fallback: just return as string
-            ucpResult.put("result", mcpResponse.toString());
-        }
-
-        return ucpResult;
-    }
 }
@@ -0,0 +1,94 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+
+/**
+ * A JSON-RPC 2.0 response that writes itself onto the Jackson generator.
+ * Spring's Jackson converter hands it the generator of the servlet output
+ * stream, so the {@code jsonrpc}/{@code id}/{@code result} envelope is streamed
+ * without first being assembled as a map.
+ */
+public final class JsonRpcResponseBody extends JsonSerializable.Base {
+
+    private static final SerializedString JSONRPC = new SerializedString("jsonrpc");
+    private static final SerializedString VERSION = new SerializedString("2.0");
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString RESULT = new SerializedString("result");
+    private static final SerializedString ERROR = new SerializedString("error");
+    private static final SerializedString CODE = new SerializedString("code");
+    private static final SerializedString MESSAGE = new SerializedString("message");
+
+    private final Object id;
+    private final UcpEnvelope result;
+    private final int errorCode;
+    private final String errorMessage;
+
+    private JsonRpcResponseBody(Object id, UcpEnvelope result, int errorCode, String errorMessage) {
+        this.id = id;
+        this.result = result;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    public static JsonRpcResponseBody success(Object id, UcpEnvelope result) {
+        return new JsonRpcResponseBody(id, result, 0, null);
+    }
+
+    public static JsonRpcResponseBody error(Object id, int code, String message) {
+        return new JsonRpcResponseBody(id, null, code, message);
+    }
+
+    public Object getId() {
+        return id;
+    }
+
+    public UcpEnvelope getResult() {
+        return result;
+    }
+
+    public boolean isError() {
+        return result == null;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(JSONRPC);
+        gen.writeString(VERSION);
+        gen.writeFieldName(ID);
+        provider.defaultSerializeValue(id, gen);
+        if (result != null) {
+            gen.writeFieldName(RESULT);
+            result.serialize(gen, provider);
+        } else {
+            gen.writeFieldName(ERROR);
+            gen.writeStartObject();
+            gen.writeFieldName(CODE);
+            gen.writeNumber(errorCode);
+            gen.writeFieldName(MESSAGE);
+            gen.writeString(errorMessage);
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSer)
+            throws IOException {
+        serialize(gen, provider);
+    }
+}
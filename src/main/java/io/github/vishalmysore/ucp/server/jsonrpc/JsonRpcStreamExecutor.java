@@ -0,0 +1,93 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads behind the streaming JSON-RPC endpoint. Capability calls run on a
+ * bounded pool that rejects work when full, so an overloaded server refuses a
+ * stream up front instead of opening one it cannot serve. Events are written
+ * to clients with non-blocking servlet I/O by {@link SseProgressStream}, so no
+ * thread is held by a slow client, and an open stream costs only its buffer
+ * until it ends or times out.
+ */
+public class JsonRpcStreamExecutor {
+
+    private final ThreadPoolExecutor calls;
+    private final ObjectMapper mapper;
+    private final int bufferSize;
+    private final long timeoutMillis;
+
+    public JsonRpcStreamExecutor(int threads, int queueDepth, int bufferSize, long timeoutMillis, ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.calls = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueDepth)), new StreamThreadFactory("ucp-rpc-stream-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.calls.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * A stream that buffers events until it is {@link #start started}.
+     */
+    public SseProgressStream open() {
+        return new SseProgressStream(mapper, bufferSize);
+    }
+
+    /**
+     * Answer the request with the stream: switch it to async, send the
+     * event-stream headers and write the stream's events as the client takes them.
+     */
+    public void start(SseProgressStream stream, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        AsyncContext async = request.isAsyncStarted() ? request.getAsyncContext() : request.startAsync(request, response);
+        async.setTimeout(timeoutMillis);
+        stream.attach(async);
+    }
+
+    /**
+     * Run a capability call on the stream pool.
+     * @throws RejectedExecutionException if the pool and its queue are full
+     */
+    public void submit(Runnable call) {
+        calls.execute(call);
+    }
+
+    public void shutdown() {
+        calls.shutdown();
+    }
+
+    private static final class StreamThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        StreamThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
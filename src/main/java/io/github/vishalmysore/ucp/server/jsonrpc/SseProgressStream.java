@@ -0,0 +1,208 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.t4a.detect.ActionState;
+import io.github.vishalmysore.ucp.domain.UCPCallback;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Forwards the progress of one capability call to a Server-Sent Events stream.
+ * The response is written with non-blocking servlet I/O: an event is written
+ * only while the container reports the output ready, and otherwise waits in a
+ * bounded buffer until the container calls {@link #onWritePossible()}. No
+ * thread ever waits on a client, so a slow client holds only its own buffer.
+ * When the buffer is full the oldest progress event is dropped; the final
+ * {@code result} event is held separately and always written once the client
+ * takes it, unless the stream times out or the client goes away first.
+ *
+ * Event names: {@code status} (state transitions), {@code partial} (partial
+ * results) and {@code result} (the JSON-RPC response, after which the stream ends).
+ */
+@Log
+public class SseProgressStream implements UCPCallback.ProgressListener, WriteListener {
+
+    private static final byte[] INTERNAL_ERROR = ("{\"jsonrpc\":\"2.0\",\"id\":null,"
+            + "\"error\":{\"code\":-32603,\"message\":\"Internal error\"}}").getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper mapper;
+    private final int bufferSize;
+    // Guarded by this
+    private final ArrayDeque<byte[]> events = new ArrayDeque<>();
+    private int dropped;
+    private int sequence;
+    private byte[] result;
+    private boolean resultWritten;
+    private boolean unflushed;
+    private boolean closed;
+    private AsyncContext async;
+    private ServletOutputStream out;
+
+    public SseProgressStream(ObjectMapper mapper, int bufferSize) {
+        this.mapper = mapper;
+        this.bufferSize = Math.max(1, bufferSize);
+    }
+
+    /**
+     * Start writing to the response of an async request. Events offered
+     * before are kept until then.
+     */
+    public synchronized void attach(AsyncContext async) throws IOException {
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                close();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                close();
+                event.getAsyncContext().complete();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                close();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        ServletOutputStream output = async.getResponse().getOutputStream();
+        output.setWriteListener(this);
+        this.async = async;
+        this.out = output;
+        pump();
+    }
+
+    /**
+     * Number of progress events dropped because the client did not keep up.
+     */
+    public synchronized int getDroppedEvents() {
+        return dropped;
+    }
+
+    @Override
+    public void onStatus(String status, ActionState state) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("state", state != null ? state.name() : null);
+        data.put("message", status);
+        offer("status", data);
+    }
+
+    @Override
+    public void onPartialResult(Object partialResult) {
+        offer("partial", partialResult);
+    }
+
+    /**
+     * Deliver the final response and end the stream once pending events are written.
+     */
+    public void complete(Object response) {
+        byte[] data;
+        try {
+            data = mapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            log.severe("Could not write streamed response: " + e);
+            data = INTERNAL_ERROR;
+        }
+        synchronized (this) {
+            if (closed || result != null) {
+                return;
+            }
+            result = event("result", data);
+            pump();
+        }
+    }
+
+    @Override
+    public void onWritePossible() {
+        pump();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        // Client went away; stop writing
+        close();
+    }
+
+    private void offer(String name, Object payload) {
+        byte[] data;
+        try {
+            data = mapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            log.warning("Could not write " + name + " event: " + e);
+            return;
+        }
+        synchronized (this) {
+            if (closed || result != null) {
+                return;
+            }
+            if (events.size() == bufferSize) {
+                events.poll();
+                dropped++;
+            }
+            events.add(event(name, data));
+            pump();
+        }
+    }
+
+    private byte[] event(String name, byte[] data) {
+        // Multi-line JSON (an indenting mapper) is sent as one data line per line
+        String json = new String(data, StandardCharsets.UTF_8).replace("\n", "\ndata:");
+        return ("id:" + (++sequence) + "\nevent:" + name + "\ndata:" + json + "\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write what the output takes without blocking; the container calls
+     * {@link #onWritePossible()} when it takes more.
+     */
+    private synchronized void pump() {
+        if (out == null || closed) {
+            return;
+        }
+        try {
+            while (out.isReady()) {
+                byte[] event = events.poll();
+                if (event == null && result != null && !resultWritten) {
+                    event = result;
+                    resultWritten = true;
+                }
+                if (event != null) {
+                    out.write(event);
+                    unflushed = true;
+                } else if (unflushed) {
+                    unflushed = false;
+                    out.flush();
+                } else {
+                    if (resultWritten) {
+                        closed = true;
+                        async.complete();
+                    }
+                    return;
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; stop writing
+            close();
+        }
+    }
+
+    private synchronized void close() {
+        closed = true;
+        events.clear();
+    }
+}
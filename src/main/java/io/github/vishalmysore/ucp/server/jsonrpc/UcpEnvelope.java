@@ -0,0 +1,112 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The {@code result} object of a UCP JSON-RPC response: the {@code ucp} metadata
+ * block followed by the business fields. The metadata block is written from a
+ * pre-serialized fragment and the business fields are written straight from the
+ * capability's own map, bean or serialized JSON, so no merged tree is built.
+ */
+public final class UcpEnvelope extends JsonSerializable.Base {
+
+    private static final SerializedString UCP = new SerializedString("ucp");
+
+    private final SerializableString ucpFragment;
+    private final Map<?, ?> fields;
+    private final boolean dropMcpKeys;
+    private final Object bean;
+    private final SerializableString rawFields;
+
+    private UcpEnvelope(SerializableString ucpFragment, Map<?, ?> fields, boolean dropMcpKeys, Object bean,
+                        SerializableString rawFields) {
+        this.ucpFragment = ucpFragment;
+        this.fields = fields != null ? fields : Collections.emptyMap();
+        this.dropMcpKeys = dropMcpKeys;
+        this.bean = bean;
+        this.rawFields = rawFields;
+    }
+
+    UcpEnvelope(SerializableString ucpFragment, Map<?, ?> fields, boolean dropMcpKeys) {
+        this(ucpFragment, fields, dropMcpKeys, null, null);
+    }
+
+    /**
+     * Envelope whose business fields are the properties of a bean, serialized in place.
+     */
+    static UcpEnvelope ofBean(SerializableString ucpFragment, Object bean) {
+        return new UcpEnvelope(ucpFragment, null, false, bean, null);
+    }
+
+    /**
+     * Envelope whose business fields are spliced from a serialized JSON object.
+     */
+    static UcpEnvelope ofRawJson(SerializableString ucpFragment, String jsonObject) {
+        // Keep only the members of the object; the braces are written by the envelope
+        String members = jsonObject.substring(jsonObject.indexOf('{') + 1, jsonObject.lastIndexOf('}')).trim();
+        return new UcpEnvelope(ucpFragment, null, false, null,
+                members.isEmpty() ? null : new SerializedString(members));
+    }
+
+    /**
+     * Business fields of the result, without the {@code ucp} block.
+     * Empty when the fields come from a bean or from raw JSON.
+     */
+    public Map<?, ?> getFields() {
+        return fields;
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(UCP);
+        gen.writeRawValue(ucpFragment);
+        for (Map.Entry<?, ?> entry : fields.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            // The metadata block always wins over a business field of the same name
+            if ("ucp".equals(key) || (dropMcpKeys && ("type".equals(key) || "textResult".equals(key)))) {
+                continue;
+            }
+            gen.writeFieldName(key);
+            provider.defaultSerializeValue(entry.getValue(), gen);
+        }
+        if (bean != null) {
+            writeBean(gen, provider);
+        }
+        if (rawFields != null) {
+            // Raw members go last: the generator does not track them, so nothing may follow
+            gen.writeRaw(',');
+            gen.writeRaw(rawFields);
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeBean(JsonGenerator gen, SerializerProvider provider) throws IOException {
+        JsonSerializer<Object> serializer = provider.findValueSerializer(bean.getClass())
+                .unwrappingSerializer(NameTransformer.NOP);
+        if (serializer.isUnwrappingSerializer()) {
+            serializer.serialize(bean, gen, provider);
+        } else {
+            // Not an object-shaped value, so it cannot be merged into the result
+            gen.writeFieldName("result");
+            provider.defaultSerializeValue(bean, gen);
+        }
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSer)
+            throws IOException {
+        serialize(gen, provider);
+    }
+}
@@ -0,0 +1,175 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import com.fasterxml.jackson.core.SerializableString;
+import io.github.vishalmysore.mcp.domain.CallToolResult;
+import io.github.vishalmysore.mcp.domain.Content;
+import io.github.vishalmysore.mcp.domain.TextContent;
+import io.github.vishalmysore.ucp.domain.StructuredUCPResult;
+import io.github.vishalmysore.ucp.domain.UCPResult;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityRegistry;
+import org.springframework.http.ResponseEntity;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns tool call results into the UCP result object of a JSON-RPC response.
+ * Known result types are dispatched with {@code instanceof}; the only accessor
+ * that cannot be typed (the {@code getResult} of MCP JSON-RPC response wrappers)
+ * is resolved once per class and cached as a {@link MethodHandle}. The {@code ucp}
+ * metadata block comes pre-serialized from the {@link CapabilityRegistry} and is
+ * spliced into every response.
+ */
+public class UcpResponseShaper {
+
+    private static final int MAX_METADATA_BLOCKS = 1024;
+
+    private static final ClassValue<MethodHandle> RESULT_ACCESSORS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            if (!"JSONRPCResponse".equals(type.getSimpleName())) {
+                return null;
+            }
+            try {
+                return MethodHandles.publicLookup()
+                        .unreflect(type.getMethod("getResult"))
+                        .asType(MethodType.methodType(Object.class, Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+                return null;
+            }
+        }
+    };
+
+    private final CapabilityRegistry registry;
+    private final Map<String, SerializableString> undeclaredBlocks = new ConcurrentHashMap<>();
+
+    public UcpResponseShaper() {
+        this(null);
+    }
+
+    public UcpResponseShaper(CapabilityRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Strip transport wrappers (ResponseEntity, JSON-RPC response) from a tool result.
+     */
+    public Object unwrap(Object response) {
+        Object actual = response;
+        if (actual instanceof ResponseEntity) {
+            actual = ((ResponseEntity<?>) actual).getBody();
+        }
+        if (actual != null) {
+            MethodHandle getResult = RESULT_ACCESSORS.get(actual.getClass());
+            if (getResult != null) {
+                try {
+                    actual = (Object) getResult.invokeExact(actual);
+                } catch (Throwable e) {
+                    // Fallback: use as is
+                }
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Wraps a tool response in UCP-compliant format with metadata block.
+     */
+    public UcpEnvelope shape(String capabilityName, Object mcpResponse) {
+        SerializableString ucpFragment = metadataFor(capabilityName);
+
+        if (mcpResponse instanceof StructuredUCPResult) {
+            return shapeStructured((StructuredUCPResult) mcpResponse, ucpFragment);
+        } else if (mcpResponse instanceof UCPResult) {
+            return new UcpEnvelope(ucpFragment, ((UCPResult) mcpResponse).getResult(), false);
+        } else if (mcpResponse instanceof CallToolResult) {
+            return shapeCallToolResult((CallToolResult) mcpResponse, ucpFragment);
+        } else if (mcpResponse instanceof Map) {
+            return shapeMap((Map<?, ?>) mcpResponse, ucpFragment);
+        } else if (mcpResponse != null) {
+            return new UcpEnvelope(ucpFragment, Collections.singletonMap("result", mcpResponse.toString()), false);
+        }
+        return new UcpEnvelope(ucpFragment, null, false);
+    }
+
+    /**
+     * Pre-serialized {@code ucp} block for a method, taken from the capability registry.
+     * Methods that declare no capability are listed under their own name, without a version.
+     */
+    SerializableString metadataFor(String methodName) {
+        CapabilityRegistry.MethodCapabilities declared = registry != null ? registry.forMethod(methodName) : null;
+        if (declared != null) {
+            return declared.getMetadataBlock();
+        }
+        SerializableString block = undeclaredBlocks.get(methodName);
+        if (block == null) {
+            block = CapabilityRegistry.metadataBlock(
+                    Collections.singletonList(Collections.singletonMap("name", methodName)));
+            // Method names come from clients; do not let unknown names grow the cache forever
+            if (undeclaredBlocks.size() < MAX_METADATA_BLOCKS) {
+                undeclaredBlocks.putIfAbsent(methodName, block);
+            }
+        }
+        return block;
+    }
+
+    private UcpEnvelope shapeCallToolResult(CallToolResult callToolResult, SerializableString ucpFragment) {
+        List<Content> content = callToolResult.getContent();
+        if (content == null || content.isEmpty() || !(content.get(0) instanceof TextContent)) {
+            return new UcpEnvelope(ucpFragment, null, false);
+        }
+        String text = ((TextContent) content.get(0)).getText();
+        if (text == null) {
+            return new UcpEnvelope(ucpFragment, null, false);
+        }
+        StructuredUCPResult structured = fromLegacyText(text);
+        if (structured != null) {
+            return shapeStructured(structured, ucpFragment);
+        }
+        return new UcpEnvelope(ucpFragment, Collections.singletonMap("message", text), false);
+    }
+
+    private static UcpEnvelope shapeStructured(StructuredUCPResult structured, SerializableString ucpFragment) {
+        if (structured.isRaw()) {
+            return UcpEnvelope.ofRawJson(ucpFragment, structured.getRawJson());
+        }
+        Object data = structured.getData();
+        if (data instanceof Map) {
+            return new UcpEnvelope(ucpFragment, (Map<?, ?>) data, false);
+        }
+        return data == null ? new UcpEnvelope(ucpFragment, null, false) : UcpEnvelope.ofBean(ucpFragment, data);
+    }
+
+    /**
+     * Read text that uses the {@code __UCP_STRUCTURED_DATA__:} convention.
+     * The JSON is only scanned for well-formedness by {@link StructuredUCPResult#ofJson},
+     * never materialized unless it carries its own {@code ucp} member; it is
+     * spliced into the response as is.
+     * @return the structured result, or null if the text is not well-formed structured data
+     */
+    StructuredUCPResult fromLegacyText(String text) {
+        return StructuredUCPResult.fromPrefixedText(text);
+    }
+
+    private UcpEnvelope shapeMap(Map<?, ?> mcpMap, SerializableString ucpFragment) {
+        Object content = mcpMap.get("content");
+        if (content instanceof List) {
+            // MCP tool response with a "content" array: use the text of the first entry
+            List<?> contentList = (List<?>) content;
+            if (!contentList.isEmpty() && contentList.get(0) instanceof Map) {
+                Map<?, ?> firstContent = (Map<?, ?>) contentList.get(0);
+                if (firstContent.containsKey("text")) {
+                    return new UcpEnvelope(ucpFragment, Collections.singletonMap("result", firstContent.get("text")), false);
+                }
+            }
+            return new UcpEnvelope(ucpFragment, null, false);
+        }
+        // Already structured data, written as is minus the MCP "type"/"textResult" keys
+        return new UcpEnvelope(ucpFragment, mcpMap, true);
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The request body of a checkout operation, bound by {@link CheckoutBodyResolver}
+ * to a typed model or a Map.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@interface CheckoutBody {
+}
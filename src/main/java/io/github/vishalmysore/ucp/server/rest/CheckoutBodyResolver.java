@@ -0,0 +1,136 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import io.github.vishalmysore.ucp.domain.discovery.TypedCheckout;
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.ControllerAdviceBean;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestResponseBodyMethodProcessor;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binds {@link CheckoutBody} parameters to the type the {@link UCPAware} bean
+ * takes: the matching {@link TypedCheckout} type argument when it implements
+ * that interface, else {@code Map<String, Object>}. The body is read with the
+ * same message converters and RequestBodyAdvice (e.g.
+ * {@link SchemaValidationAdvice}) as {@code @RequestBody}, so a generated
+ * model binds straight from the stream with its own deserializer.
+ */
+@Component
+public class CheckoutBodyResolver implements WebMvcConfigurer, HandlerMethodArgumentResolver {
+
+    private static final Type MAP = ResolvableType.forClassWithGenerics(Map.class, String.class, Object.class)
+            .getType();
+
+    // Handler method name to TypedCheckout type argument
+    private static final Map<String, Integer> TYPE_ARGUMENTS = new HashMap<>();
+
+    static {
+        TYPE_ARGUMENTS.put("createCheckout", 0);
+        TYPE_ARGUMENTS.put("updateCheckout", 1);
+        TYPE_ARGUMENTS.put("completeCheckout", 2);
+    }
+
+    private final ApplicationContext context;
+    private final ObjectProvider<UCPAware> checkoutService;
+    private final ObjectProvider<RequestMappingHandlerAdapter> handlerAdapter;
+    private final Map<String, Type> bodyTypes = new ConcurrentHashMap<>();
+    private volatile BodyReader reader;
+
+    public CheckoutBodyResolver(ApplicationContext context, ObjectProvider<UCPAware> checkoutService,
+            ObjectProvider<RequestMappingHandlerAdapter> handlerAdapter) {
+        this.context = context;
+        this.checkoutService = checkoutService;
+        this.handlerAdapter = handlerAdapter;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(this);
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CheckoutBody.class);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+            NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws Exception {
+        return reader().read(webRequest, parameter, bodyType(parameter.getMethod().getName()));
+    }
+
+    Type bodyType(String operation) {
+        return bodyTypes.computeIfAbsent(operation, op -> {
+            UCPAware service = checkoutService.getIfAvailable();
+            Integer index = TYPE_ARGUMENTS.get(op);
+            if (!(service instanceof TypedCheckout) || index == null) {
+                return MAP;
+            }
+            ResolvableType typed = ResolvableType.forClass(AopUtils.getTargetClass(service))
+                    .as(TypedCheckout.class).getGeneric(index);
+            return typed.resolve() != null ? typed.getType() : MAP;
+        });
+    }
+
+    private BodyReader reader() {
+        BodyReader current = reader;
+        if (current == null) {
+            // The adapter's converters are only complete once MVC is configured, so build on first use
+            RequestMappingHandlerAdapter adapter = handlerAdapter.getIfAvailable();
+            if (adapter == null) {
+                throw new IllegalStateException("No RequestMappingHandlerAdapter to read checkout bodies with");
+            }
+            List<Object> advice = new ArrayList<>();
+            for (ControllerAdviceBean bean : ControllerAdviceBean.findAnnotatedBeans(context)) {
+                Class<?> type = bean.getBeanType();
+                if (type != null && RequestBodyAdvice.class.isAssignableFrom(type)) {
+                    advice.add(bean);
+                }
+            }
+            current = new BodyReader(adapter.getMessageConverters(), advice);
+            reader = current;
+        }
+        return current;
+    }
+
+    /**
+     * The {@code @RequestBody} machinery, with the target type chosen per operation.
+     */
+    private static final class BodyReader extends RequestResponseBodyMethodProcessor {
+
+        BodyReader(List<HttpMessageConverter<?>> converters, List<Object> advice) {
+            super(converters, advice);
+        }
+
+        Object read(NativeWebRequest webRequest, MethodParameter parameter, Type bodyType)
+                throws IOException, HttpMediaTypeNotSupportedException {
+            return readWithMessageConverters(webRequest, parameter, bodyType);
+        }
+
+        @Override
+        protected boolean checkRequired(MethodParameter parameter) {
+            return true;
+        }
+    }
+}
@@ -1,51 +1,299 @@
 package io.github.vishalmysore.ucp.server.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.vishalmysore.ucp.domain.checkout.*;
 import io.github.vishalmysore.ucp.domain.common.Message;
 
+import io.github.vishalmysore.ucp.domain.discovery.PatchableCheckout;
+import io.github.vishalmysore.ucp.domain.discovery.TypedCheckout;
 import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import io.github.vishalmysore.ucp.domain.discovery.VersionedCheckout;
+import io.github.vishalmysore.ucp.server.async.CapabilityBulkheads;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityRegistry;
+import io.github.vishalmysore.ucp.store.CheckoutException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * REST controller for UCP checkout operations.
+ * Handlers return a ResponseEntity, or a DeferredResult when async execution
+ * is enabled (see {@link CapabilityBulkheads}). Request bodies are Maps,
+ * or typed models when the UCPAware bean implements {@link TypedCheckout}
+ * (see {@link CheckoutBodyResolver}). Requests are served only when checkout
+ * is in the set negotiated by {@link UCPAgentInterceptor}. Complete and cancel
+ * run once per {@code Idempotency-Key} when an {@link IdempotencyStore} is present.
+ * Sessions of a {@link VersionedCheckout} carry their version as an ETag, and
+ * updates with {@code If-Match} apply only to that version (else 412).
+ * A {@link PatchableCheckout} is patched with JSON Merge Patch, and answers
+ * with only the changes, as a JSON Patch, when that is what the client accepts.
  */
 @RestController
 @RequestMapping("/ucp/v1")
 public class CheckoutController {
 
+    // Each retry follows a write that got in; this many in a row means the session is too busy to patch now
+    private static final int MAX_DELTA_ATTEMPTS = 8;
+
     /**
      * Create a new checkout session.
      */
     @Autowired
     private UCPAware checkoutSerice;
 
+    @Autowired(required = false)
+    private CapabilityBulkheads bulkheads;
+
+    @Autowired(required = false)
+    private IdempotencyStore idempotency;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @PostMapping("/checkout-sessions")
-    public ResponseEntity<?> createCheckout(@RequestBody Map<String, Object> request) {
-        return ResponseEntity.status(201).body(checkoutSerice.createCheckout(request));
+    public Object createCheckout(@CheckoutBody Object request) {
+        TypedCheckout<Object, Object, Object> typed = typed();
+        return execute("createCheckout", () -> tagged(HttpStatus.CREATED, typed != null
+                ? typed.createCheckout(request) : checkoutSerice.createCheckout(map(request))));
     }
 
     @GetMapping("/checkout-sessions/{id}")
-    public ResponseEntity<?> getCheckout(@PathVariable String id) {
-        return ResponseEntity.ok(checkoutSerice.getCheckout(id));
+    public Object getCheckout(@PathVariable String id,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return execute("getCheckout", () -> {
+            Object checkout = checkoutSerice.getCheckout(id);
+            String etag = etag(checkout);
+            if (etag != null && ifNoneMatch != null && matchesAny(ifNoneMatch, etag, true)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return tagged(HttpStatus.OK, checkout);
+        });
     }
 
     @PutMapping("/checkout-sessions/{id}")
-    public ResponseEntity<?> updateCheckout(@PathVariable String id, @RequestBody Map<String, Object> request) {
-        return ResponseEntity.ok(checkoutSerice.updateCheckout(id, request));
+    public Object updateCheckout(@PathVariable String id, @CheckoutBody Object request,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        TypedCheckout<Object, Object, Object> typed = typed();
+        VersionedCheckout<Object> versioned = versioned();
+        return execute("updateCheckout", () -> {
+            if (ifMatch != null) {
+                long expected = expectedVersion(id, ifMatch, versioned);
+                if (versioned != null) {
+                    return tagged(HttpStatus.OK, versioned.updateCheckout(id, expected, request));
+                }
+            }
+            return tagged(HttpStatus.OK, typed != null
+                    ? typed.updateCheckout(id, request) : checkoutSerice.updateCheckout(id, map(request)));
+        });
+    }
+
+    /**
+     * Apply a JSON Merge Patch. With {@code Accept: application/json-patch+json}
+     * the answer is the JSON Patch from the session as it was to the session as
+     * patched; send {@code If-Match} to be sure the former is the client's copy.
+     */
+    @PatchMapping(path = "/checkout-sessions/{id}", consumes = {"application/merge-patch+json",
+            MediaType.APPLICATION_JSON_VALUE})
+    public Object patchCheckout(@PathVariable String id, @RequestBody Map<String, Object> mergePatch,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        PatchableCheckout patchable = checkoutSerice instanceof PatchableCheckout
+                ? (PatchableCheckout) checkoutSerice : null;
+        VersionedCheckout<Object> versioned = versioned();
+        return execute("patchCheckout", () -> {
+            if (patchable == null) {
+                throw new CheckoutException(HttpStatus.METHOD_NOT_ALLOWED, "unsupported_operation",
+                        "Checkout sessions cannot be patched here; use PUT");
+            }
+            long expected = ifMatch != null ? expectedVersion(id, ifMatch, versioned)
+                    : VersionedCheckout.ANY_VERSION;
+            if (versioned == null || !acceptsDelta(accept)) {
+                return tagged(HttpStatus.OK, patchable.patchCheckout(id, expected, mergePatch));
+            }
+            return delta(id, expected, mergePatch, patchable, versioned);
+        });
     }
 
     @PostMapping("/checkout-sessions/{id}/complete")
-    public ResponseEntity<?> completeCheckout(@PathVariable String id, @RequestBody Map<String, Object> payment) {
-        return ResponseEntity.ok(checkoutSerice.completeCheckout(id, payment));
+    public Object completeCheckout(@PathVariable String id, @CheckoutBody Object payment,
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        TypedCheckout<Object, Object, Object> typed = typed();
+        return execute("completeCheckout", idempotent("completeCheckout", id, idempotencyKey, payment,
+                () -> tagged(HttpStatus.OK, typed != null
+                        ? typed.completeCheckout(id, payment) : checkoutSerice.completeCheckout(id, map(payment)))));
     }
 
     @PostMapping("/checkout-sessions/{id}/cancel")
-    public ResponseEntity<?> cancelCheckout(@PathVariable String id) {
-        return ResponseEntity.ok(checkoutSerice.cancelCheckout(id));
+    public Object cancelCheckout(@PathVariable String id,
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+        return execute("cancelCheckout", idempotent("cancelCheckout", id, idempotencyKey, null,
+                () -> tagged(HttpStatus.OK, checkoutSerice.cancelCheckout(id))));
+    }
+
+    @ExceptionHandler(CheckoutException.class)
+    public ResponseEntity<Map<String, Object>> handleCheckout(CheckoutException e) {
+        return ResponseEntity.status(e.getStatus()).body(Collections.singletonMap("messages", e.getMessages()));
+    }
+
+    @ExceptionHandler(InvalidTransitionException.class)
+    public ResponseEntity<Map<String, Object>> handleTransition(InvalidTransitionException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Collections.singletonMap("messages", Collections.singletonList(e.getMessageError())));
+    }
+
+    @SuppressWarnings("unchecked")
+    private TypedCheckout<Object, Object, Object> typed() {
+        // The body was bound to the matching type argument
+        return checkoutSerice instanceof TypedCheckout ? (TypedCheckout<Object, Object, Object>) checkoutSerice : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private VersionedCheckout<Object> versioned() {
+        // Its update type is the one the body was bound to
+        return checkoutSerice instanceof VersionedCheckout ? (VersionedCheckout<Object>) checkoutSerice : null;
+    }
+
+    private ResponseEntity<?> tagged(HttpStatus status, Object checkout) {
+        String etag = etag(checkout);
+        return etag != null ? ResponseEntity.status(status).eTag(etag).body(checkout)
+                : ResponseEntity.status(status).body(checkout);
+    }
+
+    private String etag(Object checkout) {
+        VersionedCheckout<Object> versioned = versioned();
+        long version = versioned != null && checkout != null ? versioned.versionOf(checkout) : -1;
+        return version >= 0 ? "\"" + version + "\"" : null;
+    }
+
+    /**
+     * The version an If-Match allows the update to apply to. A single tag is
+     * passed on to be compared and set; for a list the current version is read
+     * and must be one of them.
+     */
+    private long expectedVersion(String id, String ifMatch, VersionedCheckout<Object> versioned) {
+        if (ifMatch.trim().equals("*")) {
+            return VersionedCheckout.ANY_VERSION;
+        }
+        String[] tags = ifMatch.split(",");
+        if (versioned != null && tags.length == 1) {
+            long version = version(tags[0].trim());
+            if (version >= 0) {
+                return version;
+            }
+        } else if (versioned != null) {
+            String current = etag(checkoutSerice.getCheckout(id));
+            if (current != null && matchesAny(ifMatch, current, false)) {
+                return version(current);
+            }
+        }
+        throw new CheckoutException(HttpStatus.PRECONDITION_FAILED, "version_mismatch",
+                "Checkout session " + id + " does not match If-Match " + ifMatch);
+    }
+
+    private static long version(String tag) {
+        // Strong tags only: If-Match never matches a weak one
+        if (tag.length() < 3 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') {
+            return -1;
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Patch the version read, so the delta is from it; when any version would
+     * do, read again if another write got in between, and answer 409 if that
+     * keeps happening: the client sent no If-Match that could have failed.
+     */
+    private ResponseEntity<?> delta(String id, long expected, Map<String, Object> mergePatch,
+            PatchableCheckout patchable, VersionedCheckout<Object> versioned) {
+        for (int attempt = 1; ; attempt++) {
+            Object before = checkoutSerice.getCheckout(id);
+            long version = versioned.versionOf(before);
+            if (expected != VersionedCheckout.ANY_VERSION && expected != version) {
+                throw new CheckoutException(HttpStatus.PRECONDITION_FAILED, "version_mismatch",
+                        "Checkout session " + id + " is at version " + version + ", not " + expected);
+            }
+            Object after;
+            try {
+                after = patchable.patchCheckout(id, version, mergePatch);
+            } catch (CheckoutException e) {
+                if (expected != VersionedCheckout.ANY_VERSION || e.getStatus() != HttpStatus.PRECONDITION_FAILED) {
+                    throw e;
+                }
+                if (attempt == MAX_DELTA_ATTEMPTS) {
+                    throw new CheckoutException(HttpStatus.CONFLICT, "concurrent_update",
+                            "Checkout session " + id + " kept changing while it was patched; try again");
+                }
+                continue;
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(JsonPatchDiff.MEDIA_TYPE));
+            String etag = etag(after);
+            if (etag != null) {
+                response.eTag(etag);
+            }
+            return response.body(JsonPatchDiff.diff(objectMapper.valueToTree(before),
+                    objectMapper.valueToTree(after)));
+        }
+    }
+
+    private static boolean acceptsDelta(String accept) {
+        if (accept == null) {
+            return false;
+        }
+        try {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                if (type.getQualityValue() > 0
+                        && JsonPatchDiff.MEDIA_TYPE.equals(type.getType() + "/" + type.getSubtype())) {
+                    return true;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Unparsable: answer with the whole session
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(String header, String etag, boolean weak) {
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (weak && tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Object body) {
+        return (Map<String, Object>) body;
+    }
+
+    private Supplier<ResponseEntity<?>> idempotent(String operation, String id, String idempotencyKey, Object body,
+            Supplier<ResponseEntity<?>> call) {
+        if (idempotency == null || idempotencyKey == null) {
+            return call;
+        }
+        return () -> idempotency.execute(operation, id, idempotencyKey, body, call);
+    }
+
+    private Object execute(String operation, Supplier<ResponseEntity<?>> call) {
+        // On the request thread: the negotiated context is a request attribute
+        UCPAgentInterceptor.require(CapabilityRegistry.CHECKOUT.getName());
+        return bulkheads != null ? bulkheads.execute(operation, call) : call.get();
     }
 }
@@ -0,0 +1,278 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.github.vishalmysore.ucp.store.CheckoutException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs each {@code Idempotency-Key} of an operation on a resource once. A
+ * retry that arrives while the first call runs waits for it, and a retry
+ * after it finished gets the same response (or the same {@link CheckoutException})
+ * with {@code Idempotent-Replayed: true}; other failures are not kept, so the
+ * call can be retried. Reusing a key with a different body is answered with
+ * 422, and a retry still waiting after {@code ucp.idempotency.wait-timeout-ms}
+ * (30000) with 409.
+ *
+ * Keys are held as the 128-bit SHA-256 prefix of operation, resource and key,
+ * for {@code ucp.idempotency.window} seconds (86400) after the call finished,
+ * and bodies are compared by the same prefix of their JSON with properties and
+ * map keys sorted. At most {@code ucp.idempotency.max-entries} (100000) are
+ * queued for eviction, including failed calls not yet drained; past that the
+ * oldest finished ones are evicted first.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int MAX_REQUEUED = 16;
+    private static final ObjectMapper CANONICAL = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final long windowMillis;
+    private final int maxEntries;
+    private final long waitMillis;
+    private final Clock clock;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    // Entries in the order they were claimed, which is close to their expiry order
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    @Autowired
+    public IdempotencyStore(Environment env) {
+        this(Duration.ofSeconds(env.getProperty("ucp.idempotency.window", Long.class, 86400L)),
+                env.getProperty("ucp.idempotency.max-entries", Integer.class, 100000),
+                env.getProperty("ucp.idempotency.wait-timeout-ms", Long.class, 30000L), Clock.systemUTC());
+    }
+
+    IdempotencyStore(Duration window, int maxEntries, long waitMillis, Clock clock) {
+        this.windowMillis = window.toMillis();
+        this.maxEntries = maxEntries;
+        this.waitMillis = waitMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Run the call for the key, or answer as its first run did.
+     * @param body the request body, compared with the first run's by the digest of its JSON
+     */
+    public ResponseEntity<?> execute(String operation, String resourceId, String idempotencyKey, Object body,
+            Supplier<ResponseEntity<?>> call) {
+        Key key = key(operation, resourceId, idempotencyKey);
+        Key fingerprint = fingerprint(body);
+        while (true) {
+            Entry claim = new Entry(key, fingerprint);
+            Entry existing = entries.putIfAbsent(key, claim);
+            if (existing == null) {
+                order.add(claim);
+                queued.incrementAndGet();
+                evict();
+                return run(claim, call);
+            }
+            if (existing.expiresAt <= clock.millis()) {
+                entries.remove(key, existing);
+                continue;
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new CheckoutException(HttpStatus.UNPROCESSABLE_ENTITY, "idempotency_key_reused",
+                        HEADER + " " + idempotencyKey + " was used with a different request");
+            }
+            return replay(existing, idempotencyKey);
+        }
+    }
+
+    /**
+     * Keys held, running or finished.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Entries queued for eviction, including ones already dropped from the map.
+     */
+    int queued() {
+        return queued.get();
+    }
+
+    private ResponseEntity<?> run(Entry claim, Supplier<ResponseEntity<?>> call) {
+        ResponseEntity<?> response;
+        try {
+            response = call.get();
+        } catch (CheckoutException e) {
+            // Rejected for the state of the resource: a retry would be rejected the same way
+            claim.expiresAt = clock.millis() + windowMillis;
+            claim.outcome.completeExceptionally(e);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            // Left in the eviction queue, where it is dropped as soon as it is reached
+            claim.expiresAt = 0;
+            entries.remove(claim.key, claim);
+            claim.outcome.completeExceptionally(e);
+            throw e;
+        }
+        claim.expiresAt = clock.millis() + windowMillis;
+        claim.outcome.complete(response);
+        return response;
+    }
+
+    private ResponseEntity<?> replay(Entry entry, String idempotencyKey) {
+        ResponseEntity<?> response;
+        try {
+            response = entry.outcome.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new CheckoutException(HttpStatus.CONFLICT, "request_in_progress",
+                    "A request with " + HEADER + " " + idempotencyKey + " is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + HEADER + " " + idempotencyKey, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(REPLAYED_HEADER, "true");
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    private void evict() {
+        long now = clock.millis();
+        int requeued = 0;
+        Entry head;
+        while ((head = order.peek()) != null) {
+            // Failed, or replaced after it expired
+            boolean dead = head.expiresAt <= now || entries.get(head.key) != head;
+            if (!dead && queued.get() <= maxEntries) {
+                return;
+            }
+            if (!order.remove(head)) {
+                continue;
+            }
+            queued.decrementAndGet();
+            if (!dead && !head.outcome.isDone()) {
+                // Still running: never evicted, look further
+                order.add(head);
+                queued.incrementAndGet();
+                if (++requeued >= MAX_REQUEUED) {
+                    return;
+                }
+                continue;
+            }
+            entries.remove(head.key, head);
+        }
+    }
+
+    static Key key(String operation, String resourceId, String idempotencyKey) {
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new CheckoutException(HttpStatus.BAD_REQUEST, "invalid_idempotency_key",
+                    HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        MessageDigest digest = SHA_256.get();
+        digest.update(operation.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(resourceId).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return digest(digest.digest(idempotencyKey.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Key digest(byte[] hash) {
+        return new Key(toLong(hash, 0), toLong(hash, 8));
+    }
+
+    static Key fingerprint(Object body) {
+        byte[] json;
+        try {
+            json = CANONICAL.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request body cannot be written as JSON", e);
+        }
+        return digest(SHA_256.get().digest(json));
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * 128 bits of a SHA-256: of operation, resource and key, or of a body.
+     */
+    static final class Key {
+        final long high;
+        final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) low;
+        }
+    }
+
+    private static final class Entry {
+        final Key key;
+        final Key fingerprint;
+        final CompletableFuture<ResponseEntity<?>> outcome = new CompletableFuture<>();
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(Key key, Key fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
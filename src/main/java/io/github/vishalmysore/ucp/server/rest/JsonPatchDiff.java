@@ -0,0 +1,80 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The JSON Patch (RFC 6902) that turns one JSON document into another, for
+ * answering a checkout PATCH with only what changed. Objects are compared
+ * member by member and arrays element by element, so changing the quantity of
+ * one line item is one {@code replace} of that line's quantity and totals;
+ * elements added or removed at the end of an array are {@code add} and
+ * {@code remove} operations. Anything else that differs is replaced whole.
+ */
+final class JsonPatchDiff {
+
+    static final String MEDIA_TYPE = "application/json-patch+json";
+
+    private JsonPatchDiff() {
+    }
+
+    static ArrayNode diff(JsonNode from, JsonNode to) {
+        ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+        diff(from, to, "", patch);
+        return patch;
+    }
+
+    private static void diff(JsonNode from, JsonNode to, String path, ArrayNode patch) {
+        if (from.equals(to)) {
+            return;
+        }
+        if (from.isObject() && to.isObject()) {
+            Iterator<String> names = from.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (!to.has(name)) {
+                    operation(patch, "remove", path + "/" + escape(name));
+                }
+            }
+            Iterator<Map.Entry<String, JsonNode>> fields = to.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                String member = path + "/" + escape(field.getKey());
+                JsonNode previous = from.get(field.getKey());
+                if (previous == null) {
+                    operation(patch, "add", member).set("value", field.getValue());
+                } else {
+                    diff(previous, field.getValue(), member, patch);
+                }
+            }
+        } else if (from.isArray() && to.isArray()) {
+            int common = Math.min(from.size(), to.size());
+            for (int i = 0; i < common; i++) {
+                diff(from.get(i), to.get(i), path + "/" + i, patch);
+            }
+            for (int i = common; i < to.size(); i++) {
+                operation(patch, "add", path + "/" + i).set("value", to.get(i));
+            }
+            // From the end, so the indexes still hold after each removal
+            for (int i = from.size() - 1; i >= common; i--) {
+                operation(patch, "remove", path + "/" + i);
+            }
+        } else {
+            operation(patch, "replace", path).set("value", to);
+        }
+    }
+
+    private static ObjectNode operation(ArrayNode patch, String op, String path) {
+        return patch.addObject().put("op", op).put("path", path);
+    }
+
+    private static String escape(String name) {
+        return name.indexOf('~') < 0 && name.indexOf('/') < 0 ? name
+                : name.replace("~", "~0").replace("/", "~1");
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import io.github.vishalmysore.ucp.domain.common.Message;
+import io.github.vishalmysore.ucp.domain.common.MessageError;
+import org.springframework.http.HttpStatus;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A request whose {@code UCP-Agent} profile could not be negotiated, or that
+ * calls a capability outside the negotiated set; answered by
+ * {@link UCPAgentInterceptor} with the status and a {@code messages} body.
+ */
+public class NegotiationException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final List<Message> messages;
+
+    public NegotiationException(HttpStatus status, String code, String content) {
+        this(status, code, content, null);
+    }
+
+    public NegotiationException(HttpStatus status, String code, String content, Throwable cause) {
+        super(content, cause);
+        MessageError error = new MessageError();
+        error.setCode(code);
+        error.setContent(content);
+        error.setSeverity(MessageError.Severity.recoverable);
+        this.status = status;
+        this.messages = Collections.<Message>singletonList(error);
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+}
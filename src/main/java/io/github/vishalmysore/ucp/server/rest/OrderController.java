@@ -1,47 +1,145 @@
 package io.github.vishalmysore.ucp.server.rest;
 
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityRegistry;
+import io.github.vishalmysore.ucp.store.CheckoutException;
+import io.github.vishalmysore.ucp.store.InMemoryCheckoutService;
+import io.github.vishalmysore.ucp.store.OrderStatus;
+import io.github.vishalmysore.ucp.store.OrderStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
- * REST controller for UCP order operations.
+ * REST controller for UCP order operations, served when order is in the set
+ * negotiated by {@link UCPAgentInterceptor}. Orders come from the
+ * {@link OrderStore} bean, or the one of an {@link InMemoryCheckoutService};
+ * without either, an order is looked up with {@link UCPAware#getOrder} and
+ * listing and updates are not available (501).
+ *
+ * Orders are listed for one {@code buyer_id}; listing every buyer's orders
+ * is only allowed with {@code ucp.order.list-all-buyers=true}, for servers
+ * whose agents are all trusted with every order.
  */
 @RestController
 @RequestMapping("/ucp/order")
 public class OrderController {
 
+    private final ObjectProvider<OrderStore> orderStore;
+    private final ObjectProvider<UCPAware> checkoutService;
+    private final boolean listAllBuyers;
+
+    public OrderController(ObjectProvider<OrderStore> orderStore, ObjectProvider<UCPAware> checkoutService,
+                           Environment env) {
+        this.orderStore = orderStore;
+        this.checkoutService = checkoutService;
+        this.listAllBuyers = env.getProperty("ucp.order.list-all-buyers", Boolean.class, false);
+    }
+
     /**
-     * Create a new order.
+     * Orders, newest first, a page at a time. Pass the {@code next_cursor} of
+     * a page as {@code cursor} to get the next one. {@code buyer_id} is
+     * required unless every buyer's orders may be listed.
+     */
+    @GetMapping
+    public ResponseEntity<OrderStore.Page> listOrders(
+            @RequestParam(name = "buyer_id", required = false) String buyerId,
+            @RequestParam(name = "status", required = false) String status,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        UCPAgentInterceptor.require(CapabilityRegistry.ORDER.getName());
+        if (buyerId == null && !listAllBuyers) {
+            throw new CheckoutException(HttpStatus.BAD_REQUEST, "invalid_request", "buyer_id is required");
+        }
+        return ResponseEntity.ok(store().list(buyerId, status != null ? status(status) : null, cursor, limit));
+    }
+
+    /**
+     * Orders are placed by completing a checkout session.
      */
     @PostMapping
     public ResponseEntity<Map<String, Object>> createOrder(@RequestBody Map<String, Object> request) {
-        // TODO: Implement order creation logic
-        Map<String, Object> response = Map.of("version", "2026-01-11");
-        return ResponseEntity.ok(response);
+        UCPAgentInterceptor.require(CapabilityRegistry.ORDER.getName());
+        throw new CheckoutException(HttpStatus.METHOD_NOT_ALLOWED, "unsupported_operation",
+                "Orders are placed by completing a checkout session");
     }
 
     /**
      * Get order details.
      */
     @GetMapping("/{orderId}")
-    public ResponseEntity<Map<String, Object>> getOrder(@PathVariable String orderId) {
-        // TODO: Implement get order logic
-        Map<String, Object> response = Map.of("version", "2026-01-11");
-        return ResponseEntity.ok(response);
+    public ResponseEntity<Object> getOrder(@PathVariable String orderId) {
+        UCPAgentInterceptor.require(CapabilityRegistry.ORDER.getName());
+        OrderStore orders = orders();
+        Object order;
+        if (orders != null) {
+            order = orders.get(orderId);
+        } else {
+            UCPAware service = checkoutService.getIfAvailable();
+            order = service != null ? service.getOrder(orderId) : null;
+        }
+        if (order == null) {
+            throw notFound(orderId);
+        }
+        return ResponseEntity.ok(order);
     }
 
     /**
-     * Update order.
+     * Update order: its {@code status}.
      */
     @PatchMapping("/{orderId}")
-    public ResponseEntity<Map<String, Object>> updateOrder(@PathVariable String orderId,
-                                                         @RequestBody Map<String, Object> updates) {
-        // TODO: Implement update logic
-        Map<String, Object> response = Map.of("version", "2026-01-11");
-        return ResponseEntity.ok(response);
+    public ResponseEntity<Object> updateOrder(@PathVariable String orderId,
+                                              @RequestBody Map<String, Object> updates) {
+        UCPAgentInterceptor.require(CapabilityRegistry.ORDER.getName());
+        OrderStore orders = store();
+        Object status = updates.get("status");
+        if (!(status instanceof String)) {
+            throw new CheckoutException(HttpStatus.BAD_REQUEST, "invalid_request", "status is required");
+        }
+        Object order = orders.updateStatus(orderId, status((String) status));
+        if (order == null) {
+            throw notFound(orderId);
+        }
+        return ResponseEntity.ok(order);
     }
-}
 
+    @ExceptionHandler(CheckoutException.class)
+    public ResponseEntity<Map<String, Object>> handleOrder(CheckoutException e) {
+        return ResponseEntity.status(e.getStatus()).body(Collections.singletonMap("messages", e.getMessages()));
+    }
 
+    private OrderStore orders() {
+        OrderStore orders = orderStore.getIfAvailable();
+        if (orders == null) {
+            UCPAware service = checkoutService.getIfAvailable();
+            orders = service instanceof InMemoryCheckoutService ? ((InMemoryCheckoutService) service).getOrders() : null;
+        }
+        return orders;
+    }
+
+    private OrderStore store() {
+        OrderStore orders = orders();
+        if (orders == null) {
+            throw new CheckoutException(HttpStatus.NOT_IMPLEMENTED, "unsupported_operation",
+                    "Orders are not kept by this server");
+        }
+        return orders;
+    }
+
+    private static OrderStatus status(String status) {
+        try {
+            return OrderStatus.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            throw new CheckoutException(HttpStatus.BAD_REQUEST, "invalid_request", "Unknown order status " + status);
+        }
+    }
+
+    private static CheckoutException notFound(String orderId) {
+        return new CheckoutException(HttpStatus.NOT_FOUND, "order_not_found", "Order " + orderId + " does not exist");
+    }
+}
@@ -0,0 +1,205 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.StreamReadConstraints;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import io.github.vishalmysore.ucp.domain.common.Message;
+import io.github.vishalmysore.ucp.domain.common.MessageError;
+import io.github.vishalmysore.ucp.schema.CompiledSchema;
+import io.github.vishalmysore.ucp.schema.SchemaManager;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Validates request bodies against their composed schema while the body is
+ * read, before Jackson binds it. The raw body is read up to a size limit and
+ * checked token by token by {@link CompiledSchema#validate(JsonParser, boolean)};
+ * nothing is bound unless it passes, so an oversized, deeply nested or invalid
+ * body costs at most one bounded pass.
+ *
+ * Enabled per operation (the handler method name, e.g. createCheckout) with
+ * {@code ucp.schema.operations.<operation>=<base schema URI>} and optionally
+ * {@code ucp.schema.operations.<operation>.extensions=<URI>,<URI>}; schemas are
+ * looked up in {@link SchemaManager}. {@code ucp.schema.streaming.mode} is
+ * {@code reject} (default: answer 400 at the first error) or {@code annotate}
+ * (collect all messages, bind the body, and leave the messages in the
+ * {@link #MESSAGES_ATTRIBUTE} request attribute). Limits:
+ * {@code ucp.schema.streaming.max-bytes} (1 MiB, else 413),
+ * {@code max-depth} (64), {@code max-string-length} (65536).
+ */
+@Log
+@ControllerAdvice
+public class SchemaValidationAdvice extends RequestBodyAdviceAdapter {
+
+    public static final String MESSAGES_ATTRIBUTE = SchemaValidationAdvice.class.getName() + ".messages";
+
+    private static final Operation UNVALIDATED = new Operation(null, Collections.<String>emptyList());
+
+    private final Environment env;
+    private final ObjectProvider<SchemaManager> schemaManager;
+    private final boolean reject;
+    private final int maxBytes;
+    private final JsonFactory jsonFactory;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    public SchemaValidationAdvice(Environment env, ObjectProvider<SchemaManager> schemaManager) {
+        this.env = env;
+        this.schemaManager = schemaManager;
+        this.reject = !"annotate".equalsIgnoreCase(env.getProperty("ucp.schema.streaming.mode", "reject"));
+        this.maxBytes = env.getProperty("ucp.schema.streaming.max-bytes", Integer.class, 1 << 20);
+        this.jsonFactory = JsonFactory.builder()
+                .streamReadConstraints(StreamReadConstraints.builder()
+                        .maxNestingDepth(env.getProperty("ucp.schema.streaming.max-depth", Integer.class, 64))
+                        .maxStringLength(env.getProperty("ucp.schema.streaming.max-string-length", Integer.class,
+                                65536))
+                        .build())
+                .build();
+    }
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType,
+            Class<? extends HttpMessageConverter<?>> converterType) {
+        return AbstractJackson2HttpMessageConverter.class.isAssignableFrom(converterType)
+                && operation(methodParameter.getMethod().getName()) != UNVALIDATED;
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter,
+            Type targetType, Class<? extends HttpMessageConverter<?>> converterType) throws IOException {
+        Operation operation = operation(parameter.getMethod().getName());
+        SchemaManager manager = schemaManager.getIfAvailable();
+        CompiledSchema schema = manager != null ? manager.getCompiledSchema(operation.baseUri, operation.extensions)
+                : null;
+        if (schema == null) {
+            log.warning("No schema " + operation.baseUri + " for " + parameter.getMethod().getName()
+                    + "; body not validated");
+            return inputMessage;
+        }
+
+        byte[] body = read(inputMessage);
+        SchemaManager.ValidationResult result;
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            result = schema.validate(parser, reject);
+        } catch (StreamConstraintsException e) {
+            throw new SchemaViolationException(HttpStatus.BAD_REQUEST, error("limit_exceeded", e.getOriginalMessage()));
+        } catch (JsonProcessingException e) {
+            throw new SchemaViolationException(HttpStatus.BAD_REQUEST, error("invalid_json", e.getOriginalMessage()));
+        }
+        if (!result.isValid() && reject) {
+            throw new SchemaViolationException(HttpStatus.BAD_REQUEST, result.getMessages());
+        }
+        if (!result.getMessages().isEmpty()) {
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if (attributes != null) {
+                attributes.setAttribute(MESSAGES_ATTRIBUTE, result.getMessages(), RequestAttributes.SCOPE_REQUEST);
+            }
+        }
+        return new BufferedInputMessage(inputMessage.getHeaders(), body);
+    }
+
+    @ExceptionHandler(SchemaViolationException.class)
+    public ResponseEntity<Map<String, Object>> handleViolation(SchemaViolationException e) {
+        return ResponseEntity.status(e.getStatus()).body(Collections.singletonMap("messages", e.getViolations()));
+    }
+
+    private Operation operation(String name) {
+        return operations.computeIfAbsent(name, n -> {
+            String baseUri = env.getProperty("ucp.schema.operations." + n);
+            if (baseUri == null) {
+                return UNVALIDATED;
+            }
+            String[] extensions = env.getProperty("ucp.schema.operations." + n + ".extensions", String[].class,
+                    new String[0]);
+            return new Operation(baseUri, Arrays.asList(extensions));
+        });
+    }
+
+    private byte[] read(HttpInputMessage inputMessage) throws IOException {
+        long declared = inputMessage.getHeaders().getContentLength();
+        if (declared > maxBytes) {
+            throw tooLarge();
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(declared > 0 ? (int) declared : 4096);
+        byte[] chunk = new byte[8192];
+        try (InputStream in = inputMessage.getBody()) {
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                if (buffer.size() + read > maxBytes) {
+                    throw tooLarge();
+                }
+                buffer.write(chunk, 0, read);
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private SchemaViolationException tooLarge() {
+        return new SchemaViolationException(HttpStatus.PAYLOAD_TOO_LARGE,
+                error("payload_too_large", "Request body exceeds " + maxBytes + " bytes"));
+    }
+
+    private static List<Message> error(String code, String content) {
+        MessageError error = new MessageError();
+        error.setCode(code);
+        error.setPath("$");
+        error.setContent(content);
+        error.setSeverity(MessageError.Severity.recoverable);
+        return Collections.<Message>singletonList(error);
+    }
+
+    private static final class Operation {
+        final String baseUri;
+        final List<String> extensions;
+
+        Operation(String baseUri, List<String> extensions) {
+            this.baseUri = baseUri;
+            this.extensions = extensions;
+        }
+    }
+
+    private static final class BufferedInputMessage implements HttpInputMessage {
+        private final HttpHeaders headers;
+        private final byte[] body;
+
+        BufferedInputMessage(HttpHeaders headers, byte[] body) {
+            this.headers = headers;
+            this.body = body;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import io.github.vishalmysore.ucp.domain.common.Message;
+import org.springframework.http.HttpStatus;
+
+import java.util.List;
+
+/**
+ * A request body rejected by {@link SchemaValidationAdvice}; answered with the
+ * status and a {@code messages} body.
+ */
+public class SchemaViolationException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final List<Message> violations;
+
+    public SchemaViolationException(HttpStatus status, List<Message> violations) {
+        super(violations.isEmpty() ? status.getReasonPhrase()
+                : violations.get(0).getPath() + ": " + violations.get(0).getContent());
+        this.status = status;
+        this.violations = violations;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public List<Message> getViolations() {
+        return violations;
+    }
+}
@@ -0,0 +1,244 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import io.github.vishalmysore.ucp.negotiation.CapabilityNegotiator;
+import io.github.vishalmysore.ucp.negotiation.NegotiatedContext;
+import io.github.vishalmysore.ucp.negotiation.PlatformProfileFetcher;
+import io.github.vishalmysore.ucp.negotiation.ProfileUriPolicy;
+import io.github.vishalmysore.ucp.negotiation.UCPAgentHeader;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Negotiates capabilities for every {@code /ucp/**} request. The profile URI
+ * is read from the {@code UCP-Agent} header by {@link UCPAgentHeader}, the
+ * profile resolved through the cache of {@link CapabilityNegotiator#fetchPlatformProfile},
+ * and the {@link NegotiatedContext} left in the {@link NegotiatedContext#REQUEST_ATTRIBUTE}
+ * request attribute for the controllers. Contexts are built once per profile
+ * instance and a profile URI is checked only while it has no context, so a
+ * request of a known platform costs a header parse and two cache lookups.
+ *
+ * A malformed header is answered with 400, a profile URI refused by the
+ * {@link ProfileUriPolicy} with 403 (by the fetcher too, once it has looked
+ * up the host) and an unreachable profile with 424.
+ * Requests without the header get every business capability, unless
+ * {@code ucp.agent.required=true}. The wait for a profile that is not cached is
+ * bounded by {@code ucp.profile.fetch.timeout} (ms, 2000), and a profile that
+ * could not be fetched is not tried again for {@code ucp.profile.failure-ttl}
+ * (ms, 10000), nor a refused one. Profiles are fetched over https from any public host, or from
+ * {@code ucp.profile.allowed-hosts} only when set; {@code ucp.profile.allow-http}
+ * allows http. The contexts of the most recently seen platforms are kept.
+ */
+@Log
+@ControllerAdvice
+public class UCPAgentInterceptor implements WebMvcConfigurer, HandlerInterceptor {
+
+    private static final int MAX_CONTEXTS = 1024;
+
+    private final ObjectProvider<CapabilityNegotiator> negotiatorProvider;
+    private final ObjectProvider<CapabilityRegistry> registry;
+    private final boolean required;
+    private final long timeoutMillis;
+    private final long failureTtlMillis;
+    private final ProfileUriPolicy uriPolicy;
+    private final Map<String, NegotiatedContext> contexts = lru(MAX_CONTEXTS);
+    // Profile URI to its last failed fetch, reported again without a new one until it expires
+    private final Map<String, Failure> failures = lru(MAX_CONTEXTS);
+    private volatile CapabilityNegotiator negotiator;
+    private volatile List<UCPCapability> businessCapabilities;
+    private volatile NegotiatedContext unnegotiated;
+
+    public UCPAgentInterceptor(Environment env, ObjectProvider<CapabilityNegotiator> negotiator,
+            ObjectProvider<CapabilityRegistry> registry) {
+        this.negotiatorProvider = negotiator;
+        this.registry = registry;
+        this.required = env.getProperty("ucp.agent.required", Boolean.class, false);
+        this.timeoutMillis = env.getProperty("ucp.profile.fetch.timeout", Long.class, 2000L);
+        this.failureTtlMillis = env.getProperty("ucp.profile.failure-ttl", Long.class, 10000L);
+        this.uriPolicy = ProfileUriPolicy.fromEnvironment(env);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).addPathPatterns("/ucp/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(NegotiatedContext.REQUEST_ATTRIBUTE, negotiate(request.getHeader(UCPAgentHeader.NAME)));
+        return true;
+    }
+
+    @ExceptionHandler(NegotiationException.class)
+    public ResponseEntity<Map<String, Object>> handleNegotiation(NegotiationException e) {
+        return ResponseEntity.status(e.getStatus()).body(Collections.singletonMap("messages", e.getMessages()));
+    }
+
+    /**
+     * Fail unless the capability is active for the current request.
+     */
+    static void require(String capabilityName) {
+        NegotiatedContext context = NegotiatedContext.current();
+        if (context != null && !context.supports(capabilityName)) {
+            throw new NegotiationException(HttpStatus.BAD_REQUEST, "capability_not_negotiated",
+                    capabilityName + " is not supported by platform profile " + context.getPlatformProfileUri());
+        }
+    }
+
+    NegotiatedContext negotiate(String header) {
+        if (header == null) {
+            if (required) {
+                throw new NegotiationException(HttpStatus.BAD_REQUEST, "missing_ucp_agent",
+                        UCPAgentHeader.NAME + " header with a profile is required");
+            }
+            return unnegotiated();
+        }
+        String profileUri;
+        try {
+            profileUri = UCPAgentHeader.profileUri(header);
+        } catch (IllegalArgumentException e) {
+            throw new NegotiationException(HttpStatus.BAD_REQUEST, "invalid_ucp_agent", e.getMessage());
+        }
+        if (profileUri == null) {
+            throw new NegotiationException(HttpStatus.BAD_REQUEST, "invalid_ucp_agent",
+                    UCPAgentHeader.NAME + " header has no profile");
+        }
+        NegotiatedContext context = contexts.get(profileUri);
+        if (context == null) {
+            // A URI with a context passed already
+            try {
+                uriPolicy.check(profileUri);
+            } catch (IllegalArgumentException e) {
+                throw refused(e.getMessage());
+            }
+        }
+
+        CapabilityNegotiator.UCPProfile profile = profile(profileUri);
+        if (context == null || context.getPlatformProfile() != profile) {
+            // New platform, or its profile was refreshed
+            context = NegotiatedContext.negotiated(profileUri, profile,
+                    negotiator().negotiateCapabilities(profile, businessCapabilities()));
+            contexts.put(profileUri, context);
+        }
+        return context;
+    }
+
+    private CapabilityNegotiator.UCPProfile profile(String profileUri) {
+        Failure failure = failures.get(profileUri);
+        if (failure != null) {
+            if (System.currentTimeMillis() < failure.until) {
+                throw failure.refusal != null ? refused(failure.refusal) : new NegotiationException(
+                        HttpStatus.FAILED_DEPENDENCY, "profile_unreachable",
+                        "Platform profile " + profileUri + " could not be fetched");
+            }
+            failures.remove(profileUri);
+        }
+        CompletableFuture<CapabilityNegotiator.UCPProfile> future = negotiator().fetchPlatformProfile(profileUri);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw unreachable(profileUri, e.getCause());
+        } catch (TimeoutException e) {
+            throw unreachable(profileUri, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw unreachable(profileUri, e);
+        }
+    }
+
+    private NegotiationException unreachable(String profileUri, Throwable cause) {
+        String refusal = cause instanceof PlatformProfileFetcher.ProfileRefusedException ? cause.getMessage() : null;
+        if (refusal == null) {
+            log.warning("Platform profile " + profileUri + " unavailable: " + cause);
+        }
+        if (failureTtlMillis > 0) {
+            failures.put(profileUri, new Failure(System.currentTimeMillis() + failureTtlMillis, refusal));
+        }
+        if (refusal != null) {
+            return refused(refusal);
+        }
+        return new NegotiationException(HttpStatus.FAILED_DEPENDENCY, "profile_unreachable",
+                "Platform profile " + profileUri + " could not be fetched", cause);
+    }
+
+    private static NegotiationException refused(String message) {
+        return new NegotiationException(HttpStatus.FORBIDDEN, "profile_not_allowed", message);
+    }
+
+    private static final class Failure {
+        final long until;
+        // Why the fetcher refused the URI; null when the fetch failed
+        final String refusal;
+
+        Failure(long until, String refusal) {
+            this.until = until;
+            this.refusal = refusal;
+        }
+    }
+
+    /**
+     * A map that keeps the most recently used entries, so clients naming new
+     * profiles push out only the least recently seen ones.
+     */
+    private static <V> Map<String, V> lru(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    private CapabilityNegotiator negotiator() {
+        CapabilityNegotiator current = negotiator;
+        if (current == null) {
+            current = negotiatorProvider.getIfAvailable(CapabilityNegotiator::new);
+            negotiator = current;
+        }
+        return current;
+    }
+
+    private List<UCPCapability> businessCapabilities() {
+        List<UCPCapability> capabilities = businessCapabilities;
+        if (capabilities == null) {
+            CapabilityRegistry capabilityRegistry = registry.getIfAvailable();
+            // Without a registry the REST controllers serve the standard capabilities
+            capabilities = capabilityRegistry != null ? capabilityRegistry.getCapabilities()
+                    : Collections.unmodifiableList(Arrays.asList(CapabilityRegistry.CHECKOUT.toCapability(),
+                            CapabilityRegistry.ORDER.toCapability(),
+                            CapabilityRegistry.IDENTITY_LINKING.toCapability()));
+            businessCapabilities = capabilities;
+        }
+        return capabilities;
+    }
+
+    private NegotiatedContext unnegotiated() {
+        NegotiatedContext context = unnegotiated;
+        if (context == null) {
+            context = NegotiatedContext.unnegotiated(businessCapabilities());
+            unnegotiated = context;
+        }
+        return context;
+    }
+}
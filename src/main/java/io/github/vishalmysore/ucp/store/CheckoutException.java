@@ -0,0 +1,45 @@
+package io.github.vishalmysore.ucp.store;
+
+import io.github.vishalmysore.ucp.domain.common.Message;
+import io.github.vishalmysore.ucp.domain.common.MessageError;
+import org.springframework.http.HttpStatus;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A checkout or order operation that cannot be applied as things are;
+ * answered by the checkout and order controllers with the status and a
+ * {@code messages} body.
+ */
+public class CheckoutException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final List<Message> messages;
+
+    public CheckoutException(HttpStatus status, String code, String content) {
+        this(status, error(code, content));
+    }
+
+    public CheckoutException(HttpStatus status, Message message) {
+        super(message.getContent());
+        this.status = status;
+        this.messages = Collections.singletonList(message);
+    }
+
+    private static Message error(String code, String content) {
+        MessageError error = new MessageError();
+        error.setCode(code);
+        error.setContent(content);
+        error.setSeverity(MessageError.Severity.recoverable);
+        return error;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+}
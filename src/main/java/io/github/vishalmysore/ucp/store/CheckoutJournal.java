@@ -0,0 +1,548 @@
+package io.github.vishalmysore.ucp.store;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.github.vishalmysore.ucp.domain.checkout.CartPricing;
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import io.github.vishalmysore.ucp.domain.checkout.LineItemResponse;
+import io.github.vishalmysore.ucp.domain.checkout.LineTotals;
+import io.github.vishalmysore.ucp.domain.checkout.TotalResponse;
+import io.github.vishalmysore.ucp.domain.common.Buyer;
+import io.github.vishalmysore.ucp.domain.common.ItemResponse;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of checkout session writes, for a
+ * {@link CheckoutSessionStore} to {@link CheckoutSessionStore#recover recover}
+ * from after a restart. Every create and update appends the new snapshot, and
+ * every removal its id, to a memory-mapped segment file, so an append is a
+ * copy into the page cache. The writer then waits until the bytes are forced
+ * to disk; writers that arrive while a force runs are covered together by the
+ * next one (group commit), so a burst of writes costs a few fsyncs rather than
+ * one each.
+ *
+ * {@link #snapshot} writes the live sessions to a snapshot file and deletes
+ * the segments it covers, so recovery reads one snapshot and the segments
+ * written since. Records are checksummed; a torn record at the end of a
+ * segment ends its replay. Updates are journaled after they are applied and
+ * may be appended out of order, so each record carries the session's
+ * generation (one per create) and version, and replay keeps the newest.
+ *
+ * Files live in one directory: {@code segment-<n>.log} and {@code snapshot-<n>.snap}.
+ */
+@Log
+public class CheckoutJournal implements AutoCloseable {
+
+    static final byte PUT = 1;
+    static final byte REMOVE = 2;
+
+    private static final int HEADER = 8;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean fsync;
+
+    private final Object appendLock = new Object();
+    private Segment current;
+    private long appended;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncDone = syncLock.newCondition();
+    private long synced;
+    private boolean syncing;
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private long recoveredGeneration;
+
+    /**
+     * A journal in the directory with 64 MB segments, forced to disk on every write.
+     */
+    public CheckoutJournal(Path directory) {
+        this(directory, 64 << 20, true);
+    }
+
+    /**
+     * @param fsync false to leave flushing to the operating system, surviving a
+     *              process crash but not a power loss
+     */
+    public CheckoutJournal(Path directory, int segmentBytes, boolean fsync) {
+        if (segmentBytes < 4096) {
+            throw new IllegalArgumentException("Segments must be at least 4096 bytes");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records appended so far.
+     */
+    public long getAppendCount() {
+        return appends.sum();
+    }
+
+    /**
+     * Forces to disk so far; lower than the appends when writes were grouped.
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * The highest generation seen by {@link #recover}, removed sessions included,
+     * for new generations to continue from.
+     */
+    long getRecoveredGeneration() {
+        return recoveredGeneration;
+    }
+
+    /**
+     * A session as recovered: its generation and last snapshot.
+     */
+    static final class Recovered {
+        final long generation;
+        final CheckoutSession session;
+
+        Recovered(long generation, CheckoutSession session) {
+            this.generation = generation;
+            this.session = session;
+        }
+    }
+
+    /**
+     * Read the latest snapshot and the segments after it, and start a new segment.
+     * @return the sessions by id, with their generations
+     */
+    Map<String, Recovered> recover() {
+        synchronized (appendLock) {
+            if (current != null) {
+                throw new IllegalStateException("Journal " + directory + " is already open");
+            }
+            TreeMap<Long, Path> snapshots = files("snapshot-", ".snap");
+            TreeMap<Long, Path> segments = files("segment-", ".log");
+            Replay replay = new Replay();
+            long start = 0;
+            if (!snapshots.isEmpty()) {
+                start = snapshots.lastKey();
+                read(snapshots.lastEntry().getValue(), replay);
+            }
+            for (Map.Entry<Long, Path> segment : segments.tailMap(start, true).entrySet()) {
+                read(segment.getValue(), replay);
+            }
+            recoveredGeneration = replay.generation;
+            long next = Math.max(start, segments.isEmpty() ? 0 : segments.lastKey() + 1);
+            current = Segment.create(segmentPath(next), next, segmentBytes);
+            log.info("Recovered " + replay.sessions.size() + " checkout sessions from " + directory);
+            return replay.sessions;
+        }
+    }
+
+    /**
+     * Append a record.
+     * @return the position to {@link #sync} to for it to be durable
+     */
+    long append(byte op, long generation, CheckoutSession session, String id) {
+        byte[] payload = payload(op, generation, session, id);
+        synchronized (appendLock) {
+            if (current == null) {
+                throw new IllegalStateException("Journal " + directory + " is not open");
+            }
+            if (current.remaining() < HEADER + payload.length) {
+                roll(HEADER + payload.length);
+            }
+            current.write(payload);
+            appended += HEADER + payload.length;
+            appends.increment();
+            return appended;
+        }
+    }
+
+    /**
+     * Wait until everything up to the position is on disk, forcing it unless a
+     * force already under way will cover it.
+     */
+    void sync(long position) {
+        if (!fsync) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            while (synced < position) {
+                if (syncing) {
+                    syncDone.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long target = 0;
+                syncLock.unlock();
+                try {
+                    target = force();
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    synced = Math.max(synced, target);
+                    syncDone.signalAll();
+                }
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Start a new segment, then write the sessions to a snapshot and delete the
+     * files it makes redundant. The sessions are read once the new segment is
+     * started, so they include every write in the older ones; writes made
+     * meanwhile land in the new segment, which recovery reads after the snapshot.
+     */
+    void snapshot(Supplier<? extends Collection<Recovered>> sessions) {
+        long sequence;
+        synchronized (appendLock) {
+            if (current == null) {
+                throw new IllegalStateException("Journal " + directory + " is not open");
+            }
+            roll(0);
+            sequence = current.sequence;
+        }
+        Path snapshot = directory.resolve(String.format("snapshot-%016d.snap", sequence));
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(64 << 10);
+                for (Recovered recovered : sessions.get()) {
+                    byte[] payload = payload(PUT, recovered.generation, recovered.session, null);
+                    if (buffer.remaining() < HEADER + payload.length) {
+                        drain(channel, buffer);
+                        if (buffer.capacity() < HEADER + payload.length) {
+                            buffer = ByteBuffer.allocate(HEADER + payload.length);
+                        }
+                    }
+                    frame(buffer, payload);
+                }
+                drain(channel, buffer);
+                channel.force(true);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+            for (Path old : files("segment-", ".log").headMap(sequence, false).values()) {
+                Files.deleteIfExists(old);
+            }
+            for (Path old : files("snapshot-", ".snap").headMap(sequence, false).values()) {
+                Files.deleteIfExists(old);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Checkout journal snapshot failed in " + directory, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (appendLock) {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    private long force() {
+        Segment segment;
+        int from;
+        int to;
+        long target;
+        synchronized (appendLock) {
+            segment = current;
+            from = segment.forced;
+            to = segment.position();
+            target = appended;
+        }
+        if (to > from) {
+            // A segment rolled meanwhile was forced whole by the roll
+            segment.buffer.force(from, to - from);
+            // Only the one syncing thread forces, so nothing else moves this
+            segment.forced = to;
+        }
+        syncs.increment();
+        return target;
+    }
+
+    private void roll(int needed) {
+        Segment previous = current;
+        previous.close();
+        long next = previous.sequence + 1;
+        current = Segment.create(segmentPath(next), next, Math.max(segmentBytes, needed));
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("segment-%016d.log", sequence));
+    }
+
+    private TreeMap<Long, Path> files(String prefix, String suffix) {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), file);
+                } catch (NumberFormatException e) {
+                    log.warning("Ignoring " + file + " in checkout journal");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return files;
+    }
+
+    private static void read(Path file, Replay replay) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= HEADER) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    log.warning("Torn record in " + file + " at " + (buffer.position() - length - HEADER)
+                            + "; ignoring the rest of it");
+                    break;
+                }
+                replay.apply(ByteBuffer.wrap(payload));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read checkout journal file " + file, e);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Unreadable record in " + file + "; ignoring the rest of it", e);
+        }
+    }
+
+    private static void frame(ByteBuffer buffer, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static byte[] payload(byte op, long generation, CheckoutSession session, String id) {
+        byte[] body = op == PUT ? encode(session) : id.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(1 + 8 + body.length);
+        payload.put(op).putLong(generation).put(body);
+        return payload.array();
+    }
+
+    /**
+     * Keeps, per id, the newest record: a higher generation, or the same one
+     * with a higher version; a removal drops its generation and older ones.
+     */
+    private static final class Replay {
+        final Map<String, Recovered> sessions = new HashMap<>();
+        final Map<String, Long> removed = new HashMap<>();
+        long generation;
+
+        void apply(ByteBuffer payload) {
+            byte op = payload.get();
+            long generation = payload.getLong();
+            this.generation = Math.max(this.generation, generation);
+            byte[] body = new byte[payload.remaining()];
+            payload.get(body);
+            if (op == PUT) {
+                CheckoutSession session = decode(body);
+                Long gone = removed.get(session.getId());
+                Recovered existing = sessions.get(session.getId());
+                if (gone != null && gone >= generation) {
+                    return;
+                }
+                if (existing == null || existing.generation < generation
+                        || (existing.generation == generation && existing.session.getVersion() < session.getVersion())) {
+                    sessions.put(session.getId(), new Recovered(generation, session));
+                }
+            } else if (op == REMOVE) {
+                String id = new String(body, StandardCharsets.UTF_8);
+                Recovered existing = sessions.get(id);
+                if (existing != null && existing.generation <= generation) {
+                    sessions.remove(id);
+                }
+                removed.merge(id, generation, Math::max);
+            }
+        }
+    }
+
+    private static byte[] encode(CheckoutSession session) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("id", session.getId());
+        node.put("status", session.getStatus() != null ? session.getStatus().name() : null);
+        node.put("currency", session.getCurrency());
+        node.set("buyer", MAPPER.valueToTree(session.getBuyer()));
+        node.put("version", session.getVersion());
+        node.put("expires_at", session.getExpiresAt());
+        if (session.getPricing() != null) {
+            // Own amounts only: the rolled-up ones are priced again on recovery
+            ArrayNode lines = node.putArray("priced_lines");
+            for (LineItemResponse line : session.getPricing().getLineItems()) {
+                ObjectNode encoded = lines.addObject();
+                encoded.put("id", line.getId());
+                encoded.set("item", MAPPER.valueToTree(line.getItem()));
+                encoded.put("quantity", line.getQuantity());
+                encoded.put("parent_id", line.getParentId());
+                ArrayNode own = encoded.putArray("own");
+                LineTotals totals = (LineTotals) line.getTotals();
+                for (TotalResponse.Type type : TotalResponse.Type.values()) {
+                    long amount = totals.ownAmount(type);
+                    if (type != TotalResponse.Type.total && amount != 0) {
+                        own.addObject().put("type", type.name()).put("amount", amount);
+                    }
+                }
+            }
+        } else {
+            node.set("line_items", MAPPER.valueToTree(session.getLineItems()));
+            node.set("totals", MAPPER.valueToTree(session.getTotals()));
+        }
+        try {
+            return MAPPER.writeValueAsBytes(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CheckoutSession decode(byte[] body) {
+        try {
+            JsonNode node = MAPPER.readTree(body);
+            String id = node.get("id").asText();
+            CheckoutStatus status = node.hasNonNull("status") ? CheckoutStatus.valueOf(node.get("status").asText()) : null;
+            String currency = node.hasNonNull("currency") ? node.get("currency").asText() : null;
+            Buyer buyer = node.hasNonNull("buyer") ? MAPPER.treeToValue(node.get("buyer"), Buyer.class) : null;
+            CheckoutSession session;
+            if (node.has("priced_lines")) {
+                List<LineItemResponse> lines = new ArrayList<>();
+                for (JsonNode encoded : node.get("priced_lines")) {
+                    LineItemResponse line = new LineItemResponse();
+                    line.setId(encoded.hasNonNull("id") ? encoded.get("id").asText() : null);
+                    line.setItem(encoded.hasNonNull("item")
+                            ? MAPPER.treeToValue(encoded.get("item"), ItemResponse.class) : null);
+                    line.setQuantity(encoded.hasNonNull("quantity") ? encoded.get("quantity").asInt() : null);
+                    line.setParentId(encoded.hasNonNull("parent_id") ? encoded.get("parent_id").asText() : null);
+                    line.setTotals(totals(encoded.get("own")));
+                    lines.add(line);
+                }
+                session = new CheckoutSession(id, status, currency, buyer, CartPricing.price(lines));
+            } else {
+                List<LineItemResponse> lines = new ArrayList<>();
+                for (JsonNode line : node.path("line_items")) {
+                    lines.add(MAPPER.treeToValue(line, LineItemResponse.class));
+                }
+                session = new CheckoutSession(id, status, currency, buyer, Collections.unmodifiableList(lines),
+                        totals(node.get("totals")));
+            }
+            return session.stored(node.get("expires_at").asLong(), node.get("version").asLong());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<TotalResponse> totals(JsonNode node) throws IOException {
+        List<TotalResponse> totals = new ArrayList<>();
+        if (node != null) {
+            for (JsonNode total : node) {
+                totals.add(MAPPER.treeToValue(total, TotalResponse.class));
+            }
+        }
+        return Collections.unmodifiableList(totals);
+    }
+
+    /**
+     * A segment file mapped for appending.
+     */
+    private static final class Segment {
+        final long sequence;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // Up to where it is forced to disk
+        int forced;
+
+        private Segment(long sequence, FileChannel channel, MappedByteBuffer buffer) {
+            this.sequence = sequence;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, long sequence, int size) {
+            try {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                return new Segment(sequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create checkout journal segment " + path, e);
+            }
+        }
+
+        int position() {
+            return buffer.position();
+        }
+
+        int remaining() {
+            return buffer.remaining();
+        }
+
+        void write(byte[] payload) {
+            frame(buffer, payload);
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
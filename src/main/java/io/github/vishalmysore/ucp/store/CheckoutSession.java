@@ -0,0 +1,143 @@
+package io.github.vishalmysore.ucp.store;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import io.github.vishalmysore.ucp.domain.checkout.CartPricing;
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import io.github.vishalmysore.ucp.domain.checkout.LineItemResponse;
+import io.github.vishalmysore.ucp.domain.checkout.TotalResponse;
+import io.github.vishalmysore.ucp.domain.common.Buyer;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of a checkout session, written as the UCP checkout
+ * object. Changes make a new snapshot that shares the unchanged parts, so a
+ * reader never sees a half-applied update. The line items, totals and buyer
+ * are shared between snapshots and must not be modified.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"id", "status", "currency", "buyer", "line_items", "totals", "expires_at"})
+public final class CheckoutSession {
+
+    private final String id;
+    private final CheckoutStatus status;
+    private final String currency;
+    private final Buyer buyer;
+    private final List<LineItemResponse> lineItems;
+    private final List<TotalResponse> totals;
+    private final CartPricing pricing;
+    private final long expiresAt;
+    private final long version;
+
+    public CheckoutSession(String id, CheckoutStatus status, String currency, Buyer buyer,
+            List<LineItemResponse> lineItems, List<TotalResponse> totals) {
+        this(id, status, currency, buyer, lineItems, totals, null, 0, 0);
+    }
+
+    public CheckoutSession(String id, CheckoutStatus status, String currency, Buyer buyer, CartPricing pricing) {
+        this(id, status, currency, buyer, pricing.getLineItems(), pricing.getTotals(), pricing, 0, 0);
+    }
+
+    private CheckoutSession(String id, CheckoutStatus status, String currency, Buyer buyer,
+            List<LineItemResponse> lineItems, List<TotalResponse> totals, CartPricing pricing, long expiresAt,
+            long version) {
+        this.id = id;
+        this.status = status;
+        this.currency = currency;
+        this.buyer = buyer;
+        this.lineItems = lineItems != null ? lineItems : Collections.<LineItemResponse>emptyList();
+        this.totals = totals != null ? totals : Collections.<TotalResponse>emptyList();
+        this.pricing = pricing;
+        this.expiresAt = expiresAt;
+        this.version = version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public CheckoutStatus getStatus() {
+        return status;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public Buyer getBuyer() {
+        return buyer;
+    }
+
+    @JsonProperty("line_items")
+    public List<LineItemResponse> getLineItems() {
+        return lineItems;
+    }
+
+    public List<TotalResponse> getTotals() {
+        return totals;
+    }
+
+    /**
+     * The pricing of the line items and totals, or null if they were given as they are.
+     */
+    @JsonIgnore
+    public CartPricing getPricing() {
+        return pricing;
+    }
+
+    /**
+     * Expiry in epoch milliseconds, set by the store on every write.
+     */
+    @JsonIgnore
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    @JsonProperty("expires_at")
+    public String getExpiresAtText() {
+        return expiresAt > 0 ? Instant.ofEpochMilli(expiresAt).toString() : null;
+    }
+
+    /**
+     * Number of writes to the session, set by the store; 1 once created.
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
+    public CheckoutSession withStatus(CheckoutStatus status) {
+        return new CheckoutSession(id, status, currency, buyer, lineItems, totals, pricing, expiresAt, version);
+    }
+
+    public CheckoutSession withCurrency(String currency) {
+        return new CheckoutSession(id, status, currency, buyer, lineItems, totals, pricing, expiresAt, version);
+    }
+
+    public CheckoutSession withBuyer(Buyer buyer) {
+        return new CheckoutSession(id, status, currency, buyer, lineItems, totals, pricing, expiresAt, version);
+    }
+
+    public CheckoutSession withLineItems(List<LineItemResponse> lineItems, List<TotalResponse> totals) {
+        return new CheckoutSession(id, status, currency, buyer, lineItems, totals, null, expiresAt, version);
+    }
+
+    public CheckoutSession withPricing(CartPricing pricing) {
+        return new CheckoutSession(id, status, currency, buyer, pricing.getLineItems(), pricing.getTotals(), pricing,
+                expiresAt, version);
+    }
+
+    CheckoutSession stored(long expiresAt, long version) {
+        return new CheckoutSession(id, status, currency, buyer, lineItems, totals, pricing, expiresAt, version);
+    }
+
+    @Override
+    public String toString() {
+        return id + "[" + status + ", v" + version + ", " + lineItems.size() + " items]";
+    }
+}
@@ -0,0 +1,433 @@
+package io.github.vishalmysore.ucp.store;
+
+import io.github.vishalmysore.ucp.domain.discovery.VersionedCheckout;
+import lombok.extern.java.Log;
+import org.springframework.http.HttpStatus;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+
+/**
+ * In-memory checkout sessions with a time to live. Reads are a lock-free map
+ * lookup returning an immutable {@link CheckoutSession}; updates compare and
+ * set the next snapshot, and bump its version, so neither takes a lock and an
+ * update can be made conditional on the version it was based on. Every update
+ * moves the session's expiry to now plus the TTL.
+ *
+ * Expiry is kept in {@link TimingWheel}s whose timers are the map entries
+ * themselves, so an open session costs its entry and snapshot and no
+ * scheduled task. Creation, removal and the sweep take one of a power-of-two
+ * number of stripe locks, chosen by session id, that guard a wheel each; one
+ * sweep per tick ({@link #expire()}, run by {@link #startExpiry()}) removes
+ * what fell due and re-arms the timers of sessions updated since they were
+ * set. A session is never returned after its expiry, and is removed at most
+ * one tick later.
+ *
+ * With a {@link CheckoutJournal} ({@link #recover}) every create, update and
+ * removal is appended to it and on disk before the call returns, and the
+ * sessions are read back from it on start; {@link #snapshot()} compacts it.
+ * Expiry is not journaled: recovery drops the sessions whose expiry passed.
+ */
+@Log
+public class CheckoutSessionStore implements AutoCloseable {
+
+    /**
+     * Expected version that matches any version.
+     */
+    public static final long ANY_VERSION = VersionedCheckout.ANY_VERSION;
+
+    // Set in place of the snapshot of a removed entry; expired for every reader and writer
+    private static final CheckoutSession REMOVED = new CheckoutSession(null, null, null, null, null, null);
+    private static final AtomicReferenceFieldUpdater<Entry, CheckoutSession> SESSION =
+            AtomicReferenceFieldUpdater.newUpdater(Entry.class, CheckoutSession.class, "session");
+
+    private final Map<String, Entry> sessions;
+    private final Stripe[] stripes;
+    private final long ttlMillis;
+    private final long tickMillis;
+    private final Clock clock;
+    private final LongAdder expired = new LongAdder();
+    // Numbers each create, so the journal can tell a session from an earlier one with its id
+    private final AtomicLong generations = new AtomicLong();
+    private volatile CheckoutJournal journal;
+    private ScheduledExecutorService sweeper;
+    private ScheduledExecutorService snapshotter;
+
+    public CheckoutSessionStore(Duration ttl) {
+        this(ttl, Duration.ofSeconds(1), 64, Clock.systemUTC());
+    }
+
+    /**
+     * @param stripes number of write locks and wheels, rounded up to a power of two
+     */
+    public CheckoutSessionStore(Duration ttl, Duration tick, int stripes, Clock clock) {
+        if (ttl.toMillis() <= 0 || tick.toMillis() <= 0 || stripes <= 0) {
+            throw new IllegalArgumentException("TTL, tick and stripes must be positive");
+        }
+        this.ttlMillis = ttl.toMillis();
+        this.tickMillis = tick.toMillis();
+        this.clock = clock;
+        this.sessions = new ConcurrentHashMap<>(1024, 0.75f, stripes);
+        int count = 1;
+        while (count < stripes) {
+            count <<= 1;
+        }
+        this.stripes = new Stripe[count];
+        long startTick = clock.millis() / tickMillis;
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe(startTick);
+        }
+    }
+
+    /**
+     * The current snapshot of a session, or null if it does not exist or has expired.
+     */
+    public CheckoutSession get(String id) {
+        Entry entry = sessions.get(id);
+        if (entry == null) {
+            return null;
+        }
+        CheckoutSession session = entry.session;
+        return session.getExpiresAt() > clock.millis() ? session : null;
+    }
+
+    /**
+     * Store a new session as version 1.
+     * @throws CheckoutException 409 if a session with its id exists
+     */
+    public CheckoutSession create(CheckoutSession session) {
+        Stripe stripe = stripe(session.getId());
+        CheckoutSession stored;
+        long position;
+        synchronized (stripe) {
+            long now = clock.millis();
+            stored = session.stored(now + ttlMillis, 1);
+            Entry entry = new Entry(session.getId(), stored, generations.incrementAndGet());
+            Entry existing = sessions.putIfAbsent(session.getId(), entry);
+            if (existing != null) {
+                CheckoutSession current = existing.session;
+                // Expired but not swept yet: take its place, unless an update just renewed it
+                if (current.getExpiresAt() > now || !SESSION.compareAndSet(existing, current, REMOVED)) {
+                    throw new CheckoutException(HttpStatus.CONFLICT, "duplicate_session",
+                            "Checkout session " + session.getId() + " already exists");
+                }
+                stripe.wheel.cancel(existing);
+                sessions.put(session.getId(), entry);
+            }
+            try {
+                position = append(CheckoutJournal.PUT, entry, stored);
+            } catch (RuntimeException e) {
+                SESSION.set(entry, REMOVED);
+                sessions.remove(session.getId(), entry);
+                throw e;
+            }
+            stripe.wheel.schedule(entry, expireTick(stored.getExpiresAt()));
+        }
+        sync(position);
+        return stored;
+    }
+
+    /**
+     * Apply a change to a session and store the result as the next version.
+     * @see #update(String, long, UnaryOperator)
+     */
+    public CheckoutSession update(String id, UnaryOperator<CheckoutSession> change) {
+        return update(id, ANY_VERSION, change);
+    }
+
+    /**
+     * Apply a change to the session at the expected version and store the result
+     * as the next version, with a compare-and-set of the snapshot. When another
+     * update lands first the change is applied again to the newer snapshot, so it
+     * must be free of side effects and keep the id; when it returns its argument
+     * nothing is written.
+     * @param expectedVersion the version the change is based on, or {@link #ANY_VERSION}
+     * @return the stored snapshot, or null if the session does not exist or has expired
+     * @throws CheckoutException 412 if the session is at another version
+     */
+    public CheckoutSession update(String id, long expectedVersion, UnaryOperator<CheckoutSession> change) {
+        Entry entry = sessions.get(id);
+        if (entry == null) {
+            return null;
+        }
+        while (true) {
+            CheckoutSession current = entry.session;
+            long now = clock.millis();
+            if (current.getExpiresAt() <= now) {
+                return null;
+            }
+            if (expectedVersion != ANY_VERSION && current.getVersion() != expectedVersion) {
+                throw new CheckoutException(HttpStatus.PRECONDITION_FAILED, "version_mismatch",
+                        "Checkout session " + id + " is at version " + current.getVersion()
+                                + ", not " + expectedVersion);
+            }
+            CheckoutSession next = change.apply(current);
+            if (next == current) {
+                return current;
+            }
+            if (!id.equals(next.getId())) {
+                throw new IllegalArgumentException("Checkout session " + id + " cannot change its id");
+            }
+            // The wheel keeps the older deadline; the sweep re-arms it from the snapshot
+            CheckoutSession stored = next.stored(now + ttlMillis, current.getVersion() + 1);
+            if (SESSION.compareAndSet(entry, current, stored)) {
+                // Concurrent updates may append out of order; recovery keeps the highest version
+                long position = append(CheckoutJournal.PUT, entry, stored);
+                if (entry.session == REMOVED) {
+                    // Removed before the put was appended, which may then follow the removal,
+                    // even into the segment after a snapshot: journal the removal again after it
+                    position = append(CheckoutJournal.REMOVE, entry, null);
+                }
+                sync(position);
+                return stored;
+            }
+        }
+    }
+
+    /**
+     * Remove a session.
+     * @return its last snapshot, or null if it did not exist
+     */
+    public CheckoutSession remove(String id) {
+        Stripe stripe = stripe(id);
+        CheckoutSession removed;
+        long position;
+        synchronized (stripe) {
+            Entry entry = sessions.remove(id);
+            if (entry == null) {
+                return null;
+            }
+            stripe.wheel.cancel(entry);
+            removed = SESSION.getAndSet(entry, REMOVED);
+            position = append(CheckoutJournal.REMOVE, entry, null);
+        }
+        sync(position);
+        return removed;
+    }
+
+    /**
+     * Load the sessions in the journal and journal every write from now on.
+     * Call before the store is used.
+     * @throws IllegalStateException if the store already has a journal
+     */
+    public synchronized CheckoutSessionStore recover(CheckoutJournal journal) {
+        if (this.journal != null) {
+            throw new IllegalStateException("Checkout session store already has a journal");
+        }
+        long now = clock.millis();
+        for (CheckoutJournal.Recovered recovered : journal.recover().values()) {
+            CheckoutSession session = recovered.session;
+            if (session.getExpiresAt() <= now) {
+                continue;
+            }
+            Entry entry = new Entry(session.getId(), session, recovered.generation);
+            Stripe stripe = stripe(session.getId());
+            synchronized (stripe) {
+                if (sessions.putIfAbsent(session.getId(), entry) == null) {
+                    stripe.wheel.schedule(entry, expireTick(session.getExpiresAt()));
+                }
+            }
+        }
+        generations.accumulateAndGet(journal.getRecoveredGeneration(), Math::max);
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Write the live sessions to a journal snapshot and drop the journal
+     * segments it replaces. Writes go on meanwhile.
+     * @return the number of sessions written
+     * @throws IllegalStateException if the store has no journal
+     */
+    public int snapshot() {
+        CheckoutJournal journal = this.journal;
+        if (journal == null) {
+            throw new IllegalStateException("Checkout session store has no journal");
+        }
+        long now = clock.millis();
+        List<CheckoutJournal.Recovered> live = new ArrayList<>(sessions.size());
+        journal.snapshot(() -> {
+            // Read after the journal moved to a new segment, so the snapshot covers the old ones
+            for (Entry entry : sessions.values()) {
+                CheckoutSession session = entry.session;
+                if (session.getExpiresAt() > now) {
+                    live.add(new CheckoutJournal.Recovered(entry.generation, session));
+                }
+            }
+            return live;
+        });
+        return live.size();
+    }
+
+    /**
+     * Sessions held, including expired ones not swept yet.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Sessions removed by expiry so far.
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * Remove the sessions that expired up to now, one stripe lock at a time.
+     * @return the number removed
+     */
+    public int expire() {
+        long now = clock.millis();
+        long tick = now / tickMillis;
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.now = now;
+                stripe.swept = 0;
+                stripe.wheel.advance(tick, stripe);
+                removed += stripe.swept;
+            }
+        }
+        expired.add(removed);
+        return removed;
+    }
+
+    /**
+     * Run {@link #expire()} every tick on a daemon thread until {@link #close()}.
+     */
+    public synchronized CheckoutSessionStore startExpiry() {
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ucp-checkout-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleAtFixedRate(() -> {
+                try {
+                    expire();
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Checkout session expiry failed", e);
+                }
+            }, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Run {@link #snapshot()} at the interval on a daemon thread until {@link #close()}.
+     */
+    public synchronized CheckoutSessionStore startSnapshots(Duration interval) {
+        if (snapshotter == null) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ucp-checkout-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(() -> {
+                try {
+                    snapshot();
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Checkout session snapshot failed", e);
+                }
+            }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Stop expiry and snapshots. The journal is left open for its owner to close.
+     */
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+            snapshotter = null;
+        }
+    }
+
+    private long append(byte op, Entry entry, CheckoutSession session) {
+        CheckoutJournal journal = this.journal;
+        return journal != null ? journal.append(op, entry.generation, session, entry.id) : 0;
+    }
+
+    private void sync(long position) {
+        CheckoutJournal journal = this.journal;
+        if (journal != null && position > 0) {
+            journal.sync(position);
+        }
+    }
+
+    private long expireTick(long expiresAt) {
+        return (expiresAt + tickMillis - 1) / tickMillis;
+    }
+
+    private Stripe stripe(String id) {
+        int h = id.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * A map value, and its own expiry timer.
+     */
+    private static final class Entry extends TimingWheel.Timer {
+        final String id;
+        final long generation;
+        volatile CheckoutSession session;
+
+        Entry(String id, CheckoutSession session, long generation) {
+            this.id = id;
+            this.session = session;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A lock (its monitor) and the expiry wheel of the sessions hashed to it.
+     */
+    private final class Stripe implements Consumer<Entry> {
+        final TimingWheel<Entry> wheel;
+        long now;
+        int swept;
+
+        Stripe(long startTick) {
+            this.wheel = new TimingWheel<>(startTick);
+        }
+
+        @Override
+        public void accept(Entry entry) {
+            while (true) {
+                CheckoutSession session = entry.session;
+                if (session.getExpiresAt() > now) {
+                    // Updated since the timer was set
+                    wheel.schedule(entry, expireTick(session.getExpiresAt()));
+                    return;
+                }
+                // Fails only if an update renewed it meanwhile
+                if (SESSION.compareAndSet(entry, session, REMOVED)) {
+                    break;
+                }
+            }
+            if (sessions.remove(entry.id, entry)) {
+                swept++;
+            }
+        }
+    }
+}
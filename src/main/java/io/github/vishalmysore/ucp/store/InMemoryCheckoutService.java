@@ -0,0 +1,356 @@
+package io.github.vishalmysore.ucp.store;
+
+import io.github.vishalmysore.ucp.domain.checkout.CartPricing;
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutLifecycle;
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import io.github.vishalmysore.ucp.domain.checkout.InvalidTransitionException;
+import io.github.vishalmysore.ucp.domain.checkout.LineItemResponse;
+import io.github.vishalmysore.ucp.domain.common.Buyer;
+import io.github.vishalmysore.ucp.domain.common.ItemResponse;
+import io.github.vishalmysore.ucp.domain.discovery.PatchableCheckout;
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import io.github.vishalmysore.ucp.domain.discovery.VersionedCheckout;
+import org.springframework.http.HttpStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reference {@link UCPAware} keeping checkout sessions in a
+ * {@link CheckoutSessionStore}. Line items are priced from a catalog when one
+ * is given, else from the item in the request, and totals are kept by
+ * {@link CartPricing}, so an update reprices only the lines it changes. A session is {@code ready_for_complete} once it has items
+ * and a buyer email, and changes status only as {@link CheckoutLifecycle}
+ * allows; completion passes through {@code complete_in_progress} around
+ * {@link #processPayment}. Sessions are versioned, so REST updates can be made
+ * conditional with {@code If-Match}, and patched with JSON Merge Patch
+ * ({@link #patchCheckout}). A completed session places its order in the
+ * {@link OrderStore} when one is given. Identity linking is left to the host.
+ *
+ * <pre>
+ * &#64;Bean
+ * UCPAware checkoutService() {
+ *     return new InMemoryCheckoutService(new CheckoutSessionStore(Duration.ofHours(6)).startExpiry());
+ * }
+ * </pre>
+ */
+public class InMemoryCheckoutService implements UCPAware, VersionedCheckout<Map<String, Object>>,
+        PatchableCheckout {
+
+    private final CheckoutSessionStore store;
+    private final Function<String, ItemResponse> catalog;
+    private final OrderStore orders;
+
+    public InMemoryCheckoutService(CheckoutSessionStore store) {
+        this(store, null);
+    }
+
+    /**
+     * @param catalog item by id, or null for unknown items
+     */
+    public InMemoryCheckoutService(CheckoutSessionStore store, Function<String, ItemResponse> catalog) {
+        this(store, catalog, null);
+    }
+
+    /**
+     * @param orders where completed sessions place their orders, or null for none
+     */
+    public InMemoryCheckoutService(CheckoutSessionStore store, Function<String, ItemResponse> catalog,
+            OrderStore orders) {
+        this.store = store;
+        this.catalog = catalog;
+        this.orders = orders;
+    }
+
+    public CheckoutSessionStore getStore() {
+        return store;
+    }
+
+    /**
+     * The order store, or null if orders are not kept.
+     */
+    public OrderStore getOrders() {
+        return orders;
+    }
+
+    @Override
+    public Object createCheckout(Map<String, Object> checkoutRequest) {
+        CartPricing pricing = pricing(CartPricing.EMPTY, lineItems(checkoutRequest.get("line_items")));
+        CheckoutSession session = new CheckoutSession("chk_" + UUID.randomUUID().toString().replace("-", ""),
+                CheckoutStatus.incomplete, string(checkoutRequest.get("currency")),
+                buyer(checkoutRequest.get("buyer")), pricing);
+        return store.create(session.withStatus(readiness(session)));
+    }
+
+    @Override
+    public Object getCheckout(String checkoutId) {
+        CheckoutSession session = store.get(checkoutId);
+        if (session == null) {
+            throw notFound(checkoutId);
+        }
+        return session;
+    }
+
+    @Override
+    public Object updateCheckout(String checkoutId, Map<String, Object> checkoutUpdate) {
+        return updateCheckout(checkoutId, ANY_VERSION, checkoutUpdate);
+    }
+
+    @Override
+    public long versionOf(Object checkout) {
+        return checkout instanceof CheckoutSession ? ((CheckoutSession) checkout).getVersion() : -1;
+    }
+
+    @Override
+    public Object updateCheckout(String checkoutId, long expectedVersion, Map<String, Object> checkoutUpdate) {
+        // Parse once, outside the compare-and-set
+        List<LineItemResponse> lineItems = checkoutUpdate.containsKey("line_items")
+                ? lineItems(checkoutUpdate.get("line_items")) : null;
+        Buyer buyer = checkoutUpdate.containsKey("buyer") ? buyer(checkoutUpdate.get("buyer")) : null;
+        String currency = string(checkoutUpdate.get("currency"));
+        return write(checkoutId, expectedVersion, current -> {
+            CheckoutSession next = current;
+            if (lineItems != null) {
+                next = next.withPricing(pricing(current.getPricing(), lineItems));
+            }
+            if (buyer != null) {
+                next = next.withBuyer(buyer);
+            }
+            if (currency != null) {
+                next = next.withCurrency(currency);
+            }
+            return next.withStatus(transition(current, readiness(next)));
+        });
+    }
+
+    /**
+     * Merge the patch into the stored session: {@code currency} and the
+     * members of {@code buyer} are set, or removed by null, and
+     * {@code line_items} replaces the lines, repricing only those that changed.
+     * Other members are read-only and ignored, as on update.
+     */
+    @Override
+    public Object patchCheckout(String checkoutId, long expectedVersion, Map<String, Object> mergePatch) {
+        List<LineItemResponse> lineItems = mergePatch.containsKey("line_items")
+                ? lineItems(mergePatch.get("line_items")) : null;
+        boolean patchBuyer = mergePatch.containsKey("buyer");
+        Map<?, ?> buyerPatch = mergePatch.get("buyer") != null ? map(mergePatch.get("buyer"), "buyer") : null;
+        boolean patchCurrency = mergePatch.containsKey("currency");
+        String currency = string(mergePatch.get("currency"));
+        return write(checkoutId, expectedVersion, current -> {
+            CheckoutSession next = current;
+            if (lineItems != null) {
+                next = next.withPricing(pricing(current.getPricing(), lineItems));
+            }
+            if (patchBuyer) {
+                next = next.withBuyer(buyerPatch != null ? patched(current.getBuyer(), buyerPatch) : null);
+            }
+            if (patchCurrency) {
+                next = next.withCurrency(currency);
+            }
+            return next.withStatus(transition(current, readiness(next)));
+        });
+    }
+
+    /**
+     * Move the session to {@code complete_in_progress}, so a second complete or
+     * a cancel racing with this one is rejected, process the payment, move it
+     * to {@code completed} and place its order. A payment that fails sends the
+     * session to {@code requires_escalation}.
+     */
+    @Override
+    public Object completeCheckout(String checkoutId, Map<String, Object> paymentDetails) {
+        CheckoutSession session = write(checkoutId,
+                current -> current.withStatus(transition(current, CheckoutStatus.complete_in_progress)));
+        try {
+            processPayment(session, paymentDetails);
+        } catch (RuntimeException e) {
+            write(checkoutId, current -> current.withStatus(transition(current, CheckoutStatus.requires_escalation)));
+            throw e;
+        }
+        CheckoutSession completed = write(checkoutId,
+                current -> current.withStatus(transition(current, CheckoutStatus.completed)));
+        if (orders != null) {
+            orders.place(completed);
+        }
+        return completed;
+    }
+
+    @Override
+    public Object cancelCheckout(String checkoutId) {
+        return write(checkoutId, current -> current.withStatus(transition(current, CheckoutStatus.canceled)));
+    }
+
+    /**
+     * Identity linking is not provided by this service; subclasses that link identities override it.
+     */
+    @Override
+    public Object linkIdentity(Map<String, Object> oauthRequest) {
+        throw new CheckoutException(HttpStatus.NOT_IMPLEMENTED, "unsupported_operation",
+                "Identity linking is not provided by " + getClass().getSimpleName());
+    }
+
+    @Override
+    public Object getOrder(String orderId) {
+        return orders != null ? orders.get(orderId) : null;
+    }
+
+    /**
+     * Charge the payment for a session in {@code complete_in_progress}; does
+     * nothing here. Throw to leave the session in {@code requires_escalation}.
+     */
+    protected void processPayment(CheckoutSession session, Map<String, Object> paymentDetails) {
+    }
+
+    private CheckoutSession write(String checkoutId, UnaryOperator<CheckoutSession> change) {
+        return write(checkoutId, ANY_VERSION, change);
+    }
+
+    private CheckoutSession write(String checkoutId, long expectedVersion, UnaryOperator<CheckoutSession> change) {
+        CheckoutSession session = store.update(checkoutId, expectedVersion, change);
+        if (session == null) {
+            throw notFound(checkoutId);
+        }
+        return session;
+    }
+
+    private static CheckoutStatus transition(CheckoutSession session, CheckoutStatus to) {
+        try {
+            return CheckoutLifecycle.transition(session.getId(), session.getStatus(), to);
+        } catch (InvalidTransitionException e) {
+            throw new CheckoutException(HttpStatus.CONFLICT, e.getMessageError());
+        }
+    }
+
+    private static CheckoutStatus readiness(CheckoutSession session) {
+        boolean ready = !session.getLineItems().isEmpty() && session.getBuyer() != null
+                && session.getBuyer().getEmail() != null;
+        return ready ? CheckoutStatus.ready_for_complete : CheckoutStatus.incomplete;
+    }
+
+    private static CheckoutException notFound(String checkoutId) {
+        return new CheckoutException(HttpStatus.NOT_FOUND, "session_not_found",
+                "Checkout session " + checkoutId + " does not exist");
+    }
+
+    private List<LineItemResponse> lineItems(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        if (!(value instanceof List)) {
+            throw invalid("line_items must be an array");
+        }
+        List<?> requested = (List<?>) value;
+        List<LineItemResponse> lineItems = new ArrayList<>(requested.size());
+        for (int i = 0; i < requested.size(); i++) {
+            Map<?, ?> line = map(requested.get(i), "line_items[" + i + "]");
+            Map<?, ?> requestedItem = map(line.get("item"), "line_items[" + i + "].item");
+            String itemId = string(requestedItem.get("id"));
+            ItemResponse item = catalog != null && itemId != null ? catalog.apply(itemId) : item(requestedItem);
+            if (item == null || item.getId() == null) {
+                throw new CheckoutException(HttpStatus.BAD_REQUEST, "item_not_found",
+                        "Unknown item " + itemId + " in line_items[" + i + "]");
+            }
+            Object quantity = line.get("quantity");
+            if (!(quantity instanceof Number) || ((Number) quantity).longValue() <= 0
+                    || ((Number) quantity).longValue() > Integer.MAX_VALUE) {
+                throw invalid("line_items[" + i + "].quantity must be a positive integer");
+            }
+            LineItemResponse lineItem = new LineItemResponse();
+            Object lineId = line.get("id");
+            lineItem.setId(lineId != null ? lineId.toString() : "li_" + (i + 1));
+            lineItem.setItem(item);
+            lineItem.setQuantity(((Number) quantity).intValue());
+            lineItem.setParentId(string(line.get("parent_id")));
+            lineItems.add(lineItem);
+        }
+        return Collections.unmodifiableList(lineItems);
+    }
+
+    private static CartPricing pricing(CartPricing current, List<LineItemResponse> lineItems) {
+        try {
+            return current != null ? current.reprice(lineItems) : CartPricing.price(lineItems);
+        } catch (ArithmeticException e) {
+            throw invalid("Checkout total overflows");
+        } catch (IllegalArgumentException e) {
+            throw invalid(e.getMessage());
+        }
+    }
+
+    private static ItemResponse item(Map<?, ?> requested) {
+        ItemResponse item = new ItemResponse();
+        item.setId(string(requested.get("id")));
+        item.setTitle(string(requested.get("title")));
+        Object price = requested.get("price");
+        if (price != null && !(price instanceof Number)) {
+            throw invalid("item price must be an integer amount in minor units");
+        }
+        item.setPrice(price != null ? ((Number) price).longValue() : null);
+        item.setImageUrl(string(requested.get("image_url")));
+        return item;
+    }
+
+    private static Buyer buyer(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Map<?, ?> requested = map(value, "buyer");
+        Buyer buyer = new Buyer();
+        buyer.setId(string(requested.get("id")));
+        buyer.setEmail(string(requested.get("email")));
+        buyer.setPhone(string(requested.get("phone_number")));
+        buyer.setFirstName(string(requested.get("first_name")));
+        buyer.setLastName(string(requested.get("last_name")));
+        return buyer;
+    }
+
+    private static Buyer patched(Buyer current, Map<?, ?> patch) {
+        // A copy: the current buyer is shared with the stored snapshot
+        Buyer buyer = new Buyer();
+        if (current != null) {
+            buyer.setId(current.getId());
+            buyer.setEmail(current.getEmail());
+            buyer.setPhone(current.getPhone());
+            buyer.setFirstName(current.getFirstName());
+            buyer.setLastName(current.getLastName());
+            buyer.setShippingAddress(current.getShippingAddress());
+            buyer.setBillingAddress(current.getBillingAddress());
+        }
+        if (patch.containsKey("id")) {
+            buyer.setId(string(patch.get("id")));
+        }
+        if (patch.containsKey("email")) {
+            buyer.setEmail(string(patch.get("email")));
+        }
+        if (patch.containsKey("phone_number")) {
+            buyer.setPhone(string(patch.get("phone_number")));
+        }
+        if (patch.containsKey("first_name")) {
+            buyer.setFirstName(string(patch.get("first_name")));
+        }
+        if (patch.containsKey("last_name")) {
+            buyer.setLastName(string(patch.get("last_name")));
+        }
+        return buyer;
+    }
+
+    private static Map<?, ?> map(Object value, String path) {
+        if (!(value instanceof Map)) {
+            throw invalid(path + " must be an object");
+        }
+        return (Map<?, ?>) value;
+    }
+
+    private static String string(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static CheckoutException invalid(String content) {
+        return new CheckoutException(HttpStatus.BAD_REQUEST, "invalid_request", content);
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.vishalmysore.ucp.store;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import io.github.vishalmysore.ucp.domain.checkout.LineItemResponse;
+import io.github.vishalmysore.ucp.domain.checkout.TotalResponse;
+import io.github.vishalmysore.ucp.domain.common.Buyer;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable snapshot of an order placed by completing a checkout session,
+ * written as the UCP order object. It shares the line items, totals and buyer
+ * of the completed session, which must not be modified.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"id", "checkout_id", "status", "currency", "buyer", "line_items", "totals", "created_at"})
+public final class Order {
+
+    private final String id;
+    private final String checkoutId;
+    private final OrderStatus status;
+    private final String currency;
+    private final Buyer buyer;
+    private final List<LineItemResponse> lineItems;
+    private final List<TotalResponse> totals;
+    private final long createdAt;
+    private final long sequence;
+
+    private Order(String id, String checkoutId, OrderStatus status, String currency, Buyer buyer,
+            List<LineItemResponse> lineItems, List<TotalResponse> totals, long createdAt, long sequence) {
+        this.id = id;
+        this.checkoutId = checkoutId;
+        this.status = status;
+        this.currency = currency;
+        this.buyer = buyer;
+        this.lineItems = lineItems;
+        this.totals = totals;
+        this.createdAt = createdAt;
+        this.sequence = sequence;
+    }
+
+    /**
+     * The confirmed order of a completed session.
+     */
+    static Order of(String id, CheckoutSession session, long createdAt, long sequence) {
+        return new Order(id, session.getId(), OrderStatus.confirmed, session.getCurrency(), session.getBuyer(),
+                session.getLineItems(), session.getTotals(), createdAt, sequence);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @JsonProperty("checkout_id")
+    public String getCheckoutId() {
+        return checkoutId;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public Buyer getBuyer() {
+        return buyer;
+    }
+
+    /**
+     * The buyer's id, or null for a guest.
+     */
+    @JsonIgnore
+    public String getBuyerId() {
+        return buyer != null ? buyer.getId() : null;
+    }
+
+    @JsonProperty("line_items")
+    public List<LineItemResponse> getLineItems() {
+        return lineItems;
+    }
+
+    public List<TotalResponse> getTotals() {
+        return totals;
+    }
+
+    /**
+     * Creation time in epoch milliseconds.
+     */
+    @JsonIgnore
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    @JsonProperty("created_at")
+    public String getCreatedAtText() {
+        return Instant.ofEpochMilli(createdAt).toString();
+    }
+
+    /**
+     * Position in the order of creation, set by the store; what listings are sorted and paged by.
+     */
+    @JsonIgnore
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Order withStatus(OrderStatus status) {
+        return new Order(id, checkoutId, status, currency, buyer, lineItems, totals, createdAt, sequence);
+    }
+
+    @Override
+    public String toString() {
+        return id + "[" + status + ", " + lineItems.size() + " items]";
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.vishalmysore.ucp.store;
+
+/**
+ * Status of an {@link Order}. Orders move forward through the list, and can
+ * be canceled until they ship; delivered and canceled orders are final.
+ */
+public enum OrderStatus {
+    confirmed,
+    processing,
+    shipped,
+    delivered,
+    canceled;
+
+    public boolean isTerminal() {
+        return this == delivered || this == canceled;
+    }
+
+    public boolean canBecome(OrderStatus next) {
+        if (isTerminal()) {
+            return false;
+        }
+        return next == canceled ? this != shipped : next.ordinal() > ordinal();
+    }
+}
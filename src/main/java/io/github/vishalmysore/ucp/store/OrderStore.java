@@ -0,0 +1,222 @@
+package io.github.vishalmysore.ucp.store;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.http.HttpStatus;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory orders, placed by {@link InMemoryCheckoutService} when a checkout
+ * session completes. Orders are looked up by id in a hash map, and indexed by
+ * creation sequence overall, per status, per buyer id and per buyer id and
+ * status in sorted maps, so a listing starts at its cursor in the index of
+ * exactly its filters and reads only the page it returns. Listings are newest first and paged by keyset: the cursor names
+ * the last order returned rather than an offset, so pages stay stable while
+ * orders are added. An order's id is derived from its session's, so placing
+ * it again is a no-op.
+ *
+ * Reads take no lock. Placing an order and changing its status run while
+ * holding the order's map entry (the lock of its hash bin), so the indexes of
+ * one order are updated by one thread at a time. Listings are weakly
+ * consistent, and every order listed is checked against the filters as it is now;
+ * a listing by status can miss an order whose status is changing.
+ */
+public class OrderStore {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final Map<String, Order> orders = new ConcurrentHashMap<>();
+    // Sequence to order id
+    private final ConcurrentSkipListMap<Long, String> all = new ConcurrentSkipListMap<>();
+    private final Map<OrderStatus, ConcurrentSkipListMap<Long, String>> byStatus = statusIndexes();
+    private final Map<String, BuyerIndex> byBuyer = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Clock clock;
+
+    public OrderStore() {
+        this(Clock.systemUTC());
+    }
+
+    public OrderStore(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * The id of the order placed by a checkout session.
+     */
+    public static String orderId(String checkoutId) {
+        return "ord_" + (checkoutId.startsWith("chk_") ? checkoutId.substring(4) : checkoutId);
+    }
+
+    /**
+     * Place the order of a completed checkout session, once.
+     * @return the order, placed now or before
+     */
+    public Order place(CheckoutSession session) {
+        return orders.computeIfAbsent(orderId(session.getId()), id -> {
+            Order order = Order.of(id, session, clock.millis(), sequence.incrementAndGet());
+            all.put(order.getSequence(), id);
+            byStatus.get(order.getStatus()).put(order.getSequence(), id);
+            if (order.getBuyerId() != null) {
+                BuyerIndex buyer = byBuyer.computeIfAbsent(order.getBuyerId(), key -> new BuyerIndex());
+                buyer.all.put(order.getSequence(), id);
+                buyer.byStatus.get(order.getStatus()).put(order.getSequence(), id);
+            }
+            return order;
+        });
+    }
+
+    /**
+     * The order, or null if there is none with the id.
+     */
+    public Order get(String id) {
+        return orders.get(id);
+    }
+
+    /**
+     * Move an order to a status {@link OrderStatus#canBecome} allows.
+     * @return the order, or null if there is none with the id
+     * @throws CheckoutException 409 if the order cannot move to the status
+     */
+    public Order updateStatus(String id, OrderStatus status) {
+        return orders.computeIfPresent(id, (key, order) -> {
+            if (order.getStatus() == status) {
+                return order;
+            }
+            if (!order.getStatus().canBecome(status)) {
+                throw new CheckoutException(HttpStatus.CONFLICT, "invalid_transition",
+                        "Order " + id + " is " + order.getStatus() + " and cannot become " + status);
+            }
+            move(byStatus, order, status);
+            if (order.getBuyerId() != null) {
+                move(byBuyer.get(order.getBuyerId()).byStatus, order, status);
+            }
+            return order.withStatus(status);
+        });
+    }
+
+    /**
+     * Orders held.
+     */
+    public int size() {
+        return orders.size();
+    }
+
+    /**
+     * A page of orders, newest first.
+     * @param buyerId only the buyer's orders, or null for any
+     * @param status only orders with the status, or null for any
+     * @param cursor {@link Page#getNextCursor()} of the previous page, or null for the first
+     * @param limit page size, up to {@link #MAX_PAGE_SIZE}
+     * @throws CheckoutException 400 for a cursor this store did not issue or a limit out of range
+     */
+    public Page list(String buyerId, OrderStatus status, String cursor, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new CheckoutException(HttpStatus.BAD_REQUEST, "invalid_request",
+                    "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        ConcurrentSkipListMap<Long, String> index;
+        if (buyerId != null) {
+            BuyerIndex buyer = byBuyer.get(buyerId);
+            if (buyer == null) {
+                return new Page(Collections.<Order>emptyList(), null);
+            }
+            index = status != null ? buyer.byStatus.get(status) : buyer.all;
+        } else {
+            index = status != null ? byStatus.get(status) : all;
+        }
+        ConcurrentNavigableMap<Long, String> newer = cursor != null ? index.headMap(decode(cursor), false) : index;
+        List<Order> page = new ArrayList<>(limit);
+        for (String id : newer.descendingMap().values()) {
+            Order order = orders.get(id);
+            if (order == null || (status != null && order.getStatus() != status)
+                    || (buyerId != null && !buyerId.equals(order.getBuyerId()))) {
+                // Not placed yet, or its status changed since it was indexed
+                continue;
+            }
+            if (page.size() == limit) {
+                return new Page(page, encode(page.get(limit - 1).getSequence()));
+            }
+            page.add(order);
+        }
+        return new Page(page, null);
+    }
+
+    private static void move(Map<OrderStatus, ConcurrentSkipListMap<Long, String>> index, Order order,
+                             OrderStatus status) {
+        // Runs before the order with the new status is published, so while it
+        // moves a listing by either status can miss it: under the new status it
+        // is still read with the old one, and under the old one it may be gone
+        index.get(status).put(order.getSequence(), order.getId());
+        index.get(order.getStatus()).remove(order.getSequence());
+    }
+
+    private static Map<OrderStatus, ConcurrentSkipListMap<Long, String>> statusIndexes() {
+        // Filled once and only read after, so an EnumMap is safe to share
+        Map<OrderStatus, ConcurrentSkipListMap<Long, String>> indexes = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            indexes.put(status, new ConcurrentSkipListMap<>());
+        }
+        return indexes;
+    }
+
+    /**
+     * Sequence to order id of one buyer's orders, overall and per status.
+     */
+    private static final class BuyerIndex {
+        final ConcurrentSkipListMap<Long, String> all = new ConcurrentSkipListMap<>();
+        final Map<OrderStatus, ConcurrentSkipListMap<Long, String>> byStatus = statusIndexes();
+    }
+
+    private static String encode(long sequence) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(ByteBuffer.allocate(Long.BYTES).putLong(sequence).array());
+    }
+
+    private static long decode(String cursor) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+            if (bytes.length == Long.BYTES) {
+                return ByteBuffer.wrap(bytes).getLong();
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below
+        }
+        throw new CheckoutException(HttpStatus.BAD_REQUEST, "invalid_cursor", "Unknown cursor " + cursor);
+    }
+
+    /**
+     * A page of a listing, and the cursor of the next one if there are more orders.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static final class Page {
+        private final List<Order> orders;
+        private final String nextCursor;
+
+        Page(List<Order> orders, String nextCursor) {
+            this.orders = Collections.unmodifiableList(orders);
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Order> getOrders() {
+            return orders;
+        }
+
+        @JsonProperty("next_cursor")
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.github.vishalmysore.ucp.store;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: four levels of 64 slots, each level 64 times
+ * coarser than the one below, so deadlines up to 64^4 ticks away are placed
+ * in O(1) and only cascade down as they come near. Timers are intrusive
+ * doubly linked nodes, so scheduling, rescheduling and cancelling allocate
+ * nothing. Not thread-safe; the owner serializes access.
+ */
+final class TimingWheel<T extends TimingWheel.Timer> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /**
+     * A node of the wheel; extended by what it times.
+     */
+    abstract static class Timer {
+        long expireTick;
+        int bucket = -1;
+        Timer prev;
+        Timer next;
+
+        final boolean isScheduled() {
+            return bucket >= 0;
+        }
+    }
+
+    private final Timer[] buckets = new Timer[LEVELS * SLOTS];
+    private long currentTick;
+    private int size;
+
+    TimingWheel(long startTick) {
+        this.currentTick = startTick;
+    }
+
+    /**
+     * Schedule, or move, a timer to fire at the tick; past ticks fire at the next advance.
+     */
+    void schedule(T timer, long expireTick) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+        } else {
+            size++;
+        }
+        timer.expireTick = Math.max(expireTick, currentTick + 1);
+        place(timer);
+    }
+
+    void cancel(T timer) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+            size--;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Advance to the tick, handing every timer that fell due to {@code expired}, in tick order.
+     */
+    @SuppressWarnings("unchecked")
+    void advance(long toTick, Consumer<? super T> expired) {
+        while (currentTick < toTick) {
+            if (size == 0) {
+                currentTick = toTick;
+                return;
+            }
+            long tick = ++currentTick;
+            // Bring the coarser slots that start at this tick down a level first
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    int bucket = level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                    Timer timer = detach(bucket);
+                    while (timer != null) {
+                        Timer next = timer.next;
+                        timer.next = null;
+                        place(timer);
+                        timer = next;
+                    }
+                }
+            }
+            Timer timer = detach((int) (tick & SLOT_MASK));
+            while (timer != null) {
+                Timer next = timer.next;
+                timer.next = null;
+                if (timer.expireTick <= tick) {
+                    timer.bucket = -1;
+                    size--;
+                    expired.accept((T) timer);
+                } else {
+                    place(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    private void place(Timer timer) {
+        long delta = Math.min(timer.expireTick - currentTick, MAX_DELTA);
+        // Far deadlines sit in the last slot in reach and are placed again when cascaded
+        long slotTick = currentTick + delta;
+        int level = 0;
+        for (long d = delta; d >= SLOTS && level < LEVELS - 1; d >>>= SLOT_BITS) {
+            level++;
+        }
+        int bucket = level * SLOTS + (int) ((slotTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Timer head = buckets[bucket];
+        timer.bucket = bucket;
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        buckets[bucket] = timer;
+    }
+
+    private Timer detach(int bucket) {
+        Timer head = buckets[bucket];
+        buckets[bucket] = null;
+        for (Timer timer = head; timer != null; timer = timer.next) {
+            timer.prev = null;
+        }
+        return head;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            buckets[timer.bucket] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.bucket = -1;
+    }
+}
@@ -0,0 +1,186 @@
+package io.github.vishalmysore.ucp.annotation.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.annotation.UCPBusiness;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UCPAnnotationProcessorTest {
+
+    @TempDir
+    Path output;
+
+    private static final String AGENT = "package demo;\n"
+            + "import io.github.vishalmysore.ucp.annotation.*;\n"
+            + "@org.springframework.web.bind.annotation.RestController\n"
+            + "@UCPBusiness(name = \"AutoGroup North\", version = \"2026-01-19\")\n"
+            + "public class CarAgent {\n"
+            + "  @UCPCapability(name = \"io.github.vishalmysore.car_booking\", version = \"%s\",\n"
+            + "      spec = \"https://autogroup-north.com/specs/car-booking\")\n"
+            + "  @com.t4a.annotations.Action(description = \"Book a car\")\n"
+            + "  public String bookCar(String carType) { return carType; }\n"
+            + "}\n";
+
+    // Stands in for the tools4ai annotation, which the processor finds by name
+    private static final String ACTION = "package com.t4a.annotations;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "public @interface Action {\n"
+            + "  String name() default \"\";\n"
+            + "  String description() default \"\";\n"
+            + "}\n";
+
+    private static final String HANDLER = "package demo;\n"
+            + "import io.github.vishalmysore.ucp.handler.*;\n"
+            + "@io.github.vishalmysore.ucp.annotation.UCPHandler(name = \"com.example.pay\")\n"
+            + "public class Pay implements PaymentHandler {\n"
+            + "  public PaymentHandlerResponse getHandlerDeclaration() { return null; }\n"
+            + "  public PaymentInstrument acquireInstrument(PaymentCredential c, BindingContext b) { return null; }\n"
+            + "  public ProcessingResult processPayment(PaymentInstrument i) { return null; }\n"
+            + "}\n";
+
+    private static final String SHOP = "package demo;\n"
+            + "import java.util.Map;\n"
+            + "public class Shop implements io.github.vishalmysore.ucp.domain.discovery.UCPAware {\n"
+            + "  public Object createCheckout(Map<String, Object> r) { return null; }\n"
+            + "  public Object getCheckout(String id) { return null; }\n"
+            + "  public Object updateCheckout(String id, Map<String, Object> u) { return null; }\n"
+            + "  public Object completeCheckout(String id, Map<String, Object> p) { return null; }\n"
+            + "  public Object cancelCheckout(String id) { return null; }\n"
+            + "  public Object linkIdentity(Map<String, Object> r) { return null; }\n"
+            + "  public Object getOrder(String id) { return null; }\n"
+            + "}\n";
+
+    private static JavaFileObject source(String className, String code) {
+        return new SimpleJavaFileObject(URI.create("string:///demo/" + className + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    private static String classpath() throws Exception {
+        // The UCP annotations and Spring's RestController, wherever the test runner loaded them from
+        return Paths.get(UCPBusiness.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                + File.pathSeparator
+                + Paths.get(RestController.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private List<String> compile(JavaFileObject... sources) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-proc:only", "-d", output.toString(), "-classpath", classpath()),
+                null, Arrays.asList(sources));
+        task.setProcessors(Collections.singletonList(new UCPAnnotationProcessor()));
+        task.call();
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+
+    @Test
+    void testIndexIsGenerated() throws Exception {
+        List<String> errors = compile(source("CarAgent", String.format(AGENT, "2026-01-19")),
+                source("Pay", HANDLER), source("Shop", SHOP), source("Action", ACTION));
+        assertTrue(errors.isEmpty(), errors.toString());
+
+        JsonNode index = new ObjectMapper().readTree(
+                Files.readAllBytes(output.resolve(UCPAnnotationProcessor.INDEX_LOCATION)));
+        assertEquals("demo.CarAgent", index.at("/business/class").asText());
+        assertEquals("AutoGroup North", index.at("/business/name").asText());
+        assertEquals("bookCar", index.at("/methods/0/method").asText());
+        assertEquals("bookCar", index.at("/methods/0/action").asText());
+        assertEquals("io.github.vishalmysore.car_booking", index.at("/methods/0/capabilities/0/name").asText());
+        assertEquals("2026-01-19", index.at("/methods/0/capabilities/0/version").asText());
+        assertEquals("demo.Pay", index.at("/handlers/0/class").asText());
+        assertEquals("com.example.pay", index.at("/handlers/0/name").asText());
+        assertEquals("demo.Shop", index.at("/ucpAware/0").asText());
+        assertEquals("demo.CarAgent", index.at("/actionClasses/0").asText());
+    }
+
+    @Test
+    void testInvalidVersionFailsCompilation() throws Exception {
+        List<String> errors = compile(source("CarAgent", String.format(AGENT, "v1")), source("Action", ACTION));
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("Must be YYYY-MM-DD"));
+    }
+
+    @Test
+    void testCapabilityOutsideRestControllerFailsCompilation() throws Exception {
+        String agent = String.format(AGENT, "2026-01-19")
+                .replace("@org.springframework.web.bind.annotation.RestController\n", "");
+        List<String> errors = compile(source("CarAgent", agent), source("Action", ACTION));
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("must be annotated with @RestController"));
+    }
+
+    @Test
+    void testSecondBusinessFailsCompilation() throws Exception {
+        String other = "package demo;\n"
+                + "@io.github.vishalmysore.ucp.annotation.UCPBusiness(name = \"Other\", version = \"2026-01-19\")\n"
+                + "public class Other {}\n";
+        List<String> errors = compile(source("CarAgent", String.format(AGENT, "2026-01-19")), source("Other", other),
+                source("Action", ACTION));
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("Multiple businesses found"));
+    }
+
+    @Test
+    void testActionNamesMustBeUnique() throws Exception {
+        String overloaded = String.format(AGENT, "2026-01-19").replace("}\n}\n", "}\n"
+                + "  @UCPCapability(name = \"io.github.vishalmysore.car_booking\", version = \"2026-01-19\")\n"
+                + "  @com.t4a.annotations.Action(description = \"Book a car for days\")\n"
+                + "  public String bookCar(String carType, int days) { return carType; }\n"
+                + "}\n");
+        List<String> errors = compile(source("CarAgent", overloaded), source("Action", ACTION));
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("Action bookCar is declared by both"), errors.get(0));
+    }
+
+    @Test
+    void testMethodThatIsNotAnActionIsNotIndexed() throws Exception {
+        String named = String.format(AGENT, "2026-01-19")
+                .replace("(description = \"Book a car\")", "(name = \"reserveCar\")")
+                .replace("}\n}\n", "}\n"
+                + "  @UCPCapability(name = \"io.github.vishalmysore.car_booking\", version = \"2026-01-19\")\n"
+                + "  public String helper(String carType) { return carType; }\n"
+                + "}\n");
+        List<String> errors = compile(source("CarAgent", named), source("Action", ACTION));
+        assertTrue(errors.isEmpty(), errors.toString());
+
+        JsonNode index = new ObjectMapper().readTree(
+                Files.readAllBytes(output.resolve(UCPAnnotationProcessor.INDEX_LOCATION)));
+        assertEquals(1, index.path("methods").size());
+        assertEquals("reserveCar", index.at("/methods/0/action").asText());
+    }
+}
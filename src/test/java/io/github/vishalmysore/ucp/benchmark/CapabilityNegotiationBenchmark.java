@@ -0,0 +1,104 @@
+package io.github.vishalmysore.ucp.benchmark;
+
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import io.github.vishalmysore.ucp.negotiation.CapabilityNegotiator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Negotiates a platform profile against a business that declares the
+ * standard capabilities plus hundreds of {@code com.example.*} vendor
+ * extensions: the previous nested loop over string versions, the indexed
+ * negotiation, and the cached result for a profile instance.
+ * Run with: {@code java -cp <test classpath> org.openjdk.jmh.Main CapabilityNegotiationBenchmark}
+ * or via {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CapabilityNegotiationBenchmark {
+
+    @Param({"100", "500"})
+    public int extensions;
+
+    private final CapabilityNegotiator negotiator = new CapabilityNegotiator();
+    private List<UCPCapability> business;
+    private CapabilityNegotiator.UCPProfile profile;
+
+    @Setup
+    public void setUp() {
+        business = new ArrayList<>();
+        business.add(capability("dev.ucp.shopping.checkout", "2026-01-11"));
+        business.add(capability("dev.ucp.shopping.order", "2026-01-11"));
+        business.add(capability("dev.ucp.common.identity_linking", "2026-01-11"));
+        for (int i = 0; i < extensions; i++) {
+            business.add(capability("com.example.vendor_" + i, "2026-01-" + (10 + i % 20)));
+        }
+        // The platform supports the standard capabilities and a third of the extensions
+        List<UCPCapability> platform = new ArrayList<>();
+        platform.add(capability("dev.ucp.shopping.checkout", "2026-01-11"));
+        platform.add(capability("dev.ucp.shopping.order", "2026-01-11"));
+        for (int i = 0; i < extensions; i += 3) {
+            platform.add(capability("com.example.vendor_" + i, "2026-01-15"));
+        }
+        platform.add(capability("com.example.unknown", "2026-01-11"));
+        profile = new CapabilityNegotiator.UCPProfile();
+        profile.setCapabilities(platform);
+    }
+
+    private static UCPCapability capability(String name, String version) {
+        return new UCPCapability() {
+            @Override
+            public String name() { return name; }
+            @Override
+            public String version() { return version; }
+            @Override
+            public String spec() { return ""; }
+            @Override
+            public String schema() { return ""; }
+            @Override
+            public String extendsCapability() { return ""; }
+            @Override
+            public Class<? extends Annotation> annotationType() { return UCPCapability.class; }
+        };
+    }
+
+    @Benchmark
+    public Object nestedLoop() {
+        List<UCPCapability> negotiated = new ArrayList<>();
+        for (UCPCapability platformCap : profile.getCapabilities()) {
+            for (UCPCapability businessCap : business) {
+                if (platformCap.name().equals(businessCap.name())
+                        && platformCap.version().compareTo(businessCap.version()) <= 0) {
+                    negotiated.add(platformCap);
+                    break;
+                }
+            }
+        }
+        return negotiated;
+    }
+
+    @Benchmark
+    public Object indexed() {
+        return negotiator.negotiateCapabilities(profile.getCapabilities(), business);
+    }
+
+    @Benchmark
+    public Object cachedForProfile() {
+        return negotiator.negotiateCapabilities(profile, business);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CapabilityNegotiationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.vishalmysore.ucp.benchmark;
+
+import io.github.vishalmysore.ucp.domain.checkout.CartPricing;
+import io.github.vishalmysore.ucp.domain.checkout.LineItemResponse;
+import io.github.vishalmysore.ucp.domain.checkout.TotalResponse;
+import io.github.vishalmysore.ucp.domain.common.ItemResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Changes the quantity of one line of a 500-line cart (a third of the lines
+ * under a parent) and works out the totals: recomputing every line with boxed
+ * {@link TotalResponse}s, as merchants do today, versus {@link CartPricing}
+ * repricing the whole list or replacing the one line.
+ * Run with: {@code java -cp <test classpath> org.openjdk.jmh.Main CartPricingBenchmark}
+ * or via {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartPricingBenchmark {
+
+    private static final int LINES = 500;
+
+    private List<LineItemResponse> lines;
+    private CartPricing pricing;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lines = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            lines.add(line(i, 1));
+        }
+        pricing = CartPricing.price(lines);
+    }
+
+    private static LineItemResponse line(int i, int quantity) {
+        ItemResponse item = new ItemResponse();
+        item.setId("sku-" + i);
+        item.setPrice(100L + i);
+        LineItemResponse line = new LineItemResponse();
+        line.setId("li_" + i);
+        line.setParentId(i % 3 == 2 ? "li_" + (i - 1) : null);
+        line.setItem(item);
+        line.setQuantity(quantity);
+        return line;
+    }
+
+    private LineItemResponse touch() {
+        int n = next++;
+        // Each pass over the cart flips the quantities between 2 and 3
+        LineItemResponse changed = line(n % LINES, 2 + ((n / LINES) & 1));
+        lines.set(n % LINES, changed);
+        return changed;
+    }
+
+    @Benchmark
+    public List<TotalResponse> recomputeAll() {
+        touch();
+        long subtotal = 0;
+        for (LineItemResponse line : lines) {
+            Long amount = line.getItem().getPrice() * line.getQuantity();
+            line.setTotals(Arrays.asList(total(TotalResponse.Type.subtotal, amount),
+                    total(TotalResponse.Type.total, amount)));
+            subtotal = Math.addExact(subtotal, line.getTotals().get(0).getAmount());
+        }
+        return Arrays.asList(total(TotalResponse.Type.subtotal, subtotal), total(TotalResponse.Type.total, subtotal));
+    }
+
+    @Benchmark
+    public CartPricing repriceList() {
+        touch();
+        pricing = pricing.reprice(lines);
+        return pricing;
+    }
+
+    @Benchmark
+    public CartPricing withLine() {
+        int i = next % LINES;
+        pricing = pricing.withLine(i, touch());
+        return pricing;
+    }
+
+    private static TotalResponse total(TotalResponse.Type type, Long amount) {
+        TotalResponse total = new TotalResponse();
+        total.setType(type);
+        total.setAmount(amount);
+        return total;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CartPricingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
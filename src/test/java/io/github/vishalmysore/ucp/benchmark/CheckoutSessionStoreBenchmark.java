@@ -0,0 +1,98 @@
+package io.github.vishalmysore.ucp.benchmark;
+
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import io.github.vishalmysore.ucp.store.CheckoutSession;
+import io.github.vishalmysore.ucp.store.CheckoutSessionStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Touches (updates and re-arms the expiry of) one of 200k open checkout
+ * sessions: the usual ConcurrentHashMap with a ScheduledFuture per session,
+ * cancelled and rescheduled on every write, versus {@link CheckoutSessionStore}
+ * and its striped timing wheels.
+ * Run with: {@code java -cp <test classpath> org.openjdk.jmh.Main CheckoutSessionStoreBenchmark}
+ * or via {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckoutSessionStoreBenchmark {
+
+    private static final int SESSIONS = 200_000;
+    private static final Duration TTL = Duration.ofHours(6);
+
+    private String[] ids;
+    private CheckoutSessionStore store;
+    private ScheduledThreadPoolExecutor scheduler;
+    private Map<String, Tracked> tracked;
+
+    private static final class Tracked {
+        final CheckoutSession session;
+        final ScheduledFuture<?> expiry;
+
+        Tracked(CheckoutSession session, ScheduledFuture<?> expiry) {
+            this.session = session;
+            this.expiry = expiry;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        ids = new String[SESSIONS];
+        store = new CheckoutSessionStore(TTL);
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        tracked = new ConcurrentHashMap<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            String id = "chk_" + i;
+            ids[i] = id;
+            CheckoutSession session = new CheckoutSession(id, CheckoutStatus.incomplete, "USD", null, null, null);
+            store.create(session);
+            tracked.put(id, new Tracked(session, scheduler.schedule(() -> tracked.remove(id),
+                    TTL.toMillis(), TimeUnit.MILLISECONDS)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public Object scheduledTaskPerSession() {
+        String id = ids[ThreadLocalRandom.current().nextInt(SESSIONS)];
+        return tracked.compute(id, (key, current) -> {
+            current.expiry.cancel(false);
+            return new Tracked(current.session.withCurrency("EUR"),
+                    scheduler.schedule(() -> tracked.remove(key), TTL.toMillis(), TimeUnit.MILLISECONDS));
+        });
+    }
+
+    @Benchmark
+    public Object timingWheelStore() {
+        return store.update(ids[ThreadLocalRandom.current().nextInt(SESSIONS)], s -> s.withCurrency("EUR"));
+    }
+
+    @Benchmark
+    public Object read() {
+        return store.get(ids[ThreadLocalRandom.current().nextInt(SESSIONS)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CheckoutSessionStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,164 @@
+package io.github.vishalmysore.ucp.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.mcp.domain.CallToolResult;
+import io.github.vishalmysore.mcp.domain.Content;
+import io.github.vishalmysore.mcp.domain.TextContent;
+import io.github.vishalmysore.ucp.domain.SimpleUCPResult;
+import io.github.vishalmysore.ucp.domain.UCPResult;
+import io.github.vishalmysore.ucp.server.jsonrpc.JsonRpcResponseBody;
+import io.github.vishalmysore.ucp.server.jsonrpc.UcpEnvelope;
+import io.github.vishalmysore.ucp.server.jsonrpc.UcpResponseShaper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the reflective, map-building response wrapping that JsonRpcController
+ * used to do with {@link UcpResponseShaper} and the streamed {@link JsonRpcResponseBody}.
+ * Run with: {@code java -cp <test classpath> org.openjdk.jmh.Main ResponseShapingBenchmark}
+ * or via {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseShapingBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UcpResponseShaper shaper = new UcpResponseShaper();
+    private UCPResult ucpResult;
+    private CallToolResult callToolResult;
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        Map<String, String> booking = new HashMap<>();
+        booking.put("carType", "SUV");
+        booking.put("pickupLocation", "Toronto");
+        booking.put("dropoffLocation", "Ottawa");
+        booking.put("pickupDate", "2026-02-01");
+        booking.put("dropoffDate", "2026-02-05");
+        booking.put("confirmationNumber", "ABC123XYZ");
+        ucpResult = new SimpleUCPResult(booking);
+
+        TextContent text = new TextContent();
+        text.setType("text");
+        text.setText("Your car is booked, confirmation ABC123XYZ");
+        List<Content> content = new ArrayList<>();
+        content.add(text);
+        callToolResult = new CallToolResult();
+        callToolResult.setContent(content);
+    }
+
+    @Benchmark
+    public Object legacyUcpResult() {
+        return legacyWrap("io.github.vishalmysore.car_booking", legacyUnwrap(ucpResult));
+    }
+
+    @Benchmark
+    public Object shaperUcpResult() {
+        return shaper.shape("io.github.vishalmysore.car_booking", shaper.unwrap(ucpResult));
+    }
+
+    @Benchmark
+    public Object legacyCallToolResult() {
+        return legacyWrap("io.github.vishalmysore.car_booking", legacyUnwrap(callToolResult));
+    }
+
+    @Benchmark
+    public Object shaperCallToolResult() {
+        return shaper.shape("io.github.vishalmysore.car_booking", shaper.unwrap(callToolResult));
+    }
+
+    @Benchmark
+    public void legacyWriteUcpResult() throws IOException {
+        Map<String, Object> jsonRpcResponse = new HashMap<>();
+        jsonRpcResponse.put("jsonrpc", "2.0");
+        jsonRpcResponse.put("id", 1);
+        jsonRpcResponse.put("result", legacyWrap("io.github.vishalmysore.car_booking", legacyUnwrap(ucpResult)));
+        objectMapper.writeValue(sink, jsonRpcResponse);
+    }
+
+    @Benchmark
+    public void streamingWriteUcpResult() throws IOException {
+        UcpEnvelope result = shaper.shape("io.github.vishalmysore.car_booking", shaper.unwrap(ucpResult));
+        objectMapper.writeValue(sink, JsonRpcResponseBody.success(1, result));
+    }
+
+    private static Object legacyUnwrap(Object actualResponse) {
+        if (actualResponse != null && actualResponse.getClass().getSimpleName().equals("JSONRPCResponse")) {
+            try {
+                actualResponse = actualResponse.getClass().getMethod("getResult").invoke(actualResponse);
+            } catch (Exception e) {
+                // Fallback: use as is
+            }
+        }
+        return actualResponse;
+    }
+
+    /**
+     * The wrapping previously done by JsonRpcController.wrapInUcpFormat, minus the branches not exercised here.
+     */
+    private static Map<String, Object> legacyWrap(String capabilityName, Object mcpResponse) {
+        Map<String, Object> ucpResult = new HashMap<>();
+        Map<String, Object> ucpMeta = new HashMap<>();
+        ucpMeta.put("version", "2026-01-11");
+        Map<String, Object> capability = new HashMap<>();
+        capability.put("name", capabilityName);
+        capability.put("version", "2026-01-19");
+        ucpMeta.put("capabilities", new Object[] { capability });
+        ucpResult.put("ucp", ucpMeta);
+
+        if (mcpResponse instanceof UCPResult) {
+            Map<String, String> resultData = ((UCPResult) mcpResponse).getResult();
+            if (resultData != null) {
+                resultData.forEach(ucpResult::put);
+            }
+            return ucpResult;
+        }
+        if (mcpResponse != null && mcpResponse.getClass().getSimpleName().equals("CallToolResult")) {
+            try {
+                Object contentObj = mcpResponse.getClass().getMethod("getContent").invoke(mcpResponse);
+                if (contentObj instanceof List) {
+                    List<?> contentList = (List<?>) contentObj;
+                    if (!contentList.isEmpty()) {
+                        Object firstContent = contentList.get(0);
+                        if (firstContent != null && firstContent.getClass().getSimpleName().equals("TextContent")) {
+                            Object textObj = firstContent.getClass().getMethod("getText").invoke(firstContent);
+                            if (textObj != null) {
+                                ucpResult.put("message", textObj.toString());
+                            }
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                ucpResult.put("result", mcpResponse.toString());
+            }
+        }
+        return ucpResult;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ResponseShapingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.vishalmysore.ucp.benchmark;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.schema.CompiledSchema;
+import io.github.vishalmysore.ucp.schema.SchemaManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates a checkout create request with ten line items, a buyer and payment
+ * instruments against the composed checkout + discount schema: compiling on
+ * every call versus the cached {@link CompiledSchema}, for the bound Map and
+ * for a Jackson tree, and validating the raw body token by token versus
+ * binding it first.
+ * Run with: {@code java -cp <test classpath> org.openjdk.jmh.Main SchemaValidationBenchmark}
+ * or via {@link #main(String[])}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemaValidationBenchmark {
+
+    private static final List<String> EXTENSIONS = Collections.singletonList("discount");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SchemaManager schemaManager = new SchemaManager();
+    private JsonNode composed;
+    private CompiledSchema compiled;
+    private Map<String, Object> payload;
+    private JsonNode payloadTree;
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        schemaManager.cacheSchema("checkout", read("checkout.json"));
+        schemaManager.cacheSchema("discount", read("discount.json"));
+        composed = schemaManager.composeSchema("checkout", EXTENSIONS);
+        compiled = schemaManager.compile(composed);
+
+        StringBuilder json = new StringBuilder("{\"id\":\"chk_123\",\"currency\":\"USD\",\"line_items\":[");
+        for (int i = 0; i < 10; i++) {
+            json.append(i > 0 ? "," : "").append("{\"id\":\"li_").append(i)
+                    .append("\",\"item\":{\"id\":\"sku-").append(i).append("\",\"title\":\"Trail shoe size ")
+                    .append(40 + i).append("\",\"price\":").append(8900 + i * 100).append("},\"quantity\":")
+                    .append(1 + i % 3).append('}');
+        }
+        json.append("],\"buyer\":{\"first_name\":\"Jane\",\"last_name\":\"Doe\",\"email\":\"jane@example.com\"},")
+                .append("\"payment\":{\"selected_instrument_id\":\"pi_1\",\"instruments\":[")
+                .append("{\"id\":\"pi_1\",\"handler_id\":\"gpay\",\"type\":\"card\"}]},")
+                .append("\"discounts\":{\"codes\":[\"SPRING10\",\"FREESHIP\"]}}");
+        payload = objectMapper.readValue(json.toString(), new TypeReference<Map<String, Object>>() {});
+        payloadTree = objectMapper.readTree(json.toString());
+        body = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private JsonNode read(String name) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/schemas/" + name)) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    @Benchmark
+    public Object compileEachCall() {
+        return CompiledSchema.compile(composed).validate(payload);
+    }
+
+    @Benchmark
+    public Object compiledMap() {
+        return compiled.validate(payload);
+    }
+
+    @Benchmark
+    public Object compiledTree() {
+        return compiled.validate(payloadTree);
+    }
+
+    @Benchmark
+    public Object managerByUris() {
+        return schemaManager.validate(payload, "checkout", EXTENSIONS);
+    }
+
+    @Benchmark
+    public Object bindThenValidate() throws IOException {
+        return compiled.validate(objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {}));
+    }
+
+    @Benchmark
+    public Object streamedBody() throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            return compiled.validate(parser, true);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SchemaValidationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.vishalmysore.ucp.domain.checkout;
+
+import io.github.vishalmysore.ucp.domain.common.ItemResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static io.github.vishalmysore.ucp.domain.checkout.TotalResponse.Type.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartPricingTest {
+
+    private static LineItemResponse line(String id, String parentId, long price, int quantity) {
+        ItemResponse item = new ItemResponse();
+        item.setId("sku-" + id);
+        item.setPrice(price);
+        LineItemResponse line = new LineItemResponse();
+        line.setId(id);
+        line.setParentId(parentId);
+        line.setItem(item);
+        line.setQuantity(quantity);
+        return line;
+    }
+
+    private static TotalResponse total(TotalResponse.Type type, long amount) {
+        TotalResponse total = new TotalResponse();
+        total.setType(type);
+        total.setAmount(amount);
+        return total;
+    }
+
+    private static long listed(CartPricing pricing, int line, TotalResponse.Type type) {
+        return ((LineTotals) pricing.getLineItems().get(line).getTotals()).amount(type);
+    }
+
+    @Test
+    void testPricesLinesAndRollsUpParents() {
+        LineItemResponse bundle = line("bundle", null, 1000, 1);
+        LineItemResponse part = line("part", "bundle", 200, 2);
+        LineItemResponse screw = line("screw", "part", 5, 10);
+        screw.setTotals(Collections.singletonList(total(tax, 7)));
+        LineItemResponse other = line("other", null, 300, 1);
+
+        CartPricing pricing = CartPricing.price(Arrays.asList(bundle, part, screw, other));
+
+        assertEquals(1000 + 400 + 50 + 300, pricing.amount(subtotal));
+        assertEquals(7, pricing.amount(tax));
+        assertEquals(1000 + 400 + 50 + 300 + 7, pricing.amount(total));
+        assertEquals(1457, listed(pricing, 0, total));
+        assertEquals(457, listed(pricing, 1, total));
+        assertEquals(57, listed(pricing, 2, total));
+        assertEquals(400, ((LineTotals) pricing.getLineItems().get(1).getTotals()).ownAmount(subtotal));
+        assertNull(part.getTotals());
+
+        // Subtotal and total always, other types when set, in type order
+        List<TotalResponse> totals = pricing.getTotals();
+        assertEquals(Arrays.asList(total(subtotal, 1750), total(tax, 7), total(total, 1757)), new ArrayList<>(totals));
+        assertEquals(2, pricing.getLineItems().get(3).getTotals().size());
+    }
+
+    @Test
+    void testRepriceTouchesOnlyChangedLinesAndAncestors() {
+        CartPricing pricing = CartPricing.price(Arrays.asList(line("bundle", null, 1000, 1),
+                line("part", "bundle", 200, 2), line("other", null, 300, 1)));
+
+        CartPricing repriced = pricing.reprice(Arrays.asList(line("bundle", null, 1000, 1),
+                line("part", "bundle", 200, 5), line("other", null, 300, 1)));
+
+        assertEquals(1000 + 1000 + 300, repriced.amount(total));
+        assertEquals(2000, listed(repriced, 0, total));
+        assertEquals(1000, listed(repriced, 1, total));
+        assertSame(pricing.getLineItems().get(2), repriced.getLineItems().get(2));
+        assertEquals(1700, pricing.amount(total));
+
+        assertSame(repriced, repriced.reprice(Arrays.asList(line("bundle", null, 1000, 1),
+                line("part", "bundle", 200, 5), line("other", null, 300, 1))));
+
+        CartPricing single = repriced.withLine(2, line("other", null, 300, 3));
+        assertEquals(2900, single.amount(total));
+        assertSame(repriced.getLineItems().get(0), single.getLineItems().get(0));
+        assertThrows(IllegalArgumentException.class, () -> single.withLine(1, line("part", null, 200, 1)));
+    }
+
+    @Test
+    void testIncrementalMatchesFullPricing() {
+        Random random = new Random(7);
+        List<LineItemResponse> lines = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String parent = i > 0 && random.nextInt(3) == 0 ? "l" + random.nextInt(i) : null;
+            lines.add(line("l" + i, parent, random.nextInt(10_000), 1 + random.nextInt(5)));
+        }
+        CartPricing incremental = CartPricing.price(lines);
+        for (int n = 0; n < 200; n++) {
+            int i = random.nextInt(lines.size());
+            LineItemResponse changed = line("l" + i, lines.get(i).getParentId(), random.nextInt(10_000),
+                    1 + random.nextInt(5));
+            lines.set(i, changed);
+            incremental = n % 2 == 0 ? incremental.withLine(i, changed) : incremental.reprice(lines);
+        }
+        CartPricing full = CartPricing.price(lines);
+        assertEquals(full.amount(total), incremental.amount(total));
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(full.getLineItems().get(i).getTotals(), incremental.getLineItems().get(i).getTotals());
+        }
+    }
+
+    @Test
+    void testRejectsBadHierarchyAndOverflow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CartPricing.price(Arrays.asList(line("a", "missing", 1, 1))));
+        assertThrows(IllegalArgumentException.class,
+                () -> CartPricing.price(Arrays.asList(line("a", "b", 1, 1), line("b", "a", 1, 1))));
+        assertThrows(IllegalArgumentException.class,
+                () -> CartPricing.price(Arrays.asList(line("a", null, 1, 1), line("a", null, 1, 1))));
+        assertThrows(ArithmeticException.class,
+                () -> CartPricing.price(Arrays.asList(line("a", null, Long.MAX_VALUE / 2, 3))));
+        assertThrows(ArithmeticException.class, () -> CartPricing.price(Arrays.asList(
+                line("a", null, Long.MAX_VALUE / 2, 1), line("b", null, Long.MAX_VALUE / 2, 1),
+                line("c", null, Long.MAX_VALUE / 2, 1))));
+    }
+}
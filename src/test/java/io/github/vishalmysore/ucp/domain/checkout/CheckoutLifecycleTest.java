@@ -0,0 +1,93 @@
+package io.github.vishalmysore.ucp.domain.checkout;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckoutLifecycleTest {
+
+    @Test
+    void testTransitionTable() {
+        assertEquals(EnumSet.of(incomplete, requires_escalation, ready_for_complete, complete_in_progress, canceled),
+                CheckoutLifecycle.next(ready_for_complete));
+        assertTrue(CheckoutLifecycle.isAllowed(complete_in_progress, completed));
+        assertFalse(CheckoutLifecycle.isAllowed(incomplete, complete_in_progress));
+        assertFalse(CheckoutLifecycle.isAllowed(complete_in_progress, canceled));
+        for (CheckoutStatus status : CheckoutStatus.values()) {
+            assertFalse(CheckoutLifecycle.isAllowed(canceled, status));
+            assertFalse(CheckoutLifecycle.isAllowed(completed, status));
+            assertEquals(status == completed || status == canceled, CheckoutLifecycle.isTerminal(status));
+            for (CheckoutStatus to : CheckoutStatus.values()) {
+                assertEquals(CheckoutLifecycle.next(status).contains(to), CheckoutLifecycle.isAllowed(status, to));
+            }
+        }
+    }
+
+    @Test
+    void testRejectionMessages() {
+        assertEquals("session_closed", code(canceled, completed));
+        assertEquals("complete_in_progress", code(complete_in_progress, complete_in_progress));
+        assertEquals("not_ready", code(incomplete, complete_in_progress));
+        assertEquals("not_ready", code(requires_escalation, completed));
+        // Completion has to pass through complete_in_progress
+        assertEquals("invalid_transition", code(ready_for_complete, completed));
+        InvalidTransitionException e = assertThrows(InvalidTransitionException.class,
+                () -> CheckoutLifecycle.transition("chk_1", canceled, incomplete));
+        assertEquals("chk_1", e.getCheckoutId());
+        assertEquals("error", e.getMessageError().getType());
+    }
+
+    private static String code(CheckoutStatus from, CheckoutStatus to) {
+        return new InvalidTransitionException("chk_1", from, to).getMessageError().getCode();
+    }
+
+    @Test
+    void testAtomicStatus() {
+        AtomicCheckoutStatus status = new AtomicCheckoutStatus("chk_1", incomplete);
+        assertEquals(incomplete, status.transition(ready_for_complete));
+        assertFalse(status.compareAndTransition(incomplete, canceled));
+        assertTrue(status.compareAndTransition(ready_for_complete, complete_in_progress));
+        assertThrows(InvalidTransitionException.class, () -> status.transition(canceled));
+        assertEquals(complete_in_progress, status.transition(completed));
+        assertEquals(completed, status.get());
+    }
+
+    @Test
+    void testRacingCompleteAndCancelHaveOneWinner() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 200; i++) {
+                AtomicCheckoutStatus status = new AtomicCheckoutStatus("chk_" + i, ready_for_complete);
+                CountDownLatch start = new CountDownLatch(1);
+                Future<Boolean> complete = executor.submit(() -> attempt(start, status, complete_in_progress));
+                Future<Boolean> cancel = executor.submit(() -> attempt(start, status, canceled));
+                start.countDown();
+                boolean completed = complete.get(5, TimeUnit.SECONDS);
+                boolean canceledFirst = cancel.get(5, TimeUnit.SECONDS);
+                assertTrue(completed ^ canceledFirst);
+                assertEquals(completed ? complete_in_progress : canceled, status.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean attempt(CountDownLatch start, AtomicCheckoutStatus status, CheckoutStatus to)
+            throws InterruptedException {
+        start.await();
+        try {
+            status.transition(to);
+            return true;
+        } catch (InvalidTransitionException e) {
+            return false;
+        }
+    }
+}
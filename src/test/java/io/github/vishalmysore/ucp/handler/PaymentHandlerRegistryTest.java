@@ -1,15 +1,25 @@
 package io.github.vishalmysore.ucp.handler;
 
 import io.github.vishalmysore.ucp.annotation.UCPHandler;
+import io.github.vishalmysore.ucp.annotation.processor.UCPAnnotationProcessor;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityIndex;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.ApplicationContext;
 
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -52,4 +62,47 @@ class PaymentHandlerRegistryTest {
 
         assertNull(registry.getHandler("nonexistent"));
     }
-}
\ No newline at end of file
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testIndexedHandlerThatIsNotOneBeanIsSkipped(@TempDir Path dir) throws Exception {
+        Path location = dir.resolve(UCPAnnotationProcessor.INDEX_LOCATION);
+        Files.createDirectories(location.getParent());
+        Files.write(location, ("{\"handlers\":[{\"class\":\"" + TestPaymentHandler.class.getName()
+                + "\",\"name\":\"testHandler\"},{\"class\":\"com.example.Gone\",\"name\":\"gone\"}]}")
+                .getBytes(StandardCharsets.UTF_8));
+        CapabilityIndex index;
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()}, null)) {
+            index = CapabilityIndex.load(loader);
+        }
+        ObjectProvider<Object> provider = mock(ObjectProvider.class);
+        when(context.getBeanProvider((Class<Object>) (Class<?>) TestPaymentHandler.class)).thenReturn(provider);
+
+        // No bean, or several: skipped rather than failing startup
+        when(provider.getIfUnique()).thenReturn(null);
+        assertNull(new PaymentHandlerRegistry(context, index).getHandler("testHandler"));
+
+        TestPaymentHandler handler = new TestPaymentHandler();
+        when(provider.getIfUnique()).thenReturn(handler);
+        PaymentHandlerRegistry registry = new PaymentHandlerRegistry(context, index);
+        assertSame(handler, registry.getHandler("testHandler"));
+        assertNull(registry.getHandler("gone"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testHandlersMissingFromTheIndexAreScanned(@TempDir Path dir) throws Exception {
+        Path location = dir.resolve(UCPAnnotationProcessor.INDEX_LOCATION);
+        Files.createDirectories(location.getParent());
+        Files.write(location, "{\"handlers\":[{\"class\":\"com.example.Dependency\",\"name\":\"dependency\"}]}"
+                .getBytes(StandardCharsets.UTF_8));
+        CapabilityIndex index;
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()}, null)) {
+            index = CapabilityIndex.load(loader);
+        }
+        TestPaymentHandler handler = new TestPaymentHandler();
+        when(context.getBeansWithAnnotation(UCPHandler.class)).thenReturn(Map.of("testHandlerBean", handler));
+
+        assertSame(handler, new PaymentHandlerRegistry(context, index).getHandler("testHandler"));
+    }
+}
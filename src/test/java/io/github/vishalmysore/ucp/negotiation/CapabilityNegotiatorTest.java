@@ -6,6 +6,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.lang.annotation.Annotation;
+import java.time.LocalDate;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -90,4 +91,46 @@ class CapabilityNegotiatorTest {
         assertTrue(result.stream().anyMatch(c -> c.name().equals("checkout")));
         assertTrue(result.stream().anyMatch(c -> c.name().equals("payment")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDateVersionsCompareByDay() {
+        List<UCPCapability> businessCaps = List.of(
+                createMockCapability("dev.ucp.shopping.checkout", "2025-12-01"),
+                createMockCapability("dev.ucp.shopping.checkout", "2026-01-23"),
+                createMockCapability("com.example.loyalty", "2026-01-11"));
+
+        List<UCPCapability> result = negotiator.negotiateCapabilities(List.of(
+                createMockCapability("dev.ucp.shopping.checkout", "2026-01-11"),
+                createMockCapability("com.example.loyalty", "2026-02-01"),
+                createMockCapability("com.example.gifts", "2026-01-11")), businessCaps);
+
+        assertEquals(1, result.size());
+        assertEquals("dev.ucp.shopping.checkout", result.get(0).name());
+    }
+
+    @Test
+    void testEpochDay() {
+        assertEquals(LocalDate.of(2026, 1, 11).toEpochDay(), CapabilityNegotiator.epochDay("2026-01-11"));
+        assertEquals(LocalDate.of(2024, 2, 29).toEpochDay(), CapabilityNegotiator.epochDay("2024-02-29"));
+        assertEquals(LocalDate.of(1969, 12, 31).toEpochDay(), CapabilityNegotiator.epochDay("1969-12-31"));
+        assertEquals(Integer.MIN_VALUE, CapabilityNegotiator.epochDay("2026-02-29"));
+        assertEquals(Integer.MIN_VALUE, CapabilityNegotiator.epochDay("2026-1-11"));
+        assertEquals(Integer.MIN_VALUE, CapabilityNegotiator.epochDay("1.0"));
+    }
+
+    @Test
+    void testProfileResultIsCachedPerProfileInstance() {
+        List<UCPCapability> businessCaps = List.of(createMockCapability("checkout", "2026-01-11"));
+        CapabilityNegotiator.UCPProfile profile = new CapabilityNegotiator.UCPProfile();
+        profile.setCapabilities(List.of(createMockCapability("checkout", "2026-01-11")));
+        CapabilityNegotiator.UCPProfile refreshed = new CapabilityNegotiator.UCPProfile();
+        refreshed.setCapabilities(List.of(createMockCapability("checkout", "2026-02-01")));
+
+        List<UCPCapability> result = negotiator.negotiateCapabilities(profile, businessCaps);
+
+        assertEquals(1, result.size());
+        assertSame(result, negotiator.negotiateCapabilities(profile, businessCaps));
+        assertTrue(negotiator.negotiateCapabilities(refreshed, businessCaps).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> result.add(businessCaps.get(0)));
+    }
+}
@@ -0,0 +1,326 @@
+package io.github.vishalmysore.ucp.negotiation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlatformProfileFetcherTest {
+
+    private static final String PROFILE = "{\"ucp\":{\"version\":\"2026-01-11\",\"capabilities\":["
+            + "{\"name\":\"dev.ucp.shopping.checkout\",\"version\":\"2026-01-11\"},"
+            + "{\"name\":\"dev.ucp.shopping.discount\",\"version\":\"2026-01-11\","
+            + "\"extends\":\"dev.ucp.shopping.checkout\"}],"
+            + "\"services\":{\"dev.ucp.shopping\":{\"rest\":{\"endpoint\":\"https://platform.example/ucp\"}}}},"
+            + "\"signing_keys\":[{\"kid\":\"k1\",\"kty\":\"EC\"}]}";
+
+    private HttpServer server;
+    private final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+    private volatile CountDownLatch gate;
+    private final MutableClock clock = new MutableClock();
+    private PlatformProfileFetcher fetcher;
+
+    private static final class Response {
+        final int status;
+        final String body;
+        final String cacheControl;
+        final String etag;
+
+        Response(int status, String body, String cacheControl, String etag) {
+            this.status = status;
+            this.body = body;
+            this.cacheControl = cacheControl;
+            this.etag = etag;
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        final AtomicLong millis = new AtomicLong(1_000_000);
+
+        @Override
+        public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override
+        public Clock withZone(ZoneId zone) { return this; }
+        @Override
+        public Instant instant() { return Instant.ofEpochMilli(millis.get()); }
+        @Override
+        public long millis() { return millis.get(); }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        fetcher = new PlatformProfileFetcher(HttpClient.newHttpClient(), Duration.ofSeconds(5),
+                Duration.ofSeconds(60), 16, 4096, new ProfileUriPolicy(Arrays.asList("127.0.0.1"), true), clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        ifNoneMatch.add(String.valueOf(exchange.getRequestHeaders().getFirst("If-None-Match")));
+        try {
+            CountDownLatch latch = gate;
+            if (latch != null) {
+                latch.await(5, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Response response = responses.get(exchange.getRequestURI().getPath());
+        if (response.cacheControl != null) {
+            exchange.getResponseHeaders().add("Cache-Control", response.cacheControl);
+        }
+        if (response.etag != null) {
+            exchange.getResponseHeaders().add("ETag", response.etag);
+        }
+        byte[] body = response.body == null ? new byte[0] : response.body.getBytes(StandardCharsets.UTF_8);
+        // Paths under /chunked are sent without a Content-Length
+        boolean chunked = exchange.getRequestURI().getPath().startsWith("/chunked");
+        exchange.sendResponseHeaders(response.status, body.length == 0 ? -1 : chunked ? 0 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String serve(String path, int status, String body, String cacheControl, String etag) {
+        responses.put(path, new Response(status, body, cacheControl, etag));
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    @Test
+    void testProfileIsParsedAndNegotiable() throws Exception {
+        String uri = serve("/profile", 200, PROFILE, "max-age=60", null);
+
+        CapabilityNegotiator negotiator = new CapabilityNegotiator(fetcher);
+        CapabilityNegotiator.UCPProfile profile = negotiator.fetchPlatformProfile(uri).get();
+
+        assertEquals("2026-01-11", profile.getVersion());
+        assertEquals(2, profile.getCapabilities().size());
+        UCPCapability discount = profile.getCapabilities().get(1);
+        assertEquals("dev.ucp.shopping.discount", discount.name());
+        assertEquals("dev.ucp.shopping.checkout", discount.extendsCapability());
+        assertEquals("", discount.spec());
+        assertTrue(profile.getServices().containsKey("dev.ucp.shopping"));
+        assertEquals(1, ((List<?>) profile.getSigningKeys().get("keys")).size());
+        assertEquals(1, negotiator.negotiateCapabilities(profile, profile.getCapabilities().subList(0, 1)).size());
+    }
+
+    @Test
+    void testCapabilitiesKeyedByName() throws Exception {
+        String uri = serve("/profile", 200, "{\"ucp\":{\"capabilities\":{"
+                + "\"dev.ucp.shopping.checkout\":[{\"version\":\"2026-01-11\"},{\"version\":\"2025-10-01\"}],"
+                + "\"dev.ucp.shopping.order\":{\"version\":\"2026-01-11\"}}}}", null, null);
+
+        List<String> declared = new ArrayList<>();
+        for (UCPCapability capability : fetcher.fetch(uri).get().getCapabilities()) {
+            declared.add(capability.name() + "@" + capability.version());
+        }
+
+        assertEquals(List.of("dev.ucp.shopping.checkout@2026-01-11", "dev.ucp.shopping.checkout@2025-10-01",
+                "dev.ucp.shopping.order@2026-01-11"), declared);
+    }
+
+    @Test
+    void testFreshProfileIsServedFromCache() throws Exception {
+        String uri = serve("/profile", 200, PROFILE, "public, max-age=60", null);
+
+        CapabilityNegotiator.UCPProfile first = fetcher.fetch(uri).get();
+        clock.millis.addAndGet(59_000);
+        CompletableFuture<CapabilityNegotiator.UCPProfile> second = fetcher.fetch(uri);
+
+        assertTrue(second.isDone());
+        assertSame(first, second.get());
+        assertEquals(1, ifNoneMatch.size());
+        assertEquals(1, fetcher.getStats().getHits());
+        assertTrue(fetcher.getStats().getFetchNanos() > 0);
+        assertTrue(fetcher.getStats().getParseNanos() > 0);
+    }
+
+    @Test
+    void testConcurrentFetchesShareOneRequest() throws Exception {
+        String uri = serve("/profile", 200, PROFILE, "max-age=60", null);
+        gate = new CountDownLatch(1);
+
+        List<CompletableFuture<CapabilityNegotiator.UCPProfile>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(fetcher.fetch(uri));
+        }
+        gate.countDown();
+
+        for (CompletableFuture<CapabilityNegotiator.UCPProfile> future : futures) {
+            assertSame(futures.get(0).get(), future.get());
+        }
+        assertEquals(1, ifNoneMatch.size());
+        assertEquals(7, fetcher.getStats().getCoalesced());
+    }
+
+    @Test
+    void testStaleProfileIsServedWhileRevalidating() throws Exception {
+        String uri = serve("/profile", 200, PROFILE, "max-age=10, stale-while-revalidate=30", "\"v1\"");
+        CapabilityNegotiator.UCPProfile first = fetcher.fetch(uri).get();
+        serve("/profile", 200, PROFILE.replace("\"version\":\"2026-01-11\",\"capabilities\"",
+                "\"version\":\"2026-04-01\",\"capabilities\""), "max-age=10", "\"v2\"");
+        gate = new CountDownLatch(1);
+        clock.millis.addAndGet(20_000);
+
+        CompletableFuture<CapabilityNegotiator.UCPProfile> stale = fetcher.fetch(uri);
+        assertTrue(stale.isDone());
+        assertSame(first, stale.get());
+
+        // The background revalidation is in flight; later callers join it
+        CompletableFuture<CapabilityNegotiator.UCPProfile> stillStale = fetcher.fetch(uri);
+        assertSame(first, stillStale.get());
+        gate.countDown();
+        waitFor(() -> fetcher.fetch(uri).getNow(first) != first);
+
+        assertEquals("2026-04-01", fetcher.fetch(uri).get().getVersion());
+        assertEquals(List.of("null", "\"v1\""), ifNoneMatch);
+        assertTrue(fetcher.getStats().getStaleHits() >= 2);
+    }
+
+    @Test
+    void testNotModifiedKeepsProfile() throws Exception {
+        String uri = serve("/profile", 200, PROFILE, "max-age=10", "\"v1\"");
+        CapabilityNegotiator.UCPProfile first = fetcher.fetch(uri).get();
+        serve("/profile", 304, null, "max-age=10", null);
+        clock.millis.addAndGet(11_000);
+
+        assertSame(first, fetcher.fetch(uri).get());
+        clock.millis.addAndGet(11_000);
+        assertSame(first, fetcher.fetch(uri).get());
+
+        assertEquals(List.of("null", "\"v1\"", "\"v1\""), ifNoneMatch);
+        assertEquals(2, fetcher.getStats().getNotModified());
+    }
+
+    @Test
+    void testNoStoreIsNotCached() throws Exception {
+        String uri = serve("/profile", 200, PROFILE, "no-store", null);
+
+        CapabilityNegotiator.UCPProfile first = fetcher.fetch(uri).get();
+
+        assertNotSame(first, fetcher.fetch(uri).get());
+        assertEquals(2, ifNoneMatch.size());
+    }
+
+    @Test
+    void testStaleIfErrorAndFailures() throws Exception {
+        String uri = serve("/profile", 200, PROFILE, "max-age=10, stale-if-error=60", null);
+        CapabilityNegotiator.UCPProfile first = fetcher.fetch(uri).get();
+        serve("/profile", 503, "down", null, null);
+        clock.millis.addAndGet(20_000);
+
+        assertSame(first, fetcher.fetch(uri).get());
+        clock.millis.addAndGet(60_000);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> fetcher.fetch(uri).get());
+        assertTrue(e.getCause() instanceof PlatformProfileFetcher.ProfileFetchException);
+        assertTrue(e.getCause().getCause().getMessage().contains("HTTP 503"));
+
+        String invalid = serve("/invalid", 200, "[1,2]", null, null);
+        assertThrows(ExecutionException.class, () -> fetcher.fetch(invalid).get());
+        assertThrows(ExecutionException.class, () -> fetcher.fetch("not a uri").get());
+        assertEquals(4, fetcher.getStats().getFailures());
+    }
+
+    @Test
+    void testOversizedProfileIsRefused() throws Exception {
+        StringBuilder padding = new StringBuilder();
+        while (padding.length() < 5000) {
+            padding.append("0123456789");
+        }
+        String large = PROFILE.substring(0, PROFILE.length() - 1) + ",\"padding\":\"" + padding + "\"}";
+        for (String path : new String[] {"/large", "/chunked/large"}) {
+            String uri = serve(path, 200, large, "max-age=60", null);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> fetcher.fetch(uri).get());
+            assertTrue(e.getCause().getCause().getMessage().contains("larger than 4096 bytes"), path);
+        }
+        assertNotNull(fetcher.fetch(serve("/chunked/small", 200, PROFILE, "max-age=60", null)).get());
+    }
+
+    @Test
+    void testLeastRecentlyUsedProfileIsEvicted() throws Exception {
+        for (int i = 0; i < 16; i++) {
+            fetcher.fetch(serve("/profile" + i, 200, PROFILE, "max-age=60", null)).get();
+        }
+        fetcher.fetch(serve("/profile0", 200, PROFILE, "max-age=60", null)).get();
+        fetcher.fetch(serve("/profile16", 200, PROFILE, "max-age=60", null)).get();
+        assertEquals(17, fetcher.getStats().getRequests());
+
+        // profile0 was used since profile1, so profile1 made room
+        fetcher.fetch(serve("/profile0", 200, PROFILE, "max-age=60", null)).get();
+        assertEquals(17, fetcher.getStats().getRequests());
+        fetcher.fetch(serve("/profile1", 200, PROFILE, "max-age=60", null)).get();
+        assertEquals(18, fetcher.getStats().getRequests());
+    }
+
+    @Test
+    void testHostResolvingToLoopbackIsNotFetched() throws Exception {
+        ProfileUriPolicy policy = new ProfileUriPolicy(Collections.<String>emptyList(), true,
+                host -> new InetAddress[] {InetAddress.getByName("127.0.0.1")});
+        PlatformProfileFetcher guarded = new PlatformProfileFetcher(HttpClient.newHttpClient(), Duration.ofSeconds(5),
+                Duration.ofSeconds(60), 16, 4096, policy, clock);
+        String uri = serve("/profile", 200, PROFILE, "max-age=60", null).replace("127.0.0.1", "platform.test");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> guarded.fetch(uri).get());
+        assertTrue(e.getCause() instanceof PlatformProfileFetcher.ProfileRefusedException);
+        assertTrue(ifNoneMatch.isEmpty());
+        assertEquals(0, guarded.getStats().getRequests());
+    }
+
+    @Test
+    void testCacheControlParsing() {
+        PlatformProfileFetcher.CacheControl cacheControl =
+                PlatformProfileFetcher.CacheControl.parse("max-age=60, s-maxage=120, stale-while-revalidate=5", "20", 1);
+        // s-maxage is for shared caches
+        assertEquals(40_000, cacheControl.maxAgeMillis);
+        assertEquals(5_000, cacheControl.staleWhileRevalidateMillis);
+        assertEquals(0, PlatformProfileFetcher.CacheControl.parse("no-cache, max-age=60", null, 1).maxAgeMillis);
+        assertEquals(7, PlatformProfileFetcher.CacheControl.parse(null, null, 7).maxAgeMillis);
+        assertEquals(7, PlatformProfileFetcher.CacheControl.parse("public", null, 7).maxAgeMillis);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
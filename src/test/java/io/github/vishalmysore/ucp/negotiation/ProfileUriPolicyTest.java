@@ -0,0 +1,77 @@
+package io.github.vishalmysore.ucp.negotiation;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileUriPolicyTest {
+
+    @Test
+    void testAllowedHostsOnly() {
+        ProfileUriPolicy policy = new ProfileUriPolicy(Arrays.asList("platform.example", " *.partner.example"), false);
+
+        policy.check("https://platform.example/profile.json");
+        policy.check("https://shop.partner.example/profile.json");
+        policy.check("https://PLATFORM.example:8443/profile.json");
+        assertThrows(IllegalArgumentException.class, () -> policy.check("https://partner.example/profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("https://evilpartner.example/profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("https://other.example/profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("http://platform.example/profile.json"));
+    }
+
+    @Test
+    void testAnyPublicHostWithoutList() {
+        ProfileUriPolicy policy = new ProfileUriPolicy(Collections.<String>emptyList(), true);
+
+        policy.check("http://platform.example/profile.json");
+        policy.check("https://93.184.216.34/profile.json");
+        assertThrows(IllegalArgumentException.class, () -> policy.check("http://169.254.169.254/latest/meta-data"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("http://192.168.1.1/profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("http://[fd00::1]/profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("ftp://platform.example/profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("/profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("https://localhost./profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("https://0x7f.1/profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("https://2130706433/profile.json"));
+        assertThrows(IllegalArgumentException.class, () -> policy.check("https://127.0.0.01.1/profile.json"));
+    }
+
+    @Test
+    void testHostsResolvingToInternalAddressesAreRefused() throws Exception {
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        InetAddress external = InetAddress.getByName("93.184.216.34");
+        Map<String, InetAddress[]> dns = new HashMap<>();
+        dns.put("127.0.0.1.nip.io", new InetAddress[] {loopback});
+        dns.put("platform.example", new InetAddress[] {external});
+        dns.put("split.example", new InetAddress[] {external, loopback});
+        ProfileUriPolicy policy = new ProfileUriPolicy(Collections.<String>emptyList(), false, host -> {
+            InetAddress[] addresses = dns.get(host);
+            if (addresses == null) {
+                throw new UnknownHostException(host);
+            }
+            return addresses;
+        });
+
+        policy.checkAddresses("https://platform.example/profile.json");
+        // Resolving is left to the fetcher
+        policy.check("https://127.0.0.1.nip.io/profile.json");
+        assertThrows(IllegalArgumentException.class,
+                () -> policy.checkAddresses("https://127.0.0.1.nip.io/profile.json"));
+        assertThrows(IllegalArgumentException.class,
+                () -> policy.checkAddresses("https://split.example/profile.json"));
+        assertThrows(IllegalArgumentException.class,
+                () -> policy.checkAddresses("https://unknown.example/profile.json"));
+
+        // Allowed hosts are trusted without a lookup
+        new ProfileUriPolicy(Arrays.asList("127.0.0.1.nip.io"), false, host -> {
+            throw new AssertionError("resolved " + host);
+        }).checkAddresses("https://127.0.0.1.nip.io/profile.json");
+    }
+}
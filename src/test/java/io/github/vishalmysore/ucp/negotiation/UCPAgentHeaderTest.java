@@ -0,0 +1,44 @@
+package io.github.vishalmysore.ucp.negotiation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UCPAgentHeaderTest {
+
+    @Test
+    void testProfileString() {
+        assertEquals("https://agent.example/profile.json",
+                UCPAgentHeader.profileUri("profile=\"https://agent.example/profile.json\""));
+    }
+
+    @Test
+    void testProfileAmongOtherMembers() {
+        assertEquals("https://agent.example/p",
+                UCPAgentHeader.profileUri("version=\"2026-01-11\";x=1, profile=\"https://agent.example/p\";v=2 ,a"));
+        assertEquals("https://b.example/p",
+                UCPAgentHeader.profileUri("profile=\"https://a.example/p\", profile=\"https://b.example/p\""));
+        assertEquals("https://agent.example/p", UCPAgentHeader.profileUri("profile=https://agent.example/p"));
+    }
+
+    @Test
+    void testEscapes() {
+        assertEquals("https://agent.example/\"q\"\\",
+                UCPAgentHeader.profileUri("profile=\"https://agent.example/\\\"q\\\"\\\\\""));
+    }
+
+    @Test
+    void testNoProfile() {
+        assertNull(UCPAgentHeader.profileUri(""));
+        assertNull(UCPAgentHeader.profileUri("profiles=\"https://agent.example/p\""));
+        assertNull(UCPAgentHeader.profileUri("profile"));
+    }
+
+    @Test
+    void testMalformed() {
+        for (String header : new String[] {"profile=\"https://a.example", "Profile=\"x\"", "profile=", "a=1,",
+                "a=1 b=2", "profile=\"x\\n\"", "a=1;=2"}) {
+            assertThrows(IllegalArgumentException.class, () -> UCPAgentHeader.profileUri(header), header);
+        }
+    }
+}
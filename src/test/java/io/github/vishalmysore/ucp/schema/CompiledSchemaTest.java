@@ -0,0 +1,185 @@
+package io.github.vishalmysore.ucp.schema;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.domain.common.Message;
+import io.github.vishalmysore.ucp.domain.common.MessageError;
+import io.github.vishalmysore.ucp.domain.common.MessageWarning;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledSchemaTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JsonNode schema(String name) throws Exception {
+        try (InputStream in = getClass().getResourceAsStream("/schemas/" + name)) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    private Map<String, Object> map(String json) throws Exception {
+        return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+    }
+
+    private static final String CHECKOUT = "{\"currency\":\"USD\","
+            + "\"line_items\":[{\"item\":{\"id\":\"sku-1\",\"price\":2500},\"quantity\":2}],"
+            + "\"buyer\":{\"email\":\"jane@example.com\"}}";
+
+    @Test
+    void testValidPayloadAsMapAndTree() throws Exception {
+        CompiledSchema compiled = CompiledSchema.compile(schema("checkout.json"));
+
+        SchemaManager.ValidationResult fromMap = compiled.validate(map(CHECKOUT));
+        SchemaManager.ValidationResult fromTree = compiled.validate(objectMapper.readTree(CHECKOUT));
+
+        assertTrue(fromMap.isValid());
+        assertTrue(fromMap.getMessages().isEmpty());
+        assertTrue(fromTree.isValid());
+        assertNull(fromTree.getErrorMessage());
+    }
+
+    @Test
+    void testErrorsCarryJsonPath() throws Exception {
+        CompiledSchema compiled = CompiledSchema.compile(schema("checkout.json"));
+        String json = "{\"currency\":\"usd\",\"line_items\":[{\"item\":{\"id\":\"sku-1\"},\"quantity\":2},"
+                + "{\"item\":{\"price\":-1},\"quantity\":\"two\"}]}";
+
+        for (Object data : new Object[] {map(json), objectMapper.readTree(json)}) {
+            SchemaManager.ValidationResult result = compiled.validate(data);
+
+            assertFalse(result.isValid());
+            assertEquals(4, result.getMessages().size());
+            assertError(result, "$.currency", "pattern_mismatch");
+            assertError(result, "$.line_items[1].item", "missing_required");
+            assertError(result, "$.line_items[1].item.price", "below_minimum");
+            assertError(result, "$.line_items[1].quantity", "invalid_type");
+            assertEquals("$.currency: Value does not match pattern ^[A-Z]{3}$", result.getErrorMessage());
+        }
+    }
+
+    private static void assertError(SchemaManager.ValidationResult result, String path, String code) {
+        for (Message message : result.getMessages()) {
+            if (path.equals(message.getPath()) && code.equals(message.getCode())) {
+                assertTrue(message instanceof MessageError);
+                assertEquals(MessageError.Severity.recoverable, ((MessageError) message).getSeverity());
+                return;
+            }
+        }
+        fail("No " + code + " at " + path + " in " + result.getMessages());
+    }
+
+    @Test
+    void testUnknownFieldIsWarningOnly() throws Exception {
+        CompiledSchema compiled = CompiledSchema.compile(schema("checkout.json"));
+        Map<String, Object> data = map(CHECKOUT);
+        data.put("gift-wrap", true);
+
+        SchemaManager.ValidationResult result = compiled.validate(data);
+
+        assertTrue(result.isValid());
+        assertEquals(1, result.getMessages().size());
+        Message warning = result.getMessages().get(0);
+        assertTrue(warning instanceof MessageWarning);
+        assertEquals("unknown_field", warning.getCode());
+        assertEquals("$['gift-wrap']", warning.getPath());
+    }
+
+    @Test
+    void testComposedSchemaAppliesExtensions() throws Exception {
+        SchemaManager schemaManager = new SchemaManager();
+        schemaManager.cacheSchema("checkout", schema("checkout.json"));
+        schemaManager.cacheSchema("discount", schema("discount.json"));
+        Map<String, Object> data = map(CHECKOUT);
+        data.put("discounts", map("{\"codes\":[\"SAVE10\",\"SAVE10\",\"\"]}"));
+
+        SchemaManager.ValidationResult base = schemaManager.validate(data, "checkout",
+                java.util.Collections.<String>emptyList());
+        SchemaManager.ValidationResult extended = schemaManager.validate(data, "checkout",
+                java.util.Collections.singletonList("discount"));
+
+        assertTrue(base.isValid());
+        assertFalse(extended.isValid());
+        assertEquals(2, extended.getMessages().size());
+        assertError(extended, "$.discounts.codes[1]", "duplicate_item");
+        assertError(extended, "$.discounts.codes[2]", "too_short");
+    }
+
+    @Test
+    void testCompositionKeywords() throws Exception {
+        CompiledSchema compiled = CompiledSchema.compile(objectMapper.readTree("{\"properties\":{"
+                + "\"amount\":{\"oneOf\":[{\"type\":\"integer\"},{\"type\":\"string\",\"pattern\":\"^[0-9]+$\"}]},"
+                + "\"status\":{\"const\":\"ready\"},"
+                + "\"note\":{\"not\":{\"type\":\"null\"}},"
+                + "\"total\":{\"type\":\"number\",\"exclusiveMaximum\":100,\"multipleOf\":0.01}}}"));
+
+        assertTrue(compiled.validate(map("{\"amount\":5,\"status\":\"ready\",\"total\":99.99}")).isValid());
+        assertTrue(compiled.validate(map("{\"amount\":\"5\",\"note\":\"x\"}")).isValid());
+
+        SchemaManager.ValidationResult result = compiled.validate(
+                map("{\"amount\":\"five\",\"status\":\"done\",\"note\":null,\"total\":100.001}"));
+        assertEquals(5, result.getMessages().size());
+        assertError(result, "$.amount", "no_match");
+        assertError(result, "$.status", "const_mismatch");
+        assertError(result, "$.note", "not_allowed");
+        assertError(result, "$.total", "above_maximum");
+        assertError(result, "$.total", "not_multiple");
+    }
+
+    @Test
+    void testRecursiveAndUnresolvedRefs() throws Exception {
+        CompiledSchema compiled = CompiledSchema.compile(objectMapper.readTree("{\"$ref\":\"#/$defs/node\","
+                + "\"$defs\":{\"node\":{\"type\":\"object\",\"properties\":{"
+                + "\"children\":{\"type\":\"array\",\"items\":{\"$ref\":\"#/$defs/node\"}},"
+                + "\"meta\":{\"$ref\":\"https://example.com/unknown.json\"}}}}}"));
+
+        SchemaManager.ValidationResult result = compiled.validate(
+                map("{\"children\":[{\"children\":[{\"children\":5}]}],\"meta\":1}"));
+
+        assertEquals(1, result.getMessages().size());
+        assertEquals("$.children[0].children[0].children", result.getMessages().get(0).getPath());
+        assertEquals(1, compiled.getUnresolvedRefs().size());
+    }
+
+    @Test
+    void testStreamingMatchesTree() throws Exception {
+        CompiledSchema compiled = CompiledSchema.compile(schema("checkout.json"));
+        String json = "{\"currency\":\"usd\",\"gift-wrap\":true,\"line_items\":[{\"item\":{\"id\":\"sku-1\"},"
+                + "\"quantity\":2},{\"item\":{\"price\":-1},\"quantity\":\"two\"}],"
+                + "\"payment\":{\"instruments\":[{\"id\":\"pi\",\"handler_id\":\"h\",\"type\":\"cash\"}]}}";
+
+        SchemaManager.ValidationResult tree = compiled.validate(objectMapper.readTree(json));
+        SchemaManager.ValidationResult streamed;
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            streamed = compiled.validate(parser, false);
+        }
+
+        assertFalse(streamed.isValid());
+        assertEquals(tree.getMessages().size(), streamed.getMessages().size());
+        for (Message message : tree.getMessages()) {
+            assertTrue(streamed.getMessages().contains(message), "Missing " + message);
+        }
+    }
+
+    @Test
+    void testStreamingFailFastStopsAtFirstError() throws Exception {
+        CompiledSchema compiled = CompiledSchema.compile(objectMapper.readTree("{\"type\":\"array\","
+                + "\"items\":{\"anyOf\":[{\"type\":\"integer\"},{\"type\":\"object\",\"required\":[\"n\"]}]}}"));
+
+        String json = "[1,{\"n\":2},{\"m\":3},\"x\",4]";
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            SchemaManager.ValidationResult result = compiled.validate(parser, true);
+
+            assertFalse(result.isValid());
+            assertEquals(1, result.getMessages().size());
+            assertEquals("$[2]", result.getMessages().get(0).getPath());
+            assertEquals(json.indexOf("\"x\"") - 1, parser.getCurrentLocation().getCharOffset());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
 
 import java.util.List;
 
@@ -30,6 +31,42 @@ class SchemaManagerTest {
         assertNull(result);
     }
 
-    // Note: Full testing would require mocking or providing actual schema URIs
-    // For production, consider making loadSchema protected or injectable
+    @Test
+    void testCompositionIsMemoized() throws Exception {
+        schemaManager.cacheSchema("base", objectMapper.readTree("{\"title\":\"base\"}"));
+        schemaManager.cacheSchema("ext1", objectMapper.readTree("{\"title\":\"ext1\"}"));
+        schemaManager.cacheSchema("ext2", objectMapper.readTree("{\"title\":\"ext2\"}"));
+
+        JsonNode composed = schemaManager.composeSchema("base", List.of("ext1", "ext2"));
+
+        assertSame(composed, schemaManager.composeSchema("base", List.of("ext1", "ext2", "ext1")));
+        assertNotSame(composed, schemaManager.composeSchema("base", List.of("ext2", "ext1")));
+        assertEquals("ext2", composed.at("/allOf/2/title").asText());
+
+        schemaManager.cacheSchema("ext2", objectMapper.readTree("{\"title\":\"ext2 v2\"}"));
+        assertEquals("ext2 v2", schemaManager.composeSchema("base", List.of("ext1", "ext2"))
+                .at("/allOf/2/title").asText());
+    }
+
+    @Test
+    void testRecentlyUsedCompilationSurvivesOverflow() throws Exception {
+        schemaManager.cacheSchema("base", objectMapper.readTree("{\"type\":\"object\"}"));
+        CompiledSchema hot = schemaManager.getCompiledSchema("base", List.of());
+
+        for (int i = 0; i < 300; i++) {
+            schemaManager.getCompiledSchema("base", List.of("ext" + i));
+            assertSame(hot, schemaManager.getCompiledSchema("base", List.of()));
+        }
+    }
+
+    @Test
+    void testSchemasLoadFromLocalRegistry() {
+        SchemaManager manager = new SchemaManager(new MockEnvironment()
+                .withProperty("ucp.schema.registry.directories", "classpath:schemas"));
+
+        JsonNode composed = manager.composeSchema("checkout.json", List.of("discount.json"));
+
+        assertNotNull(composed);
+        assertEquals("Discount extension", composed.at("/allOf/1/title").asText());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package io.github.vishalmysore.ucp.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaStoreTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Counts loads, to tell cache hits from reloads.
+     */
+    private static final class CountingSource implements SchemaSource {
+        final List<String> loads = new ArrayList<>();
+
+        @Override
+        public JsonNode load(String uri) {
+            loads.add(uri);
+            return uri.startsWith("missing") ? null : new ObjectMapper().createObjectNode().put("$id", uri);
+        }
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        CountingSource source = new CountingSource();
+        SchemaStore store = new SchemaStore(2, Collections.<SchemaSource>singletonList(source));
+
+        store.get("a");
+        store.get("b");
+        store.get("a");
+        store.get("c");
+        store.get("a");
+        store.get("b");
+
+        assertEquals(Arrays.asList("a", "b", "c", "b"), source.loads);
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void testRegisteredSchemasAreNotEvicted() {
+        CountingSource source = new CountingSource();
+        SchemaStore store = new SchemaStore(1, Collections.<SchemaSource>singletonList(source));
+        JsonNode registered = objectMapper.createObjectNode().put("title", "registered");
+        store.put("pinned", registered);
+
+        store.get("a");
+        store.get("b");
+
+        assertSame(registered, store.get("pinned"));
+        assertNull(store.get("missing"));
+        assertEquals(2, store.size());
+        assertEquals(Arrays.asList("a", "b", "missing"), source.loads);
+    }
+
+    @Test
+    void testDirectoryMirrorsHostAndPath() throws Exception {
+        Path file = directory.resolve("ucp.dev/schemas/shopping/checkout.json");
+        Files.createDirectories(file.getParent());
+        Files.write(file, "{\"title\":\"Checkout\"}".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("secret.json"), "{}".getBytes(StandardCharsets.UTF_8));
+        DirectorySchemaSource source = DirectorySchemaSource.of(directory.resolve("ucp.dev/.."));
+
+        assertEquals("Checkout", source.load("https://ucp.dev/schemas/shopping/checkout.json").path("title").asText());
+        assertNull(source.load("https://ucp.dev/schemas/shopping/order.json"));
+        assertNull(source.load("https://ucp.dev/schemas/../../secret.json"));
+        assertNull(source.load("../secret.json"));
+    }
+
+    @Test
+    void testClasspathDirectory() throws Exception {
+        DirectorySchemaSource source = DirectorySchemaSource.classpath("schemas", getClass().getClassLoader());
+
+        assertEquals("Checkout create request", source.load("checkout.json").path("title").asText());
+        assertNull(source.load("none.json"));
+    }
+
+    @Test
+    void testBundleIsMappedAndReadLazily() throws Exception {
+        Path file = directory.resolve("bundle.json");
+        Files.write(file, ("{\"https://ucp.dev/schemas/a.json\":{\"title\":\"A\",\"properties\":{\"x\":{}}},\n"
+                + " \"https://ucp.dev/schemas/b.json\" : {\"title\":\"B\u00e9\"},\"https://ucp.dev/schemas/c.json\":true}")
+                .getBytes(StandardCharsets.UTF_8));
+
+        SchemaBundle bundle = SchemaBundle.map(file);
+
+        assertEquals(3, bundle.getUris().size());
+        assertEquals("A", bundle.load("https://ucp.dev/schemas/a.json").path("title").asText());
+        assertEquals("B\u00e9", bundle.load("https://ucp.dev/schemas/b.json").path("title").asText());
+        assertTrue(bundle.load("https://ucp.dev/schemas/c.json").booleanValue());
+        assertNull(bundle.load("https://ucp.dev/schemas/d.json"));
+        assertNotSame(bundle.load("https://ucp.dev/schemas/a.json"), bundle.load("https://ucp.dev/schemas/a.json"));
+    }
+}
@@ -0,0 +1,197 @@
+package io.github.vishalmysore.ucp.schema.codegen;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import io.github.vishalmysore.ucp.schema.SchemaManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaModelGeneratorTest {
+
+    private static final String CHECKOUT_URI = "https://ucp.dev/schemas/shopping/checkout.json";
+    private static final String DISCOUNT_URI = "https://ucp.dev/schemas/shopping/discount.json";
+
+    private static final String CHECKOUT = "{\"currency\":\"USD\","
+            + "\"line_items\":[{\"item\":{\"id\":\"sku-1\",\"title\":\"Tee\",\"price\":2500},\"quantity\":2}],"
+            + "\"buyer\":{\"email\":\"ada@example.com\",\"nickname\":\"ada\"},"
+            + "\"payment\":{\"instruments\":[{\"id\":\"pi_1\",\"handler_id\":\"shop_pay\",\"type\":\"card\"}]},"
+            + "\"discounts\":{\"codes\":[\"TEN\"]}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path output;
+
+    private JsonNode composedCheckout() throws Exception {
+        SchemaManager schemaManager = new SchemaManager();
+        schemaManager.cacheSchema(CHECKOUT_URI, resource("/schemas/checkout.json"));
+        schemaManager.cacheSchema(DISCOUNT_URI, resource("/schemas/discount.json"));
+        return schemaManager.composeSchema(CHECKOUT_URI, Collections.singletonList(DISCOUNT_URI));
+    }
+
+    private JsonNode resource(String name) throws Exception {
+        try (InputStream in = getClass().getResourceAsStream(name)) {
+            return objectMapper.readTree(in);
+        }
+    }
+
+    private static String classpath() throws Exception {
+        // Jackson and ModelReaders, wherever the test runner loaded them from
+        List<String> entries = new ArrayList<>();
+        for (Class<?> type : Arrays.asList(JsonProperty.class, JsonParser.class, ObjectMapper.class,
+                ModelReaders.class)) {
+            entries.add(Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private Class<?> compile(String className, String code) throws Exception {
+        JavaFileObject source = new SimpleJavaFileObject(
+                URI.create("string:///demo/" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean compiled = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-d", output.toString(), "-classpath", classpath()),
+                null, Collections.singletonList(source)).call();
+        List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getLineNumber() + ": " + diagnostic.getMessage(null));
+            }
+        }
+        assertTrue(compiled && errors.isEmpty(), errors + "\n" + code);
+        ClassLoader loader = new URLClassLoader(new URL[] {output.toUri().toURL()}, getClass().getClassLoader());
+        return loader.loadClass("demo." + className);
+    }
+
+    private static Object get(Object target, String getter) throws Exception {
+        return target.getClass().getMethod(getter).invoke(target);
+    }
+
+    @Test
+    void testComposedCheckoutBindsToTypedModel() throws Exception {
+        String code = new SchemaModelGenerator("demo", uri -> null).generate("CheckoutRequest", composedCheckout());
+        Class<?> type = compile("CheckoutRequest", code);
+
+        Object checkout = objectMapper.readValue(CHECKOUT, type);
+
+        assertEquals("USD", get(checkout, "getCurrency"));
+        Object lineItem = ((List<?>) get(checkout, "getLineItems")).get(0);
+        assertEquals("LineItem", lineItem.getClass().getSimpleName());
+        assertEquals(long.class, lineItem.getClass().getMethod("getQuantity").getReturnType());
+        assertEquals(2L, get(lineItem, "getQuantity"));
+        assertEquals(2500L, get(get(lineItem, "getItem"), "getPrice"));
+        Object buyer = get(checkout, "getBuyer");
+        assertEquals("ada@example.com", get(buyer, "getEmail"));
+        assertEquals(Collections.singletonMap("nickname", "ada"), get(buyer, "getAdditionalProperties"));
+        Object instrument = ((List<?>) get(get(checkout, "getPayment"), "getInstruments")).get(0);
+        assertEquals("shop_pay", get(instrument, "getHandlerId"));
+        // Declared by the base as a bare object and typed by the extension
+        assertEquals(Collections.singletonList("TEN"), get(get(checkout, "getDiscounts"), "getCodes"));
+
+        // Closed by additionalProperties: false
+        assertThrows(NoSuchMethodException.class, () -> type.getMethod("getAdditionalProperties"));
+        assertEquals(objectMapper.readTree(CHECKOUT), objectMapper.readTree(objectMapper.writeValueAsString(checkout)));
+        assertEquals(checkout, objectMapper.readValue(CHECKOUT, type));
+    }
+
+    @Test
+    void testWrongTokenIsReported() throws Exception {
+        Class<?> type = compile("CheckoutRequest",
+                new SchemaModelGenerator("demo", uri -> null).generate("CheckoutRequest", composedCheckout()));
+
+        MismatchedInputException e = assertThrows(MismatchedInputException.class, () -> objectMapper.readValue(
+                "{\"currency\":\"USD\",\"line_items\":[{\"item\":{\"id\":\"a\"},\"quantity\":\"two\"}]}", type));
+        assertTrue(e.getMessage().contains("long"), e.getMessage());
+    }
+
+    @Test
+    void testNamesAndTypesFromLooseSchemas() throws Exception {
+        JsonNode schema = objectMapper.readTree("{\"title\":\"Gift options\",\"properties\":{"
+                + "\"class\":{\"type\":\"string\"},"
+                + "\"gift-wrap\":{\"type\":\"boolean\"},"
+                + "\"parser\":{\"type\":\"number\"},"
+                + "\"counts\":{\"type\":\"object\",\"additionalProperties\":{\"type\":\"integer\"}},"
+                + "\"matrix\":{\"type\":\"array\",\"items\":{\"type\":\"array\",\"items\":{\"type\":\"integer\"}}},"
+                + "\"note\":{\"anyOf\":[{\"type\":\"string\"},{\"type\":\"integer\"}]},"
+                + "\"list\":{\"properties\":{\"size\":{\"const\":3}}},"
+                + "\"shared\":{\"$ref\":\"https://example.com/common.json#/$defs/money\"}}}");
+        JsonNode common = objectMapper.readTree("{\"$defs\":{\"money\":{\"type\":\"object\","
+                + "\"required\":[\"amount\"],\"properties\":{\"amount\":{\"type\":\"integer\"}}}}}");
+        String code = new SchemaModelGenerator("demo",
+                uri -> uri.equals("https://example.com/common.json") ? common : null).generate("GiftOptions", schema);
+
+        assertTrue(code.contains("private final String classValue;"), code);
+        assertTrue(code.contains("private final Boolean giftWrap;"), code);
+        assertTrue(code.contains("private final Double parserValue;"), code);
+        assertTrue(code.contains("private final Map<String, Long> counts;"), code);
+        assertTrue(code.contains("private final List<List<Long>> matrix;"), code);
+        assertTrue(code.contains("private final Object note;"), code);
+        assertTrue(code.contains("private final List2 list;"), code);
+        assertTrue(code.contains("private final Money shared;"), code);
+        assertTrue(code.contains("private final long amount;"), code);
+
+        Class<?> type = compile("GiftOptions", code);
+        Object options = objectMapper.readValue("{\"class\":\"premium\",\"gift-wrap\":true,\"parser\":1.5,"
+                + "\"counts\":{\"a\":1},\"matrix\":[[1,2],[3]],\"note\":7,\"list\":{\"size\":3},"
+                + "\"shared\":{\"amount\":100,\"currency\":\"EUR\"},\"extra\":[1]}", type);
+        assertEquals("premium", get(options, "getClassValue"));
+        assertEquals(Boolean.TRUE, get(options, "getGiftWrap"));
+        assertEquals(1.5, get(options, "getParserValue"));
+        assertEquals(Collections.singletonMap("a", 1L), get(options, "getCounts"));
+        assertEquals(Arrays.asList(Arrays.asList(1L, 2L), Collections.singletonList(3L)),
+                get(options, "getMatrix"));
+        assertEquals(7, get(options, "getNote"));
+        assertEquals(3L, get(get(options, "getList"), "getSize"));
+        assertEquals(100L, get(get(options, "getShared"), "getAmount"));
+        assertEquals(Collections.singletonMap("extra", Collections.singletonList(1)),
+                get(options, "getAdditionalProperties"));
+    }
+
+    @Test
+    void testMainWritesComposedModel() throws Exception {
+        Path checkout = Paths.get(getClass().getResource("/schemas/checkout.json").toURI());
+        Path discount = Paths.get(getClass().getResource("/schemas/discount.json").toURI());
+
+        SchemaModelGenerator.main(new String[] {output.toString(), "com.example.shop",
+                "CheckoutRequest=" + checkout + "," + discount});
+
+        String code = new String(Files.readAllBytes(output.resolve("com/example/shop/CheckoutRequest.java")),
+                "UTF-8");
+        assertTrue(code.startsWith("// Generated by SchemaModelGenerator"), code);
+        assertTrue(code.contains("package com.example.shop;"), code);
+        assertTrue(code.contains(" * Generated from " + CHECKOUT_URI + ", " + DISCOUNT_URI + "."), code);
+        assertTrue(code.contains("public static final class Discounts {"), code);
+        assertThrows(IllegalArgumentException.class, () -> SchemaModelGenerator.main(new String[] {
+                output.toString(), "com.example.shop", "Missing=" + output.resolve("none.json")}));
+    }
+}
@@ -0,0 +1,137 @@
+package io.github.vishalmysore.ucp.server.async;
+
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import io.github.vishalmysore.ucp.server.rest.CheckoutController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CheckoutController.class)
+@Import(CapabilityBulkheads.class)
+@TestPropertySource(properties = "ucp.async.enabled=true")
+class CapabilityBulkheadsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private UCPAware checkoutService;
+
+    @Test
+    void testCheckoutRunsAsynchronously() throws Exception {
+        when(checkoutService.getCheckout("test-id")).thenReturn(Map.of("id", "test-id"));
+
+        MvcResult result = mockMvc.perform(get("/ucp/v1/checkout-sessions/test-id"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("test-id"));
+    }
+
+    @Test
+    void testDisabledRunsInline() {
+        CapabilityBulkheads bulkheads = new CapabilityBulkheads(new MockEnvironment());
+
+        assertEquals("done", bulkheads.execute("getCheckout", () -> "done"));
+    }
+
+    @Test
+    void testFullBulkheadIsRejectedWithRetryAfter() throws Exception {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("ucp.async.enabled", "true")
+                .withProperty("ucp.async.bulkhead.completeCheckout.max-concurrent", "1")
+                .withProperty("ucp.async.bulkhead.completeCheckout.queue-depth", "1")
+                .withProperty("ucp.async.retry-after-seconds", "3");
+        CapabilityBulkheads bulkheads = new CapabilityBulkheads(env);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Object running = bulkheads.execute("completeCheckout", () -> await(release));
+            Object queued = bulkheads.execute("completeCheckout", () -> await(release));
+            Object rejected = bulkheads.execute("completeCheckout", () -> await(release));
+            Object otherOperation = bulkheads.execute("getCheckout", () -> "ok");
+
+            assertTrue(running instanceof DeferredResult);
+            assertTrue(queued instanceof DeferredResult);
+            assertTrue(rejected instanceof ResponseEntity);
+            ResponseEntity<?> response = (ResponseEntity<?>) rejected;
+            assertEquals(429, response.getStatusCode().value());
+            assertEquals("3", response.getHeaders().getFirst("Retry-After"));
+            assertTrue(otherOperation instanceof DeferredResult);
+
+            // Callers of another protocol supply the body, e.g. a JSON-RPC error
+            Object custom = bulkheads.execute("completeCheckout", () -> await(release),
+                    (status, message) -> Map.of("error", Map.of("code", -32002, "message", message)));
+            ResponseEntity<?> customResponse = (ResponseEntity<?>) custom;
+            assertEquals(429, customResponse.getStatusCode().value());
+            assertEquals("3", customResponse.getHeaders().getFirst("Retry-After"));
+            assertEquals(-32002, ((Map<?, ?>) ((Map<?, ?>) customResponse.getBody()).get("error")).get("code"));
+        } finally {
+            release.countDown();
+            bulkheads.shutdown();
+        }
+    }
+
+    @Test
+    void testCallWaitsOnTheOperationsBulkhead() {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("ucp.async.enabled", "true")
+                .withProperty("ucp.async.bulkhead.completeCheckout.max-concurrent", "1")
+                .withProperty("ucp.async.bulkhead.completeCheckout.queue-depth", "1")
+                .withProperty("ucp.async.timeout-ms", "200");
+        CapabilityBulkheads bulkheads = new CapabilityBulkheads(env);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertTrue(bulkheads.call("completeCheckout", () -> Thread.currentThread().getName())
+                    .startsWith("ucp-completeCheckout-"));
+
+            bulkheads.execute("completeCheckout", () -> {
+                started.countDown();
+                return await(release);
+            });
+            await(started);
+            CompletionException timedOut = assertThrows(CompletionException.class,
+                    () -> bulkheads.call("completeCheckout", () -> "queued"));
+            assertTrue(timedOut.getCause() instanceof TimeoutException);
+
+            bulkheads.execute("completeCheckout", () -> await(release));
+            assertThrows(RejectedExecutionException.class,
+                    () -> bulkheads.call("completeCheckout", () -> "rejected"));
+        } finally {
+            release.countDown();
+            bulkheads.shutdown();
+        }
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
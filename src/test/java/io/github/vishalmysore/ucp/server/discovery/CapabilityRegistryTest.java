@@ -0,0 +1,179 @@
+package io.github.vishalmysore.ucp.server.discovery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.t4a.api.AIAction;
+import com.t4a.api.GenericJavaMethodAction;
+import io.github.vishalmysore.ucp.annotation.UCPBusiness;
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CapabilityRegistryTest {
+
+    @RestController
+    @UCPBusiness(name = "AutoGroup North", version = "2026-01-19")
+    public static class CarBookingAgent {
+        @UCPCapability(name = "io.github.vishalmysore.car_booking", version = "2026-01-19",
+                spec = "https://autogroup-north.com/specs/car-booking")
+        public String bookCar(String carType) {
+            return carType;
+        }
+    }
+
+    public static class Shop implements UCPAware {
+        public Object createCheckout(Map<String, Object> checkoutRequest) { return null; }
+        public Object getCheckout(String checkoutId) { return null; }
+        public Object updateCheckout(String checkoutId, Map<String, Object> checkoutUpdate) { return null; }
+        public Object completeCheckout(String checkoutId, Map<String, Object> paymentDetails) { return null; }
+        public Object cancelCheckout(String checkoutId) { return null; }
+        public Object linkIdentity(Map<String, Object> oauthRequest) { return null; }
+        public Object getOrder(String orderId) { return null; }
+    }
+
+    public static class NotAController {
+        @UCPCapability(name = "io.github.vishalmysore.car_booking", version = "2026-01-19")
+        public String bookCar(String carType) {
+            return carType;
+        }
+    }
+
+    @RestController
+    public static class BadVersion {
+        @UCPCapability(name = "io.github.vishalmysore.car_booking", version = "v1")
+        public String bookCar(String carType) {
+            return carType;
+        }
+    }
+
+    private static Map<String, AIAction> actions(Class<?> type, String... methods) throws Exception {
+        Map<String, AIAction> predictions = new LinkedHashMap<>();
+        for (String name : methods) {
+            for (java.lang.reflect.Method method : type.getMethods()) {
+                if (method.getName().equals(name)) {
+                    predictions.put(name, new GenericJavaMethodAction(type, method));
+                }
+            }
+        }
+        return predictions;
+    }
+
+    @Test
+    void testMethodLookupUsesDeclaredCapability() throws Exception {
+        Map<String, AIAction> predictions = actions(CarBookingAgent.class, "bookCar");
+        predictions.putAll(actions(Shop.class, "getCheckout"));
+        CapabilityRegistry registry = new CapabilityRegistry(predictions);
+
+        CapabilityDescriptor booking = registry.forMethod("bookCar").getPrimary();
+        assertEquals("io.github.vishalmysore.car_booking", booking.getName());
+        assertEquals("2026-01-19", booking.getVersion());
+        assertEquals("{\"version\":\"2026-01-11\",\"capabilities\":[{\"name\":\"io.github.vishalmysore.car_booking\","
+                + "\"version\":\"2026-01-19\"}]}", registry.forMethod("bookCar").getMetadataBlock().getValue());
+
+        // UCPAware implementations inherit the capabilities declared on the interface
+        assertEquals("dev.ucp.shopping.checkout", registry.forMethod("getCheckout").getPrimary().getName());
+        assertNull(registry.forMethod("unknown"));
+    }
+
+    @Test
+    void testManifestListsDeclaredAndStandardCapabilities() throws Exception {
+        Map<String, AIAction> predictions = actions(CarBookingAgent.class, "bookCar");
+        predictions.putAll(actions(Shop.class, "getCheckout"));
+        CapabilityRegistry registry = new CapabilityRegistry(predictions);
+
+        assertEquals("AutoGroup North", registry.getBusiness().name());
+        List<Object> names = registry.getManifestCapabilities().stream()
+                .map(entry -> entry.get("name")).collect(Collectors.toList());
+        assertTrue(names.contains("io.github.vishalmysore.car_booking"));
+        assertTrue(names.contains("dev.ucp.shopping.checkout"));
+        assertTrue(names.contains("dev.ucp.shopping.order"));
+        assertTrue(names.contains("dev.ucp.common.identity_linking"));
+        assertThrows(UnsupportedOperationException.class,
+                () -> registry.getManifestCapabilities().add(Collections.emptyMap()));
+    }
+
+    @Test
+    void testNoBusinessMeansNoStandardCapabilities() throws Exception {
+        CapabilityRegistry registry = new CapabilityRegistry(actions(Shop.class, "getCheckout"));
+
+        assertNull(registry.getBusiness());
+        assertTrue(registry.getManifestCapabilities().isEmpty());
+        assertNull(registry.getCapability("dev.ucp.shopping.checkout"));
+    }
+
+    @Test
+    void testViolationsFailAtStartup() throws Exception {
+        assertThrows(IllegalStateException.class,
+                () -> new CapabilityRegistry(actions(NotAController.class, "bookCar")));
+        assertThrows(IllegalStateException.class,
+                () -> new CapabilityRegistry(actions(BadVersion.class, "bookCar")));
+    }
+
+    @Test
+    void testRegistryFromCompileTimeIndex() throws Exception {
+        String json = "{\"business\":{\"class\":\"" + CarBookingAgent.class.getName() + "\","
+                + "\"name\":\"AutoGroup North\",\"version\":\"2026-01-19\"},"
+                + "\"ucpAware\":[\"demo.Shop\"],"
+                + "\"methods\":[{\"class\":\"demo.CarAgent\",\"method\":\"bookCar\",\"action\":\"bookCar\",\"capabilities\":"
+                + "[{\"name\":\"io.github.vishalmysore.car_booking\",\"version\":\"2026-01-19\",\"spec\":\"\","
+                + "\"schema\":\"\",\"extendsCapability\":\"\"}]}],\"handlers\":[]}";
+        CapabilityIndex index = CapabilityIndex.merge(Collections.singletonList(new ObjectMapper().readTree(json)));
+        CapabilityRegistry registry = new CapabilityRegistry(index);
+
+        assertEquals("AutoGroup North", registry.getBusiness().name());
+        assertEquals("2026-01-19", registry.forMethod("bookCar").getPrimary().getVersion());
+        assertEquals("dev.ucp.shopping.checkout", registry.forMethod("completeCheckout").getPrimary().getName());
+        assertEquals(4, registry.getManifestCapabilities().size());
+    }
+
+    @Test
+    void testIndexedMethodsAreKeyedByActionName() throws Exception {
+        String entry = "{\"class\":\"demo.CarAgent\",\"method\":\"bookCar\",\"action\":\"reserveCar\","
+                + "\"capabilities\":[{\"name\":\"io.github.vishalmysore.car_booking\",\"version\":\"2026-01-19\"}]}";
+        ObjectMapper mapper = new ObjectMapper();
+        CapabilityRegistry registry = new CapabilityRegistry(CapabilityIndex.merge(Collections.singletonList(
+                mapper.readTree("{\"methods\":[" + entry + "]}"))));
+
+        assertEquals("2026-01-19", registry.forMethod("reserveCar").getPrimary().getVersion());
+        assertNull(registry.forMethod("bookCar"));
+        // The same action indexed by two jars
+        assertThrows(IllegalStateException.class, () -> new CapabilityRegistry(CapabilityIndex.merge(Arrays.asList(
+                mapper.readTree("{\"methods\":[" + entry + "]}"),
+                mapper.readTree("{\"methods\":[" + entry.replace("demo.CarAgent", "other.CarAgent") + "]}")))));
+        // Every indexed method names its action
+        assertThrows(IllegalStateException.class, () -> CapabilityIndex.merge(Collections.singletonList(
+                mapper.readTree("{\"methods\":[" + entry.replace(",\"action\":\"reserveCar\"", "") + "]}"))));
+    }
+
+    @Test
+    void testIndexNotCoveringEveryActionIsRecognised() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, AIAction> predictions = actions(CarBookingAgent.class, "bookCar");
+        predictions.putAll(actions(Shop.class, "getCheckout"));
+
+        CapabilityIndex full = CapabilityIndex.merge(Collections.singletonList(mapper.readTree(
+                "{\"actionClasses\":[\"" + CarBookingAgent.class.getName() + "\",\"" + Shop.class.getName() + "\"]}")));
+        assertNull(full.uncovered(predictions.values()));
+        // Say, the index of a dependency, or of a compile that saw only some sources
+        CapabilityIndex partial = CapabilityIndex.merge(Collections.singletonList(mapper.readTree(
+                "{\"actionClasses\":[\"" + CarBookingAgent.class.getName() + "\"]}")));
+        assertEquals("getCheckout", partial.uncovered(predictions.values()).getActionName());
+    }
+
+    @Test
+    void testIndexesFromSeveralJarsMustAgreeOnBusiness() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        assertThrows(IllegalStateException.class, () -> CapabilityIndex.merge(Arrays.asList(
+                mapper.readTree("{\"business\":{\"class\":\"a.One\"}}"),
+                mapper.readTree("{\"business\":{\"class\":\"b.Two\"}}"))));
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.vishalmysore.ucp.server.discovery;
+
+import io.github.vishalmysore.ucp.annotation.UCPBusiness;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(UCPController.class)
+class UCPControllerTest {
+
+    @UCPBusiness(name = "AutoGroup North", version = "2026-01-19")
+    static class Merchant {
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private CapabilityRegistry capabilityRegistry;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Object> checkout = CapabilityRegistry.CHECKOUT.getManifestEntry();
+        when(capabilityRegistry.getBusiness()).thenReturn(Merchant.class.getAnnotation(UCPBusiness.class));
+        when(capabilityRegistry.getManifestCapabilities()).thenReturn(Collections.singletonList(checkout));
+    }
+
+    @Test
+    void testManifestIsServedWithValidators() throws Exception {
+        mockMvc.perform(get("/.well-known/ucp"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=300, public"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(jsonPath("$.ucp.services['dev.ucp.shopping'].mcp.endpoint").value("http://localhost/ucp/mcp"))
+                .andExpect(jsonPath("$.ucp.capabilities[0].name").value("dev.ucp.shopping.checkout"));
+    }
+
+    @Test
+    void testMatchingIfNoneMatchReturnsNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/.well-known/ucp"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/.well-known/ucp").header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        mockMvc.perform(get("/.well-known/ucp").header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGzipVariant() throws Exception {
+        MvcResult plain = mockMvc.perform(get("/.well-known/ucp")).andReturn();
+        MvcResult gzip = mockMvc.perform(get("/.well-known/ucp").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+
+        assertNotEquals(plain.getResponse().getHeader(HttpHeaders.ETAG), gzip.getResponse().getHeader(HttpHeaders.ETAG));
+        try (GZIPInputStream in = new GZIPInputStream(
+                new ByteArrayInputStream(gzip.getResponse().getContentAsByteArray()))) {
+            assertEquals(plain.getResponse().getContentAsString(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testAcceptEncodingAndIfNoneMatchParsing() {
+        assertTrue(UCPController.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+        assertFalse(UCPController.acceptsGzip("gzip;q=0"));
+        assertFalse(UCPController.acceptsGzip("identity"));
+        assertTrue(UCPController.matches("*", "\"abc\""));
+        assertTrue(UCPController.matches("W/\"abc\"", "\"abc\""));
+        assertFalse(UCPController.matches(null, "\"abc\""));
+    }
+}
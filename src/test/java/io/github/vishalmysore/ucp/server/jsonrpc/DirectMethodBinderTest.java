@@ -0,0 +1,134 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.t4a.api.GenericJavaMethodAction;
+import com.t4a.detect.ActionState;
+import io.github.vishalmysore.ucp.domain.UCPCallback;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationContext;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class DirectMethodBinderTest {
+
+    @Mock
+    private ApplicationContext context;
+
+    private DirectMethodBinder binder;
+    private final BookingService service = new BookingService();
+
+    public static class BookingService {
+        public String bookCar(String carType, int days) {
+            return carType + ":" + days;
+        }
+
+        public Object createCheckout(Map<String, Object> checkoutRequest) {
+            return checkoutRequest.get("currency");
+        }
+
+        public int countItems(List<String> items) {
+            return items.size();
+        }
+
+        public String cancelBooking(String bookingId) {
+            throw new IllegalStateException("Booking " + bookingId + " is already cancelled");
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(context.getBean(BookingService.class)).thenReturn(service);
+        binder = new DirectMethodBinder(context, new ObjectMapper());
+    }
+
+    private DirectMethodBinder.BoundMethod lookup(String name, Class<?>... types) throws Exception {
+        Method method = BookingService.class.getMethod(name, types);
+        return binder.lookup(name, new GenericJavaMethodAction(BookingService.class, method));
+    }
+
+    @Test
+    void testExactParamsInvokeDirectly() throws Throwable {
+        DirectMethodBinder.BoundMethod bound = lookup("bookCar", String.class, int.class);
+        assertNotNull(bound);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("carType", "SUV");
+        params.put("days", 3);
+
+        Object[] args = bound.bind(params);
+        assertNotNull(args);
+        assertEquals("SUV:3", bound.invoke(args));
+    }
+
+    @Test
+    void testMapParameterIsPassedThrough() throws Throwable {
+        DirectMethodBinder.BoundMethod bound = lookup("createCheckout", Map.class);
+        Map<String, Object> request = Map.of("currency", "USD");
+
+        Object[] args = bound.bind(Map.of("checkoutRequest", request));
+
+        assertSame(request, args[0]);
+        assertEquals("USD", bound.invoke(args));
+    }
+
+    @Test
+    void testCollectionValuesAreConverted() throws Throwable {
+        DirectMethodBinder.BoundMethod bound = lookup("countItems", List.class);
+
+        Object[] args = bound.bind(Map.of("items", List.of("a", "b")));
+
+        assertEquals(2, bound.invoke(args));
+    }
+
+    @Test
+    void testUnknownOrMissingParamsFallBack() throws Exception {
+        DirectMethodBinder.BoundMethod bound = lookup("bookCar", String.class, int.class);
+
+        assertNull(bound.bind(Map.of("carType", "SUV")));
+        assertNull(bound.bind(Map.of("carType", "SUV", "duration", 3)));
+        assertNull(bound.bind(Map.of("carType", "SUV", "days", "three")));
+        assertNull(bound.bind(Map.of("carType", Map.of("size", "large"), "days", 3)));
+    }
+
+    @Test
+    void testDirectCallReportsItsStatus() throws Throwable {
+        List<ActionState> states = new ArrayList<>();
+        UCPCallback callback = new UCPCallback((status, state) -> states.add(state));
+
+        DirectMethodBinder.BoundMethod bound = lookup("bookCar", String.class, int.class);
+        assertEquals("SUV:2", bound.invoke(bound.bind(Map.of("carType", "SUV", "days", 2)), callback));
+        assertEquals(List.of(ActionState.WORKING, ActionState.COMPLETED), states);
+
+        states.clear();
+        DirectMethodBinder.BoundMethod failing = lookup("cancelBooking", String.class);
+        assertThrows(IllegalStateException.class,
+                () -> failing.invoke(failing.bind(Map.of("bookingId", "b1")), callback));
+        assertEquals(List.of(ActionState.WORKING, ActionState.FAILED), states);
+    }
+
+    @Test
+    void testMissingBeanSignalsNoTarget() throws Throwable {
+        DirectMethodBinder withoutBeans = new DirectMethodBinder(context, new ObjectMapper());
+        lenient().when(context.getBean(BookingService.class))
+                .thenThrow(new org.springframework.beans.factory.NoSuchBeanDefinitionException(BookingService.class));
+        Method method = BookingService.class.getMethod("bookCar", String.class, int.class);
+        DirectMethodBinder.BoundMethod bound =
+                withoutBeans.lookup("bookCar", new GenericJavaMethodAction(BookingService.class, method));
+
+        Object result = bound.invoke(bound.bind(Map.of("carType", "SUV", "days", 1)));
+
+        assertSame(DirectMethodBinder.NO_TARGET, result);
+    }
+}
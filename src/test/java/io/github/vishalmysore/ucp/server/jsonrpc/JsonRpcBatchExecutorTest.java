@@ -0,0 +1,104 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonRpcBatchExecutorTest {
+
+    private final JsonRpcBatchExecutor executor = new JsonRpcBatchExecutor(4, 8, 32);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void testResultsKeepBatchOrder() {
+        List<Supplier<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int index = i;
+            calls.add(() -> {
+                sleepQuietly((10 - index) * 2L);
+                return "result-" + index;
+            });
+        }
+
+        List<String> results = executor.executeAll(calls, e -> "error");
+
+        assertEquals(10, results.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("result-" + i, results.get(i));
+        }
+    }
+
+    @Test
+    void testCallsRunConcurrently() {
+        CountDownLatch latch = new CountDownLatch(3);
+        List<Supplier<Boolean>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(() -> {
+                latch.countDown();
+                try {
+                    return latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            });
+        }
+
+        List<Boolean> results = executor.executeAll(calls, e -> false);
+
+        assertTrue(results.stream().allMatch(Boolean::booleanValue));
+    }
+
+    @Test
+    void testFailingCallProducesErrorEntry() {
+        List<Supplier<String>> calls = new ArrayList<>();
+        calls.add(() -> "ok");
+        calls.add(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        List<String> results = executor.executeAll(calls, e -> "error:" + e.getMessage());
+
+        assertEquals("ok", results.get(0));
+        assertEquals("error:boom", results.get(1));
+    }
+
+    @Test
+    void testSaturatedPoolFallsBackToCaller() {
+        JsonRpcBatchExecutor tiny = new JsonRpcBatchExecutor(1, 1, 32);
+        try {
+            List<Supplier<String>> calls = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                calls.add(() -> {
+                    sleepQuietly(5);
+                    return Thread.currentThread().getName();
+                });
+            }
+
+            List<String> results = tiny.executeAll(calls, e -> "error");
+
+            assertEquals(6, results.size());
+            assertFalse(results.contains("error"));
+        } finally {
+            tiny.shutdown();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.t4a.detect.ActionState;
+import io.github.vishalmysore.ucp.domain.UCPCallback;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SseProgressStreamTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+    private final RecordingOutput output = new RecordingOutput();
+
+    private void attach(SseProgressStream stream) throws IOException {
+        request.setAsyncSupported(true);
+        request.setAsyncStarted(true);
+        stream.attach(new MockAsyncContext(request, new HttpServletResponseWrapper(new MockHttpServletResponse()) {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return output;
+            }
+        }));
+    }
+
+    @Test
+    void streamsStatusAndPartialResultsBeforeTheResult() throws IOException {
+        SseProgressStream stream = new SseProgressStream(mapper, 16);
+        attach(stream);
+        UCPCallback callback = new UCPCallback(stream);
+
+        callback.sendtStatus("Authorizing payment", ActionState.WORKING);
+        callback.sendPartialResult(Collections.singletonMap("step", "authorized"));
+        stream.complete(Collections.singletonMap("status", "completed"));
+
+        List<String> events = output.events();
+        assertEquals(3, events.size());
+        assertTrue(events.get(0).contains("event:status"));
+        assertTrue(events.get(0).contains("Authorizing payment"));
+        assertTrue(events.get(1).contains("event:partial"));
+        assertTrue(events.get(2).contains("event:result"));
+        assertFalse(request.isAsyncStarted());
+    }
+
+    @Test
+    void slowConsumerDropsOldestProgressButKeepsResult() throws IOException {
+        SseProgressStream stream = new SseProgressStream(mapper, 3);
+        output.ready = false;
+        attach(stream);
+
+        for (int i = 0; i < 10; i++) {
+            stream.onStatus("step " + i, ActionState.WORKING);
+        }
+        stream.complete("done");
+        stream.onStatus("late", ActionState.WORKING);
+
+        // Nothing is written, and nothing waits, until the client takes more
+        assertTrue(output.events().isEmpty());
+        assertTrue(request.isAsyncStarted());
+        output.ready = true;
+        output.listener.onWritePossible();
+
+        assertEquals(7, stream.getDroppedEvents());
+        List<String> events = output.events();
+        assertEquals(4, events.size());
+        assertTrue(events.get(0).contains("step 7"));
+        assertTrue(events.get(3).contains("event:result"));
+        assertFalse(request.isAsyncStarted());
+    }
+
+    @Test
+    void resultBeforeStartIsDeliveredOnStart() throws IOException {
+        SseProgressStream stream = new SseProgressStream(mapper, 4);
+        stream.complete(Collections.singletonMap("error", "Invalid Request"));
+        attach(stream);
+
+        List<String> events = output.events();
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).startsWith("id:1\nevent:result\ndata:{\"error\":\"Invalid Request\"}"));
+        assertFalse(request.isAsyncStarted());
+    }
+
+    @Test
+    void clientGoneStopsWriting() throws IOException {
+        SseProgressStream stream = new SseProgressStream(mapper, 4);
+        attach(stream);
+        stream.onStatus("first", ActionState.WORKING);
+        output.failing = true;
+        stream.onStatus("second", ActionState.WORKING);
+        output.failing = false;
+        stream.complete("done");
+
+        assertEquals(1, output.events().size());
+        assertTrue(request.isAsyncStarted());
+    }
+
+    @Test
+    void callbackKeepsContextWithoutListener() {
+        UCPCallback callback = new UCPCallback();
+        callback.setContext("ctx");
+        callback.sendtStatus("ignored", ActionState.WORKING);
+
+        assertEquals("ctx", callback.getContext());
+        assertNull(UCPCallback.current());
+        UCPCallback previous = UCPCallback.bind(callback);
+        assertSame(callback, UCPCallback.current());
+        UCPCallback.bind(previous);
+        assertNull(UCPCallback.current());
+    }
+
+    private static class RecordingOutput extends ServletOutputStream {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private WriteListener listener;
+        private boolean ready = true;
+        private boolean failing;
+
+        List<String> events() {
+            String text = new String(written.toByteArray(), StandardCharsets.UTF_8);
+            return text.isEmpty() ? Collections.<String>emptyList() : new ArrayList<>(Arrays.asList(text.split("\n\n")));
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (failing) {
+                throw new IOException("Broken pipe");
+            }
+            written.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package io.github.vishalmysore.ucp.server.jsonrpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.t4a.api.GenericJavaMethodAction;
+import io.github.vishalmysore.mcp.domain.CallToolResult;
+import io.github.vishalmysore.mcp.domain.Content;
+import io.github.vishalmysore.mcp.domain.TextContent;
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import io.github.vishalmysore.ucp.domain.SimpleUCPResult;
+import io.github.vishalmysore.ucp.domain.StructuredUCPResult;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UcpResponseShaperTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UcpResponseShaper shaper = new UcpResponseShaper();
+
+    @RestController
+    public static class CarBookingAgent {
+        @UCPCapability(name = "io.github.vishalmysore.car_booking", version = "2026-01-19")
+        public String bookCar(String carType) {
+            return carType;
+        }
+    }
+
+    private static CallToolResult textResult(String text) {
+        TextContent content = new TextContent();
+        content.setType("text");
+        content.setText(text);
+        List<Content> list = new ArrayList<>();
+        list.add(content);
+        CallToolResult result = new CallToolResult();
+        result.setContent(list);
+        return result;
+    }
+
+    private JsonNode write(Object id, Object response) throws Exception {
+        JsonRpcResponseBody body = JsonRpcResponseBody.success(id, shaper.shape("bookCar", response));
+        return objectMapper.readTree(objectMapper.writeValueAsBytes(body));
+    }
+
+    @Test
+    void testUcpResultFieldsAreWritten() throws Exception {
+        JsonNode response = write(7, new SimpleUCPResult("confirmationNumber", "ABC123"));
+
+        assertEquals("2.0", response.get("jsonrpc").asText());
+        assertEquals(7, response.get("id").asInt());
+        JsonNode result = response.get("result");
+        assertEquals("ABC123", result.get("confirmationNumber").asText());
+        assertEquals("2026-01-11", result.at("/ucp/version").asText());
+        assertEquals("bookCar", result.at("/ucp/capabilities/0/name").asText());
+    }
+
+    @Test
+    void testMetadataFragmentIsShared() {
+        assertSame(shaper.metadataFor("bookCar"), shaper.metadataFor("bookCar"));
+    }
+
+    @Test
+    void testCallToolResultText() throws Exception {
+        JsonNode result = write("a", textResult("hello")).get("result");
+
+        assertEquals("hello", result.get("message").asText());
+    }
+
+    @Test
+    void testStructuredDataPrefix() throws Exception {
+        JsonNode result = write("a", textResult("__UCP_STRUCTURED_DATA__:{\"id\":\"chk_1\",\"total\":1200}")).get("result");
+
+        assertEquals("chk_1", result.get("id").asText());
+        assertEquals(1200, result.get("total").asInt());
+    }
+
+    @Test
+    void testInvalidStructuredDataFallsBackToMessage() throws Exception {
+        String text = "__UCP_STRUCTURED_DATA__:{\"id\":";
+        JsonNode result = write("a", textResult(text)).get("result");
+
+        assertEquals(text, result.get("message").asText());
+    }
+
+    @Test
+    void testStructuredDataCannotReplaceMetadataBlock() throws Exception {
+        String text = "__UCP_STRUCTURED_DATA__:{\"id\":\"chk_1\",\"ucp\":\"shadowed\"}";
+        String json = objectMapper.writeValueAsString(shaper.shape("bookCar", textResult(text)));
+
+        assertEquals(json.indexOf("\"ucp\""), json.lastIndexOf("\"ucp\""));
+        JsonNode result = objectMapper.readTree(json);
+        assertEquals("chk_1", result.get("id").asText());
+        assertTrue(result.get("ucp").isObject());
+    }
+
+    @Test
+    void testStructuredJsonMustBeOneObject() {
+        assertThrows(IllegalArgumentException.class, () -> StructuredUCPResult.ofJson("{\"a\":1} {\"b\":2}"));
+        assertThrows(IllegalArgumentException.class, () -> StructuredUCPResult.ofJson("{\"a\":}"));
+        assertThrows(IllegalArgumentException.class, () -> StructuredUCPResult.ofJson("[1]"));
+    }
+
+    public static class Booking {
+        public String getConfirmationNumber() {
+            return "ABC123";
+        }
+
+        public long getTotal() {
+            return 4500;
+        }
+    }
+
+    @Test
+    void testStructuredResultFromMap() throws Exception {
+        JsonNode result = write("a", StructuredUCPResult.of(Map.of("line_items", List.of(Map.of("id", "li_1")))))
+                .get("result");
+
+        assertEquals("li_1", result.at("/line_items/0/id").asText());
+        assertTrue(result.get("ucp").isObject());
+    }
+
+    @Test
+    void testStructuredResultFromBeanIsWrittenInline() throws Exception {
+        JsonNode result = write("a", StructuredUCPResult.of(new Booking())).get("result");
+
+        assertEquals("ABC123", result.get("confirmationNumber").asText());
+        assertEquals(4500, result.get("total").asLong());
+    }
+
+    @Test
+    void testStructuredResultFromRawJsonIsSpliced() throws Exception {
+        JsonNode result = write("a", StructuredUCPResult.ofJson(" {\"id\":\"chk_9\",\"totals\":[1,2]} "))
+                .get("result");
+
+        assertEquals("chk_9", result.get("id").asText());
+        assertEquals(2, result.get("totals").size());
+        assertEquals("bookCar", result.at("/ucp/capabilities/0/name").asText());
+    }
+
+    @Test
+    void testStructuredResultFromEmptyRawJson() throws Exception {
+        JsonNode result = write("a", StructuredUCPResult.ofJson("{}")).get("result");
+
+        assertEquals(1, result.size());
+    }
+
+    @Test
+    void testStructuredResultKeepsPlainResultView() {
+        StructuredUCPResult structured = StructuredUCPResult.ofJson("{\"id\":\"chk_9\",\"count\":2,\"tags\":[\"a\"]}");
+
+        assertEquals("chk_9", structured.getResult().get("id"));
+        assertEquals("2", structured.getResult().get("count"));
+        assertEquals("[\"a\"]", structured.getResult().get("tags"));
+    }
+
+    @Test
+    void testMapResponseDropsMcpKeys() throws Exception {
+        JsonNode result = write("a", Map.of("id", "ord_1", "type", "ignored", "ucp", "shadowed")).get("result");
+
+        assertEquals("ord_1", result.get("id").asText());
+        assertFalse(result.has("type"));
+        assertTrue(result.get("ucp").isObject());
+    }
+
+    @Test
+    void testErrorResponse() throws Exception {
+        JsonNode response = objectMapper.readTree(
+                objectMapper.writeValueAsBytes(JsonRpcResponseBody.error(null, -32600, "Invalid Request")));
+
+        assertTrue(response.get("id").isNull());
+        assertEquals(-32600, response.at("/error/code").asInt());
+        assertFalse(response.has("result"));
+    }
+
+    @Test
+    void testUnwrapResponseEntity() {
+        Object body = shaper.unwrap(ResponseEntity.ok("body"));
+
+        assertEquals("body", body);
+    }
+
+    @Test
+    void testCapabilityVersionComesFromRegistry() throws Exception {
+        Method bookCar = CarBookingAgent.class.getMethod("bookCar", String.class);
+        CapabilityRegistry registry = new CapabilityRegistry(Collections.singletonMap("bookCar",
+                new GenericJavaMethodAction(CarBookingAgent.class, bookCar)));
+        UcpResponseShaper registered = new UcpResponseShaper(registry);
+
+        JsonNode ucp = objectMapper.readTree(objectMapper.writeValueAsBytes(JsonRpcResponseBody.success(1,
+                registered.shape("bookCar", new SimpleUCPResult("ok", "yes"))))).at("/result/ucp");
+        assertEquals("io.github.vishalmysore.car_booking", ucp.at("/capabilities/0/name").asText());
+        assertEquals("2026-01-19", ucp.at("/capabilities/0/version").asText());
+
+        // Undeclared methods are not given a made-up version
+        JsonNode undeclared = write(1, new SimpleUCPResult("ok", "yes")).at("/result/ucp/capabilities/0");
+        assertFalse(undeclared.has("version"));
+    }
+}
@@ -0,0 +1,148 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.domain.discovery.TypedCheckout;
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import io.github.vishalmysore.ucp.schema.SchemaManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CheckoutController.class)
+@Import({SchemaManager.class, CheckoutBodyResolverTest.TypedShop.class})
+@TestPropertySource(properties = "ucp.schema.operations.createCheckout=https://ucp.dev/schemas/shopping/checkout.json")
+class CheckoutBodyResolverTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SchemaManager schemaManager;
+
+    @Autowired
+    private TypedShop shop;
+
+    public static class CreateRequest {
+        @JsonProperty("currency")
+        String currency;
+        @JsonProperty("line_items")
+        List<Map<String, Object>> lineItems;
+    }
+
+    /**
+     * Typed create, untyped update and complete.
+     */
+    static class TypedShop implements UCPAware,
+            TypedCheckout<CreateRequest, Map<String, Object>, Map<String, Object>> {
+        final List<Object> bodies = new ArrayList<>();
+
+        @Override
+        public Object createCheckout(CreateRequest checkoutRequest) {
+            bodies.add(checkoutRequest);
+            return Map.of("id", "chk_1", "currency", checkoutRequest.currency);
+        }
+
+        @Override
+        public Object createCheckout(Map<String, Object> checkoutRequest) {
+            throw new AssertionError("REST should bind the typed request");
+        }
+
+        @Override
+        public Object updateCheckout(String checkoutId, Map<String, Object> checkoutUpdate) {
+            bodies.add(checkoutUpdate);
+            return Map.of("id", checkoutId);
+        }
+
+        @Override
+        public Object completeCheckout(String checkoutId, Map<String, Object> paymentDetails) {
+            return Map.of("id", checkoutId);
+        }
+
+        @Override
+        public Object getCheckout(String checkoutId) {
+            return null;
+        }
+
+        @Override
+        public Object cancelCheckout(String checkoutId) {
+            return null;
+        }
+
+        @Override
+        public Object linkIdentity(Map<String, Object> oauthRequest) {
+            return null;
+        }
+
+        @Override
+        public Object getOrder(String orderId) {
+            return null;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        shop.bodies.clear();
+        try (InputStream in = getClass().getResourceAsStream("/schemas/checkout.json")) {
+            schemaManager.cacheSchema("https://ucp.dev/schemas/shopping/checkout.json",
+                    new ObjectMapper().readTree(in));
+        }
+    }
+
+    @Test
+    void testTypedCheckoutReceivesModel() throws Exception {
+        mockMvc.perform(post("/ucp/v1/checkout-sessions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"currency\":\"EUR\",\"line_items\":[{\"item\":{\"id\":\"sku-1\"},\"quantity\":1}]}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.currency").value("EUR"));
+
+        CreateRequest request = (CreateRequest) shop.bodies.get(0);
+        assertEquals("EUR", request.currency);
+        assertEquals(1, request.lineItems.size());
+    }
+
+    @Test
+    void testBodyIsStillValidatedBeforeBinding() throws Exception {
+        mockMvc.perform(post("/ucp/v1/checkout-sessions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"currency\":\"eur\",\"line_items\":[{\"item\":{\"id\":\"sku-1\"},\"quantity\":1}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages[0].path").value("$.currency"));
+
+        assertTrue(shop.bodies.isEmpty());
+    }
+
+    @Test
+    void testMapTypeArgumentKeepsMap() throws Exception {
+        mockMvc.perform(put("/ucp/v1/checkout-sessions/chk_1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"buyer\":{\"email\":\"ada@example.com\"}}"))
+                .andExpect(status().isOk());
+
+        assertEquals(Map.of("buyer", Map.of("email", "ada@example.com")), shop.bodies.get(0));
+    }
+
+    @Test
+    void testMissingBodyIsRejected() throws Exception {
+        mockMvc.perform(put("/ucp/v1/checkout-sessions/chk_1").contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        assertTrue(shop.bodies.isEmpty());
+    }
+}
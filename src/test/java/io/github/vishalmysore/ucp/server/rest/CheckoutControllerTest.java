@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -14,11 +15,14 @@ import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(CheckoutController.class)
+@Import(IdempotencyStore.class)
 class CheckoutControllerTest {
 
     @Autowired
@@ -64,6 +68,15 @@ class CheckoutControllerTest {
                 .andExpect(jsonPath("$.updated").value(true));
     }
 
+    @Test
+    void testPatchCheckoutNeedsPatchableService() throws Exception {
+        mockMvc.perform(patch("/ucp/v1/checkout-sessions/test-id")
+                .contentType("application/merge-patch+json")
+                .content("{\"currency\":\"EUR\"}"))
+                .andExpect(status().isMethodNotAllowed())
+                .andExpect(jsonPath("$.messages[0].code").value("unsupported_operation"));
+    }
+
     @Test
     void testCompleteCheckout() throws Exception {
         Map<String, Object> mockResponse = Map.of("id", "test-session", "completed", true);
@@ -85,4 +98,32 @@ class CheckoutControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.cancelled").value(true));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCompleteCheckoutWithIdempotencyKeyRunsOnce() throws Exception {
+        when(checkoutService.completeCheckout(eq("idem-id"), any())).thenReturn(Map.of("id", "idem-id"));
+        String payment = objectMapper.writeValueAsString(Map.of("paymentMethod", "card"));
+
+        mockMvc.perform(post("/ucp/v1/checkout-sessions/idem-id/complete")
+                .header(IdempotencyStore.HEADER, "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payment))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyStore.REPLAYED_HEADER));
+        mockMvc.perform(post("/ucp/v1/checkout-sessions/idem-id/complete")
+                .header(IdempotencyStore.HEADER, "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(payment))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyStore.REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.id").value("idem-id"));
+        mockMvc.perform(post("/ucp/v1/checkout-sessions/idem-id/complete")
+                .header(IdempotencyStore.HEADER, "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(Map.of("paymentMethod", "wallet"))))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.messages[0].code").value("idempotency_key_reused"));
+
+        verify(checkoutService, times(1)).completeCheckout(eq("idem-id"), any());
+    }
+}
@@ -0,0 +1,207 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import io.github.vishalmysore.ucp.store.CheckoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final IdempotencyStore store = new IdempotencyStore(Duration.ofMinutes(10), 4, 5000, clock);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private static final class ManualClock extends Clock {
+        final AtomicLong millis = new AtomicLong(1_700_000_000_000L);
+
+        @Override
+        public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override
+        public Clock withZone(ZoneId zone) { return this; }
+        @Override
+        public Instant instant() { return Instant.ofEpochMilli(millis.get()); }
+        @Override
+        public long millis() { return millis.get(); }
+    }
+
+    private ResponseEntity<?> call() {
+        return ResponseEntity.ok(Map.of("call", calls.incrementAndGet()));
+    }
+
+    @Test
+    void testReplaysCompletedResponse() {
+        ResponseEntity<?> first = store.execute("completeCheckout", "chk_1", "key-1", Map.of("a", 1), this::call);
+        ResponseEntity<?> second = store.execute("completeCheckout", "chk_1", "key-1", Map.of("a", 1), this::call);
+
+        assertEquals(1, calls.get());
+        assertEquals(first.getBody(), second.getBody());
+        assertNull(first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+
+        // Same key on another session or operation is another request
+        store.execute("completeCheckout", "chk_2", "key-1", Map.of("a", 1), this::call);
+        store.execute("cancelCheckout", "chk_1", "key-1", null, this::call);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void testKeyReusedWithDifferentBody() {
+        store.execute("completeCheckout", "chk_1", "key-1", Map.of("a", 1), this::call);
+        CheckoutException e = assertThrows(CheckoutException.class,
+                () -> store.execute("completeCheckout", "chk_1", "key-1", Map.of("a", 2), this::call));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatus());
+        assertEquals("idempotency_key_reused", e.getMessages().get(0).getCode());
+        assertThrows(CheckoutException.class, () -> store.execute("completeCheckout", "chk_1", "", null, this::call));
+    }
+
+    @Test
+    void testBodyFingerprintIsOfCanonicalJson() {
+        Map<String, Object> zeros = new LinkedHashMap<>();
+        zeros.put("a", 0);
+        zeros.put("b", 0);
+        Map<String, Object> ones = new LinkedHashMap<>();
+        ones.put("a", 1);
+        ones.put("b", 1);
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("b", 0);
+        reordered.put("a", 0);
+
+        // Same hash code, different request
+        assertEquals(zeros.hashCode(), ones.hashCode());
+        store.execute("completeCheckout", "chk_1", "key-1", zeros, this::call);
+        assertThrows(CheckoutException.class,
+                () -> store.execute("completeCheckout", "chk_1", "key-1", ones, this::call));
+        store.execute("completeCheckout", "chk_1", "key-1", reordered, this::call);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testWindowExpiry() {
+        store.execute("cancelCheckout", "chk_1", "key-1", null, this::call);
+        clock.millis.addAndGet(Duration.ofMinutes(10).toMillis() - 1);
+        store.execute("cancelCheckout", "chk_1", "key-1", null, this::call);
+        assertEquals(1, calls.get());
+
+        clock.millis.addAndGet(1);
+        store.execute("cancelCheckout", "chk_1", "key-1", null, this::call);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testCheckoutExceptionReplayedOtherFailuresRetried() {
+        CheckoutException rejected = new CheckoutException(HttpStatus.CONFLICT, "not_ready", "not ready");
+        assertSame(rejected, assertThrows(CheckoutException.class,
+                () -> store.execute("completeCheckout", "chk_1", "key-1", null, () -> { throw rejected; })));
+        assertSame(rejected, assertThrows(CheckoutException.class,
+                () -> store.execute("completeCheckout", "chk_1", "key-1", null, this::call)));
+        assertEquals(0, calls.get());
+
+        assertThrows(IllegalStateException.class, () -> store.execute("completeCheckout", "chk_1", "key-2", null,
+                () -> { throw new IllegalStateException("down"); }));
+        store.execute("completeCheckout", "chk_1", "key-2", null, this::call);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testFailedCallsDoNotGrowEvictionQueue() {
+        for (int i = 0; i < 100; i++) {
+            assertThrows(IllegalStateException.class, () -> store.execute("completeCheckout", "chk_1",
+                    "key-" + calls.incrementAndGet(), null, () -> { throw new IllegalStateException("down"); }));
+        }
+        assertEquals(0, store.size());
+        assertTrue(store.queued() <= 5, "queued " + store.queued());
+    }
+
+    @Test
+    void testEvictsOldestCompletedBeyondMaxEntries() {
+        for (int i = 0; i < 20; i++) {
+            store.execute("cancelCheckout", "chk_" + i, "key", null, this::call);
+        }
+        assertTrue(store.size() <= 5, "size " + store.size());
+
+        store.execute("cancelCheckout", "chk_19", "key", null, this::call);
+        assertEquals(20, calls.get());
+        store.execute("cancelCheckout", "chk_0", "key", null, this::call);
+        assertEquals(21, calls.get());
+    }
+
+    @Test
+    void testConcurrentDuplicatesWaitForFirst() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<ResponseEntity<?>> first = pool.submit(() -> store.execute("completeCheckout", "chk_1", "key-1",
+                    null, () -> {
+                        started.countDown();
+                        await(release);
+                        return call();
+                    }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<?>[] duplicates = new Future<?>[3];
+            for (int i = 0; i < duplicates.length; i++) {
+                duplicates[i] = pool.submit(() -> store.execute("completeCheckout", "chk_1", "key-1", null,
+                        this::call));
+            }
+            Thread.sleep(50);
+            assertEquals(0, calls.get());
+            release.countDown();
+
+            Object body = first.get(5, TimeUnit.SECONDS).getBody();
+            for (Future<?> duplicate : duplicates) {
+                assertEquals(body, ((ResponseEntity<?>) duplicate.get(5, TimeUnit.SECONDS)).getBody());
+            }
+            assertEquals(1, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testWaitTimeout() throws Exception {
+        IdempotencyStore impatient = new IdempotencyStore(Duration.ofMinutes(10), 4, 20, clock);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            pool.submit(() -> impatient.execute("completeCheckout", "chk_1", "key-1", null, () -> {
+                started.countDown();
+                await(release);
+                return call();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CheckoutException e = assertThrows(CheckoutException.class,
+                    () -> impatient.execute("completeCheckout", "chk_1", "key-1", null, this::call));
+            assertEquals(HttpStatus.CONFLICT, e.getStatus());
+            assertEquals("request_in_progress", e.getMessages().get(0).getCode());
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonPatchDiffTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private JsonNode json(String text) throws Exception {
+        return mapper.readTree(text.replace('\'', '"'));
+    }
+
+    @Test
+    void testDiffOfObjectsAndArrays() throws Exception {
+        JsonNode from = json("{'id':'chk_1','currency':'USD','a/b':1,"
+                + "'lines':[{'id':'li_1','quantity':1},{'id':'li_2','quantity':1},{'id':'li_3','quantity':1}]}");
+        JsonNode to = json("{'id':'chk_1','a/b':2,'status':'ready',"
+                + "'lines':[{'id':'li_1','quantity':4}]}");
+
+        assertEquals(json("["
+                + "{'op':'remove','path':'/currency'},"
+                + "{'op':'replace','path':'/a~1b','value':2},"
+                + "{'op':'add','path':'/status','value':'ready'},"
+                + "{'op':'replace','path':'/lines/0/quantity','value':4},"
+                + "{'op':'remove','path':'/lines/2'},"
+                + "{'op':'remove','path':'/lines/1'}]"), JsonPatchDiff.diff(from, to));
+
+        assertEquals(json("[{'op':'add','path':'/lines/1','value':{'id':'li_2'}}]"),
+                JsonPatchDiff.diff(json("{'lines':[{'id':'li_1'}]}"), json("{'lines':[{'id':'li_1'},{'id':'li_2'}]}")));
+        assertEquals(0, JsonPatchDiff.diff(from, from.deepCopy()).size());
+        assertEquals(json("[{'op':'replace','path':'','value':[1]}]"), JsonPatchDiff.diff(from, json("[1]")));
+    }
+}
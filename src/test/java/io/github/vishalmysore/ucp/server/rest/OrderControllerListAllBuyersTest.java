@@ -0,0 +1,39 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import io.github.vishalmysore.ucp.domain.common.Buyer;
+import io.github.vishalmysore.ucp.store.CheckoutSession;
+import io.github.vishalmysore.ucp.store.OrderStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = OrderController.class, properties = "ucp.order.list-all-buyers=true")
+@Import(OrderControllerTest.Config.class)
+class OrderControllerListAllBuyersTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private OrderStore orderStore;
+
+    @Test
+    void testEveryBuyerIsListedWhenAllowed() throws Exception {
+        for (String buyerId : new String[]{"buyer_a", "buyer_b"}) {
+            Buyer buyer = new Buyer();
+            buyer.setId(buyerId);
+            orderStore.place(new CheckoutSession("chk_" + buyerId, CheckoutStatus.completed, "USD", buyer, null, null));
+        }
+
+        mockMvc.perform(get("/ucp/order"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders[0].id").value("ord_buyer_b"))
+                .andExpect(jsonPath("$.orders[1].id").value("ord_buyer_a"));
+    }
+}
@@ -1,27 +1,52 @@
 package io.github.vishalmysore.ucp.server.rest;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import io.github.vishalmysore.ucp.domain.common.Buyer;
+import io.github.vishalmysore.ucp.store.CheckoutSession;
+import io.github.vishalmysore.ucp.store.OrderStore;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(OrderController.class)
 class OrderControllerTest {
 
+    @TestConfiguration
+    static class Config {
+        @Bean
+        OrderStore orderStore() {
+            return new OrderStore();
+        }
+    }
+
     @Autowired
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private OrderStore orderStore;
+
+    private void place(String checkoutId, String buyerId) {
+        Buyer buyer = new Buyer();
+        buyer.setId(buyerId);
+        orderStore.place(new CheckoutSession(checkoutId, CheckoutStatus.completed, "USD", buyer, null, null));
+    }
+
     @Test
     void testCreateOrder() throws Exception {
         Map<String, Object> request = Map.of("items", List.of(Map.of("id", "item1")));
@@ -29,25 +54,85 @@ class OrderControllerTest {
         mockMvc.perform(post("/ucp/order")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
-                .andExpect(status().isOk())
-                .andExpect(jsonPath("$.version").value("2026-01-11"));
+                .andExpect(status().isMethodNotAllowed())
+                .andExpect(jsonPath("$.messages[0].code").value("unsupported_operation"));
     }
 
     @Test
     void testGetOrder() throws Exception {
-        mockMvc.perform(get("/ucp/order/123"))
+        place("chk_get", "buyer_get");
+
+        mockMvc.perform(get("/ucp/order/ord_get"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.version").value("2026-01-11"));
+                .andExpect(jsonPath("$.id").value("ord_get"))
+                .andExpect(jsonPath("$.checkout_id").value("chk_get"))
+                .andExpect(jsonPath("$.status").value("confirmed"))
+                .andExpect(jsonPath("$.created_at").exists());
+        mockMvc.perform(get("/ucp/order/ord_missing"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.messages[0].code").value("order_not_found"));
     }
 
     @Test
     void testUpdateOrder() throws Exception {
+        place("chk_update", "buyer_update");
         Map<String, Object> updates = Map.of("status", "shipped");
 
-        mockMvc.perform(patch("/ucp/order/123")
+        mockMvc.perform(patch("/ucp/order/ord_update")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(updates)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.version").value("2026-01-11"));
+                .andExpect(jsonPath("$.status").value("shipped"));
+        mockMvc.perform(patch("/ucp/order/ord_update")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"canceled\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.messages[0].code").value("invalid_transition"));
+        mockMvc.perform(patch("/ucp/order/ord_update")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"lost\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testListOrdersWithCursor() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            place("chk_list_" + i, "buyer_list");
+        }
+        place("chk_other", "buyer_other");
+
+        JsonNode first = page("/ucp/order?buyer_id=buyer_list&limit=2");
+        assertEquals("ord_list_5", first.at("/orders/0/id").asText());
+        assertEquals("ord_list_4", first.at("/orders/1/id").asText());
+        JsonNode second = page("/ucp/order?buyer_id=buyer_list&limit=2&cursor=" + first.get("next_cursor").asText());
+        assertEquals("ord_list_3", second.at("/orders/0/id").asText());
+        JsonNode last = page("/ucp/order?buyer_id=buyer_list&limit=2&cursor=" + second.get("next_cursor").asText());
+        assertEquals(1, last.get("orders").size());
+        assertEquals("ord_list_1", last.at("/orders/0/id").asText());
+        assertFalse(last.has("next_cursor"));
+
+        mockMvc.perform(get("/ucp/order").param("buyer_id", "buyer_other").param("status", "confirmed"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orders[0].id").value("ord_other"));
+        mockMvc.perform(get("/ucp/order").param("buyer_id", "buyer_list").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages[0].code").value("invalid_cursor"));
+        mockMvc.perform(get("/ucp/order").param("buyer_id", "buyer_list").param("limit", "1000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testListingEveryBuyerIsRefused() throws Exception {
+        place("chk_unscoped", "buyer_unscoped");
+
+        mockMvc.perform(get("/ucp/order").param("status", "confirmed"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages[0].code").value("invalid_request"));
+    }
+
+    private JsonNode page(String url) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,150 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.domain.common.Message;
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import io.github.vishalmysore.ucp.schema.SchemaManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CheckoutController.class)
+@Import(SchemaManager.class)
+@TestPropertySource(properties = {
+        "ucp.schema.operations.createCheckout=https://ucp.dev/schemas/shopping/checkout.json",
+        "ucp.schema.streaming.max-bytes=4096"
+})
+class SchemaValidationAdviceTest {
+
+    private static final String CHECKOUT_URI = "https://ucp.dev/schemas/shopping/checkout.json";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SchemaManager schemaManager;
+
+    @MockBean
+    private UCPAware checkoutService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        try (InputStream in = getClass().getResourceAsStream("/schemas/checkout.json")) {
+            schemaManager.cacheSchema(CHECKOUT_URI, new ObjectMapper().readTree(in));
+        }
+    }
+
+    @Test
+    void testValidBodyIsBound() throws Exception {
+        when(checkoutService.createCheckout(any())).thenReturn(Map.of("id", "chk_1"));
+
+        mockMvc.perform(post("/ucp/v1/checkout-sessions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"currency\":\"USD\",\"line_items\":[{\"item\":{\"id\":\"sku-1\"},\"quantity\":1}]}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value("chk_1"));
+    }
+
+    @Test
+    void testInvalidBodyIsRejectedBeforeBinding() throws Exception {
+        mockMvc.perform(post("/ucp/v1/checkout-sessions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"currency\":\"USD\",\"line_items\":[{\"item\":{\"id\":\"sku-1\"},\"quantity\":0}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages[0].code").value("below_minimum"))
+                .andExpect(jsonPath("$.messages[0].path").value("$.line_items[0].quantity"));
+
+        verifyNoInteractions(checkoutService);
+    }
+
+    @Test
+    void testLimits() throws Exception {
+        StringBuilder large = new StringBuilder("{\"id\":\"");
+        for (int i = 0; i < 5000; i++) {
+            large.append('x');
+        }
+        mockMvc.perform(post("/ucp/v1/checkout-sessions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(large.append("\"}").toString()))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.messages[0].code").value("payload_too_large"));
+
+        StringBuilder deep = new StringBuilder("{\"currency\":\"USD\",\"line_items\":[{\"item\":{\"id\":\"a\"},"
+                + "\"quantity\":1}],\"discounts\":");
+        for (int i = 0; i < 100; i++) {
+            deep.append("{\"a\":");
+        }
+        mockMvc.perform(post("/ucp/v1/checkout-sessions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(deep.append("1").toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages[0].code").value("limit_exceeded"));
+
+        verifyNoInteractions(checkoutService);
+    }
+
+    @Test
+    void testUnconfiguredOperationIsNotValidated() throws Exception {
+        when(checkoutService.updateCheckout(any(), any())).thenReturn(Map.of("id", "chk_1"));
+
+        mockMvc.perform(put("/ucp/v1/checkout-sessions/chk_1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"line_items\":\"none\"}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAnnotateModeKeepsMessages() throws Exception {
+        MockEnvironment env = new MockEnvironment()
+                .withProperty("ucp.schema.operations.createCheckout", CHECKOUT_URI)
+                .withProperty("ucp.schema.streaming.mode", "annotate");
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("schemaManager", schemaManager);
+        SchemaValidationAdvice advice = new SchemaValidationAdvice(env, beans.getBeanProvider(SchemaManager.class));
+        MethodParameter parameter = new MethodParameter(
+                CheckoutController.class.getMethod("createCheckout", Object.class), 0);
+        byte[] body = "{\"currency\":\"usd\",\"line_items\":[]}".getBytes(StandardCharsets.UTF_8);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            assertTrue(advice.supports(parameter, Map.class, MappingJackson2HttpMessageConverter.class));
+            InputStream bound = advice.beforeBodyRead(new MockHttpInputMessage(body), parameter, Map.class,
+                    MappingJackson2HttpMessageConverter.class).getBody();
+
+            assertArrayEquals(body, bound.readAllBytes());
+            List<Message> messages = (List<Message>) request.getAttribute(SchemaValidationAdvice.MESSAGES_ATTRIBUTE);
+            assertEquals(2, messages.size());
+            assertEquals("$.currency", messages.get(0).getPath());
+            assertEquals("$.line_items", messages.get(1).getPath());
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package io.github.vishalmysore.ucp.server.rest;
+
+import io.github.vishalmysore.ucp.annotation.UCPCapability;
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import io.github.vishalmysore.ucp.negotiation.CapabilityNegotiator;
+import io.github.vishalmysore.ucp.negotiation.NegotiatedContext;
+import io.github.vishalmysore.ucp.negotiation.PlatformProfileFetcher;
+import io.github.vishalmysore.ucp.server.discovery.CapabilityRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest({CheckoutController.class, OrderController.class})
+@Import(UCPAgentInterceptorTest.StubNegotiator.class)
+class UCPAgentInterceptorTest {
+
+    private static final String CHECKOUT_PLATFORM = "https://platform.example/checkout.json";
+    private static final String ORDER_PLATFORM = "https://platform.example/order.json";
+    private static final String LOOPBACK_PLATFORM = "https://127.0.0.1.nip.io/profile.json";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private UCPAware checkoutService;
+
+    @Autowired
+    private StubNegotiator negotiator;
+
+    /**
+     * Serves two platform profiles from memory and refuses the loopback one,
+     * as the fetcher does once it resolves the host; any other URI is unreachable.
+     */
+    static class StubNegotiator extends CapabilityNegotiator {
+        final AtomicInteger fetches = new AtomicInteger();
+        final Map<String, UCPProfile> profiles = Map.of(
+                CHECKOUT_PLATFORM, profile(CapabilityRegistry.CHECKOUT.toCapability()),
+                ORDER_PLATFORM, profile(CapabilityRegistry.ORDER.toCapability()));
+
+        private static UCPProfile profile(UCPCapability capability) {
+            UCPProfile profile = new UCPProfile();
+            profile.setCapabilities(Collections.singletonList(capability));
+            return profile;
+        }
+
+        @Override
+        public CompletableFuture<UCPProfile> fetchPlatformProfile(String profileUri) {
+            fetches.incrementAndGet();
+            UCPProfile profile = profiles.get(profileUri);
+            CompletableFuture<UCPProfile> future = new CompletableFuture<>();
+            if (profile != null) {
+                future.complete(profile);
+            } else if (profileUri.equals(LOOPBACK_PLATFORM)) {
+                future.completeExceptionally(new PlatformProfileFetcher.ProfileRefusedException(
+                        "Profiles are not fetched from 127.0.0.1.nip.io, which resolves to 127.0.0.1"));
+            } else {
+                future.completeExceptionally(new PlatformProfileFetcher.ProfileFetchException(
+                        "Cannot fetch platform profile " + profileUri, null));
+            }
+            return future;
+        }
+    }
+
+    private static String agent(String profileUri) {
+        return "profile=\"" + profileUri + "\"";
+    }
+
+    @Test
+    void testRequestWithoutHeaderGetsBusinessCapabilities() throws Exception {
+        List<NegotiatedContext> seen = new ArrayList<>();
+        when(checkoutService.getCheckout("chk_1")).thenAnswer(call -> {
+            seen.add(NegotiatedContext.current());
+            return Map.of("id", "chk_1");
+        });
+
+        mockMvc.perform(get("/ucp/v1/checkout-sessions/chk_1")).andExpect(status().isOk());
+
+        assertFalse(seen.get(0).isNegotiated());
+        assertTrue(seen.get(0).supports(CapabilityRegistry.ORDER.getName()));
+    }
+
+    @Test
+    void testNegotiatedContextIsAttachedAndShared() throws Exception {
+        List<NegotiatedContext> seen = new ArrayList<>();
+        when(checkoutService.getCheckout("chk_1")).thenAnswer(call -> {
+            seen.add(NegotiatedContext.current());
+            return Map.of("id", "chk_1");
+        });
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/ucp/v1/checkout-sessions/chk_1").header("UCP-Agent", agent(CHECKOUT_PLATFORM)))
+                    .andExpect(status().isOk());
+        }
+
+        NegotiatedContext context = seen.get(0);
+        assertSame(context, seen.get(1));
+        assertEquals(CHECKOUT_PLATFORM, context.getPlatformProfileUri());
+        assertEquals(CHECKOUT_PLATFORM, context.toBindingContext("rest").getPlatformProfileUri());
+        assertTrue(context.supports(CapabilityRegistry.CHECKOUT.getName()));
+        assertFalse(context.supports(CapabilityRegistry.ORDER.getName()));
+        assertThrows(UnsupportedOperationException.class, () -> context.getCapabilities().clear());
+    }
+
+    @Test
+    void testCapabilityOutsideNegotiatedSetIsRejected() throws Exception {
+        mockMvc.perform(post("/ucp/v1/checkout-sessions")
+                .header("UCP-Agent", agent(ORDER_PLATFORM))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages[0].code").value("capability_not_negotiated"));
+
+        // Past negotiation: the stub service has no such order
+        mockMvc.perform(get("/ucp/order/ord_1").header("UCP-Agent", agent(ORDER_PLATFORM)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/ucp/order/ord_1").header("UCP-Agent", agent(CHECKOUT_PLATFORM)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testMalformedHeaderIsRejected() throws Exception {
+        mockMvc.perform(get("/ucp/v1/checkout-sessions/chk_1").header("UCP-Agent", "profile=\"unterminated"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages[0].code").value("invalid_ucp_agent"));
+        mockMvc.perform(get("/ucp/v1/checkout-sessions/chk_1").header("UCP-Agent", "version=1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages[0].severity").value("recoverable"));
+    }
+
+    @Test
+    void testUnreachableProfileIsFailedDependency() throws Exception {
+        mockMvc.perform(get("/ucp/v1/checkout-sessions/chk_1")
+                .header("UCP-Agent", agent("https://platform.example/missing.json")))
+                .andExpect(status().isFailedDependency())
+                .andExpect(jsonPath("$.messages[0].code").value("profile_unreachable"));
+    }
+
+    @Test
+    void testFailedProfileIsNotFetchedAgainRightAway() throws Exception {
+        String missing = "https://platform.example/gone.json";
+        int before = negotiator.fetches.get();
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/ucp/v1/checkout-sessions/chk_1").header("UCP-Agent", agent(missing)))
+                    .andExpect(status().isFailedDependency());
+        }
+        assertEquals(before + 1, negotiator.fetches.get());
+    }
+
+    @Test
+    void testInternalProfileUrisAreNotFetched() throws Exception {
+        int before = negotiator.fetches.get();
+        for (String uri : new String[] {"http://platform.example/profile.json", "https://127.0.0.1/profile.json",
+                "https://10.0.0.8/profile.json", "https://[::1]/profile.json", "https://localhost/profile.json",
+                "https://user@platform.example/profile.json", "file:///etc/passwd"}) {
+            mockMvc.perform(get("/ucp/v1/checkout-sessions/chk_1").header("UCP-Agent", agent(uri)))
+                    .andExpect(status().isForbidden())
+                    .andExpect(jsonPath("$.messages[0].code").value("profile_not_allowed"));
+        }
+        assertEquals(before, negotiator.fetches.get());
+    }
+
+    @Test
+    void testHostResolvingToLoopbackIsRefused() throws Exception {
+        int before = negotiator.fetches.get();
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/ucp/v1/checkout-sessions/chk_1").header("UCP-Agent", agent(LOOPBACK_PLATFORM)))
+                    .andExpect(status().isForbidden())
+                    .andExpect(jsonPath("$.messages[0].code").value("profile_not_allowed"));
+        }
+        assertEquals(before + 1, negotiator.fetches.get());
+    }
+}
@@ -0,0 +1,301 @@
+package io.github.vishalmysore.ucp.store;
+
+import io.github.vishalmysore.ucp.domain.checkout.CartPricing;
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import io.github.vishalmysore.ucp.domain.checkout.LineItemResponse;
+import io.github.vishalmysore.ucp.domain.checkout.TotalResponse;
+import io.github.vishalmysore.ucp.domain.common.Buyer;
+import io.github.vishalmysore.ucp.domain.common.ItemResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckoutJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final ManualClock clock = new ManualClock();
+
+    private static final class ManualClock extends Clock {
+        final AtomicLong millis = new AtomicLong(1_700_000_000_000L);
+
+        @Override
+        public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override
+        public Clock withZone(ZoneId zone) { return this; }
+        @Override
+        public Instant instant() { return Instant.ofEpochMilli(millis.get()); }
+        @Override
+        public long millis() { return millis.get(); }
+    }
+
+    private CheckoutSessionStore store() {
+        return new CheckoutSessionStore(Duration.ofMinutes(30), Duration.ofSeconds(1), 8, clock);
+    }
+
+    private CheckoutJournal journal() {
+        return new CheckoutJournal(directory, 4096, true);
+    }
+
+    private static CheckoutSession session(String id) {
+        return new CheckoutSession(id, CheckoutStatus.incomplete, "USD", null, null, null);
+    }
+
+    private static LineItemResponse line(String id, String parentId, long price, int quantity) {
+        ItemResponse item = new ItemResponse();
+        item.setId("sku-" + id);
+        item.setPrice(price);
+        LineItemResponse line = new LineItemResponse();
+        line.setId(id);
+        line.setParentId(parentId);
+        line.setItem(item);
+        line.setQuantity(quantity);
+        return line;
+    }
+
+    private List<Path> files(String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    @Test
+    void testRecoverSessionsAfterRestart() {
+        Buyer buyer = new Buyer();
+        buyer.setEmail("buyer@example.com");
+        LineItemResponse fee = line("b", "a", 0, 1);
+        TotalResponse feeAmount = new TotalResponse();
+        feeAmount.setType(TotalResponse.Type.fee);
+        feeAmount.setAmount(150L);
+        fee.setTotals(Collections.singletonList(feeAmount));
+        CartPricing pricing = CartPricing.price(Arrays.asList(line("a", null, 1000, 2), fee));
+
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            store.create(new CheckoutSession("chk_1", CheckoutStatus.incomplete, "USD", buyer, pricing));
+            store.update("chk_1", s -> s.withStatus(CheckoutStatus.ready_for_complete));
+            store.create(session("chk_2"));
+            store.update("chk_2", s -> s.withCurrency("EUR"));
+            store.create(session("chk_3"));
+            store.remove("chk_3");
+        }
+
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            assertEquals(2, store.size());
+            CheckoutSession first = store.get("chk_1");
+            assertEquals(CheckoutStatus.ready_for_complete, first.getStatus());
+            assertEquals(2, first.getVersion());
+            assertEquals("buyer@example.com", first.getBuyer().getEmail());
+            assertEquals(2150, first.getPricing().amount(TotalResponse.Type.total));
+            assertEquals(2, first.getLineItems().size());
+            assertEquals("a", first.getLineItems().get(1).getParentId());
+            assertEquals("EUR", store.get("chk_2").getCurrency());
+            assertNull(store.get("chk_3"));
+
+            // New writes follow on from the recovered ones
+            assertEquals(3, store.update("chk_2", 2, s -> s.withCurrency("GBP")).getVersion());
+            store.create(session("chk_3"));
+        }
+
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            assertEquals("GBP", store.get("chk_2").getCurrency());
+            assertNotNull(store.get("chk_3"));
+        }
+    }
+
+    @Test
+    void testTornRecordEndsReplay() throws IOException {
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            store.create(session("chk_1"));
+            store.create(session("chk_2"));
+        }
+        Path segment = files("segment-*.log").get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            // The last byte of the second record, as a crash halfway through writing it would leave
+            long end = 8 + header.getInt(0);
+            ByteBuffer second = ByteBuffer.allocate(4);
+            channel.read(second, end);
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f}), end + 8 + second.getInt(0) - 1);
+        }
+
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            assertNotNull(store.get("chk_1"));
+            assertNull(store.get("chk_2"));
+        }
+    }
+
+    @Test
+    void testSnapshotReplacesSegments() throws IOException {
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            for (int i = 0; i < 20; i++) {
+                store.create(session("chk_" + i));
+            }
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 20; i++) {
+                    store.update("chk_" + i, s -> s.withCurrency(s.getCurrency() + "!"));
+                }
+            }
+            store.remove("chk_0");
+            assertTrue(files("segment-*.log").size() > 3);
+
+            assertEquals(19, store.snapshot());
+            assertEquals(1, files("snapshot-*.snap").size());
+            assertEquals(1, files("segment-*.log").size());
+            store.update("chk_1", s -> s.withStatus(CheckoutStatus.canceled));
+        }
+
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            assertEquals(19, store.size());
+            assertNull(store.get("chk_0"));
+            assertEquals("USD!!!!!!!!!!", store.get("chk_2").getCurrency());
+            assertEquals(11, store.get("chk_2").getVersion());
+            assertEquals(CheckoutStatus.canceled, store.get("chk_1").getStatus());
+        }
+    }
+
+    @Test
+    void testUpdateAppendedAfterRemovalAndSnapshotStaysRemoved() {
+        CheckoutSessionStore[] store = new CheckoutSessionStore[1];
+        // The update's put reaches the journal only after a removal and a snapshot
+        try (CheckoutJournal journal = new CheckoutJournal(directory, 4096, true) {
+            boolean delayed;
+
+            @Override
+            long append(byte op, long generation, CheckoutSession session, String id) {
+                if (op == PUT && session.getVersion() == 2 && !delayed) {
+                    delayed = true;
+                    store[0].remove(id);
+                    store[0].snapshot();
+                }
+                return super.append(op, generation, session, id);
+            }
+        }) {
+            store[0] = store().recover(journal);
+            store[0].create(session("chk_1"));
+            store[0].update("chk_1", s -> s.withCurrency("EUR"));
+            assertNull(store[0].get("chk_1"));
+        }
+
+        try (CheckoutJournal journal = journal()) {
+            assertNull(store().recover(journal).get("chk_1"));
+        }
+    }
+
+    @Test
+    void testReplayKeepsNewestRecord() {
+        long expires = clock.millis() + 60_000;
+        try (CheckoutJournal journal = journal()) {
+            journal.recover();
+            // Updates racing to the journal may land out of order
+            journal.append(CheckoutJournal.PUT, 1, session("chk_1").withCurrency("EUR").stored(expires, 3), "chk_1");
+            journal.append(CheckoutJournal.PUT, 1, session("chk_1").stored(expires, 2), "chk_1");
+            // An update that lost to a removal, then the id used again
+            journal.append(CheckoutJournal.PUT, 2, session("chk_2").stored(expires, 1), "chk_2");
+            journal.append(CheckoutJournal.REMOVE, 2, null, "chk_2");
+            journal.append(CheckoutJournal.PUT, 2, session("chk_2").stored(expires, 2), "chk_2");
+            journal.append(CheckoutJournal.PUT, 3, session("chk_2").withCurrency("GBP").stored(expires, 1), "chk_2");
+        }
+
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            assertEquals(3, store.get("chk_1").getVersion());
+            assertEquals("EUR", store.get("chk_1").getCurrency());
+            assertEquals("GBP", store.get("chk_2").getCurrency());
+            store.create(session("chk_3"));
+            store.remove("chk_2");
+        }
+
+        try (CheckoutJournal journal = journal()) {
+            assertNull(store().recover(journal).get("chk_2"));
+        }
+    }
+
+    @Test
+    void testExpiredSessionsAreNotRecovered() {
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            store.create(session("chk_1"));
+            clock.millis.addAndGet(Duration.ofMinutes(20).toMillis());
+            store.create(session("chk_2"));
+        }
+        clock.millis.addAndGet(Duration.ofMinutes(15).toMillis());
+
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            assertNull(store.get("chk_1"));
+            assertNotNull(store.get("chk_2"));
+            assertEquals(1, store.size());
+        }
+    }
+
+    @Test
+    void testConcurrentWritesShareSyncs() throws Exception {
+        int threads = 8;
+        int perThread = 100;
+        try (CheckoutJournal journal = new CheckoutJournal(directory, 1 << 20, true)) {
+            CheckoutSessionStore store = store().recover(journal);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    futures.add(pool.submit(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            String id = "chk_" + thread + "_" + i;
+                            store.create(session(id));
+                            store.update(id, s -> s.withCurrency("EUR"));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(2L * threads * perThread, journal.getAppendCount());
+            assertTrue(journal.getSyncCount() <= journal.getAppendCount());
+        }
+
+        try (CheckoutJournal journal = journal()) {
+            CheckoutSessionStore store = store().recover(journal);
+            assertEquals(threads * perThread, store.size());
+            assertEquals(2, store.get("chk_3_42").getVersion());
+            assertEquals("EUR", store.get("chk_3_42").getCurrency());
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package io.github.vishalmysore.ucp.store;
+
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckoutSessionStoreTest {
+
+    private final ManualClock clock = new ManualClock();
+    private final CheckoutSessionStore store = new CheckoutSessionStore(Duration.ofMinutes(30),
+            Duration.ofSeconds(1), 8, clock);
+
+    private static final class ManualClock extends Clock {
+        final AtomicLong millis = new AtomicLong(1_700_000_000_000L);
+
+        @Override
+        public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override
+        public Clock withZone(ZoneId zone) { return this; }
+        @Override
+        public Instant instant() { return Instant.ofEpochMilli(millis.get()); }
+        @Override
+        public long millis() { return millis.get(); }
+    }
+
+    private static CheckoutSession session(String id) {
+        return new CheckoutSession(id, CheckoutStatus.incomplete, "USD", null, null, null);
+    }
+
+    @Test
+    void testCreateGetUpdateRemove() {
+        CheckoutSession created = store.create(session("chk_1"));
+        assertEquals(1, created.getVersion());
+        assertEquals(clock.millis() + Duration.ofMinutes(30).toMillis(), created.getExpiresAt());
+        assertSame(created, store.get("chk_1"));
+
+        CheckoutSession updated = store.update("chk_1", s -> s.withCurrency("EUR"));
+        assertEquals(2, updated.getVersion());
+        assertEquals("EUR", store.get("chk_1").getCurrency());
+        assertSame(updated, store.update("chk_1", s -> s));
+
+        assertThrows(CheckoutException.class, () -> store.create(session("chk_1")));
+        assertThrows(IllegalArgumentException.class, () -> store.update("chk_1", s -> session("chk_2")));
+        assertNull(store.update("missing", s -> s.withCurrency("EUR")));
+        assertSame(updated, store.remove("chk_1"));
+        assertNull(store.get("chk_1"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testUpdateAtExpectedVersion() {
+        store.create(session("chk_1"));
+        CheckoutSession updated = store.update("chk_1", 1, s -> s.withCurrency("EUR"));
+        assertEquals(2, updated.getVersion());
+
+        CheckoutException e = assertThrows(CheckoutException.class,
+                () -> store.update("chk_1", 1, s -> s.withCurrency("GBP")));
+        assertEquals(412, e.getStatus().value());
+        assertEquals("EUR", store.get("chk_1").getCurrency());
+        assertEquals(3, store.update("chk_1", CheckoutSessionStore.ANY_VERSION, s -> s.withCurrency("GBP"))
+                .getVersion());
+    }
+
+    @Test
+    void testConcurrentConditionalUpdatesHaveOneWinnerPerVersion() throws Exception {
+        store.create(session("chk_1"));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicLong wins = new AtomicLong();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 1000; n++) {
+                        long seen = store.get("chk_1").getVersion();
+                        try {
+                            store.update("chk_1", seen, s -> s.withCurrency("EUR"));
+                            wins.incrementAndGet();
+                        } catch (CheckoutException lost) {
+                            // Another writer took this version
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1 + wins.get(), store.get("chk_1").getVersion());
+    }
+
+    @Test
+    void testSessionsExpireAfterTheirLastWrite() {
+        store.create(session("chk_idle"));
+        clock.millis.addAndGet(Duration.ofMinutes(20).toMillis());
+        store.create(session("chk_new"));
+        store.create(session("chk_touched"));
+        clock.millis.addAndGet(Duration.ofMinutes(5).toMillis());
+        store.update("chk_touched", s -> s.withCurrency("EUR"));
+
+        clock.millis.addAndGet(Duration.ofMinutes(5).toMillis());
+        // Due but not swept yet: hidden from reads and writes
+        assertNull(store.get("chk_idle"));
+        assertNull(store.update("chk_idle", s -> s.withCurrency("EUR")));
+        assertEquals(3, store.size());
+        assertEquals(1, store.expire());
+        assertEquals(2, store.size());
+
+        clock.millis.addAndGet(Duration.ofMinutes(20).toMillis());
+        assertEquals(1, store.expire());
+        assertNull(store.get("chk_new"));
+        assertNotNull(store.get("chk_touched"));
+        clock.millis.addAndGet(Duration.ofMinutes(5).toMillis());
+        assertEquals(1, store.expire());
+        assertEquals(0, store.size());
+        assertEquals(3, store.getExpiredCount());
+    }
+
+    @Test
+    void testExpiredIdCanBeCreatedAgainBeforeSweep() {
+        store.create(session("chk_1"));
+        clock.millis.addAndGet(Duration.ofMinutes(31).toMillis());
+
+        CheckoutSession again = store.create(session("chk_1"));
+
+        assertSame(again, store.get("chk_1"));
+        assertEquals(0, store.expire());
+        assertSame(again, store.get("chk_1"));
+    }
+
+    @Test
+    void testConcurrentUpdatesAreNotLost() throws Exception {
+        for (int i = 0; i < 16; i++) {
+            store.create(session("chk_" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 2000; n++) {
+                        store.update("chk_" + (n % 16), s -> s.withCurrency("EUR"));
+                        assertNotNull(store.get("chk_" + (n % 16)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < 16; i++) {
+            assertEquals(1 + 8 * 2000 / 16, store.get("chk_" + i).getVersion());
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package io.github.vishalmysore.ucp.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import io.github.vishalmysore.ucp.domain.checkout.TotalResponse;
+import io.github.vishalmysore.ucp.domain.common.ItemResponse;
+import io.github.vishalmysore.ucp.domain.discovery.UCPAware;
+import io.github.vishalmysore.ucp.server.rest.CheckoutController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(CheckoutController.class)
+class InMemoryCheckoutServiceTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        UCPAware checkoutService() {
+            ItemResponse tee = new ItemResponse();
+            tee.setId("sku-tee");
+            tee.setTitle("Tee");
+            tee.setPrice(2500L);
+            return new InMemoryCheckoutService(new CheckoutSessionStore(Duration.ofHours(6)),
+                    Collections.singletonMap("sku-tee", tee)::get, new OrderStore());
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UCPAware checkoutService;
+
+    private CheckoutSession create(String body) {
+        return (CheckoutSession) checkoutService.createCheckout(parse(body));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parse(String body) {
+        try {
+            return new com.fasterxml.jackson.databind.ObjectMapper().readValue(body, Map.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Test
+    void testCheckoutLifecycleOverRest() throws Exception {
+        String id = create("{\"currency\":\"USD\",\"line_items\":[{\"item\":{\"id\":\"sku-tee\"},\"quantity\":2}]}")
+                .getId();
+
+        mockMvc.perform(get("/ucp/v1/checkout-sessions/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("incomplete"))
+                .andExpect(jsonPath("$.line_items[0].item.title").value("Tee"))
+                .andExpect(jsonPath("$.totals[0].amount").value(5000))
+                .andExpect(jsonPath("$.expires_at").exists());
+
+        mockMvc.perform(put("/ucp/v1/checkout-sessions/" + id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"buyer\":{\"email\":\"ada@example.com\",\"first_name\":\"Ada\"}}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("ready_for_complete"))
+                .andExpect(jsonPath("$.buyer.firstName").value("Ada"));
+
+        mockMvc.perform(post("/ucp/v1/checkout-sessions/" + id + "/complete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("completed"));
+
+        mockMvc.perform(post("/ucp/v1/checkout-sessions/" + id + "/cancel"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.messages[0].code").value("session_closed"));
+
+        Order order = (Order) checkoutService.getOrder(OrderStore.orderId(id));
+        assertEquals(id, order.getCheckoutId());
+        assertEquals(OrderStatus.confirmed, order.getStatus());
+        assertEquals(5000, order.getTotals().get(0).getAmount());
+    }
+
+    @Test
+    void testUnknownSessionAndItem() throws Exception {
+        mockMvc.perform(get("/ucp/v1/checkout-sessions/chk_missing"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.messages[0].code").value("session_not_found"));
+
+        mockMvc.perform(post("/ucp/v1/checkout-sessions")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"line_items\":[{\"item\":{\"id\":\"sku-unknown\"},\"quantity\":1}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages[0].code").value("item_not_found"));
+    }
+
+    @Test
+    void testCompleteRequiresReadySession() {
+        CheckoutSession session = create("{\"line_items\":[]}");
+
+        CheckoutException e = assertThrows(CheckoutException.class,
+                () -> checkoutService.completeCheckout(session.getId(), Collections.emptyMap()));
+
+        assertEquals("not_ready", e.getMessages().get(0).getCode());
+        assertEquals(CheckoutStatus.incomplete,
+                ((CheckoutSession) checkoutService.getCheckout(session.getId())).getStatus());
+    }
+
+    @Test
+    void testIdentityLinkingIsNotImplemented() {
+        CheckoutException e = assertThrows(CheckoutException.class,
+                () -> checkoutService.linkIdentity(Collections.emptyMap()));
+
+        assertEquals(501, e.getStatus().value());
+        assertEquals("unsupported_operation", e.getMessages().get(0).getCode());
+    }
+
+    @Test
+    void testUpdateReplacesLineItemsAndTotals() {
+        CheckoutSession session = create("{\"line_items\":[{\"item\":{\"id\":\"sku-tee\"},\"quantity\":1}]}");
+
+        CheckoutSession updated = (CheckoutSession) checkoutService.updateCheckout(session.getId(),
+                parse("{\"line_items\":[{\"id\":\"a\",\"item\":{\"id\":\"sku-tee\"},\"quantity\":3}]}"));
+
+        assertEquals(List.of("a"), List.of(updated.getLineItems().get(0).getId()));
+        assertEquals(7500L, updated.getTotals().get(1).getAmount());
+        assertEquals(2, updated.getVersion());
+        assertThrows(CheckoutException.class, () -> checkoutService.updateCheckout(session.getId(),
+                parse("{\"line_items\":[{\"item\":{\"id\":\"sku-tee\"},\"quantity\":0}]}")));
+    }
+
+    @Test
+    void testConditionalUpdateWithETag() throws Exception {
+        String id = create("{\"currency\":\"USD\"}").getId();
+
+        mockMvc.perform(get("/ucp/v1/checkout-sessions/" + id))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""));
+        mockMvc.perform(get("/ucp/v1/checkout-sessions/" + id).header("If-None-Match", "\"1\""))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/ucp/v1/checkout-sessions/" + id)
+                .header("If-Match", "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"currency\":\"EUR\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("$.currency").value("EUR"));
+
+        // A second writer still holding version 1 loses instead of overwriting
+        mockMvc.perform(put("/ucp/v1/checkout-sessions/" + id)
+                .header("If-Match", "\"1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"currency\":\"GBP\"}"))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.messages[0].code").value("version_mismatch"));
+        mockMvc.perform(put("/ucp/v1/checkout-sessions/" + id)
+                .header("If-Match", "W/\"2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"currency\":\"GBP\"}"))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put("/ucp/v1/checkout-sessions/" + id)
+                .header("If-Match", "\"1\", \"2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"currency\":\"GBP\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""));
+        assertEquals("GBP", ((CheckoutSession) checkoutService.getCheckout(id)).getCurrency());
+    }
+
+    @Test
+    void testMergePatchWithDeltaResponse() throws Exception {
+        String id = create("{\"currency\":\"USD\",\"buyer\":{\"email\":\"ada@example.com\"},"
+                + "\"line_items\":[{\"item\":{\"id\":\"sku-tee\"},\"quantity\":2}]}").getId();
+
+        mockMvc.perform(patch("/ucp/v1/checkout-sessions/" + id)
+                .contentType("application/merge-patch+json")
+                .content("{\"buyer\":{\"first_name\":\"Ada\"},\"currency\":null}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("$.buyer.email").value("ada@example.com"))
+                .andExpect(jsonPath("$.buyer.firstName").value("Ada"))
+                .andExpect(jsonPath("$.currency").doesNotExist())
+                .andExpect(jsonPath("$.line_items[0].quantity").value(2));
+
+        mockMvc.perform(patch("/ucp/v1/checkout-sessions/" + id)
+                .header("If-Match", "\"2\"")
+                .accept("application/json-patch+json")
+                .contentType("application/merge-patch+json")
+                .content("{\"line_items\":[{\"id\":\"li_1\",\"item\":{\"id\":\"sku-tee\"},\"quantity\":3}]}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(content().contentTypeCompatibleWith("application/json-patch+json"))
+                .andExpect(jsonPath("$[?(@.path == '/line_items/0/quantity')].value").value(3))
+                .andExpect(jsonPath("$[?(@.path == '/totals/1/amount')].value").value(7500))
+                .andExpect(jsonPath("$[?(@.path =~ /\\/buyer.*/)]").isEmpty());
+
+        mockMvc.perform(patch("/ucp/v1/checkout-sessions/" + id)
+                .header("If-Match", "\"2\"")
+                .contentType("application/merge-patch+json")
+                .content("{\"currency\":\"EUR\"}"))
+                .andExpect(status().isPreconditionFailed());
+        assertEquals(7500, ((CheckoutSession) checkoutService.getCheckout(id)).getPricing()
+                .amount(TotalResponse.Type.total));
+    }
+
+    @Test
+    void testDeltaPatchThatKeepsLosingRacesConflicts() throws Exception {
+        InMemoryCheckoutService contended = new InMemoryCheckoutService(new CheckoutSessionStore(Duration.ofHours(1))) {
+            @Override
+            public Object patchCheckout(String checkoutId, long expectedVersion, Map<String, Object> mergePatch) {
+                throw new CheckoutException(HttpStatus.PRECONDITION_FAILED, "version_mismatch",
+                        "Checkout session " + checkoutId + " changed");
+            }
+        };
+        String id = ((CheckoutSession) contended.createCheckout(parse(
+                "{\"line_items\":[{\"item\":{\"id\":\"a\",\"price\":100},\"quantity\":1}]}"))).getId();
+        CheckoutController controller = new CheckoutController();
+        ReflectionTestUtils.setField(controller, "checkoutSerice", contended);
+        ReflectionTestUtils.setField(controller, "objectMapper", new ObjectMapper());
+
+        MockMvcBuilders.standaloneSetup(controller).build()
+                .perform(patch("/ucp/v1/checkout-sessions/" + id)
+                        .accept("application/json-patch+json")
+                        .contentType("application/merge-patch+json")
+                        .content("{\"currency\":\"EUR\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.messages[0].code").value("concurrent_update"));
+    }
+
+    @Test
+    void testCompletePassesThroughCompleteInProgress() {
+        InMemoryCheckoutService declining = new InMemoryCheckoutService(new CheckoutSessionStore(Duration.ofHours(1))) {
+            @Override
+            protected void processPayment(CheckoutSession session, Map<String, Object> paymentDetails) {
+                assertEquals(CheckoutStatus.complete_in_progress, session.getStatus());
+                // Neither a second complete nor a cancel gets in while the payment runs
+                CheckoutException e = assertThrows(CheckoutException.class,
+                        () -> completeCheckout(session.getId(), paymentDetails));
+                assertEquals("complete_in_progress", e.getMessages().get(0).getCode());
+                assertThrows(CheckoutException.class, () -> cancelCheckout(session.getId()));
+                throw new IllegalStateException("card declined");
+            }
+        };
+        CheckoutSession session = (CheckoutSession) declining.createCheckout(parse(
+                "{\"buyer\":{\"email\":\"ada@example.com\"},"
+                        + "\"line_items\":[{\"item\":{\"id\":\"a\",\"price\":100},\"quantity\":1}]}"));
+
+        assertThrows(IllegalStateException.class, () -> declining.completeCheckout(session.getId(), Map.of()));
+
+        assertEquals(CheckoutStatus.requires_escalation,
+                ((CheckoutSession) declining.getCheckout(session.getId())).getStatus());
+        CheckoutSession updated = (CheckoutSession) declining.updateCheckout(session.getId(), Map.of());
+        assertEquals(CheckoutStatus.ready_for_complete, updated.getStatus());
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.vishalmysore.ucp.store;
+
+import io.github.vishalmysore.ucp.domain.checkout.CheckoutStatus;
+import io.github.vishalmysore.ucp.domain.common.Buyer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderStoreTest {
+
+    private final OrderStore store = new OrderStore();
+
+    private Order place(String checkoutId, String buyerId) {
+        Buyer buyer = null;
+        if (buyerId != null) {
+            buyer = new Buyer();
+            buyer.setId(buyerId);
+        }
+        return store.place(new CheckoutSession(checkoutId, CheckoutStatus.completed, "USD", buyer, null, null));
+    }
+
+    private static List<String> ids(OrderStore.Page page) {
+        List<String> ids = new ArrayList<>();
+        for (Order order : page.getOrders()) {
+            ids.add(order.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void testPlaceOnceAndLookUp() {
+        Order order = place("chk_1", "buyer_1");
+        assertEquals("ord_1", order.getId());
+        assertEquals(OrderStatus.confirmed, order.getStatus());
+        assertSame(order, place("chk_1", "buyer_1"));
+        assertSame(order, store.get("ord_1"));
+        assertNull(store.get("ord_2"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testStatusIndexFollowsUpdates() {
+        place("chk_1", "buyer_1");
+        place("chk_2", "buyer_1");
+        place("chk_3", null);
+
+        assertEquals(OrderStatus.processing, store.updateStatus("ord_2", OrderStatus.processing).getStatus());
+        assertEquals(List.of("ord_3", "ord_1"), ids(store.list(null, OrderStatus.confirmed, null, 10)));
+        assertEquals(List.of("ord_2"), ids(store.list(null, OrderStatus.processing, null, 10)));
+        assertEquals(List.of("ord_1"), ids(store.list("buyer_1", OrderStatus.confirmed, null, 10)));
+        assertEquals(List.of(), ids(store.list("buyer_9", null, null, 10)));
+
+        store.updateStatus("ord_2", OrderStatus.delivered);
+        CheckoutException e = assertThrows(CheckoutException.class,
+                () -> store.updateStatus("ord_2", OrderStatus.canceled));
+        assertEquals(409, e.getStatus().value());
+        assertNull(store.updateStatus("ord_9", OrderStatus.shipped));
+    }
+
+    @Test
+    void testBuyerAndStatusListingUsesItsOwnIndex() {
+        place("chk_0", "buyer_1");
+        for (int i = 1; i <= 50; i++) {
+            place("chk_" + i, "buyer_1");
+            store.updateStatus("ord_" + i, OrderStatus.processing);
+        }
+        place("chk_51", "buyer_2");
+
+        OrderStore.Page page = store.list("buyer_1", OrderStatus.confirmed, null, 1);
+        assertEquals(List.of("ord_0"), ids(page));
+        assertNull(page.getNextCursor());
+        assertEquals(List.of("ord_50", "ord_49"), ids(store.list("buyer_1", OrderStatus.processing, null, 2)));
+
+        store.updateStatus("ord_50", OrderStatus.shipped);
+        assertEquals(List.of("ord_50"), ids(store.list("buyer_1", OrderStatus.shipped, null, 10)));
+        assertEquals(List.of("ord_49"), ids(store.list("buyer_1", OrderStatus.processing, null, 1)));
+        assertEquals(List.of(), ids(store.list("buyer_2", OrderStatus.processing, null, 10)));
+    }
+
+    @Test
+    void testCursorPagesAreStableWhileOrdersArePlaced() {
+        for (int i = 1; i <= 5; i++) {
+            place("chk_" + i, "buyer_1");
+        }
+        OrderStore.Page first = store.list("buyer_1", null, null, 2);
+        assertEquals(List.of("ord_5", "ord_4"), ids(first));
+
+        // Newer orders do not shift the pages after the cursor
+        place("chk_6", "buyer_1");
+        OrderStore.Page second = store.list("buyer_1", null, first.getNextCursor(), 2);
+        assertEquals(List.of("ord_3", "ord_2"), ids(second));
+        OrderStore.Page last = store.list("buyer_1", null, second.getNextCursor(), 2);
+        assertEquals(List.of("ord_1"), ids(last));
+        assertNull(last.getNextCursor());
+
+        assertEquals(List.of("ord_6", "ord_5", "ord_4"), ids(store.list(null, null, null, 3)));
+        assertThrows(CheckoutException.class, () -> store.list(null, null, "%%", 2));
+        assertThrows(CheckoutException.class, () -> store.list(null, null, null, 0));
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.vishalmysore.ucp.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private static final class Task extends TimingWheel.Timer {
+        final long deadline;
+        long firedAt = -1;
+
+        Task(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    @Test
+    void testTimersFireAtTheirTickAcrossLevels() {
+        TimingWheel<Task> wheel = new TimingWheel<>(1000);
+        Random random = new Random(42);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // Spread over every level, including beyond the wheel's reach
+            long delta = 1 + (long) Math.pow(2, random.nextDouble() * 26);
+            Task task = new Task(1000 + delta);
+            tasks.add(task);
+            wheel.schedule(task, task.deadline);
+        }
+        assertEquals(5000, wheel.size());
+
+        long[] now = {1000};
+        while (wheel.size() > 0) {
+            now[0] += 1 + random.nextInt(5000);
+            long to = now[0];
+            wheel.advance(to, task -> task.firedAt = to);
+        }
+
+        for (Task task : tasks) {
+            assertTrue(task.firedAt >= task.deadline, task.deadline + " fired at " + task.firedAt);
+        }
+    }
+
+    @Test
+    void testEveryTickAdvanceIsExact() {
+        TimingWheel<Task> wheel = new TimingWheel<>(0);
+        Random random = new Random(7);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Task task = new Task(1 + random.nextInt(300_000));
+            tasks.add(task);
+            wheel.schedule(task, task.deadline);
+        }
+        for (long tick = 1; tick <= 300_000; tick++) {
+            long now = tick;
+            wheel.advance(tick, task -> task.firedAt = now);
+        }
+        for (Task task : tasks) {
+            assertEquals(task.deadline, task.firedAt);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testRescheduleAndCancel() {
+        TimingWheel<Task> wheel = new TimingWheel<>(0);
+        Task moved = new Task(100);
+        Task canceled = new Task(100);
+        Task past = new Task(0);
+        wheel.schedule(moved, 100);
+        wheel.schedule(canceled, 100);
+        wheel.schedule(moved, 5000);
+        wheel.cancel(canceled);
+        wheel.cancel(canceled);
+        wheel.schedule(past, -10);
+        assertEquals(2, wheel.size());
+
+        List<Task> fired = new ArrayList<>();
+        wheel.advance(1, fired::add);
+        assertEquals(List.of(past), fired);
+        wheel.advance(4999, fired::add);
+        assertEquals(1, fired.size());
+        wheel.advance(5000, fired::add);
+        assertEquals(List.of(past, moved), fired);
+        assertEquals(5000, wheel.currentTick());
+    }
+}